@@ -0,0 +1,76 @@
+package net.explorviz.jenkins.benchmarks;
+
+import hudson.FilePath;
+import net.explorviz.jenkins.kieker.configuration.BinaryFileWriterConfiguration;
+import net.explorviz.jenkins.kieker.configuration.FileWriterConfiguration;
+import net.explorviz.jenkins.kieker.configuration.SingleSocketTcpWriterConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of generating the kieker monitoring configuration, which happens once per instrumentation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ConfigurationBenchmark {
+    private File directory;
+    private FilePath configurationFile;
+    private FileWriterConfiguration configuration;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("explorviz-benchmark").toFile();
+        configurationFile = new FilePath(new File(directory, "kieker.monitoring.configuration"));
+
+        configuration = new FileWriterConfiguration();
+        configuration.setStoragePath(directory.getAbsolutePath());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException, InterruptedException {
+        new FilePath(directory).deleteRecursive();
+    }
+
+    @Benchmark
+    public FileWriterConfiguration createFileWriterConfiguration() throws IOException {
+        return new FileWriterConfiguration();
+    }
+
+    @Benchmark
+    public BinaryFileWriterConfiguration createBinaryFileWriterConfiguration() throws IOException {
+        BinaryFileWriterConfiguration binaryConfiguration = new BinaryFileWriterConfiguration();
+        binaryConfiguration.setCompression(BinaryFileWriterConfiguration.Compression.GZIP);
+        return binaryConfiguration;
+    }
+
+    @Benchmark
+    public SingleSocketTcpWriterConfiguration createTcpWriterConfiguration() throws IOException {
+        SingleSocketTcpWriterConfiguration tcpConfiguration = new SingleSocketTcpWriterConfiguration();
+        tcpConfiguration.setHostname("localhost");
+        tcpConfiguration.setPort(10133);
+        return tcpConfiguration;
+    }
+
+    @Benchmark
+    public void write() throws IOException, InterruptedException {
+        configuration.write(configurationFile);
+    }
+}
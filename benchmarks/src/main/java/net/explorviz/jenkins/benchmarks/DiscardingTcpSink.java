@@ -0,0 +1,99 @@
+package net.explorviz.jenkins.benchmarks;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local TCP server that accepts kieker record streams and throws them away, counting the bytes received. Stands in
+ * for ExplorViz when measuring how fast records can be sent.
+ */
+public class DiscardingTcpSink implements Closeable {
+    private static final int BUFFER_SIZE = 65536;
+    private static final long IDLE_POLL_MILLIS = 5;
+
+    private final ServerSocket serverSocket;
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private final AtomicInteger openConnections = new AtomicInteger();
+
+    public DiscardingTcpSink() throws IOException {
+        this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+
+        Thread acceptor = new Thread(this::accept, "Benchmark TCP sink");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public String getHostname() {
+        return serverSocket.getInetAddress().getHostAddress();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived.get();
+    }
+
+    /**
+     * Wait until all connections were closed by the writers and the byte count stopped changing, so
+     * {@link #getBytesReceived()} includes everything that was sent so far. A writer that has returned may have
+     * closed its socket before the sink read the remaining bytes.
+     *
+     * @return Whether the sink became idle before the timeout
+     */
+    public boolean awaitIdle(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        long previous = -1;
+        while (System.nanoTime() < deadline) {
+            long received = bytesReceived.get();
+            if (openConnections.get() == 0 && received == previous) {
+                return true;
+            }
+            previous = received;
+            Thread.sleep(IDLE_POLL_MILLIS);
+        }
+        return false;
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                openConnections.incrementAndGet();
+                Thread reader = new Thread(() -> drain(socket), "Benchmark TCP sink connection");
+                reader.setDaemon(true);
+                reader.start();
+            } catch (IOException e) {
+                // Closed
+                return;
+            }
+        }
+    }
+
+    private void drain(Socket socket) {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = socket.getInputStream()) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                bytesReceived.addAndGet(read);
+            }
+        } catch (IOException e) {
+            // Connection reset by the writer, nothing to do
+        } finally {
+            openConnections.decrementAndGet();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+    }
+}
@@ -0,0 +1,160 @@
+package net.explorviz.jenkins.benchmarks;
+
+import kieker.common.record.factory.CachedRecordFactoryCatalog;
+import kieker.common.record.factory.IRecordFactory;
+import net.explorviz.jenkins.kieker.records.LatencyHistogram;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Local stand-in for the ExplorViz ingest: accepts the record stream of kieker's {@code SingleSocketTcpWriter}, decodes
+ * its framing and measures how fast records arrive.
+ * <p>
+ * Besides records/s and bytes/s, it measures the lag of each record behind the stream's own timeline: the first
+ * record of a connection defines time zero, and every later record is due when its logging timestamp says so, scaled
+ * by the expected replay speed. For an unthrottled replay there is no timeline, so no lag is measured.
+ */
+public class IngestStandIn implements Closeable {
+    private static final Logger LOGGER = Logger.getLogger(IngestStandIn.class.getName());
+
+    private static final int REGISTRY_ENTRY_MARKER = -1;
+    private static final int BUFFER_SIZE = 65536;
+
+    private final ServerSocket serverSocket;
+    private final double speedFactor;
+
+    private final LatencyHistogram lag = new LatencyHistogram();
+    private long records;
+    private long bytes;
+    private long firstArrivalNanos;
+    private long lastArrivalNanos;
+
+    /**
+     * @param speedFactor Speed the stream is replayed at relative to the original timing, or {@code 0} if it is
+     *                    unthrottled
+     */
+    public IngestStandIn(double speedFactor) throws IOException {
+        this.speedFactor = speedFactor;
+        this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+
+        Thread acceptor = new Thread(this::accept, "Ingest stand-in");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public String getHostname() {
+        return serverSocket.getInetAddress().getHostAddress();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * @return Statistics about everything received so far
+     */
+    public synchronized IngestStatistics getStatistics() {
+        return new IngestStatistics(records, bytes, records == 0 ? 0 : lastArrivalNanos - firstArrivalNanos,
+                speedFactor > 0 ? lag.getValueAtQuantile(0.5) : -1,
+                speedFactor > 0 ? lag.getValueAtQuantile(0.99) : -1,
+                speedFactor > 0 ? lag.getMax() : -1);
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                Thread reader = new Thread(() -> read(socket), "Ingest stand-in connection");
+                reader.setDaemon(true);
+                reader.start();
+            } catch (IOException e) {
+                // Closed
+                return;
+            }
+        }
+    }
+
+    private void read(Socket socket) {
+        Map<Integer, String> registry = new HashMap<>();
+        Map<Integer, Integer> recordSizes = new HashMap<>();
+        long firstTimestamp = 0;
+        long connectionStartNanos = 0;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE))) {
+            while (true) {
+                int marker = in.readInt();
+                if (marker == REGISTRY_ENTRY_MARKER) {
+                    int id = in.readInt();
+                    byte[] value = new byte[in.readInt()];
+                    in.readFully(value);
+                    registry.put(id, new String(value, StandardCharsets.UTF_8));
+                    received(3 * Integer.BYTES + value.length);
+                    continue;
+                }
+
+                long loggingTimestamp = in.readLong();
+                int size = recordSizes.computeIfAbsent(marker, classId -> getRecordSize(registry.get(classId)));
+                in.skipBytes(size);
+
+                long now = System.nanoTime();
+                if (connectionStartNanos == 0) {
+                    connectionStartNanos = now;
+                    firstTimestamp = loggingTimestamp;
+                }
+                long lagNanos = speedFactor > 0 ?
+                        now - connectionStartNanos - (long) ((loggingTimestamp - firstTimestamp) / speedFactor) : 0;
+                receivedRecord(Integer.BYTES + Long.BYTES + size, now, lagNanos);
+            }
+        } catch (EOFException e) {
+            // Writer closed the connection
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Ingest stand-in connection failed", e);
+        }
+    }
+
+    private static int getRecordSize(String className) {
+        if (className == null) {
+            throw new IllegalStateException("Record class was never registered");
+        }
+
+        IRecordFactory<?> factory = CachedRecordFactoryCatalog.getInstance().get(className);
+        if (factory == null || factory.getRecordSizeInBytes() < 0) {
+            throw new IllegalStateException("Record type " + className + " has no fixed binary size");
+        }
+        return factory.getRecordSizeInBytes();
+    }
+
+    private synchronized void received(int byteCount) {
+        bytes += byteCount;
+    }
+
+    private synchronized void receivedRecord(int byteCount, long arrivalNanos, long lagNanos) {
+        if (records == 0) {
+            firstArrivalNanos = arrivalNanos;
+        }
+        records++;
+        bytes += byteCount;
+        lastArrivalNanos = arrivalNanos;
+
+        if (speedFactor > 0) {
+            lag.record(lagNanos);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+    }
+}
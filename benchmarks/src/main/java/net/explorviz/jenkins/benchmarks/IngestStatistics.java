@@ -0,0 +1,74 @@
+package net.explorviz.jenkins.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What an {@link IngestStandIn} received. Lag values are {@code -1} if no lag was measured.
+ */
+public class IngestStatistics {
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final long records;
+    private final long bytes;
+    private final long durationNanos;
+    private final long lagP50Nanos;
+    private final long lagP99Nanos;
+    private final long lagMaxNanos;
+
+    public IngestStatistics(long records, long bytes, long durationNanos, long lagP50Nanos, long lagP99Nanos,
+                            long lagMaxNanos) {
+        this.records = records;
+        this.bytes = bytes;
+        this.durationNanos = durationNanos;
+        this.lagP50Nanos = lagP50Nanos;
+        this.lagP99Nanos = lagP99Nanos;
+        this.lagMaxNanos = lagMaxNanos;
+    }
+
+    public long getRecords() {
+        return records;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return Time between the first and the last record received
+     */
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    public double getRecordsPerSecond() {
+        return durationNanos <= 0 ? 0 : records * NANOS_PER_SECOND / durationNanos;
+    }
+
+    public double getBytesPerSecond() {
+        return durationNanos <= 0 ? 0 : bytes * NANOS_PER_SECOND / durationNanos;
+    }
+
+    public long getLagP50Nanos() {
+        return lagP50Nanos;
+    }
+
+    public long getLagP99Nanos() {
+        return lagP99Nanos;
+    }
+
+    public long getLagMaxNanos() {
+        return lagMaxNanos;
+    }
+
+    @Override
+    public String toString() {
+        String throughput = String.format("%d records, %d bytes in %.2f s: %.0f records/s, %.2f MB/s", records, bytes,
+                durationNanos / NANOS_PER_SECOND, getRecordsPerSecond(), getBytesPerSecond() / (1024 * 1024));
+        if (lagMaxNanos < 0) {
+            return throughput;
+        }
+        return throughput + String.format("; lag p50 %.3f ms, p99 %.3f ms, max %.3f ms", lagP50Nanos / NANOS_PER_MILLI,
+                lagP99Nanos / NANOS_PER_MILLI, lagMaxNanos / NANOS_PER_MILLI);
+    }
+}
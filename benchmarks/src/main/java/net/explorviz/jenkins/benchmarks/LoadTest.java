@@ -0,0 +1,88 @@
+package net.explorviz.jenkins.benchmarks;
+
+import hudson.FilePath;
+import net.explorviz.jenkins.kieker.configuration.SingleSocketTcpWriterConfiguration;
+import net.explorviz.jenkins.kieker.replay.RecordReplayer;
+import net.explorviz.jenkins.kieker.replay.ReplaySpeed;
+import net.explorviz.jenkins.kieker.replay.ReplayStatistics;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load test of the replay path without ExplorViz: generates a record set, replays it with {@link RecordReplayer} to an
+ * {@link IngestStandIn} and prints what was sent and received.
+ * <p>
+ * Options are given as {@code key=value} arguments:
+ * <pre>
+ *     java -cp benchmarks/target/benchmarks.jar net.explorviz.jenkins.benchmarks.LoadTest \
+ *         records=1000000 folders=4 depth=4 fanOut=3 signatures=500 speed=0 parallelism=4
+ * </pre>
+ * {@code speed=0} replays unthrottled, any other value replays at that multiple of the original speed. Pass
+ * {@code dir=<path>} to keep the generated records in the given directory instead of a temporary one.
+ */
+public final class LoadTest {
+    private static final long DRAIN_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Expected key=value, got: " + arg);
+            }
+            options.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+
+        long records = Long.parseLong(options.getOrDefault("records", "1000000"));
+        int folders = Integer.parseInt(options.getOrDefault("folders", "1"));
+        double speed = Double.parseDouble(options.getOrDefault("speed", "0"));
+        int parallelism = Integer.parseInt(options.getOrDefault("parallelism", "1"));
+
+        RecordSetGenerator generator = new RecordSetGenerator();
+        generator.setFolders(folders);
+        generator.setTraceDepth(Integer.parseInt(options.getOrDefault("depth", "3")));
+        generator.setFanOut(Integer.parseInt(options.getOrDefault("fanOut", "1")));
+        generator.setSignatureCardinality(Integer.parseInt(options.getOrDefault("signatures", "3")));
+
+        String dir = options.get("dir");
+        File recordDirectory = dir != null ? new File(dir) : Files.createTempDirectory("explorviz-loadtest").toFile();
+        try {
+            long generateStart = System.nanoTime();
+            long generated = generator.generate(recordDirectory, records / folders);
+            System.out.printf("Generated %d records (%d per trace) in %d ms into %s%n", generated,
+                    generator.getRecordsPerTrace(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - generateStart), recordDirectory);
+
+            try (IngestStandIn standIn = new IngestStandIn(speed)) {
+                SingleSocketTcpWriterConfiguration target = new SingleSocketTcpWriterConfiguration();
+                target.setHostname(standIn.getHostname());
+                target.setPort(standIn.getPort());
+
+                RecordReplayer replayer = new RecordReplayer(recordDirectory, target, parallelism,
+                        speed > 0 ? ReplaySpeed.times(speed) : ReplaySpeed.UNTHROTTLED);
+                replayer.run();
+                ReplayStatistics sent = replayer.waitForCompletion();
+                System.out.println("Sent:     " + sent);
+
+                // The writer may still be flushing its last buffer
+                long deadline = System.currentTimeMillis() + DRAIN_TIMEOUT_MILLIS;
+                while (standIn.getStatistics().getRecords() < sent.getRecords()
+                        && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(100);
+                }
+                System.out.println("Received: " + standIn.getStatistics());
+            }
+        } finally {
+            if (dir == null) {
+                new FilePath(recordDirectory).deleteRecursive();
+            }
+        }
+    }
+}
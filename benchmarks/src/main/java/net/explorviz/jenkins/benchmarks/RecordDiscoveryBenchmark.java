@@ -0,0 +1,64 @@
+package net.explorviz.jenkins.benchmarks;
+
+import hudson.FilePath;
+import net.explorviz.jenkins.kieker.records.RecordDirectories;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of finding the record folders in a working directory, as done after each instrumentation and before each
+ * replay.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RecordDiscoveryBenchmark {
+    /**
+     * Number of record folders in the working directory
+     */
+    @Param({"1", "10", "100"})
+    public int folders;
+
+    /**
+     * Number of records per folder. Discovery only looks at file names, so this mostly affects the file system cache.
+     */
+    @Param({"1000"})
+    public long records;
+
+    private File workingDirectory;
+
+    @Setup
+    public void setUp() throws IOException {
+        workingDirectory = Files.createTempDirectory("explorviz-benchmark").toFile();
+        RecordSetGenerator.generate(workingDirectory, folders, records);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException, InterruptedException {
+        new FilePath(workingDirectory).deleteRecursive();
+    }
+
+    @Benchmark
+    public List<File> find() {
+        return RecordDirectories.find(workingDirectory);
+    }
+}
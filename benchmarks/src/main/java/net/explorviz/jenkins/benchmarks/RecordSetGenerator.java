@@ -0,0 +1,209 @@
+package net.explorviz.jenkins.benchmarks;
+
+import kieker.common.record.IMonitoringRecord;
+import kieker.common.record.flow.trace.TraceMetadata;
+import kieker.common.record.flow.trace.operation.AfterOperationEvent;
+import kieker.common.record.flow.trace.operation.BeforeOperationEvent;
+import kieker.common.record.io.BinaryValueSerializer;
+import kieker.common.registry.writer.WriterRegistry;
+import kieker.common.util.filesystem.FSUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Writes synthetic kieker record folders in binary format, laid out exactly like folders written by kieker's
+ * {@code FileWriter}.
+ * <p>
+ * Each trace consists of a {@link TraceMetadata} record followed by the before and after events of a complete call
+ * tree: the root operation calls {@link #setFanOut(int) fan-out} operations, each of which does the same, down to the
+ * given {@link #setTraceDepth(int) trace depth}. Operations are picked from a pool of
+ * {@link #setSignatureCardinality(int) distinct signatures}. Timestamps advance by one microsecond per event, starting
+ * at a fixed value, and the signature choice uses a fixed seed, so generated sets are reproducible.
+ */
+public class RecordSetGenerator {
+    private static final long START_TIMESTAMP = 1_500_000_000_000_000_000L;
+    private static final long TIMESTAMP_STEP = 1000;
+    private static final int BUFFER_SIZE = 1024 * 1024;
+    private static final long SEED = 0x4578706c6f7256L;
+
+    private int traceDepth = 3;
+    private int fanOut = 1;
+    private int signatureCardinality = 3;
+    private int folders = 1;
+
+    private WriterRegistry registry;
+    private ByteBuffer buffer;
+    private BinaryValueSerializer serializer;
+    private FileChannel log;
+    private Random random;
+    private long timestamp;
+    private int orderIndex;
+
+    /**
+     * Generate folders with the default trace shape: a chain of three nested calls per trace.
+     *
+     * @see #generate(File, long)
+     */
+    public static long generate(File parent, int folders, long records) throws IOException {
+        RecordSetGenerator generator = new RecordSetGenerator();
+        generator.setFolders(folders);
+        return generator.generate(parent, records);
+    }
+
+    /**
+     * @param traceDepth Number of nested call levels per trace, including the root operation
+     */
+    public void setTraceDepth(int traceDepth) {
+        if (traceDepth < 1) {
+            throw new IllegalArgumentException("traceDepth must be positive");
+        }
+        this.traceDepth = traceDepth;
+    }
+
+    /**
+     * @param fanOut Number of operations each operation above the deepest level calls
+     */
+    public void setFanOut(int fanOut) {
+        if (fanOut < 1) {
+            throw new IllegalArgumentException("fanOut must be positive");
+        }
+        this.fanOut = fanOut;
+    }
+
+    /**
+     * @param signatureCardinality Number of distinct operation signatures used across all traces
+     */
+    public void setSignatureCardinality(int signatureCardinality) {
+        if (signatureCardinality < 1) {
+            throw new IllegalArgumentException("signatureCardinality must be positive");
+        }
+        this.signatureCardinality = signatureCardinality;
+    }
+
+    /**
+     * @param folders Number of record folders to spread the records over
+     */
+    public void setFolders(int folders) {
+        if (folders < 1) {
+            throw new IllegalArgumentException("folders must be positive");
+        }
+        this.folders = folders;
+    }
+
+    /**
+     * @return Number of records each trace consists of
+     */
+    public long getRecordsPerTrace() {
+        long calls = 0;
+        long callsAtLevel = 1;
+        for (int level = 0; level < traceDepth; level++) {
+            calls += callsAtLevel;
+            callsAtLevel *= fanOut;
+        }
+        return 1 + 2 * calls;
+    }
+
+    /**
+     * @param parent  Directory to create the record folders in. Created if missing.
+     * @param records Approximate number of records per folder, rounded up to whole traces
+     * @return Total number of records written
+     */
+    public long generate(File parent, long records) throws IOException {
+        long written = 0;
+        for (int folder = 0; folder < folders; folder++) {
+            File directory = new File(parent, String.format(Locale.US,
+                    "%s-20200101-000000-UTC-%03d-benchmark", FSUtil.FILE_PREFIX, folder));
+            written += generateFolder(directory, records, folder);
+        }
+        return written;
+    }
+
+    private long generateFolder(File directory, long records, int folder) throws IOException {
+        Files.createDirectories(directory.toPath());
+
+        File logFile = new File(directory, FSUtil.FILE_PREFIX + "-20200101-000000-UTC-001" +
+                FSUtil.BINARY_FILE_EXTENSION);
+        try (Writer mapWriter = Files.newBufferedWriter(new File(directory, FSUtil.MAP_FILENAME).toPath(),
+                StandardCharsets.UTF_8);
+             FileChannel logChannel = FileChannel.open(logFile.toPath(), StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            registry = new WriterRegistry((value, id) -> {
+                try {
+                    mapWriter.write('$' + Integer.toString(id) + '=' + value + '\n');
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            serializer = BinaryValueSerializer.create(buffer, registry);
+            log = logChannel;
+            random = new Random(SEED + folder);
+            timestamp = START_TIMESTAMP;
+
+            long recordsPerTrace = getRecordsPerTrace();
+            long traces = (records + recordsPerTrace - 1) / recordsPerTrace;
+            for (long trace = 0; trace < traces; trace++) {
+                long traceId = ((long) folder << 40) | trace;
+                write(new TraceMetadata(traceId, 1, "<no-session-id>", "benchmark-host", -1, -1));
+
+                orderIndex = 0;
+                writeCall(traceId, 0);
+            }
+
+            flush();
+            return traces * recordsPerTrace;
+        }
+    }
+
+    private void writeCall(long traceId, int level) throws IOException {
+        int operation = random.nextInt(signatureCardinality);
+
+        timestamp += TIMESTAMP_STEP;
+        write(new BeforeOperationEvent(timestamp, traceId, orderIndex++, signature(operation),
+                className(operation)));
+
+        if (level + 1 < traceDepth) {
+            for (int call = 0; call < fanOut; call++) {
+                writeCall(traceId, level + 1);
+            }
+        }
+
+        timestamp += TIMESTAMP_STEP;
+        write(new AfterOperationEvent(timestamp, traceId, orderIndex++, signature(operation), className(operation)));
+    }
+
+    private void write(IMonitoringRecord record) throws IOException {
+        if (buffer.remaining() < Integer.BYTES + Long.BYTES + record.getSize()) {
+            flush();
+        }
+
+        buffer.putInt(registry.getId(record.getClass().getName()));
+        buffer.putLong(timestamp);
+        record.serialize(serializer);
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            log.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static String className(int operation) {
+        return "net.explorviz.benchmark.Component" + operation / 10;
+    }
+
+    private static String signature(int operation) {
+        return "public void " + className(operation) + ".operation" + operation + "()";
+    }
+}
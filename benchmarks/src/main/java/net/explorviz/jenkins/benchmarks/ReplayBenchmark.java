@@ -0,0 +1,108 @@
+package net.explorviz.jenkins.benchmarks;
+
+import hudson.FilePath;
+import net.explorviz.jenkins.kieker.configuration.SingleSocketTcpWriterConfiguration;
+import net.explorviz.jenkins.kieker.replay.RecordReplayer;
+import net.explorviz.jenkins.kieker.replay.ReplaySpeed;
+import net.explorviz.jenkins.kieker.replay.ReplayStatistics;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end throughput of {@link RecordReplayer}: read generated binary records, pass them through the replay
+ * pipeline and send them via kieker's TCP writer to a local sink that discards them.
+ * <p>
+ * Besides the time per replay, the {@code records} and {@code bytes} secondary results report records and bytes per
+ * second.
+ * <p>
+ * {@code forwardFrames} compares forwarding the generated binary folders as they are against reading them into record
+ * objects first. Run with {@code -prof gc} to compare the allocation rate ({@code gc.alloc.rate.norm} is bytes per
+ * replay).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReplayBenchmark {
+    private static final long SINK_IDLE_TIMEOUT_SECONDS = 30;
+
+    @Param({"100000", "1000000"})
+    public long records;
+
+    @Param({"1", "4"})
+    public int folders;
+
+    @Param({"1", "4"})
+    public int parallelism;
+
+    @Param({"false", "true"})
+    public boolean forwardFrames;
+
+    private File recordDirectory;
+    private DiscardingTcpSink sink;
+    private SingleSocketTcpWriterConfiguration sinkConfiguration;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        recordDirectory = Files.createTempDirectory("explorviz-benchmark").toFile();
+        RecordSetGenerator.generate(recordDirectory, folders, records / folders);
+
+        sink = new DiscardingTcpSink();
+        sinkConfiguration = new SingleSocketTcpWriterConfiguration();
+        sinkConfiguration.setHostname(sink.getHostname());
+        sinkConfiguration.setPort(sink.getPort());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException, InterruptedException {
+        sink.close();
+        new FilePath(recordDirectory).deleteRecursive();
+    }
+
+    @Benchmark
+    public ReplayStatistics replay(Throughput throughput) throws InterruptedException {
+        long bytesBefore = sink.getBytesReceived();
+
+        RecordReplayer replayer = new RecordReplayer(recordDirectory, sinkConfiguration, parallelism,
+                ReplaySpeed.UNTHROTTLED, forwardFrames);
+        replayer.run();
+        ReplayStatistics statistics = replayer.waitForCompletion();
+        if (!sink.awaitIdle(SINK_IDLE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("The sink still received data " + SINK_IDLE_TIMEOUT_SECONDS
+                    + " s after the replay finished");
+        }
+
+        throughput.records += statistics.getRecords();
+        throughput.bytes += sink.getBytesReceived() - bytesBefore;
+        return statistics;
+    }
+
+    /**
+     * Reported by JMH as secondary results, per second.
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Throughput {
+        public long records;
+        public long bytes;
+    }
+}
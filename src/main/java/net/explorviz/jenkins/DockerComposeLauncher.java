@@ -0,0 +1,134 @@
+package net.explorviz.jenkins;
+
+import hudson.Extension;
+import hudson.Util;
+import jenkins.util.SystemProperties;
+import net.explorviz.jenkins.model.ExplorVizDefinition;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Launches ExplorViz as a docker compose project on the controller, using the
+ * {@link ExplorVizDefinition#getComposeDefinition() compose definition} of the {@link ExplorVizDefinition}.
+ * <p>
+ * Compose definitions publish the web interface on {@code ${EXPLORVIZ_PORT}} and the kieker TCP endpoint on
+ * {@code ${EXPLORVIZ_INGEST_PORT}}, which are set to free ports, so several instances can run side by side. The
+ * compose executable can be set with the system property
+ * {@code net.explorviz.jenkins.DockerComposeLauncher.executable}.
+ */
+@Extension
+public class DockerComposeLauncher extends ExplorVizLauncher {
+    private static final String EXECUTABLE_PROPERTY = DockerComposeLauncher.class.getName() + ".executable";
+    private static final String DEFAULT_EXECUTABLE = "docker-compose";
+
+    private static final String COMPOSE_FILE = "docker-compose.yml";
+    private static final String LOG_FILE = "docker-compose.log";
+
+    private static final long COMMAND_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Nonnull
+    @Override
+    public Launched launch(@Nonnull String name, @Nonnull ExplorVizDefinition definition)
+            throws IOException, InterruptedException {
+        String composeDefinition = Util.fixEmptyAndTrim(definition.getComposeDefinition());
+        if (composeDefinition == null) {
+            throw new IOException("ExplorViz definition " + definition.getName() + " has no compose definition");
+        }
+
+        int port = allocatePort();
+        int ingestPort = allocatePort();
+        URL url = getUrl(port);
+        File directory = getInstanceDirectory(name);
+        Files.write(new File(directory, COMPOSE_FILE).toPath(), composeDefinition.getBytes(StandardCharsets.UTF_8));
+
+        ComposeProject project = new ComposeProject(directory, "explorviz-" + name.toLowerCase(Locale.ENGLISH), url,
+                port, ingestPort);
+        try {
+            project.run("up", "--detach");
+            awaitListening(port, null);
+        } catch (IOException | InterruptedException e) {
+            project.shutdown();
+            throw e;
+        }
+        return project;
+    }
+
+    private static final class ComposeProject implements Launched {
+        private final File directory;
+        private final String projectName;
+        private final URL url;
+        private final int port;
+        private final int ingestPort;
+
+        ComposeProject(File directory, String projectName, URL url, int port, int ingestPort) {
+            this.directory = directory;
+            this.projectName = projectName;
+            this.url = url;
+            this.port = port;
+            this.ingestPort = ingestPort;
+        }
+
+        void run(String... arguments) throws IOException, InterruptedException {
+            List<String> command = new ArrayList<>(Arrays.asList(
+                    SystemProperties.getString(EXECUTABLE_PROPERTY, DEFAULT_EXECUTABLE),
+                    "--project-name", projectName, "--file", COMPOSE_FILE));
+            command.addAll(Arrays.asList(arguments));
+
+            ProcessBuilder builder = new ProcessBuilder(command).directory(directory).redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.appendTo(new File(directory, LOG_FILE)));
+            builder.environment().put("EXPLORVIZ_PORT", String.valueOf(port));
+            builder.environment().put("EXPLORVIZ_INGEST_PORT", String.valueOf(ingestPort));
+
+            Process process = builder.start();
+            if (!process.waitFor(COMMAND_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                process.destroyForcibly();
+                throw new IOException("docker compose " + arguments[0] + " did not finish in time, see "
+                        + new File(directory, LOG_FILE));
+            }
+            if (process.exitValue() != 0) {
+                throw new IOException("docker compose " + arguments[0] + " failed with exit code "
+                        + process.exitValue() + ", see " + new File(directory, LOG_FILE));
+            }
+        }
+
+        @Nonnull
+        @Override
+        public URL getUrl() {
+            return url;
+        }
+
+        @Nonnull
+        @Override
+        public InetSocketAddress getIngestAddress() {
+            return InetSocketAddress.createUnresolved(url.getHost(), ingestPort);
+        }
+
+        @Override
+        public boolean isAlive() {
+            return isListening(port);
+        }
+
+        @Override
+        public void shutdown() throws IOException, InterruptedException {
+            // Removes the containers, their volumes and images built for the project
+            run("down", "--volumes", "--rmi", "local");
+            Util.deleteRecursive(directory);
+        }
+    }
+}
@@ -1,46 +1,145 @@
 package net.explorviz.jenkins;
 
-import net.explorviz.jenkins.model.ExplorVizInstanceConfiguration;
+import hudson.FilePath;
+import hudson.model.Run;
+import net.explorviz.jenkins.kieker.configuration.SingleSocketTcpWriterConfiguration;
+import net.explorviz.jenkins.kieker.replay.ReplayCallable;
+import net.explorviz.jenkins.kieker.replay.ReplaySpeed;
+import net.explorviz.jenkins.kieker.replay.ReplayStatistics;
+import net.explorviz.jenkins.model.ExplorVizDefinition;
 import net.explorviz.jenkins.model.InstrumentationRecord;
 
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.URL;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
- * Represents one ExplorViz instance managed through docker (compose).
+ * Represents one running ExplorViz, started by an {@link ExplorVizLauncher}.
  * <p>
- * TODO: ExplorVizInstance
+ * Instances are expensive to start, so they are not created directly but leased from the
+ * {@link ExplorVizInstancePool}, which keeps them running between visualizations of the same
+ * {@link ExplorVizDefinition}.
  */
 public class ExplorVizInstance {
-    private final InstrumentationRecord record;
-    private final ExplorVizInstanceConfiguration settings;
+    /**
+     * Record folders read in parallel when replaying. Most instrumentations have a single folder.
+     */
+    private static final int REPLAY_PARALLELISM = 2;
+
+    private final String name;
+    private final ExplorVizDefinition definition;
+    private final ExplorVizLauncher launcher;
+
+    private volatile ExplorVizLauncher.Launched launched;
+    private volatile long startupMillis = -1;
 
-    // TODO: Check for ExplorVizGlobalConfiguration.RUN permission for launch/kill
+    // Guarded by the pool
+    boolean leased;
+    long lastReleased;
 
-    public ExplorVizInstance(InstrumentationRecord record, ExplorVizInstanceConfiguration settings) {
-        this.record = record;
-        this.settings = settings;
+    ExplorVizInstance(@Nonnull String name, @Nonnull ExplorVizDefinition definition,
+                      @Nonnull ExplorVizLauncher launcher) {
+        this.name = name;
+        this.definition = definition;
+        this.launcher = launcher;
     }
 
     /**
-     * Launch this ExplorViz instance.
+     * Launch this ExplorViz instance and wait until it is ready.
      */
-    public void launch() {
-        // TODO: Remove, nonse code to make SpotBugs shut the fuck up
-        throw new UnsupportedOperationException(
-                record.getId() + settings.getExplorVizDefinition().getComposeDefinition());
+    void launch() throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        launched = launcher.launch(name, definition);
+        startupMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
     }
 
     /**
      * Kill this ExplorViz instance, shutting it down and deleting its images (if any).
      */
-    public void kill() {
+    void kill() throws IOException, InterruptedException {
+        ExplorVizLauncher.Launched running = launched;
+        launched = null;
+        if (running != null) {
+            running.shutdown();
+        }
+    }
+
+    /**
+     * Start sending the records of an instrumentation to this instance. The records are read and sent by the node
+     * that holds them, see {@link InstrumentationRecord#findRecords(Run)}. Counts as a use of the recording, see
+     * {@link InstrumentationRecord#markUsed(Run)}.
+     *
+     * @param run    The build the instrumentation belongs to
+     * @param record The instrumentation to replay
+     * @return Completes once all records were sent. Cancel it to stop the replay.
+     * @throws IOException If this instance is not running or the records are not available anymore
+     */
+    @Nonnull
+    public Future<ReplayStatistics> replay(@Nonnull Run<?, ?> run, @Nonnull InstrumentationRecord record,
+                                           @Nonnull ReplaySpeed speed) throws IOException, InterruptedException {
+        InetSocketAddress ingestAddress = getIngestAddress();
+        if (ingestAddress == null) {
+            throw new IOException("ExplorViz instance " + name + " is not running");
+        }
+        FilePath source = record.findRecords(run);
+        if (source == null) {
+            throw new IOException("The records of " + record.getId() + " are not available anymore");
+        }
+        record.markUsed(run);
+
+        SingleSocketTcpWriterConfiguration sinkConfig = new SingleSocketTcpWriterConfiguration();
+        sinkConfig.setHostname(ingestAddress.getHostString());
+        sinkConfig.setPort(ingestAddress.getPort());
+        return ReplayCallable.startOn(source, sinkConfig, REPLAY_PARALLELISM, speed);
+    }
+
+    /**
+     * @return Name of this instance, unique among all instances
+     */
+    @Nonnull
+    public String getName() {
+        return name;
+    }
 
+    @Nonnull
+    public ExplorVizDefinition getDefinition() {
+        return definition;
     }
 
     /**
-     * @return The URL on which to access this ExplorViz instance.
+     * @return {@code true} if this instance has been launched and did not exit since
      */
+    public boolean isAlive() {
+        ExplorVizLauncher.Launched running = launched;
+        return running != null && running.isAlive();
+    }
+
+    /**
+     * @return Time it took to launch this instance until it was ready, or {@code -1} if it has not been launched yet
+     */
+    public long getStartupMillis() {
+        return startupMillis;
+    }
+
+    /**
+     * @return The URL on which to access this ExplorViz instance, or {@code null} if it is not running
+     */
+    @CheckForNull
     public URL getExplorVizURL() {
-        return null;
+        ExplorVizLauncher.Launched running = launched;
+        return running == null ? null : running.getUrl();
+    }
+
+    /**
+     * @return The address to send kieker records to, or {@code null} if this instance is not running
+     */
+    @CheckForNull
+    public InetSocketAddress getIngestAddress() {
+        ExplorVizLauncher.Launched running = launched;
+        return running == null ? null : running.getIngestAddress();
     }
 }
@@ -0,0 +1,384 @@
+package net.explorviz.jenkins;
+
+import hudson.Extension;
+import hudson.init.Terminator;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import net.explorviz.jenkins.kieker.replay.ReplaySpeed;
+import net.explorviz.jenkins.kieker.replay.ReplayStatistics;
+import net.explorviz.jenkins.model.ExplorVizDefinition;
+import net.explorviz.jenkins.model.ExplorVizGlobalConfiguration;
+import net.explorviz.jenkins.model.InstrumentationRecord;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps {@link ExplorVizInstance}s running between visualizations, as starting ExplorViz takes far longer than
+ * loading records into a running one.
+ * <p>
+ * {@link #visualize(Run, InstrumentationRecord, ExplorVizDefinition, ReplaySpeed) Visualizations}
+ * {@link #acquire(Run, ExplorVizDefinition) lease} an instance of the definition they need and
+ * {@link #release(ExplorVizInstance) release} it once their records were replayed. Released instances stay warm and are handed out again to
+ * the next visualization of the same definition. At most
+ * {@link ExplorVizGlobalConfiguration#getMaxInstances()} instances run at once: when the pool is full, the least
+ * recently used idle instance is shut down to make room. Idle instances are also shut down after
+ * {@link ExplorVizGlobalConfiguration#getIdleTimeoutMinutes()}.
+ * <p>
+ * The pool records how long launching and reusing instances takes, see {@link #getAverageStartupMillis()} and
+ * {@link #getAverageReuseMillis()}.
+ */
+public final class ExplorVizInstancePool {
+    private static final Logger LOGGER = Logger.getLogger(ExplorVizInstancePool.class.getName());
+
+    private static final ExplorVizInstancePool INSTANCE = new ExplorVizInstancePool();
+
+    /**
+     * Waits for replays to finish, to release their instances
+     */
+    private static final ExecutorService REPLAY_WATCHERS = Executors.newCachedThreadPool(
+            new NamingThreadFactory(new DaemonThreadFactory(), "ExplorViz replay watcher"));
+
+    private final AtomicInteger sequence = new AtomicInteger();
+
+    // Guarded by this
+    private final List<ExplorVizInstance> instances = new ArrayList<>();
+    private long launches;
+    private long totalStartupMillis;
+    private long reuses;
+    private long totalReuseNanos;
+
+    private ExplorVizInstancePool() {
+    }
+
+    @Nonnull
+    public static ExplorVizInstancePool get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Replay the records of an instrumentation into an instance of the given definition. The instance is leased until
+     * the replay finished.
+     *
+     * @param run    Build to visualize. The current user needs the {@link ExplorVizGlobalConfiguration#RUN}
+     *               permission on it.
+     * @param record The instrumentation of the build to replay
+     * @return The instance the records are replayed into
+     * @throws IOException If all instances are in use, no instance could be launched or the records are not
+     *                     available anymore
+     */
+    @Nonnull
+    public ExplorVizInstance visualize(@Nonnull Run<?, ?> run, @Nonnull InstrumentationRecord record,
+                                       @Nonnull ExplorVizDefinition definition, @Nonnull ReplaySpeed speed)
+            throws IOException, InterruptedException {
+        ExplorVizInstance instance = acquire(run, definition);
+        if (instance == null) {
+            throw new IOException("All " + ExplorVizGlobalConfiguration.get().getMaxInstances()
+                    + " ExplorViz instances are in use, try again later");
+        }
+
+        Future<ReplayStatistics> replay;
+        try {
+            replay = instance.replay(run, record, speed);
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            release(instance);
+            throw e;
+        }
+
+        REPLAY_WATCHERS.execute(() -> {
+            try {
+                LOGGER.log(Level.FINE, "Replayed {0} of {1} into ExplorViz instance {2}: {3}",
+                        new Object[]{record.getId(), run, instance.getName(), replay.get()});
+            } catch (ExecutionException e) {
+                LOGGER.log(Level.WARNING, "Failed to replay " + record.getId() + " of " + run
+                        + " into ExplorViz instance " + instance.getName(), e.getCause());
+            } catch (InterruptedException e) {
+                replay.cancel(true);
+                Thread.currentThread().interrupt();
+            } finally {
+                release(instance);
+            }
+        });
+        return instance;
+    }
+
+    /**
+     * Lease an instance of the given definition, reusing an idle one if possible and launching one otherwise.
+     *
+     * @param run Build to visualize. The current user needs the {@link ExplorVizGlobalConfiguration#RUN} permission
+     *            on it.
+     * @return The leased instance, or {@code null} if the maximum number of instances is running and all of them are
+     * leased
+     * @throws IOException If a new instance could not be launched
+     */
+    @CheckForNull
+    public ExplorVizInstance acquire(@Nonnull Run<?, ?> run, @Nonnull ExplorVizDefinition definition)
+            throws IOException, InterruptedException {
+        run.checkPermission(ExplorVizGlobalConfiguration.RUN);
+        long start = System.nanoTime();
+
+        // Probing takes a while for some launchers, so never while holding the lock
+        Set<ExplorVizInstance> alive = new HashSet<>();
+        List<ExplorVizInstance> dead = new ArrayList<>();
+        for (ExplorVizInstance candidate : getIdle(definition)) {
+            if (candidate.isAlive()) {
+                alive.add(candidate);
+            } else {
+                dead.add(candidate);
+            }
+        }
+
+        ExplorVizInstance instance;
+        List<ExplorVizInstance> stopped = new ArrayList<>();
+        try {
+            synchronized (this) {
+                for (ExplorVizInstance deadInstance : dead) {
+                    if (!deadInstance.leased && instances.remove(deadInstance)) {
+                        stopped.add(deadInstance);
+                    }
+                }
+
+                instance = findIdle(definition, alive);
+                if (instance != null) {
+                    instance.leased = true;
+                    long reuseNanos = System.nanoTime() - start;
+                    reuses++;
+                    totalReuseNanos += reuseNanos;
+                    LOGGER.log(Level.FINE, "Reusing ExplorViz instance {0} after {1} microseconds",
+                            new Object[]{instance.getName(), TimeUnit.NANOSECONDS.toMicros(reuseNanos)});
+                    return instance;
+                }
+
+                if (instances.size() >= ExplorVizGlobalConfiguration.get().getMaxInstances()) {
+                    ExplorVizInstance evicted = findLeastRecentlyUsedIdle();
+                    if (evicted == null) {
+                        return null;
+                    }
+                    LOGGER.log(Level.INFO, "Shutting down idle ExplorViz instance {0} to make room",
+                            evicted.getName());
+                    instances.remove(evicted);
+                    stopped.add(evicted);
+                }
+
+                ExplorVizLauncher launcher = ExplorVizLauncher.find();
+                if (launcher == null) {
+                    throw new IOException("No ExplorViz launcher is enabled");
+                }
+                // Reserve the slot before launching, which takes a while
+                instance = new ExplorVizInstance("instance" + sequence.incrementAndGet(), definition, launcher);
+                instance.leased = true;
+                instances.add(instance);
+            }
+        } finally {
+            // Shutting down takes a while as well, so never while holding the lock
+            for (ExplorVizInstance stoppedInstance : stopped) {
+                killQuietly(stoppedInstance);
+            }
+        }
+
+        try {
+            instance.launch();
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            synchronized (this) {
+                instances.remove(instance);
+            }
+            killQuietly(instance);
+            throw e;
+        }
+
+        synchronized (this) {
+            launches++;
+            totalStartupMillis += instance.getStartupMillis();
+        }
+        LOGGER.log(Level.INFO, "Launched ExplorViz instance {0} of {1} in {2} ms at {3}",
+                new Object[]{instance.getName(), definition.getName(), instance.getStartupMillis(),
+                        instance.getExplorVizURL()});
+        return instance;
+    }
+
+    /**
+     * Return a leased instance to the pool, where it stays running until it is reused or evicted.
+     */
+    public void release(@Nonnull ExplorVizInstance instance) {
+        boolean alive = instance.isAlive();
+        synchronized (this) {
+            instance.leased = false;
+            instance.lastReleased = System.currentTimeMillis();
+            if (alive || !instances.remove(instance)) {
+                return;
+            }
+        }
+        LOGGER.log(Level.WARNING, "ExplorViz instance {0} exited while leased", instance.getName());
+        killQuietly(instance);
+    }
+
+    private synchronized List<ExplorVizInstance> getIdle(ExplorVizDefinition definition) {
+        List<ExplorVizInstance> idle = new ArrayList<>();
+        for (ExplorVizInstance instance : instances) {
+            if (!instance.leased && isSameDefinition(instance.getDefinition(), definition)) {
+                idle.add(instance);
+            }
+        }
+        return idle;
+    }
+
+    /**
+     * @param alive Instances that were found alive, only these are considered
+     * @return The idle instance of the given definition that was used last, or {@code null} if there is none
+     */
+    private ExplorVizInstance findIdle(ExplorVizDefinition definition, Set<ExplorVizInstance> alive) {
+        ExplorVizInstance found = null;
+        for (ExplorVizInstance instance : instances) {
+            if (!instance.leased && alive.contains(instance) && isSameDefinition(instance.getDefinition(), definition)
+                    && (found == null || instance.lastReleased > found.lastReleased)) {
+                found = instance;
+            }
+        }
+        return found;
+    }
+
+    private ExplorVizInstance findLeastRecentlyUsedIdle() {
+        ExplorVizInstance found = null;
+        for (ExplorVizInstance instance : instances) {
+            if (!instance.leased && (found == null || instance.lastReleased < found.lastReleased)) {
+                found = instance;
+            }
+        }
+        return found;
+    }
+
+    private static boolean isSameDefinition(ExplorVizDefinition a, ExplorVizDefinition b) {
+        return Objects.equals(a.getName(), b.getName())
+                && Objects.equals(a.getComposeDefinition(), b.getComposeDefinition());
+    }
+
+    /**
+     * Shut down instances that have been idle for longer than the configured timeout.
+     */
+    void evictIdle() {
+        long idleSince = System.currentTimeMillis()
+                - TimeUnit.MINUTES.toMillis(ExplorVizGlobalConfiguration.get().getIdleTimeoutMinutes());
+        List<ExplorVizInstance> evicted = new ArrayList<>();
+        synchronized (this) {
+            for (ExplorVizInstance instance : instances) {
+                if (!instance.leased && instance.lastReleased < idleSince) {
+                    evicted.add(instance);
+                }
+            }
+            instances.removeAll(evicted);
+        }
+
+        for (ExplorVizInstance instance : evicted) {
+            LOGGER.log(Level.INFO, "Shutting down idle ExplorViz instance {0}", instance.getName());
+            killQuietly(instance);
+        }
+    }
+
+    /**
+     * Shut down all instances, leased or not.
+     */
+    void shutdown() {
+        List<ExplorVizInstance> all;
+        synchronized (this) {
+            all = new ArrayList<>(instances);
+            instances.clear();
+        }
+        for (ExplorVizInstance instance : all) {
+            killQuietly(instance);
+        }
+    }
+
+    private static void killQuietly(ExplorVizInstance instance) {
+        try {
+            instance.kill();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to shut down ExplorViz instance " + instance.getName(), e);
+        } catch (InterruptedException e) {
+            LOGGER.log(Level.WARNING, "Interrupted while shutting down ExplorViz instance " + instance.getName(), e);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /*
+     * Statistics
+     */
+
+    /**
+     * @return The instances in the pool, including those still starting
+     */
+    @Nonnull
+    public synchronized List<ExplorVizInstance> getInstances() {
+        return Collections.unmodifiableList(new ArrayList<>(instances));
+    }
+
+    /**
+     * @return Number of instances launched since Jenkins started
+     */
+    public synchronized long getLaunchCount() {
+        return launches;
+    }
+
+    /**
+     * @return Average time from requesting a new instance until it was ready, or {@code -1} if none was launched
+     */
+    public synchronized long getAverageStartupMillis() {
+        return launches == 0 ? -1 : totalStartupMillis / launches;
+    }
+
+    /**
+     * @return Number of times a warm instance was reused since Jenkins started
+     */
+    public synchronized long getReuseCount() {
+        return reuses;
+    }
+
+    /**
+     * @return Average time to hand out a warm instance, or {@code -1} if none was reused
+     */
+    public synchronized double getAverageReuseMillis() {
+        return reuses == 0 ? -1 : (double) totalReuseNanos / reuses / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @Terminator
+    public static void shutdownAll() {
+        get().shutdown();
+    }
+
+    /**
+     * Periodically shuts down idle instances.
+     */
+    @Extension
+    public static final class IdleInstanceReaper extends AsyncPeriodicWork {
+        public IdleInstanceReaper() {
+            super("ExplorViz idle instance reaper");
+        }
+
+        @Override
+        public long getRecurrencePeriod() {
+            return MIN;
+        }
+
+        @Override
+        protected void execute(TaskListener listener) {
+            get().evictIdle();
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package net.explorviz.jenkins;
+
+import hudson.ExtensionList;
+import hudson.ExtensionPoint;
+import jenkins.model.Jenkins;
+import jenkins.model.JenkinsLocationConfiguration;
+import net.explorviz.jenkins.model.ExplorVizDefinition;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Starts and stops the processes behind an {@link ExplorVizInstance}. The first enabled launcher, by extension
+ * ordinal, is used for all instances.
+ * <p>
+ * Launchers run on the controller. Each launched ExplorViz gets two free ports: one serving its web interface and
+ * one accepting kieker records over TCP.
+ *
+ * @see DockerComposeLauncher
+ * @see LocalProcessLauncher
+ */
+public abstract class ExplorVizLauncher implements ExtensionPoint {
+    /**
+     * Time ExplorViz may take until its web interface accepts connections
+     */
+    protected static final long STARTUP_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private static final String INSTANCES_DIRECTORY = "explorviz-instances";
+
+    private static final long POLL_INTERVAL_MILLIS = 250;
+    private static final int CONNECT_TIMEOUT_MILLIS = 1000;
+
+    /**
+     * @return {@code false} if this launcher is not usable in this Jenkins, e.g. because it is not configured
+     */
+    public abstract boolean isEnabled();
+
+    /**
+     * Start ExplorViz and wait until its web interface accepts connections.
+     *
+     * @param name       Name of the instance, unique among all instances
+     * @param definition Describes the ExplorViz to launch
+     * @return The running ExplorViz. The caller must {@link Launched#shutdown() shut it down}.
+     * @throws IOException If ExplorViz could not be started or did not become ready in time. Anything started so far
+     *                     has been stopped again.
+     */
+    @Nonnull
+    public abstract Launched launch(@Nonnull String name, @Nonnull ExplorVizDefinition definition)
+            throws IOException, InterruptedException;
+
+    /**
+     * A running ExplorViz, as started by {@link #launch(String, ExplorVizDefinition)}.
+     */
+    public interface Launched {
+        /**
+         * @return The URL of the web interface, as seen from the users' browsers
+         */
+        @Nonnull
+        URL getUrl();
+
+        /**
+         * @return The address on which ExplorViz accepts kieker records over TCP, as seen from the nodes, which
+         * replay records directly
+         */
+        @Nonnull
+        InetSocketAddress getIngestAddress();
+
+        /**
+         * @return {@code false} if ExplorViz has exited or stopped accepting connections
+         */
+        boolean isAlive();
+
+        /**
+         * Stop ExplorViz and remove anything that was created for it.
+         */
+        void shutdown() throws IOException, InterruptedException;
+    }
+
+    /**
+     * @return The launcher to use for new instances, or {@code null} if no launcher is enabled
+     */
+    @CheckForNull
+    public static ExplorVizLauncher find() {
+        for (ExplorVizLauncher launcher : ExtensionList.lookup(ExplorVizLauncher.class)) {
+            if (launcher.isEnabled()) {
+                return launcher;
+            }
+        }
+        return null;
+    }
+
+    /*
+     * Helpers for implementations
+     */
+
+    /**
+     * @return Directory on the controller for files of the instance with the given name, like its log. It is created
+     * if it does not exist.
+     */
+    @Nonnull
+    protected static File getInstanceDirectory(@Nonnull String name) throws IOException {
+        File directory = new File(new File(Jenkins.get().getRootDir(), INSTANCES_DIRECTORY), name);
+        Files.createDirectories(directory.toPath());
+        return directory;
+    }
+
+    /**
+     * Find a free port on the controller. The port may be taken again until ExplorViz binds it, which is unlikely for
+     * ephemeral ports.
+     */
+    protected static int allocatePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    /**
+     * @return The host name users and nodes reach the controller by, taken from the Jenkins URL
+     */
+    @Nonnull
+    private static String getControllerHost() throws MalformedURLException {
+        String rootUrl = JenkinsLocationConfiguration.get().getUrl();
+        return rootUrl == null ? "localhost" : new URL(rootUrl).getHost();
+    }
+
+    /**
+     * @return The URL of ExplorViz listening on the given port of the controller
+     */
+    @Nonnull
+    protected static URL getUrl(int port) throws MalformedURLException {
+        return new URL("http", getControllerHost(), port, "/");
+    }
+
+    /**
+     * @return {@code true} if something accepts connections on the given port of the controller
+     */
+    protected static boolean isListening(int port) {
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), CONNECT_TIMEOUT_MILLIS);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Wait until something accepts connections on the given port of the controller.
+     *
+     * @param process Process that is expected to open the port, or {@code null} if there is none to watch
+     * @throws IOException If the process exited or the port was not opened in {@link #STARTUP_TIMEOUT_MILLIS}
+     */
+    protected static void awaitListening(int port, @CheckForNull Process process)
+            throws IOException, InterruptedException {
+        long deadline = System.currentTimeMillis() + STARTUP_TIMEOUT_MILLIS;
+        while (!isListening(port)) {
+            if (process != null && !process.isAlive()) {
+                throw new IOException("ExplorViz exited with code " + process.exitValue() + " while starting");
+            }
+            if (System.currentTimeMillis() > deadline) {
+                throw new IOException("ExplorViz did not accept connections on port " + port + " within "
+                        + TimeUnit.MILLISECONDS.toSeconds(STARTUP_TIMEOUT_MILLIS) + " seconds");
+            }
+            Thread.sleep(POLL_INTERVAL_MILLIS);
+        }
+    }
+}
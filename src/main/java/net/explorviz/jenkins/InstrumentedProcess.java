@@ -0,0 +1,60 @@
+package net.explorviz.jenkins;
+
+import hudson.FilePath;
+import hudson.Util;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * An application process that a {@link KiekerBuilder} step runs, either the step's own application or one of its
+ * {@link ProcessDefinition additional processes}, or the JVMs of a {@link KiekerBuildWrapper} block, which have no
+ * application jar. Each process has its own working directory and kieker configuration.
+ */
+final class InstrumentedProcess {
+    private final String id;
+    private final String name;
+    private final String appJar;
+    private final String appArgs;
+    private final String vmOpts;
+    private final FilePath workingDirectory;
+
+    /**
+     * @param id               Instrumentation ID of the process, unique within a single build
+     * @param name             Display name of the process, may be {@code null}
+     * @param workingDirectory Directory holding the configuration and records of this process
+     */
+    InstrumentedProcess(@Nonnull String id, @Nullable String name, String appJar, @Nullable String appArgs,
+                        @Nullable String vmOpts, @Nonnull FilePath workingDirectory) {
+        this.id = id;
+        this.name = Util.fixEmptyAndTrim(name);
+        this.appJar = Util.fixEmptyAndTrim(appJar);
+        this.appArgs = Util.fixEmptyAndTrim(appArgs);
+        this.vmOpts = Util.fixEmptyAndTrim(vmOpts);
+        this.workingDirectory = workingDirectory;
+    }
+
+    String getId() {
+        return id;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    String getAppJar() {
+        return appJar;
+    }
+
+    String getAppArgs() {
+        return appArgs;
+    }
+
+    String getVmOpts() {
+        return vmOpts;
+    }
+
+    FilePath getWorkingDirectory() {
+        return workingDirectory;
+    }
+}
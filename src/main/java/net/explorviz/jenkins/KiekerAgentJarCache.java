@@ -0,0 +1,142 @@
+package net.explorviz.jenkins;
+
+import hudson.FilePath;
+import hudson.Util;
+import hudson.model.Computer;
+import hudson.model.Node;
+import hudson.model.TaskListener;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Per-node, content-addressed cache for the built-in kieker agent jar.
+ * <p>
+ * The jar is stored once per node below the node's root directory, in a folder named after the SHA-256 hash of its
+ * content. Build steps then use the cached file directly as {@code -javaagent}, so the jar only has to be sent over
+ * the remoting channel the first time a node sees a (new) plugin version.
+ */
+final class KiekerAgentJarCache {
+    static final String BUILTIN_KIEKER_JAR = "kieker-1.14-SNAPSHOT-aspectj.jar";
+
+    private static final String CACHE_DIRECTORY = "explorviz-cache/kieker-agent";
+
+    /**
+     * Hash and size of the built-in jar, computed lazily on the controller. Both never change while the plugin is
+     * loaded.
+     */
+    private static volatile String builtinHash;
+    private static volatile long builtinSize;
+
+    private KiekerAgentJarCache() {
+    }
+
+    /**
+     * Make sure the built-in kieker jar is present in the cache of the node the given workspace belongs to,
+     * transferring it only if it is missing there.
+     *
+     * @param workspace Workspace whose node should hold the cached jar
+     * @param listener  Used to report whether the jar was transferred
+     * @return The cached jar on the node, or {@code null} if the node has no usable root directory (e.g. because it
+     * went offline). Callers should fall back to {@link #copyTo(FilePath)} in that case.
+     */
+    @CheckForNull
+    static FilePath provide(@Nonnull FilePath workspace, @Nonnull TaskListener listener)
+            throws IOException, InterruptedException {
+        FilePath nodeRoot = getNodeRoot(workspace);
+        if (nodeRoot == null) {
+            return null;
+        }
+
+        initializeBuiltinHash();
+
+        FilePath cacheDirectory = nodeRoot.child(CACHE_DIRECTORY).child(builtinHash);
+        FilePath cachedJar = cacheDirectory.child(BUILTIN_KIEKER_JAR);
+
+        // length() is 0 for missing files, so this is a single round trip that also catches truncated files
+        if (cachedJar.length() == builtinSize) {
+            listener.getLogger().println("Using cached kieker agent: " + cachedJar.getRemote());
+            return cachedJar;
+        }
+
+        listener.getLogger().println("Transferring built-in kieker agent to node cache: " + cachedJar.getRemote());
+        cacheDirectory.mkdirs();
+
+        /*
+         * Multiple builds may populate the cache on the same node concurrently. Write to a temporary file first and
+         * move it into place afterwards, so no build ever sees a partially written jar.
+         */
+        FilePath temporaryJar = cacheDirectory.createTempFile(BUILTIN_KIEKER_JAR, ".tmp");
+        try {
+            copyTo(temporaryJar);
+            temporaryJar.renameTo(cachedJar);
+        } catch (IOException e) {
+            // Another build might have won the race, in which case its copy is just as good as ours
+            if (cachedJar.length() != builtinSize) {
+                throw e;
+            }
+        } finally {
+            temporaryJar.delete();
+        }
+
+        return cachedJar;
+    }
+
+    /**
+     * Copy the built-in kieker jar to the given file, without using the cache.
+     */
+    static void copyTo(@Nonnull FilePath target) throws IOException, InterruptedException {
+        try (InputStream in = openBuiltinJar()) {
+            target.copyFrom(in);
+        }
+    }
+
+    @CheckForNull
+    private static FilePath getNodeRoot(FilePath workspace) {
+        Computer computer = workspace.toComputer();
+        if (computer == null) {
+            return null;
+        }
+
+        Node node = computer.getNode();
+        return node == null ? null : node.getRootPath();
+    }
+
+    private static synchronized void initializeBuiltinHash() throws IOException {
+        if (builtinHash != null) {
+            return;
+        }
+
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256 is not supported by this JVM", e);
+        }
+
+        long size = 0;
+        byte[] buffer = new byte[8192];
+        try (InputStream in = new DigestInputStream(openBuiltinJar(), digest)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                size += read;
+            }
+        }
+
+        builtinSize = size;
+        builtinHash = Util.toHexString(digest.digest());
+    }
+
+    private static InputStream openBuiltinJar() throws IOException {
+        InputStream in = KiekerAgentJarCache.class.getClassLoader().getResourceAsStream(BUILTIN_KIEKER_JAR);
+        if (in == null) {
+            throw new IOException("Built-in kieker jar '" + BUILTIN_KIEKER_JAR + "' not accessible");
+        }
+        return in;
+    }
+}
@@ -0,0 +1,564 @@
+package net.explorviz.jenkins;
+
+import hudson.AbortException;
+import hudson.EnvVars;
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.Util;
+import hudson.model.AbstractProject;
+import hudson.model.Result;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.tasks.BuildWrapperDescriptor;
+import hudson.remoting.VirtualChannel;
+import hudson.util.ArgumentListBuilder;
+import hudson.util.FormValidation;
+import hudson.util.ListBoxModel;
+import jenkins.MasterToSlaveFileCallable;
+import jenkins.model.Jenkins;
+import jenkins.tasks.SimpleBuildWrapper;
+import kieker.monitoring.core.signaturePattern.InvalidPatternException;
+import net.explorviz.jenkins.kieker.configuration.ProbePatternConfiguration;
+import net.explorviz.jenkins.model.InstrumentationRecord;
+import net.explorviz.jenkins.model.RecordingRetention;
+import net.explorviz.jenkins.overhead.ProcessMeasurement;
+import net.explorviz.jenkins.regression.LatencyRegressionAnalyzer;
+import org.jenkinsci.Symbol;
+import org.kohsuke.stapler.AncestorInPath;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Instruments every JVM started inside a block with kieker, instead of running a single application like
+ * {@link KiekerBuilder}: {@code withKieker(runId: 'it', aopXml: 'aop.xml') { sh 'mvn verify' }}. Test runners, forked
+ * build tool JVMs and load generators can so be recorded as they are, while other pipeline branches keep running.
+ * <p>
+ * The agent jar and monitoring configuration are prepared once when the block starts and passed to the JVMs through
+ * {@code JAVA_TOOL_OPTIONS}. Each JVM writes its own record folder into the working directory {@code kieker.<runId>};
+ * when the block exits, all of them are collected as one instrumentation, like {@link KiekerBuilder} does.
+ * <p>
+ * Records are always written to files, as record streaming, writer monitoring and the warm-up rely on knowing when
+ * the single application starts and exits.
+ */
+public class KiekerBuildWrapper extends SimpleBuildWrapper {
+    private static final String JAVA_TOOL_OPTIONS = "JAVA_TOOL_OPTIONS";
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s");
+
+    // Required arguments
+    private final String runId;
+    private final String aopXml;
+
+    // Optional arguments
+    private String runName;
+    private boolean skipDefaultAOP;
+    private boolean failBuildOnEmpty;
+    private String includePatterns;
+    private String excludePatterns;
+    private boolean binaryRecords;
+    private boolean archiveRecords;
+    private boolean detectRegressions;
+    private String regressionBaseline;
+    private double regressionThreshold;
+    private double regressionSignificance;
+    private int regressionMinCalls;
+    private String regressionResult;
+    private String kiekerJar;
+    private String kiekerOverrides;
+
+    @DataBoundConstructor
+    public KiekerBuildWrapper(@Nonnull String runId, @Nonnull String aopXml) {
+        this.runId = runId;
+        this.aopXml = aopXml;
+
+        // Must match defaults in KiekerBuildWrapper/config.jelly
+        this.runName = "";
+        this.skipDefaultAOP = true;
+        this.failBuildOnEmpty = true;
+        this.includePatterns = "";
+        this.excludePatterns = "";
+        this.binaryRecords = false;
+        this.archiveRecords = false;
+        this.detectRegressions = false;
+        this.regressionBaseline = LatencyRegressionAnalyzer.DEFAULT_BASELINE;
+        this.regressionThreshold = KiekerBuilder.DEFAULT_REGRESSION_THRESHOLD;
+        this.regressionSignificance = KiekerBuilder.DEFAULT_REGRESSION_SIGNIFICANCE;
+        this.regressionMinCalls = KiekerBuilder.DEFAULT_REGRESSION_MIN_CALLS;
+        this.regressionResult = Result.UNSTABLE.toString();
+        this.kiekerJar = "";
+        this.kiekerOverrides = "";
+    }
+
+    public String getRunId() {
+        return runId;
+    }
+
+    public String getAopXml() {
+        return aopXml;
+    }
+
+    public String getRunName() {
+        return runName;
+    }
+
+    @DataBoundSetter
+    public void setRunName(@Nullable String runName) {
+        this.runName = runName;
+    }
+
+    public boolean isSkipDefaultAOP() {
+        return skipDefaultAOP;
+    }
+
+    @DataBoundSetter
+    public void setSkipDefaultAOP(boolean skipDefaultAOP) {
+        this.skipDefaultAOP = skipDefaultAOP;
+    }
+
+    public boolean isFailBuildOnEmpty() {
+        return failBuildOnEmpty;
+    }
+
+    @DataBoundSetter
+    public void setFailBuildOnEmpty(boolean failBuildOnEmpty) {
+        this.failBuildOnEmpty = failBuildOnEmpty;
+    }
+
+    public String getIncludePatterns() {
+        return includePatterns;
+    }
+
+    @DataBoundSetter
+    public void setIncludePatterns(@Nullable String includePatterns) {
+        this.includePatterns = includePatterns;
+    }
+
+    public String getExcludePatterns() {
+        return excludePatterns;
+    }
+
+    @DataBoundSetter
+    public void setExcludePatterns(@Nullable String excludePatterns) {
+        this.excludePatterns = excludePatterns;
+    }
+
+    public boolean isBinaryRecords() {
+        return binaryRecords;
+    }
+
+    @DataBoundSetter
+    public void setBinaryRecords(boolean binaryRecords) {
+        this.binaryRecords = binaryRecords;
+    }
+
+    public boolean isArchiveRecords() {
+        return archiveRecords;
+    }
+
+    @DataBoundSetter
+    public void setArchiveRecords(boolean archiveRecords) {
+        this.archiveRecords = archiveRecords;
+    }
+
+    public boolean isDetectRegressions() {
+        return detectRegressions;
+    }
+
+    @DataBoundSetter
+    public void setDetectRegressions(boolean detectRegressions) {
+        this.detectRegressions = detectRegressions;
+    }
+
+    /**
+     * @see KiekerBuilder#getRegressionBaseline()
+     */
+    public String getRegressionBaseline() {
+        return regressionBaseline;
+    }
+
+    @DataBoundSetter
+    public void setRegressionBaseline(@Nullable String regressionBaseline) {
+        this.regressionBaseline = regressionBaseline;
+    }
+
+    /**
+     * @see KiekerBuilder#getRegressionThreshold()
+     */
+    public double getRegressionThreshold() {
+        return regressionThreshold;
+    }
+
+    @DataBoundSetter
+    public void setRegressionThreshold(double regressionThreshold) {
+        this.regressionThreshold = regressionThreshold;
+    }
+
+    public double getRegressionSignificance() {
+        return regressionSignificance;
+    }
+
+    @DataBoundSetter
+    public void setRegressionSignificance(double regressionSignificance) {
+        this.regressionSignificance = regressionSignificance;
+    }
+
+    public int getRegressionMinCalls() {
+        return regressionMinCalls;
+    }
+
+    @DataBoundSetter
+    public void setRegressionMinCalls(int regressionMinCalls) {
+        this.regressionMinCalls = regressionMinCalls;
+    }
+
+    /**
+     * @see KiekerBuilder#getRegressionResult()
+     */
+    public String getRegressionResult() {
+        return regressionResult;
+    }
+
+    @DataBoundSetter
+    public void setRegressionResult(@Nullable String regressionResult) {
+        this.regressionResult = regressionResult;
+    }
+
+    public String getKiekerJar() {
+        return kiekerJar;
+    }
+
+    @DataBoundSetter
+    public void setKiekerJar(@Nullable String kiekerJar) {
+        this.kiekerJar = kiekerJar;
+    }
+
+    public String getKiekerOverrides() {
+        return kiekerOverrides;
+    }
+
+    @DataBoundSetter
+    public void setKiekerOverrides(@Nullable String kiekerOverrides) {
+        this.kiekerOverrides = kiekerOverrides;
+    }
+
+    /**
+     * @return A builder with the settings of this block, to share the preparation and collection of records with
+     */
+    private KiekerBuilder createBuilder() {
+        KiekerBuilder builder = new KiekerBuilder(runId, "", aopXml, 0);
+        builder.setRunName(runName);
+        builder.setSkipDefaultAOP(skipDefaultAOP);
+        builder.setIncludePatterns(includePatterns);
+        builder.setExcludePatterns(excludePatterns);
+        builder.setBinaryRecords(binaryRecords);
+        builder.setArchiveRecords(archiveRecords);
+        builder.setDetectRegressions(detectRegressions);
+        builder.setRegressionBaseline(regressionBaseline);
+        builder.setRegressionThreshold(regressionThreshold);
+        builder.setRegressionSignificance(regressionSignificance);
+        builder.setRegressionMinCalls(regressionMinCalls);
+        builder.setRegressionResult(regressionResult);
+        builder.setKiekerJar(kiekerJar);
+        builder.setKiekerOverrides(kiekerOverrides);
+        return builder;
+    }
+
+    private static InstrumentedProcess createProcess(String runId, String runName, FilePath workingDirectory) {
+        return new InstrumentedProcess(runId, runName, null, null, null, workingDirectory);
+    }
+
+    @Override
+    public void setUp(Context context, Run<?, ?> build, FilePath workspace, Launcher launcher, TaskListener listener,
+                      EnvVars initialEnvironment) throws IOException, InterruptedException {
+        if (Util.fixEmptyAndTrim(runId) == null) {
+            throw new AbortException("Instrumentation ID is required!");
+        }
+        // The id ends up in file names in the build directory, where it must not be able to escape it
+        if (!KiekerBuilder.DescriptorImpl.RUN_ID_PATTERN.matcher(runId).matches()) {
+            throw new AbortException(String.format(
+                    "Instrumentation ID '%s' may only contain lowercase letters, digits, '_' and '-'!", runId));
+        }
+
+        FilePath workingDirectory = workspace.child("kieker." + runId);
+        RecordingRetention.releaseWorkspace(build, workingDirectory, listener);
+        if (workingDirectory.exists()) {
+            throw new AbortException(String.format(
+                    "Instrumentation with ID '%s' already exists in workspace! Not overriding implicitly.", runId));
+        }
+
+        ProbePatternConfiguration probePatterns;
+        try {
+            probePatterns = new ProbePatternConfiguration(ProbePatternConfiguration.parsePatterns(includePatterns),
+                    ProbePatternConfiguration.parsePatterns(excludePatterns));
+        } catch (InvalidPatternException e) {
+            throw new AbortException("Invalid signature pattern: " + e.getMessage());
+        }
+
+        KiekerBuilder builder = createBuilder();
+        LatencyRegressionAnalyzer analyzer;
+        try {
+            analyzer = builder.createRegressionAnalyzer();
+        } catch (IllegalArgumentException e) {
+            throw new AbortException("Invalid regression detection settings: " + e.getMessage());
+        }
+
+        workingDirectory.mkdirs();
+
+        /*
+         * Java agent and kieker monitoring configuration, as in KiekerBuilder
+         */
+        FilePath javaagent = builder.provideJavaAgent(workspace, workingDirectory, listener);
+        if (javaagent == null) {
+            throw new AbortException("No kieker agent jar to instrument with.");
+        }
+        builder.prepareInstrumentation(build, createProcess(runId, runName, workingDirectory), new ArgumentListBuilder(),
+                probePatterns, false, listener);
+        FilePath monitoringConfiguration = workingDirectory.child(KiekerBuilder.MONITORING_CONFIGURATION_FILE_NAME);
+
+        // Workspace paths often contain whitespace, e.g. from job names, which splits options before Java 9
+        FilePath stagingDirectory = null;
+        if (hasWhitespace(javaagent.getRemote()) || hasWhitespace(monitoringConfiguration.getRemote())) {
+            stagingDirectory = createTempDirectoryOn(workspace);
+            javaagent = stage(javaagent, stagingDirectory);
+            monitoringConfiguration = stage(monitoringConfiguration, stagingDirectory);
+            listener.getLogger().println("The workspace path contains whitespace, passing the kieker agent and "
+                    + "configuration from " + stagingDirectory.getRemote());
+        }
+
+        List<String> options = new ArrayList<>();
+        options.add(quote(KiekerBuilder.ARG_JAVA_AGENT + javaagent.getRemote(), listener));
+        options.add(quote(KiekerBuilder.ARG_KIEKER_MONITORING_CONFIGURATION + monitoringConfiguration.getRemote(),
+                listener));
+
+        FilePath aopFile = Util.fixEmptyAndTrim(aopXml) == null ? null : workspace.child(aopXml);
+        if (aopFile == null || !aopFile.exists()) {
+            listener.error("No AspectJ weaving configuration file specified or does not exist!");
+        } else {
+            // The JVMs may run in any directory, so the path must be absolute, which AspectJ only accepts as URL.
+            // Its whitespace is escaped.
+            options.add(KiekerBuilder.ARG_ASPECTJ_WEAVER_CONFIGURATION + aopFile.toURI());
+        }
+        if (skipDefaultAOP) {
+            options.add(KiekerBuilder.ARG_SKIP_DEFAULT_AOP_CONFIGURATION);
+        }
+
+        String inherited = Util.fixEmptyAndTrim(initialEnvironment.get(JAVA_TOOL_OPTIONS));
+        String javaToolOptions = String.join(" ", options);
+        context.env(JAVA_TOOL_OPTIONS, inherited == null ? javaToolOptions : inherited + " " + javaToolOptions);
+        context.setDisposer(new RecordCollectingDisposer(new CollectionSettings(this), workingDirectory,
+                stagingDirectory, analyzer, System.currentTimeMillis()));
+
+        listener.getLogger().printf("JVMs started inside this block are instrumented as '%s', records are written "
+                + "to %s%n", runId, workingDirectory.getRemote());
+    }
+
+    private static boolean hasWhitespace(String value) {
+        return WHITESPACE.matcher(value).find();
+    }
+
+    private static FilePath stage(FilePath file, FilePath stagingDirectory) throws IOException, InterruptedException {
+        FilePath staged = stagingDirectory.child(file.getName());
+        file.copyTo(staged);
+        return staged;
+    }
+
+    /**
+     * Quote an option that still contains whitespace, which only Java 9 and later understand in
+     * {@code JAVA_TOOL_OPTIONS}.
+     *
+     * @throws AbortException If the option can't be quoted either
+     */
+    private static String quote(String option, TaskListener listener) throws AbortException {
+        if (!hasWhitespace(option)) {
+            return option;
+        }
+        if (option.indexOf('"') >= 0) {
+            throw new AbortException(JAVA_TOOL_OPTIONS + " can't hold this path: " + option);
+        }
+        listener.getLogger().println("Quoting " + option + " in " + JAVA_TOOL_OPTIONS
+                + ", which requires Java 9 or later");
+        return '"' + option + '"';
+    }
+
+    /**
+     * @return A new temporary directory on the node of the given workspace, outside of the workspace
+     */
+    private static FilePath createTempDirectoryOn(FilePath workspace) throws IOException, InterruptedException {
+        return new FilePath(workspace.getChannel(), workspace.act(new CreateTempDirectoryCallable()));
+    }
+
+    private static final class CreateTempDirectoryCallable extends MasterToSlaveFileCallable<String> {
+        private static final long serialVersionUID = 4120735583260916721L;
+
+        @Override
+        public String invoke(File workspace, VirtualChannel channel) throws IOException {
+            return Files.createTempDirectory("explorviz-").toString();
+        }
+    }
+
+    /**
+     * The settings of a block that collecting its records needs, which the {@link RecordCollectingDisposer} keeps
+     * until the block exits.
+     */
+    private static final class CollectionSettings implements Serializable {
+        private static final long serialVersionUID = 5390246718733240188L;
+
+        private final String runId;
+        private final String runName;
+        private final boolean failBuildOnEmpty;
+        private final boolean archiveRecords;
+        private final String regressionBaseline;
+        private final String regressionResult;
+
+        CollectionSettings(KiekerBuildWrapper wrapper) {
+            this.runId = wrapper.runId;
+            this.runName = wrapper.runName;
+            this.failBuildOnEmpty = wrapper.failBuildOnEmpty;
+            this.archiveRecords = wrapper.archiveRecords;
+            this.regressionBaseline = wrapper.regressionBaseline;
+            this.regressionResult = wrapper.regressionResult;
+        }
+
+        /**
+         * @return A builder to collect the records with, the regression analyzer is created in advance
+         */
+        KiekerBuilder createBuilder() {
+            KiekerBuilder builder = new KiekerBuilder(runId, "", "", 0);
+            builder.setRunName(runName);
+            builder.setArchiveRecords(archiveRecords);
+            builder.setRegressionBaseline(regressionBaseline);
+            builder.setRegressionResult(regressionResult);
+            return builder;
+        }
+    }
+
+    /**
+     * Collects the records of all JVMs of the block when it exits, whether it succeeded or not.
+     */
+    private static final class RecordCollectingDisposer extends Disposer {
+        private static final long serialVersionUID = 2815061928413477015L;
+
+        private final CollectionSettings settings;
+        private final FilePath workingDirectory;
+        private final FilePath stagingDirectory;
+        private final LatencyRegressionAnalyzer analyzer;
+        private final long startMillis;
+
+        RecordCollectingDisposer(CollectionSettings settings, FilePath workingDirectory,
+                                 @CheckForNull FilePath stagingDirectory,
+                                 @CheckForNull LatencyRegressionAnalyzer analyzer, long startMillis) {
+            this.settings = settings;
+            this.workingDirectory = workingDirectory;
+            this.stagingDirectory = stagingDirectory;
+            this.analyzer = analyzer;
+            this.startMillis = startMillis;
+        }
+
+        @Override
+        public void tearDown(Run<?, ?> build, FilePath workspace, Launcher launcher, TaskListener listener)
+                throws IOException, InterruptedException {
+            if (stagingDirectory != null) {
+                stagingDirectory.deleteRecursive();
+            }
+
+            KiekerBuilder builder = settings.createBuilder();
+            // The block's JVMs are not known individually, so only its duration is measured
+            ProcessMeasurement measurement = new ProcessMeasurement(System.currentTimeMillis() - startMillis,
+                    ProcessMeasurement.UNKNOWN, ProcessMeasurement.UNKNOWN, InstrumentationRecord.EXIT_CODE_SUCCESS);
+            boolean recorded = builder.collectResults(build,
+                    createProcess(settings.runId, settings.runName, workingDirectory), null, measurement, null, null,
+                    analyzer, false, listener);
+
+            if (!recorded) {
+                if (settings.failBuildOnEmpty) {
+                    listener.error("No kieker records have been written for '%s'. Failing build as a result.",
+                            settings.runId);
+                    build.setResult(Result.FAILURE);
+                } else {
+                    listener.getLogger().printf("No kieker records have been written for '%s'.%n", settings.runId);
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings({ "MethodMayBeStatic", "rawtypes" })
+    @Symbol("withKieker")
+    @Extension
+    public static final class DescriptorImpl extends BuildWrapperDescriptor {
+        @Override
+        public boolean isApplicable(AbstractProject<?, ?> item) {
+            return true;
+        }
+
+        @Override
+        @Nonnull
+        public String getDisplayName() {
+            return Messages.KiekerBuildWrapper_DescriptorImpl_DisplayName();
+        }
+
+        private static KiekerBuilder.DescriptorImpl getBuilderDescriptor() {
+            return Jenkins.get().getDescriptorByType(KiekerBuilder.DescriptorImpl.class);
+        }
+
+        public FormValidation doCheckRunId(@QueryParameter String value) {
+            return getBuilderDescriptor().doCheckRunId(value);
+        }
+
+        public FormValidation doCheckRunName(@QueryParameter String value) {
+            return getBuilderDescriptor().doCheckRunName(value);
+        }
+
+        public FormValidation doCheckAopXml(@QueryParameter String value, @AncestorInPath AbstractProject project) {
+            return getBuilderDescriptor().doCheckAopXml(value, project);
+        }
+
+        public FormValidation doCheckIncludePatterns(@QueryParameter String value) {
+            return getBuilderDescriptor().doCheckIncludePatterns(value);
+        }
+
+        public FormValidation doCheckExcludePatterns(@QueryParameter String value) {
+            return getBuilderDescriptor().doCheckExcludePatterns(value);
+        }
+
+        public FormValidation doCheckRegressionBaseline(@QueryParameter String value) {
+            return getBuilderDescriptor().doCheckRegressionBaseline(value);
+        }
+
+        public FormValidation doCheckRegressionThreshold(@QueryParameter String value) {
+            return getBuilderDescriptor().doCheckRegressionThreshold(value);
+        }
+
+        public FormValidation doCheckRegressionSignificance(@QueryParameter String value) {
+            return getBuilderDescriptor().doCheckRegressionSignificance(value);
+        }
+
+        public FormValidation doCheckRegressionMinCalls(@QueryParameter String value) {
+            return getBuilderDescriptor().doCheckRegressionMinCalls(value);
+        }
+
+        public ListBoxModel doFillRegressionResultItems() {
+            return getBuilderDescriptor().doFillRegressionResultItems();
+        }
+
+        public FormValidation doCheckKiekerJar(@QueryParameter String value, @AncestorInPath AbstractProject project) {
+            return getBuilderDescriptor().doCheckKiekerJar(value, project);
+        }
+
+        public FormValidation doCheckKiekerOverrides(@QueryParameter String value) {
+            return getBuilderDescriptor().doCheckKiekerOverrides(value);
+        }
+    }
+}
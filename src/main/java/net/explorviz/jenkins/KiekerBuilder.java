@@ -5,41 +5,82 @@ import hudson.model.*;
 import hudson.tasks.BuildStepDescriptor;
 import hudson.tasks.Builder;
 import hudson.util.ArgumentListBuilder;
+import hudson.util.DaemonThreadFactory;
 import hudson.util.FormValidation;
+import hudson.util.ListBoxModel;
+import hudson.util.NamingThreadFactory;
 import hudson.util.QuotedStringTokenizer;
 import jenkins.model.Jenkins;
 import jenkins.tasks.SimpleBuildStep;
-import kieker.common.util.filesystem.FSUtil;
+import kieker.monitoring.core.signaturePattern.InvalidPatternException;
+import kieker.monitoring.core.signaturePattern.PatternParser;
+import net.explorviz.jenkins.kieker.archive.RecordArchive;
+import net.explorviz.jenkins.kieker.archive.RecordArchiveCallable;
+import net.explorviz.jenkins.kieker.collector.CollectorStatistics;
+import net.explorviz.jenkins.kieker.collector.RecordCollector;
 import net.explorviz.jenkins.kieker.configuration.AbstractKiekerConfiguration;
+import net.explorviz.jenkins.kieker.configuration.BinaryFileWriterConfiguration;
 import net.explorviz.jenkins.kieker.configuration.FileWriterConfiguration;
+import net.explorviz.jenkins.kieker.configuration.ProbePatternConfiguration;
+import net.explorviz.jenkins.kieker.configuration.SingleSocketTcpWriterConfiguration;
+import net.explorviz.jenkins.kieker.jmx.MonitoringActivator;
+import net.explorviz.jenkins.kieker.jmx.MonitoringControllerConnection;
+import net.explorviz.jenkins.kieker.jmx.WriterMonitor;
+import net.explorviz.jenkins.kieker.jmx.WriterStatistics;
+import net.explorviz.jenkins.kieker.records.RecordSummary;
+import net.explorviz.jenkins.kieker.records.RecordSummaryCallable;
+import net.explorviz.jenkins.kieker.store.Execution;
+import net.explorviz.jenkins.kieker.store.TraceStore;
 import net.explorviz.jenkins.model.ExplorVizAction;
 import net.explorviz.jenkins.model.InstrumentationRecord;
 import net.explorviz.jenkins.model.InstrumentationAction;
-import org.apache.commons.io.IOUtils;
+import net.explorviz.jenkins.model.InstrumentationIndex;
+import net.explorviz.jenkins.model.RecordingRetention;
+import net.explorviz.jenkins.overhead.OverheadReport;
+import net.explorviz.jenkins.overhead.ProcessMeasurement;
+import net.explorviz.jenkins.overhead.ProcessSampler;
+import net.explorviz.jenkins.regression.LatencyRegressionAnalyzer;
+import net.explorviz.jenkins.regression.OperationRegression;
+import net.explorviz.jenkins.regression.RegressionReport;
 import org.jenkinsci.Symbol;
 import org.kohsuke.stapler.AncestorInPath;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.DataBoundSetter;
 import org.kohsuke.stapler.QueryParameter;
 
+import javax.annotation.CheckForNull;
 import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.io.*;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 
 @SuppressWarnings("unused")
 public class KiekerBuilder extends Builder implements SimpleBuildStep {
-    private static final String ARG_JAVA_AGENT = "-javaagent:";
+    static final String ARG_JAVA_AGENT = "-javaagent:";
     private static final String ARG_JAR = "-jar";
-    private static final String ARG_KIEKER_MONITORING_CONFIGURATION = "-Dkieker.monitoring.configuration=";
-    private static final String ARG_ASPECTJ_WEAVER_CONFIGURATION = "-Dorg.aspectj.weaver.loadtime.configuration=";
-    private static final String ARG_SKIP_DEFAULT_AOP_CONFIGURATION =
+    static final String ARG_KIEKER_MONITORING_CONFIGURATION = "-Dkieker.monitoring.configuration=";
+    static final String ARG_ASPECTJ_WEAVER_CONFIGURATION = "-Dorg.aspectj.weaver.loadtime.configuration=";
+    static final String ARG_SKIP_DEFAULT_AOP_CONFIGURATION =
             "-Dkieker.monitoring.skipDefaultAOPConfiguration=true";
+    private static final String ARG_MEASUREMENT_MARKER = "-Dnet.explorviz.jenkins.measurement=";
 
-    private static final String BUILTIN_KIEKER_JAR = "kieker-1.14-SNAPSHOT-aspectj.jar";
+    static final String MONITORING_CONFIGURATION_FILE_NAME = "kieker.monitoring.configuration";
+
+    private static final int STREAM_BUFFER_SIZE = 65536;
+
+    static final double DEFAULT_REGRESSION_THRESHOLD = 10;
+    static final double DEFAULT_REGRESSION_SIGNIFICANCE = 0.01;
+    static final int DEFAULT_REGRESSION_MIN_CALLS = 30;
+    private static final int MAX_LOGGED_REGRESSIONS = 20;
 
     // Required arguments
     private final String runId;
@@ -52,6 +93,33 @@ public class KiekerBuilder extends Builder implements SimpleBuildStep {
     private String appArgs;
     private boolean skipDefaultAOP;
     private boolean failBuildOnEmpty;
+    private boolean measureOverhead;
+    private String probeCommand;
+    private int warmUpDuration;
+    private List<ProcessDefinition> processes;
+
+    // Optional instrumentation scope arguments
+    private String includePatterns;
+    private String excludePatterns;
+
+    // Optional record storage arguments
+    private boolean binaryRecords;
+    private BinaryFileWriterConfiguration.Compression compression;
+    private int bufferSize;
+    private boolean streamRecords;
+    private String forwardTarget;
+    private double samplingRate;
+    private boolean archiveRecords;
+    private boolean monitorWriter;
+    private boolean unstableOnDroppedRecords;
+
+    // Optional regression detection arguments
+    private boolean detectRegressions;
+    private String regressionBaseline;
+    private double regressionThreshold;
+    private double regressionSignificance;
+    private int regressionMinCalls;
+    private String regressionResult;
 
     // Optional arguments listed under "Advanced"
     private String vmOpts;
@@ -71,6 +139,30 @@ public class KiekerBuilder extends Builder implements SimpleBuildStep {
         this.appArgs = "";
         this.skipDefaultAOP = true;
         this.failBuildOnEmpty = true;
+        this.measureOverhead = false;
+        this.probeCommand = "";
+        this.warmUpDuration = 0;
+        this.processes = new ArrayList<>(0);
+
+        this.includePatterns = "";
+        this.excludePatterns = "";
+
+        this.binaryRecords = false;
+        this.compression = BinaryFileWriterConfiguration.Compression.NONE;
+        this.bufferSize = BinaryFileWriterConfiguration.DEFAULT_BUFFER_SIZE;
+        this.streamRecords = false;
+        this.forwardTarget = "";
+        this.samplingRate = 1;
+        this.archiveRecords = false;
+        this.monitorWriter = false;
+        this.unstableOnDroppedRecords = false;
+
+        this.detectRegressions = false;
+        this.regressionBaseline = LatencyRegressionAnalyzer.DEFAULT_BASELINE;
+        this.regressionThreshold = DEFAULT_REGRESSION_THRESHOLD;
+        this.regressionSignificance = DEFAULT_REGRESSION_SIGNIFICANCE;
+        this.regressionMinCalls = DEFAULT_REGRESSION_MIN_CALLS;
+        this.regressionResult = Result.UNSTABLE.toString();
 
         this.vmOpts = "";
         this.kiekerJar = "";
@@ -156,6 +248,223 @@ public class KiekerBuilder extends Builder implements SimpleBuildStep {
         this.failBuildOnEmpty = failBuildOnEmpty;
     }
 
+    public boolean isMeasureOverhead() {
+        return measureOverhead;
+    }
+
+    @DataBoundSetter
+    public void setMeasureOverhead(boolean measureOverhead) {
+        this.measureOverhead = measureOverhead;
+    }
+
+    public String getProbeCommand() {
+        return probeCommand;
+    }
+
+    @DataBoundSetter
+    public void setProbeCommand(@Nullable String probeCommand) {
+        this.probeCommand = probeCommand;
+    }
+
+    /**
+     * @return Seconds after the start of the application until kieker monitoring is enabled, {@code 0} to record
+     * from the start
+     */
+    public int getWarmUpDuration() {
+        return warmUpDuration;
+    }
+
+    @DataBoundSetter
+    public void setWarmUpDuration(@Nonnegative int warmUpDuration) {
+        this.warmUpDuration = warmUpDuration;
+    }
+
+    /**
+     * @return Processes launched alongside the step's own application, never {@code null}
+     */
+    public List<ProcessDefinition> getProcesses() {
+        // Steps configured before additional processes were supported don't have the field
+        return processes == null ? Collections.emptyList() : Collections.unmodifiableList(processes);
+    }
+
+    @DataBoundSetter
+    public void setProcesses(@Nullable List<ProcessDefinition> processes) {
+        this.processes = processes == null ? new ArrayList<>(0) : new ArrayList<>(processes);
+    }
+
+    public String getIncludePatterns() {
+        return includePatterns;
+    }
+
+    @DataBoundSetter
+    public void setIncludePatterns(@Nullable String includePatterns) {
+        this.includePatterns = includePatterns;
+    }
+
+    public String getExcludePatterns() {
+        return excludePatterns;
+    }
+
+    @DataBoundSetter
+    public void setExcludePatterns(@Nullable String excludePatterns) {
+        this.excludePatterns = excludePatterns;
+    }
+
+    public boolean isBinaryRecords() {
+        return binaryRecords;
+    }
+
+    @DataBoundSetter
+    public void setBinaryRecords(boolean binaryRecords) {
+        this.binaryRecords = binaryRecords;
+    }
+
+    public BinaryFileWriterConfiguration.Compression getCompression() {
+        return compression;
+    }
+
+    @DataBoundSetter
+    public void setCompression(@Nullable BinaryFileWriterConfiguration.Compression compression) {
+        this.compression = compression;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    @DataBoundSetter
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    public boolean isStreamRecords() {
+        return streamRecords;
+    }
+
+    @DataBoundSetter
+    public void setStreamRecords(boolean streamRecords) {
+        this.streamRecords = streamRecords;
+    }
+
+    public String getForwardTarget() {
+        return forwardTarget;
+    }
+
+    @DataBoundSetter
+    public void setForwardTarget(@Nullable String forwardTarget) {
+        this.forwardTarget = forwardTarget;
+    }
+
+    public double getSamplingRate() {
+        return samplingRate;
+    }
+
+    @DataBoundSetter
+    public void setSamplingRate(double samplingRate) {
+        this.samplingRate = samplingRate;
+    }
+
+    public boolean isArchiveRecords() {
+        return archiveRecords;
+    }
+
+    @DataBoundSetter
+    public void setArchiveRecords(boolean archiveRecords) {
+        this.archiveRecords = archiveRecords;
+    }
+
+    public boolean isMonitorWriter() {
+        return monitorWriter;
+    }
+
+    @DataBoundSetter
+    public void setMonitorWriter(boolean monitorWriter) {
+        this.monitorWriter = monitorWriter;
+    }
+
+    public boolean isUnstableOnDroppedRecords() {
+        return unstableOnDroppedRecords;
+    }
+
+    @DataBoundSetter
+    public void setUnstableOnDroppedRecords(boolean unstableOnDroppedRecords) {
+        this.unstableOnDroppedRecords = unstableOnDroppedRecords;
+    }
+
+    public boolean isDetectRegressions() {
+        return detectRegressions;
+    }
+
+    @DataBoundSetter
+    public void setDetectRegressions(boolean detectRegressions) {
+        this.detectRegressions = detectRegressions;
+    }
+
+    /**
+     * @return Build number or permalink ID of the build to compare latencies with
+     */
+    public String getRegressionBaseline() {
+        return regressionBaseline;
+    }
+
+    @DataBoundSetter
+    public void setRegressionBaseline(@Nullable String regressionBaseline) {
+        this.regressionBaseline = regressionBaseline;
+    }
+
+    /**
+     * @return Latency growth in percent that counts as regression
+     */
+    public double getRegressionThreshold() {
+        return regressionThreshold;
+    }
+
+    @DataBoundSetter
+    public void setRegressionThreshold(double regressionThreshold) {
+        this.regressionThreshold = regressionThreshold;
+    }
+
+    public double getRegressionSignificance() {
+        return regressionSignificance;
+    }
+
+    @DataBoundSetter
+    public void setRegressionSignificance(double regressionSignificance) {
+        this.regressionSignificance = regressionSignificance;
+    }
+
+    public int getRegressionMinCalls() {
+        return regressionMinCalls;
+    }
+
+    @DataBoundSetter
+    public void setRegressionMinCalls(int regressionMinCalls) {
+        this.regressionMinCalls = regressionMinCalls;
+    }
+
+    /**
+     * @return Name of the {@link Result} to set when latencies regressed
+     */
+    public String getRegressionResult() {
+        return regressionResult;
+    }
+
+    @DataBoundSetter
+    public void setRegressionResult(@Nullable String regressionResult) {
+        this.regressionResult = regressionResult;
+    }
+
+    /**
+     * Fill in defaults of arguments added after the job configuration was saved.
+     */
+    protected Object readResolve() {
+        // Sampling was added later, 0 would keep no trace at all
+        if (samplingRate == 0) {
+            samplingRate = 1;
+        }
+        return this;
+    }
+
     // TODO: Localize #perform
     @Override
     public void perform(@Nonnull Run<?, ?> run, @Nonnull FilePath workspace, @Nonnull Launcher launcher,
@@ -165,21 +474,97 @@ public class KiekerBuilder extends Builder implements SimpleBuildStep {
             run.setResult(Result.FAILURE);
             return;
         }
+        // The ids end up in file names in the build directory, where they must not be able to escape it
+        if (!DescriptorImpl.RUN_ID_PATTERN.matcher(runId).matches()) {
+            listener.fatalError("Instrumentation ID '%s' may only contain lowercase letters, digits, '_' and '-'! "
+                    + "Failing build.", runId);
+            run.setResult(Result.FAILURE);
+            return;
+        }
 
         /*
-         * We create a working directory with the prefix "kieker" and the run id that will contain all the files that
-         * we need to operate, as well as the record logs.
+         * We create a working directory per process with the prefix "kieker" and its instrumentation id that will
+         * contain all the files that we need to operate, as well as the record logs.
          */
-        FilePath workingDirectory = workspace.child("kieker." + runId);
-        if (workingDirectory.exists()) {
-            listener.fatalError(
-                    "Instrumentation with ID '%s' already exists in workspace! Not overriding implicitly, failing " +
-                            "build.",
-                    runId);
+        List<InstrumentedProcess> targets = new ArrayList<>();
+        targets.add(new InstrumentedProcess(runId, runName, appJar, appArgs, vmOpts,
+                workspace.child("kieker." + runId)));
+        for (ProcessDefinition definition : getProcesses()) {
+            String subRunId = Util.fixEmptyAndTrim(definition.getSubRunId());
+            if (subRunId == null) {
+                listener.fatalError("Every additional process requires an ID! Failing build.");
+                run.setResult(Result.FAILURE);
+                return;
+            }
+            if (!DescriptorImpl.RUN_ID_PATTERN.matcher(subRunId).matches()) {
+                listener.fatalError("Process ID '%s' may only contain lowercase letters, digits, '_' and '-'! "
+                        + "Failing build.", subRunId);
+                run.setResult(Result.FAILURE);
+                return;
+            }
+
+            // Run ids can't contain dots, so these ids never clash with the ones of other steps
+            String id = runId + "." + subRunId;
+            if (targets.stream().anyMatch(process -> process.getId().equals(id))) {
+                listener.fatalError("Process ID '%s' is used more than once! Failing build.", subRunId);
+                run.setResult(Result.FAILURE);
+                return;
+            }
+            String name = Util.fixEmptyAndTrim(runName) == null ? subRunId : runName + " (" + subRunId + ")";
+            targets.add(new InstrumentedProcess(id, name, definition.getAppJar(), definition.getAppArgs(),
+                    definition.getVmOpts(), workspace.child("kieker." + id)));
+        }
+
+        for (InstrumentedProcess process : targets) {
+            RecordingRetention.releaseWorkspace(run, process.getWorkingDirectory(), listener);
+            if (process.getWorkingDirectory().exists()) {
+                listener.fatalError("Instrumentation with ID '%s' already exists in workspace! "
+                        + "Not overriding implicitly, failing build.", process.getId());
+                run.setResult(Result.FAILURE);
+                return;
+            }
+        }
+
+        ProbePatternConfiguration probePatterns;
+        try {
+            probePatterns = new ProbePatternConfiguration(ProbePatternConfiguration.parsePatterns(includePatterns),
+                    ProbePatternConfiguration.parsePatterns(excludePatterns));
+        } catch (InvalidPatternException e) {
+            listener.fatalError("Invalid signature pattern: %s Failing build.", e.getMessage());
             run.setResult(Result.FAILURE);
             return;
         }
-        workingDirectory.mkdirs();
+
+        if (streamRecords && !(samplingRate > 0 && samplingRate <= 1)) {
+            listener.fatalError("Trace sampling rate must be greater than 0 and at most 1! Failing build.");
+            run.setResult(Result.FAILURE);
+            return;
+        }
+        if (!streamRecords && samplingRate != 1) {
+            // Traces are sampled by the record collector, files written by kieker would contain all of them
+            listener.fatalError("Trace sampling requires streaming the records! Failing build.");
+            run.setResult(Result.FAILURE);
+            return;
+        }
+
+        if (warmUpDuration < 0 || warmUpDuration > 0 && warmUpDuration >= executeDuration) {
+            listener.fatalError("Warm-up must be shorter than the instrumentation duration! Failing build.");
+            run.setResult(Result.FAILURE);
+            return;
+        }
+
+        LatencyRegressionAnalyzer regressionAnalyzer;
+        try {
+            regressionAnalyzer = createRegressionAnalyzer();
+        } catch (IllegalArgumentException e) {
+            listener.fatalError("Invalid regression detection settings: %s Failing build.", e.getMessage());
+            run.setResult(Result.FAILURE);
+            return;
+        }
+
+        for (InstrumentedProcess process : targets) {
+            process.getWorkingDirectory().mkdirs();
+        }
 
         ArgumentListBuilder args = new ArgumentListBuilder();
 
@@ -192,20 +577,142 @@ public class KiekerBuilder extends Builder implements SimpleBuildStep {
         /*
          * Java agent
          */
+        FilePath javaagent = provideJavaAgent(workspace, targets.get(0).getWorkingDirectory(), listener);
+        if (javaagent == null) {
+            run.setResult(Result.FAILURE);
+            return;
+        }
+
+        args.add(ARG_JAVA_AGENT + javaagent.getRemote());
+
+        /*
+         * AspectJ weaver configuration
+         */
+        if (Util.fixEmptyAndTrim(aopXml) == null || !workspace.child(aopXml).exists()) {
+            // We do not abort the build here, because the aspectj file might be optional in some situations
+            // (although UI will always claim it is required)
+            listener.error("No AspectJ weaving configuration file specified or does not exist!");
+        } else {
+            // AspectJ will silently stop working when using absolute paths, hence we can not use FilePaths here
+            args.add(ARG_ASPECTJ_WEAVER_CONFIGURATION + aopXml);
+        }
+
+        for (InstrumentedProcess process : targets) {
+            if (process.getAppJar() == null || !workspace.child(process.getAppJar()).exists()) {
+                listener.error("No application jar file specified for '%s' or does not exist! Failing build.",
+                        process.getId());
+                run.setResult(Result.FAILURE);
+                return;
+            }
+        }
+
+        /*
+         * Baseline run without monitoring, before the record collectors are started so they can't be connected to
+         */
+        List<ProcessMeasurement> baselines = null;
+        if (measureOverhead) {
+            baselines = runBaselines(targets, args, workspace, launcher, listener);
+        }
+
+        /*
+         * Start run with kieker. Each process gets its own monitoring configuration, record collector and writer
+         * monitor, all of which are keyed by the process' working directory.
+         */
+        List<InstrumentedProcess> prepared = new ArrayList<>(targets.size());
+        List<ArgumentListBuilder> commands = new ArrayList<>(targets.size());
+        List<ProcessMeasurement> measurements;
+        Map<InstrumentedProcess, WriterStatistics> writerStatistics = new HashMap<>();
+        Map<InstrumentedProcess, Long> warmUps = new HashMap<>();
+        try {
+            for (InstrumentedProcess process : targets) {
+                prepared.add(process);
+                commands.add(prepareInstrumentation(run, process, args.clone(), probePatterns, targets.size() > 1,
+                        listener));
+            }
+
+            measurements = runApplications(targets, commands, "instrumented", run, workspace, launcher, listener);
+        } finally {
+            for (InstrumentedProcess process : prepared) {
+                if (warmUpDuration > 0) {
+                    warmUps.put(process, MonitoringActivator.stopOn(process.getWorkingDirectory()));
+                }
+                if (monitorWriter) {
+                    writerStatistics.put(process, stopWriterMonitor(process.getWorkingDirectory(), listener));
+                }
+                if (streamRecords) {
+                    stopCollector(process.getWorkingDirectory(), listener);
+                }
+            }
+        }
+        if (unstableOnDroppedRecords && writerStatistics.values().stream()
+                .anyMatch(statistics -> statistics != null && statistics.hasDroppedRecords())) {
+            listener.error("Kieker dropped records, marking build as unstable.");
+            run.setResult(Result.UNSTABLE);
+        }
+        if (targets.size() > 1) {
+            long combinedMillis = 0;
+            long longestMillis = 0;
+            for (ProcessMeasurement measurement : measurements) {
+                combinedMillis += measurement.getWallClockMillis();
+                longestMillis = Math.max(longestMillis, measurement.getWallClockMillis());
+            }
+            listener.getLogger().printf("Ran %d processes concurrently for %d ms (%d ms wall clock time combined)%n",
+                    targets.size(), longestMillis, combinedMillis);
+        }
+
+        /*
+         * Collect results
+         */
+        for (int i = 0; i < targets.size(); i++) {
+            InstrumentedProcess process = targets.get(i);
+            boolean recorded = collectResults(run, process, baselines == null ? null : baselines.get(i),
+                    measurements.get(i), writerStatistics.get(process), warmUps.get(process), regressionAnalyzer,
+                    targets.size() > 1, listener);
+
+            if (!recorded) {
+                if (failBuildOnEmpty) {
+                    listener.error("No kieker records have been written for '%s'. Failing build as a result.",
+                            process.getId());
+                    run.setResult(Result.FAILURE);
+                } else {
+                    listener.getLogger().printf("No kieker records have been written for '%s'.%n", process.getId());
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The analyzer to compare latencies with the baseline build, or {@code null} if regressions are not
+     * detected
+     * @throws IllegalArgumentException If the regression detection settings are invalid
+     */
+    @CheckForNull
+    LatencyRegressionAnalyzer createRegressionAnalyzer() {
+        return detectRegressions
+                ? new LatencyRegressionAnalyzer(regressionThreshold / 100, regressionSignificance, regressionMinCalls)
+                : null;
+    }
+
+    /**
+     * Find the kieker agent jar to instrument the applications with.
+     *
+     * @param fallbackDirectory Directory to copy the built-in agent jar to if the node cache is not available
+     * @return The agent jar, or {@code null} if the user-specified one does not exist
+     */
+    @CheckForNull
+    FilePath provideJavaAgent(FilePath workspace, FilePath fallbackDirectory, TaskListener listener)
+            throws IOException, InterruptedException {
         FilePath javaagent;
         String trimmedKiekerJar = Util.fixEmptyAndTrim(kiekerJar);
         // When the user doesn't specify a kieker jar to use...
         if (trimmedKiekerJar == null) {
-            javaagent = workingDirectory.child(BUILTIN_KIEKER_JAR);
+            // ... we use our own, built-in version of kieker, which is cached on each node ...
+            javaagent = KiekerAgentJarCache.provide(workspace, listener);
 
-            // ... we copy our own, built-in version of kieker to our working directory
-            try (InputStream in = KiekerBuilder.class.getClassLoader().getResourceAsStream(BUILTIN_KIEKER_JAR);
-                 OutputStream out = javaagent.write()) {
-                if (in == null) {
-                    throw new IOException("Built-in kieker jar '" + BUILTIN_KIEKER_JAR + "' not accessible");
-                }
-
-                IOUtils.copy(in, out);
+            // ... or copied to our working directory if the node cache is not available
+            if (javaagent == null) {
+                javaagent = fallbackDirectory.child(KiekerAgentJarCache.BUILTIN_KIEKER_JAR);
+                KiekerAgentJarCache.copyTo(javaagent);
             }
         } else {
             javaagent = workspace.child(trimmedKiekerJar);
@@ -213,118 +720,559 @@ public class KiekerBuilder extends Builder implements SimpleBuildStep {
             // Make sure the user-specified kieker jar exists, because it is required
             if (!javaagent.exists()) {
                 listener.fatalError("Specified kieker jar '%s' does not exist!", trimmedKiekerJar);
-                run.setResult(Result.FAILURE);
-                return;
+                return null;
             }
         }
+        return javaagent;
+    }
 
-        args.add(ARG_JAVA_AGENT + javaagent.getRemote());
-
-        /*
-         * AspectJ weaver configuration
-         */
-        if (Util.fixEmptyAndTrim(aopXml) == null || !workspace.child(aopXml).exists()) {
-            // We do not abort the build here, because the aspectj file might be optional in some situations
-            // (although UI will always claim it is required)
-            listener.error("No AspectJ weaving configuration file specified or does not exist!");
-        } else {
-            // AspectJ will silently stop working when using absolute paths, hence we can not use FilePaths here
-            args.add(ARG_ASPECTJ_WEAVER_CONFIGURATION + aopXml);
+    /**
+     * Write the kieker monitoring configuration of a process and start the record collector and writer monitor for
+     * it, as selected.
+     *
+     * @param args    Command line up to the kieker monitoring configuration
+     * @param verbose {@code true} to name the process in the build log, because the step runs more than one
+     * @return Command line up to and including the kieker monitoring configuration
+     */
+    ArgumentListBuilder prepareInstrumentation(Run<?, ?> run, InstrumentedProcess process, ArgumentListBuilder args,
+                                               ProbePatternConfiguration probePatterns, boolean verbose,
+                                               TaskListener listener)
+            throws IOException, InterruptedException {
+        if (verbose) {
+            listener.getLogger().println("Preparing instrumentation " + process.getId());
         }
+        FilePath workingDirectory = process.getWorkingDirectory();
 
         /*
          * Kieker monitoring configuration
          */
-        FileWriterConfiguration monitoringConfiguration = new FileWriterConfiguration();
-        monitoringConfiguration.setApplicationName(run.getParent().getName() + "_" + run.getId() + "_" + runId);
-        monitoringConfiguration.setStoragePath(workingDirectory.getRemote());
+        AbstractKiekerConfiguration monitoringConfiguration = createMonitoringConfiguration(workingDirectory, listener);
+        monitoringConfiguration.setApplicationName(
+                run.getParent().getName() + "_" + run.getId() + "_" + process.getId());
+
+        if (!probePatterns.isEmpty()) {
+            FilePath probePatternFile = workingDirectory.child(ProbePatternConfiguration.FILE_NAME);
+            probePatterns.write(probePatternFile);
+            monitoringConfiguration.setProbePatternFile(probePatternFile.getRemote());
+            listener.getLogger().printf("Probes restricted by %d include and %d exclude pattern(s)%n",
+                    probePatterns.getIncludes().size(), probePatterns.getExcludes().size());
+        }
+
+        if (monitorWriter || warmUpDuration > 0) {
+            monitoringConfiguration.setJmxEnabled(true);
+        }
 
         if (Util.fixEmptyAndTrim(kiekerOverrides) != null) {
             monitoringConfiguration.getConfiguration().load(new StringReader(kiekerOverrides));
         }
 
-        FilePath monitoringConfigurationFile = workingDirectory.child("kieker.monitoring.configuration");
+        if (warmUpDuration > 0) {
+            // Enabled by the monitoring activator once the warm-up is over
+            monitoringConfiguration.setMonitoringEnabled(false);
+        }
+
+        FilePath monitoringConfigurationFile = workingDirectory.child(MONITORING_CONFIGURATION_FILE_NAME);
         monitoringConfiguration.write(monitoringConfigurationFile);
 
         args.add(ARG_KIEKER_MONITORING_CONFIGURATION + monitoringConfigurationFile.getRemote());
 
-        if (skipDefaultAOP) {
-            args.add(ARG_SKIP_DEFAULT_AOP_CONFIGURATION);
+        if (monitorWriter || warmUpDuration > 0) {
+            int jmxPort = MonitoringControllerConnection.allocatePortOn(workingDirectory);
+            args.add(MonitoringControllerConnection.getJvmArguments(jmxPort));
+
+            if (monitorWriter) {
+                WriterMonitor.startOn(workingDirectory, jmxPort, listener);
+            }
+            if (warmUpDuration > 0) {
+                MonitoringActivator.startOn(workingDirectory, jmxPort, TimeUnit.SECONDS.toMillis(warmUpDuration),
+                        listener);
+                listener.getLogger().printf("Kieker monitoring is enabled after a warm-up of %d s%n", warmUpDuration);
+            }
         }
+        return args;
+    }
 
-        /*
-         * Other options
-         */
-        if (Util.fixEmptyAndTrim(vmOpts) != null) {
-            args.add(QuotedStringTokenizer.tokenize(vmOpts));
+    /**
+     * Report the records of a process and attach them to the build.
+     *
+     * @param baseline Measurement of the process without monitoring, or {@code null} if the overhead was not measured
+     * @param warmUp   Uptime of the process in milliseconds when monitoring was enabled, {@code -1} if it never was,
+     *                 or {@code null} if monitoring was enabled from the start or the warm-up is unknown
+     * @param analyzer Compares the latencies with the baseline build, or {@code null} to not detect regressions
+     * @param verbose  {@code true} to name the process in the build log, because the step runs more than one
+     * @return {@code false} if the process did not record anything
+     */
+    boolean collectResults(Run<?, ?> run, InstrumentedProcess process, @Nullable ProcessMeasurement baseline,
+                           ProcessMeasurement instrumented, @Nullable WriterStatistics writerStatistics,
+                           @Nullable Long warmUp, @Nullable LatencyRegressionAnalyzer analyzer, boolean verbose,
+                           TaskListener listener)
+            throws IOException, InterruptedException {
+        if (verbose) {
+            listener.getLogger().println("Results of instrumentation " + process.getId());
         }
+        FilePath workingDirectory = process.getWorkingDirectory();
 
-        if (Util.fixEmptyAndTrim(appJar) == null || !workspace.child(appJar).exists()) {
-            listener.error("No application jar file specified or does not exist! Failing build.");
-            run.setResult(Result.FAILURE);
-            return;
+        int exitCode = instrumented.getExitCode();
+        if (exitCode != 0) {
+            listener.getLogger().println("Application exited with code " + exitCode);
         }
-        args.add(ARG_JAR, appJar);
 
-        if (Util.fixEmptyAndTrim(appArgs) != null) {
-            args.add("--");
-            args.add(QuotedStringTokenizer.tokenize(appArgs));
+        OverheadReport overhead = null;
+        if (baseline != null) {
+            overhead = new OverheadReport(baseline, instrumented);
+            listener.getLogger().printf(
+                    "Instrumentation overhead: wall clock %+.1f%%, CPU time %+.1f%%, peak RSS %+.1f%%%n",
+                    overhead.getWallClockOverhead(), overhead.getCpuOverhead(), overhead.getPeakRssOverhead());
         }
 
-        /*
-         * Start run with kieker
-         */
-        Proc kiekerProc = launcher.launch().stdout(listener).pwd(workspace).cmds(args).start();
-        int exitCode = kiekerProc.joinWithTimeout(executeDuration, TimeUnit.SECONDS, listener);
-        if (exitCode != 0) {
-            listener.getLogger().println("Application exited with code " + exitCode);
+        if (warmUpDuration > 0 && warmUp == null) {
+            listener.getLogger().println("The warm-up before kieker monitoring was enabled is unknown, records may "
+                    + "start later than expected.");
+            warmUp = InstrumentationRecord.WARM_UP_UNKNOWN;
+        } else if (warmUp != null && warmUp == InstrumentationRecord.WARM_UP_NEVER_ENABLED) {
+            listener.error("Kieker monitoring was never enabled, the application did not outlast its warm-up.");
         }
 
-        /*
-         * Collect results
-         */
-        Optional<FilePath> recordDir =
-                workingDirectory.listDirectories().stream().filter(KiekerBuilder::isKiekerDirectory).findFirst();
-        if (recordDir.isPresent()) {
-            listener.getLogger().println("Kieker records were saved to: " + recordDir.get().getRemote());
-
-            maybeAddExplorVizAction(run);
-            InstrumentationRecord record =
-                    new InstrumentationRecord(runId, runName, recordDir.get().getName(), exitCode);
-            run.addAction(new InstrumentationAction(record));
-        } else {
-            if (failBuildOnEmpty) {
-                listener.error("No kieker records have been written. Failing build as a result.");
-                run.setResult(Result.FAILURE);
-            } else {
-                listener.getLogger().println("No kieker records have been written.");
+        String traceStoreName = TraceStore.getName(process.getId());
+        RecordSummary summary = workingDirectory.act(new RecordSummaryCallable(traceStoreName));
+        if (summary == null || summary.isEmpty()) {
+            workingDirectory.child(traceStoreName).delete();
+            return false;
+        }
+
+        for (String recordDirectory : summary.getRecordDirectories()) {
+            listener.getLogger().println(
+                    "Kieker records were saved to: " + workingDirectory.child(recordDirectory).getRemote());
+        }
+        listener.getLogger().printf("Recorded %d records of %d traces and %d operations over %s%n",
+                summary.getRecordCount(), summary.getTraceCount(), summary.getOperationCount(),
+                summary.getTimeSpanString());
+        // Every operation that recorded data was woven with an active probe, the others stay unknown to us
+        listener.getLogger().printf("%d probe(s) were active and recorded data%n", summary.getOperationCount());
+        listener.getLogger().printf(
+                "Records take %d bytes on disk (%.1f bytes/record, compression ratio %.2f)%n",
+                summary.getDiskBytes(), summary.getBytesPerRecord(), summary.getCompressionRatio());
+
+        String archiveName = archiveRecords
+                ? archiveRecordDirectories(run, process.getId(), workingDirectory, summary, listener)
+                : null;
+        List<Execution> slowestTraces = storeTraces(run, workingDirectory, traceStoreName, summary, listener);
+
+        maybeAddExplorVizAction(run);
+        InstrumentationRecord record =
+                new InstrumentationRecord(process.getId(), process.getName(), summary, archiveName, exitCode);
+        record.setLocation(workingDirectory);
+        if (slowestTraces != null) {
+            record.setTraceStoreName(traceStoreName);
+            record.setSlowestTraces(slowestTraces);
+        }
+        record.setOverhead(overhead);
+        record.setWriterStatistics(writerStatistics);
+        if (warmUp != null) {
+            record.setWarmUpMillis(warmUp);
+        }
+        if (analyzer != null) {
+            RegressionReport regressions = compareWithBaseline(run, process.getId(), summary, analyzer, listener);
+            record.setRegressionReport(regressions);
+            if (regressions != null && regressions.hasRegressions()) {
+                Result result = Result.fromString(Util.fixNull(regressionResult));
+                listener.error("Operation latencies regressed, marking build as %s.", result);
+                run.setResult(result);
             }
         }
+        run.addAction(new InstrumentationAction(record));
+        InstrumentationIndex.forJob(run.getParent()).add(run, record);
+        return true;
     }
 
-    private static boolean isKiekerDirectory(FilePath path) {
+    /**
+     * Compare the operation latencies of an instrumentation with the same instrumentation in the baseline build.
+     *
+     * @return The comparison, or {@code null} if there is nothing to compare with
+     */
+    @CheckForNull
+    private RegressionReport compareWithBaseline(Run<?, ?> run, String id, RecordSummary summary,
+                                                 LatencyRegressionAnalyzer analyzer, TaskListener listener) {
+        Run<?, ?> baselineBuild = LatencyRegressionAnalyzer.findBaselineBuild(run, regressionBaseline);
+        if (baselineBuild == null) {
+            listener.getLogger().printf("No baseline build '%s' to compare latencies with%n", regressionBaseline);
+            return null;
+        }
+
+        InstrumentationRecord baselineRecord = LatencyRegressionAnalyzer.findRecord(baselineBuild, id);
+        RecordSummary baselineSummary = baselineRecord == null ? null : baselineRecord.getSummary();
+        if (baselineSummary == null || baselineSummary.getLatencyProfiles() == null
+                || summary.getLatencyProfiles() == null) {
+            listener.getLogger().printf("Baseline build #%d has no latency profiles of '%s' to compare with%n",
+                    baselineBuild.getNumber(), id);
+            return null;
+        }
+
+        RegressionReport report = analyzer.compare(baselineBuild.getNumber(), baselineSummary, summary);
+        listener.getLogger().printf(
+                "Compared latencies of %d operations with build #%d: %d regressed, %d new, %d removed%n",
+                report.getComparedOperations(), report.getBaselineBuildNumber(), report.getRegressions().size(),
+                report.getNewOperations().size(), report.getRemovedOperations().size());
+        for (OperationRegression regression : report.getRegressions().subList(0,
+                Math.min(MAX_LOGGED_REGRESSIONS, report.getRegressions().size()))) {
+            listener.getLogger().printf("  %+.1f%% %s (p50 %.3f ms -> %.3f ms, p = %.2g)%n",
+                    regression.getChangePercent(), regression.getOperationSignature(),
+                    regression.getBaselineP50Millis(), regression.getP50Millis(), regression.getPValue());
+        }
+        if (report.getRegressions().size() > MAX_LOGGED_REGRESSIONS) {
+            listener.getLogger().printf("  ... and %d more, see the ExplorViz page%n",
+                    report.getRegressions().size() - MAX_LOGGED_REGRESSIONS);
+        }
+        return report;
+    }
+
+    /**
+     * Run the applications once with kieker monitoring disabled, to compare the instrumented run against.
+     *
+     * @param args Command line up to the kieker monitoring configuration, shared by all processes
+     */
+    private List<ProcessMeasurement> runBaselines(List<InstrumentedProcess> targets, ArgumentListBuilder args,
+                                                  FilePath workspace, Launcher launcher, TaskListener listener)
+            throws IOException, InterruptedException {
+        listener.getLogger().println("Running baseline with kieker monitoring disabled");
+
+        List<FilePath> baselineDirectories = new ArrayList<>(targets.size());
         try {
-            return !path.list(new KiekerDirectoryFilter()).isEmpty();
-        } catch (IOException | InterruptedException e) {
-            throw new RuntimeException(e);
+            List<ArgumentListBuilder> commands = new ArrayList<>(targets.size());
+            for (InstrumentedProcess process : targets) {
+                // Disabled monitoring still initializes its writer, so give it a directory we can delete afterwards
+                FilePath baselineDirectory = process.getWorkingDirectory().child("baseline");
+                baselineDirectory.mkdirs();
+                baselineDirectories.add(baselineDirectory);
+
+                FileWriterConfiguration baselineConfiguration = new FileWriterConfiguration();
+                baselineConfiguration.setStoragePath(baselineDirectory.getRemote());
+                if (Util.fixEmptyAndTrim(kiekerOverrides) != null) {
+                    baselineConfiguration.getConfiguration().load(new StringReader(kiekerOverrides));
+                }
+                baselineConfiguration.setMonitoringEnabled(false);
+
+                FilePath baselineConfigurationFile = baselineDirectory.child(MONITORING_CONFIGURATION_FILE_NAME);
+                baselineConfiguration.write(baselineConfigurationFile);
+
+                ArgumentListBuilder command = args.clone();
+                command.add(ARG_KIEKER_MONITORING_CONFIGURATION + baselineConfigurationFile.getRemote());
+                commands.add(command);
+            }
+
+            List<ProcessMeasurement> baselines =
+                    runApplications(targets, commands, "baseline", null, workspace, launcher, listener);
+            for (int i = 0; i < targets.size(); i++) {
+                listener.getLogger().println(targets.size() > 1
+                        ? "Baseline of " + targets.get(i).getId() + ": " + baselines.get(i)
+                        : "Baseline: " + baselines.get(i));
+            }
+            return baselines;
+        } finally {
+            for (FilePath baselineDirectory : baselineDirectories) {
+                baselineDirectory.deleteRecursive();
+            }
         }
     }
 
-    private static void maybeAddExplorVizAction(Run<?, ?> run) {
-        if (run.getActions(ExplorVizAction.class).isEmpty()) {
-            run.addAction(new ExplorVizAction());
+    /**
+     * Run the applications concurrently until each exits or the execute duration, which they share, is over. When
+     * measuring overhead, the probe command runs alongside and all applications are stopped as soon as the probe is
+     * done.
+     *
+     * @param commands Command lines of the processes, in the same order, up to and including their kieker monitoring
+     *                 configuration
+     * @param phase    Name of this run, used to find the processes when measuring their resource usage
+     * @param run      Build to show the recording progress on, or {@code null} if the processes don't record
+     * @return Measurements of the processes, in the same order
+     */
+    private List<ProcessMeasurement> runApplications(List<InstrumentedProcess> targets,
+                                                     List<ArgumentListBuilder> commands, String phase,
+                                                     @Nullable Run<?, ?> run, FilePath workspace,
+                                                     Launcher launcher, TaskListener listener)
+            throws IOException, InterruptedException {
+        int count = targets.size();
+        String[] markers = new String[count];
+        for (int i = 0; i < count; i++) {
+            InstrumentedProcess process = targets.get(i);
+            ArgumentListBuilder args = commands.get(i);
+
+            if (measureOverhead) {
+                markers[i] = process.getWorkingDirectory().getRemote() + "/" + phase;
+                args.add(ARG_MEASUREMENT_MARKER + markers[i]);
+                if (!ProcessSampler.startOn(process.getWorkingDirectory(), markers[i])) {
+                    listener.getLogger().println("CPU time and memory can only be measured on Linux nodes");
+                    markers[i] = null;
+                }
+            }
+
+            if (skipDefaultAOP) {
+                args.add(ARG_SKIP_DEFAULT_AOP_CONFIGURATION);
+            }
+
+            /*
+             * Other options
+             */
+            if (process.getVmOpts() != null) {
+                args.add(QuotedStringTokenizer.tokenize(process.getVmOpts()));
+            }
+
+            args.add(ARG_JAR, process.getAppJar());
+
+            if (process.getAppArgs() != null) {
+                args.add("--");
+                args.add(QuotedStringTokenizer.tokenize(process.getAppArgs()));
+            }
         }
+
+        long[] wallClockMillis = new long[count];
+        int[] exitCodes = new int[count];
+        ProcessSampler.Usage[] usages = new ProcessSampler.Usage[count];
+
+        // Joining a process blocks, so each process is waited for by its own thread to know when exactly it exited
+        ExecutorService joiners = Executors.newFixedThreadPool(count,
+                new NamingThreadFactory(new DaemonThreadFactory(), "ExplorViz application joiner"));
+        RecordingProgressMonitor progressMonitor = run == null ? null
+                : new RecordingProgressMonitor(run, targets, listener);
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.SECONDS.toNanos(executeDuration);
+        try {
+            if (progressMonitor != null) {
+                progressMonitor.start();
+            }
+
+            List<Proc> applications = new ArrayList<>(count);
+            List<Future<Integer>> exits = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int index = i;
+                Proc application = launcher.launch().stdout(listener).pwd(workspace).cmds(commands.get(i)).start();
+                applications.add(application);
+                exits.add(joiners.submit(() -> {
+                    try {
+                        return application.joinWithTimeout(Math.max(deadline - System.nanoTime(), 0),
+                                TimeUnit.NANOSECONDS, listener);
+                    } finally {
+                        wallClockMillis[index] = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                    }
+                }));
+            }
+
+            boolean[] killed = new boolean[count];
+            if (measureOverhead && Util.fixEmptyAndTrim(probeCommand) != null) {
+                runProbe(workspace, launcher, listener);
+                for (int i = 0; i < count; i++) {
+                    if (applications.get(i).isAlive()) {
+                        applications.get(i).kill();
+                        killed[i] = true;
+                    }
+                }
+            }
+
+            for (int i = 0; i < count; i++) {
+                int exitCode = join(exits.get(i));
+                exitCodes[i] = killed[i] ? InstrumentationRecord.EXIT_CODE_KILLED : exitCode;
+            }
+        } finally {
+            // Interrupts the joiners when the build was aborted, which kills the applications
+            joiners.shutdownNow();
+            for (int i = 0; i < count; i++) {
+                if (markers[i] != null) {
+                    usages[i] = ProcessSampler.stopOn(targets.get(i).getWorkingDirectory(), markers[i]);
+                }
+            }
+            if (progressMonitor != null) {
+                progressMonitor.stop();
+            }
+        }
+
+        List<ProcessMeasurement> measurements = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            measurements.add(new ProcessMeasurement(wallClockMillis[i],
+                    usages[i] == null ? ProcessMeasurement.UNKNOWN : usages[i].getCpuMillis(),
+                    usages[i] == null ? ProcessMeasurement.UNKNOWN : usages[i].getPeakRssBytes(), exitCodes[i]));
+        }
+        return measurements;
     }
 
-    /*
-     * The FileFilter is possibly run on a remote agent and therefore needs to be Serializable
+    private static int join(Future<Integer> exit) throws IOException, InterruptedException {
+        try {
+            return exit.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof InterruptedException) {
+                throw (InterruptedException) cause;
+            }
+            throw new IOException("Failed to wait for the application to exit", cause);
+        }
+    }
+
+    /**
+     * Run the probe command against the running applications.
      */
-    private static class KiekerDirectoryFilter implements FileFilter, Serializable {
-        private static final long serialVersionUID = -5474218848206939281L;
+    private void runProbe(FilePath workspace, Launcher launcher, TaskListener listener)
+            throws IOException, InterruptedException {
+        ArgumentListBuilder probeArgs = launcher.isUnix()
+                ? new ArgumentListBuilder("sh", "-c", probeCommand)
+                : new ArgumentListBuilder("cmd.exe", "/C", probeCommand);
+
+        int probeExitCode = launcher.launch().stdout(listener).pwd(workspace).cmds(probeArgs).start()
+                .joinWithTimeout(executeDuration, TimeUnit.SECONDS, listener);
+        if (probeExitCode != 0) {
+            listener.error("Probe command exited with code %d, the measurement may not be meaningful.",
+                    probeExitCode);
+        }
+    }
 
-        @Override
-        public boolean accept(File pathname) {
-            return pathname.getName().endsWith(FSUtil.MAP_FILE_EXTENSION);
+    /**
+     * Create the kieker monitoring configuration for the selected record storage. When streaming, this starts the
+     * record collector on the node of the working directory.
+     */
+    private AbstractKiekerConfiguration createMonitoringConfiguration(FilePath workingDirectory,
+                                                                      TaskListener listener)
+            throws IOException, InterruptedException {
+        if (streamRecords) {
+            InetSocketAddress collectorAddress =
+                    RecordCollector.startOn(workingDirectory, Util.fixEmptyAndTrim(forwardTarget), samplingRate);
+            listener.getLogger().println("Record collector listening on " + collectorAddress);
+            if (samplingRate < 1) {
+                listener.getLogger().printf("Keeping %.1f%% of all traces%n", samplingRate * 100);
+            }
+
+            SingleSocketTcpWriterConfiguration tcpConfiguration = new SingleSocketTcpWriterConfiguration();
+            tcpConfiguration.setHostname(collectorAddress.getAddress().getHostAddress());
+            tcpConfiguration.setPort(collectorAddress.getPort());
+            tcpConfiguration.setBufferSize(STREAM_BUFFER_SIZE);
+            tcpConfiguration.setFlush(false);
+            return tcpConfiguration;
+        }
+
+        FileWriterConfiguration fileConfiguration;
+        if (binaryRecords) {
+            BinaryFileWriterConfiguration binaryConfiguration = new BinaryFileWriterConfiguration();
+            if (compression != null) {
+                binaryConfiguration.setCompression(compression);
+            }
+            if (bufferSize > 0) {
+                binaryConfiguration.setBufferSize(bufferSize);
+            }
+            fileConfiguration = binaryConfiguration;
+        } else {
+            fileConfiguration = new FileWriterConfiguration();
+        }
+        fileConfiguration.setStoragePath(workingDirectory.getRemote());
+        return fileConfiguration;
+    }
+
+    /**
+     * Pack the record folders into a single archive in the build directory, streaming it from the node.
+     *
+     * @return The archive's file name
+     */
+    private static String archiveRecordDirectories(Run<?, ?> run, String id, FilePath workingDirectory,
+                                                   RecordSummary summary, TaskListener listener)
+            throws IOException, InterruptedException {
+        String archiveName = RecordArchive.getName(id);
+        File archive = RecordArchive.getFile(run, archiveName);
+        Files.createDirectories(archive.getParentFile().toPath());
+
+        int files;
+        try (OutputStream out = Files.newOutputStream(archive.toPath())) {
+            files = workingDirectory.act(new RecordArchiveCallable(summary.getRecordDirectories(), out));
+        }
+
+        listener.getLogger().printf("Archived %d record files into %s (%d bytes)%n", files, archive, archive.length());
+        return archiveName;
+    }
+
+    /**
+     * Move the trace store written while summarizing the records into the build directory. Unlike the record folders,
+     * it is small enough to always keep. Its slowest traces are looked up once here, so the build page doesn't have
+     * to scan the store.
+     *
+     * @return The slowest traces, see {@link InstrumentationRecord#getSlowestTraces()}, or {@code null} if no store
+     * was written
+     */
+    @CheckForNull
+    private static List<Execution> storeTraces(Run<?, ?> run, FilePath workingDirectory, String traceStoreName,
+                                              RecordSummary summary, TaskListener listener)
+            throws IOException, InterruptedException {
+        FilePath source = workingDirectory.child(traceStoreName);
+        if (!source.exists()) {
+            return null;
+        }
+
+        File store = TraceStore.getFile(run, traceStoreName);
+        Files.createDirectories(store.getParentFile().toPath());
+        source.copyTo(new FilePath(store));
+        source.delete();
+
+        listener.getLogger().printf("Stored traces in %s (%d bytes, %.1f times smaller than the logs)%n", store,
+                store.length(), summary.getLogBytes() / (double) Math.max(1, store.length()));
+
+        try {
+            return TraceStore.read(store).getSlowestTraces(InstrumentationRecord.SLOWEST_TRACES);
+        } catch (IOException e) {
+            listener.error("Could not read the slowest traces from the trace store: " + e);
+            return Collections.emptyList();
+        }
+    }
+
+    @CheckForNull
+    private static WriterStatistics stopWriterMonitor(FilePath workingDirectory, TaskListener listener)
+            throws IOException, InterruptedException {
+        WriterStatistics statistics = WriterMonitor.stopOn(workingDirectory);
+        if (statistics == null) {
+            listener.error("Kieker writer monitor was not running anymore.");
+            return null;
+        }
+
+        if (statistics.getDroppedRecords() == WriterStatistics.UNKNOWN
+                && statistics.getBlockedInserts() == WriterStatistics.UNKNOWN) {
+            listener.error("Kieker could not be reached via JMX, nothing is known about dropped records.");
+        } else if (statistics.hasDroppedRecords()) {
+            listener.error("Kieker dropped %d records because its writer could not keep up (queue ran full in %d "
+                    + "of the polled seconds).", statistics.getDroppedRecords(), statistics.getFullQueueIntervals());
+        } else if (statistics.getFullQueueIntervals() > 0) {
+            listener.getLogger().printf("Kieker's writer queue ran full in %d of the polled seconds, the application "
+                    + "was blocked %d times%n", statistics.getFullQueueIntervals(), statistics.getBlockedInserts());
+        } else {
+            listener.getLogger().println("Kieker's writer kept up, no records were dropped");
+        }
+        return statistics;
+    }
+
+    private static void stopCollector(FilePath workingDirectory, TaskListener listener)
+            throws IOException, InterruptedException {
+        CollectorStatistics statistics = RecordCollector.stopOn(workingDirectory);
+        if (statistics == null) {
+            listener.error("Record collector was not running anymore.");
+            return;
+        }
+
+        listener.getLogger().printf("Record collector received %d records (%d bytes) from %d connection(s)%n",
+                statistics.getRecords(), statistics.getBytesReceived(), statistics.getConnections());
+        if (statistics.getDroppedRecords() > 0) {
+            listener.getLogger().printf("Dropped %d records of unsampled traces%n", statistics.getDroppedRecords());
+        }
+        if (statistics.getBytesForwarded() > 0) {
+            listener.getLogger().printf("Forwarded %d bytes live%n", statistics.getBytesForwarded());
+        }
+        if (statistics.getFailedForwards() > 0) {
+            listener.error("Live forwarding was given up for %d connection(s), see the agent log for details.",
+                    statistics.getFailedForwards());
+        }
+        if (statistics.getProtocolErrors() > 0) {
+            listener.error("%d record stream(s) could not be decoded and were cut off, see the agent log for details.",
+                    statistics.getProtocolErrors());
+        }
+    }
+
+    private static void maybeAddExplorVizAction(Run<?, ?> run) {
+        if (run.getActions(ExplorVizAction.class).isEmpty()) {
+            run.addAction(new ExplorVizAction());
         }
     }
 
@@ -332,7 +1280,8 @@ public class KiekerBuilder extends Builder implements SimpleBuildStep {
     @Symbol("kieker")
     @Extension
     public static final class DescriptorImpl extends BuildStepDescriptor<Builder> {
-        private static final Pattern RUN_ID_PATTERN = Pattern.compile("[a-z0-9_\\-]{1,64}");
+        static final Pattern RUN_ID_PATTERN = Pattern.compile("[a-z0-9_\\-]{1,64}");
+        private static final Pattern FORWARD_TARGET_PATTERN = Pattern.compile("[^\\s:]+:[0-9]{1,5}");
 
         @Override
         public boolean isApplicable(Class<? extends AbstractProject> aClass) {
@@ -373,6 +1322,96 @@ public class KiekerBuilder extends Builder implements SimpleBuildStep {
             return FormValidation.validatePositiveInteger(value);
         }
 
+        public FormValidation doCheckWarmUpDuration(@QueryParameter String value) {
+            return FormValidation.validateNonNegativeInteger(value);
+        }
+
+        public FormValidation doCheckIncludePatterns(@QueryParameter String value) {
+            return validatePatterns(value);
+        }
+
+        public FormValidation doCheckExcludePatterns(@QueryParameter String value) {
+            return validatePatterns(value);
+        }
+
+        private static FormValidation validatePatterns(String value) {
+            Collection<FormValidation> errors = new ArrayList<>(0);
+            for (String pattern : ProbePatternConfiguration.parsePatterns(value)) {
+                try {
+                    PatternParser.parseToPattern(pattern);
+                } catch (InvalidPatternException e) {
+                    errors.add(FormValidation.error(
+                            Messages.KiekerBuilder_DescriptorImpl_invalidPattern(pattern, e.getMessage())));
+                }
+            }
+
+            return FormValidation.aggregate(errors);
+        }
+
+        public FormValidation doCheckSamplingRate(@QueryParameter String value) {
+            try {
+                double rate = Double.parseDouble(value);
+                if (rate > 0 && rate <= 1) {
+                    return FormValidation.ok();
+                }
+            } catch (NumberFormatException ignored) {
+                // Reported below
+            }
+
+            return FormValidation.error(Messages.KiekerBuilder_DescriptorImpl_invalidSamplingRate());
+        }
+
+        public FormValidation doCheckBufferSize(@QueryParameter String value) {
+            return FormValidation.validatePositiveInteger(value);
+        }
+
+        public FormValidation doCheckForwardTarget(@QueryParameter String value) {
+            return FormValidationHelper.validateString(value, FORWARD_TARGET_PATTERN, false);
+        }
+
+        public FormValidation doCheckRegressionBaseline(@QueryParameter String value) {
+            return LatencyRegressionAnalyzer.isValidBaselineBuild(value)
+                    ? FormValidation.ok()
+                    : FormValidation.error(Messages.KiekerBuilder_DescriptorImpl_invalidRegressionBaseline());
+        }
+
+        public FormValidation doCheckRegressionThreshold(@QueryParameter String value) {
+            try {
+                if (Double.parseDouble(value) >= 0) {
+                    return FormValidation.ok();
+                }
+            } catch (NumberFormatException ignored) {
+                // Reported below
+            }
+
+            return FormValidation.error(Messages.KiekerBuilder_DescriptorImpl_invalidRegressionThreshold());
+        }
+
+        public FormValidation doCheckRegressionSignificance(@QueryParameter String value) {
+            try {
+                double significance = Double.parseDouble(value);
+                if (significance > 0 && significance < 1) {
+                    return FormValidation.ok();
+                }
+            } catch (NumberFormatException ignored) {
+                // Reported below
+            }
+
+            return FormValidation.error(Messages.KiekerBuilder_DescriptorImpl_invalidRegressionSignificance());
+        }
+
+        public FormValidation doCheckRegressionMinCalls(@QueryParameter String value) {
+            return FormValidation.validateIntegerInRange(value, 2, Integer.MAX_VALUE);
+        }
+
+        public ListBoxModel doFillRegressionResultItems() {
+            ListBoxModel items = new ListBoxModel();
+            items.add(Messages.KiekerBuilder_DescriptorImpl_regressionResult_unstable(), Result.UNSTABLE.toString());
+            items.add(Messages.KiekerBuilder_DescriptorImpl_regressionResult_failure(), Result.FAILURE.toString());
+            items.add(Messages.KiekerBuilder_DescriptorImpl_regressionResult_success(), Result.SUCCESS.toString());
+            return items;
+        }
+
         public FormValidation doCheckVmOpts(@QueryParameter String value) {
             if (Util.fixEmptyAndTrim(value) == null) {
                 return FormValidation.ok();
@@ -0,0 +1,104 @@
+package net.explorviz.jenkins;
+
+import hudson.Extension;
+import hudson.util.QuotedStringTokenizer;
+import jenkins.util.SystemProperties;
+import net.explorviz.jenkins.model.ExplorVizDefinition;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a local command in place of ExplorViz, for trying out the plugin and for tests where docker is not available.
+ * The command ignores the {@link ExplorVizDefinition}; it only has to serve something on the web port and may accept
+ * kieker records on the ingest port.
+ * <p>
+ * Enabled by setting the system property {@code net.explorviz.jenkins.LocalProcessLauncher.command} to the command
+ * line, in which {@code ${port}} and {@code ${ingestPort}} are replaced by the ports to use. It takes precedence over
+ * {@link DockerComposeLauncher} then.
+ */
+@Extension(ordinal = 100)
+public class LocalProcessLauncher extends ExplorVizLauncher {
+    private static final String COMMAND_PROPERTY = LocalProcessLauncher.class.getName() + ".command";
+
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+    @Override
+    public boolean isEnabled() {
+        return SystemProperties.getString(COMMAND_PROPERTY) != null;
+    }
+
+    @Nonnull
+    @Override
+    public Launched launch(@Nonnull String name, @Nonnull ExplorVizDefinition definition)
+            throws IOException, InterruptedException {
+        String command = SystemProperties.getString(COMMAND_PROPERTY);
+        if (command == null) {
+            throw new IOException("System property " + COMMAND_PROPERTY + " is not set");
+        }
+
+        int port = allocatePort();
+        int ingestPort = allocatePort();
+        List<String> arguments = new ArrayList<>();
+        for (String argument : QuotedStringTokenizer.tokenize(command)) {
+            arguments.add(argument.replace("${port}", String.valueOf(port))
+                    .replace("${ingestPort}", String.valueOf(ingestPort)));
+        }
+
+        URL url = getUrl(port);
+        File directory = getInstanceDirectory(name);
+        Process process = new ProcessBuilder(arguments).directory(directory).redirectErrorStream(true)
+                .redirectOutput(new File(directory, "explorviz.log")).start();
+        LocalProcess launched = new LocalProcess(process, url, ingestPort);
+        try {
+            awaitListening(port, process);
+        } catch (IOException | InterruptedException e) {
+            launched.shutdown();
+            throw e;
+        }
+        return launched;
+    }
+
+    private static final class LocalProcess implements Launched {
+        private final Process process;
+        private final URL url;
+        private final int ingestPort;
+
+        LocalProcess(Process process, URL url, int ingestPort) {
+            this.process = process;
+            this.url = url;
+            this.ingestPort = ingestPort;
+        }
+
+        @Nonnull
+        @Override
+        public URL getUrl() {
+            return url;
+        }
+
+        @Nonnull
+        @Override
+        public InetSocketAddress getIngestAddress() {
+            return InetSocketAddress.createUnresolved(url.getHost(), ingestPort);
+        }
+
+        @Override
+        public boolean isAlive() {
+            return process.isAlive();
+        }
+
+        @Override
+        public void shutdown() throws InterruptedException {
+            process.destroy();
+            if (!process.waitFor(SHUTDOWN_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                process.destroyForcibly();
+            }
+        }
+    }
+}
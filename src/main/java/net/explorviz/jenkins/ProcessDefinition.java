@@ -0,0 +1,106 @@
+package net.explorviz.jenkins;
+
+import hudson.Extension;
+import hudson.Util;
+import hudson.model.AbstractProject;
+import hudson.model.Describable;
+import hudson.model.Descriptor;
+import hudson.util.FormValidation;
+import jenkins.model.Jenkins;
+import org.jenkinsci.Symbol;
+import org.kohsuke.stapler.AncestorInPath;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * An additional application process of a {@link KiekerBuilder} step, launched alongside the step's own application.
+ * Its records are stored under the instrumentation ID {@code <runId>.<subRunId>}.
+ */
+public class ProcessDefinition implements Describable<ProcessDefinition> {
+    private final String subRunId;
+    private final String appJar;
+
+    private String appArgs;
+    private String vmOpts;
+
+    @DataBoundConstructor
+    public ProcessDefinition(@Nonnull String subRunId, @Nonnull String appJar) {
+        this.subRunId = subRunId;
+        this.appJar = appJar;
+
+        // Must match defaults in ProcessDefinition/config.jelly
+        this.appArgs = "";
+        this.vmOpts = "";
+    }
+
+    @Override
+    public Descriptor<ProcessDefinition> getDescriptor() {
+        Jenkins instance = Jenkins.getInstanceOrNull();
+        if (instance == null) {
+            throw new IllegalStateException();
+        }
+        return instance.getDescriptorOrDie(getClass());
+    }
+
+    public String getSubRunId() {
+        return subRunId;
+    }
+
+    public String getAppJar() {
+        return appJar;
+    }
+
+    public String getAppArgs() {
+        return appArgs;
+    }
+
+    @DataBoundSetter
+    public void setAppArgs(@Nullable String appArgs) {
+        this.appArgs = appArgs;
+    }
+
+    public String getVmOpts() {
+        return vmOpts;
+    }
+
+    @DataBoundSetter
+    public void setVmOpts(@Nullable String vmOpts) {
+        this.vmOpts = vmOpts;
+    }
+
+    @SuppressWarnings({ "MethodMayBeStatic", "rawtypes" })
+    @Symbol("kiekerProcess")
+    @Extension
+    public static class DescriptorImpl extends Descriptor<ProcessDefinition> {
+        @Override
+        @Nonnull
+        public String getDisplayName() {
+            return Messages.ProcessDefinition_DescriptorImpl_DisplayName();
+        }
+
+        public FormValidation doCheckSubRunId(@QueryParameter String value) {
+            return FormValidationHelper.validateString(value, KiekerBuilder.DescriptorImpl.RUN_ID_PATTERN, true);
+        }
+
+        public FormValidation doCheckAppJar(@QueryParameter String value, @AncestorInPath AbstractProject project) {
+            return FormValidationHelper.validateFilePath(project, value, true);
+        }
+
+        public FormValidation doCheckVmOpts(@QueryParameter String value) {
+            if (Util.fixEmptyAndTrim(value) == null) {
+                return FormValidation.ok();
+            }
+
+            Jenkins instance = Jenkins.getInstanceOrNull();
+            if (instance == null) {
+                return FormValidation.ok();
+            }
+            // Same restrictions as for the step's own application
+            return instance.getDescriptorByType(KiekerBuilder.DescriptorImpl.class).doCheckVmOpts(value);
+        }
+    }
+}
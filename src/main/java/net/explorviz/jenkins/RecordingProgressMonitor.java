@@ -0,0 +1,133 @@
+package net.explorviz.jenkins;
+
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import net.explorviz.jenkins.kieker.records.RecordDirectoryMeter;
+import net.explorviz.jenkins.model.RecordingProgressAction;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically reports how many records the instrumented applications have written while they run, both to the build
+ * log and as a {@link RecordingProgressAction badge} on the build.
+ * <p>
+ * The record folders are sampled by {@link RecordDirectoryMeter} on the node that holds them, so every report costs
+ * one remote call per application and no work inside the monitored applications.
+ */
+class RecordingProgressMonitor implements Runnable {
+    private static final long REPORT_INTERVAL_SECONDS = 10;
+
+    private final Run<?, ?> run;
+    private final List<InstrumentedProcess> processes;
+    private final TaskListener listener;
+    private final RecordingProgressAction action = new RecordingProgressAction();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+            new NamingThreadFactory(new DaemonThreadFactory(), "ExplorViz recording progress monitor"));
+
+    // Only accessed by the executor's thread
+    private final RecordDirectoryMeter.Sample[] previous;
+    private final long[] previousNanos;
+    private final boolean[] failed;
+
+    RecordingProgressMonitor(Run<?, ?> run, List<InstrumentedProcess> processes, TaskListener listener) {
+        this.run = run;
+        this.processes = processes;
+        this.listener = listener;
+        this.previous = new RecordDirectoryMeter.Sample[processes.size()];
+        this.previousNanos = new long[processes.size()];
+        this.failed = new boolean[processes.size()];
+    }
+
+    void start() {
+        run.addAction(action);
+        Arrays.fill(previousNanos, System.nanoTime());
+        executor.scheduleAtFixedRate(this, REPORT_INTERVAL_SECONDS, REPORT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    void stop() throws InterruptedException {
+        executor.shutdownNow();
+        executor.awaitTermination(REPORT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        run.removeAction(action);
+    }
+
+    @Override
+    public void run() {
+        long records = 0;
+        long bytes = 0;
+        long recordsPerSecond = 0;
+        long bytesPerSecond = 0;
+        for (int i = 0; i < processes.size(); i++) {
+            InstrumentedProcess process = processes.get(i);
+            RecordDirectoryMeter.Sample sample;
+            try {
+                sample = RecordDirectoryMeter.sampleOn(process.getWorkingDirectory());
+            } catch (IOException e) {
+                // Skipped in this report; the badge shows the processes that could be measured
+                if (!failed[i]) {
+                    failed[i] = true;
+                    listener.getLogger().println("Could not measure the recording progress of " + process.getId()
+                            + ": " + e);
+                }
+                continue;
+            } catch (InterruptedException e) {
+                // Stopped
+                return;
+            }
+            if (failed[i]) {
+                failed[i] = false;
+                listener.getLogger().println("Measuring the recording progress of " + process.getId()
+                        + " works again");
+            }
+            // Since the last sample of this process, which may have been skipped in the previous reports
+            long now = System.nanoTime();
+            double seconds = (now - previousNanos[i]) / (double) TimeUnit.SECONDS.toNanos(1);
+            previousNanos[i] = now;
+
+            long sampleRecords = sample.getRecords();
+            long sampleBytes = sample.getBytes();
+            RecordDirectoryMeter.Sample last = previous[i];
+            long processRecordsPerSecond = sampleRecords < 0 ? -1
+                    : (long) ((sampleRecords - (last == null ? 0 : Math.max(last.getRecords(), 0))) / seconds);
+            long processBytesPerSecond = (long) ((sampleBytes - (last == null ? 0 : last.getBytes())) / seconds);
+            previous[i] = sample;
+
+            report(process, sample, processRecordsPerSecond, processBytesPerSecond);
+
+            records = records < 0 || sampleRecords < 0 ? -1 : records + sampleRecords;
+            recordsPerSecond = records < 0 ? -1 : recordsPerSecond + processRecordsPerSecond;
+            bytes += sampleBytes;
+            bytesPerSecond += processBytesPerSecond;
+        }
+        action.update(records, bytes, recordsPerSecond, bytesPerSecond);
+    }
+
+    private void report(InstrumentedProcess process, RecordDirectoryMeter.Sample sample, long recordsPerSecond,
+                        long bytesPerSecond) {
+        StringBuilder line = new StringBuilder("Kieker records");
+        if (processes.size() > 1) {
+            line.append(" of ").append(process.getId());
+        }
+        line.append(": ");
+
+        if (sample.getFiles() == 0) {
+            line.append("none written yet");
+        } else {
+            if (sample.getRecords() >= 0) {
+                line.append(String.format(Locale.US, "%,d (%,d records/s), ", sample.getRecords(),
+                        recordsPerSecond));
+            }
+            line.append(String.format(Locale.US, "%.1f MB in %d file(s) (%.1f MB/s)",
+                    RecordingProgressAction.toMegabytes(sample.getBytes()), sample.getFiles(),
+                    RecordingProgressAction.toMegabytes(bytesPerSecond)));
+        }
+        listener.getLogger().println(line);
+    }
+}
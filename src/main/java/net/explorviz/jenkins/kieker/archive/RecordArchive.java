@@ -0,0 +1,47 @@
+package net.explorviz.jenkins.kieker.archive;
+
+import hudson.model.Run;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+
+/**
+ * Record archives pack the kieker record folders of an instrumentation into a single ZIP file stored in the build
+ * directory, so the records outlive the workspace.
+ * <p>
+ * Entries are named {@code <record folder>/<file>}, relative to the instrumentation's working directory. Within each
+ * folder the map file comes first, followed by the log files in name order, so an archive can be read front to back
+ * without seeking; the ZIP central directory serves as index for random access. Log files that kieker already
+ * compressed are stored without further compression.
+ */
+public final class RecordArchive {
+    public static final String EXTENSION = ".zip";
+
+    private static final String ARCHIVE_DIRECTORY = "explorviz";
+
+    private RecordArchive() {
+    }
+
+    /**
+     * @return The archive file for the given instrumentation of a build
+     */
+    @Nonnull
+    public static File getFile(@Nonnull Run<?, ?> run, @Nonnull String archiveName) {
+        return new File(new File(run.getRootDir(), ARCHIVE_DIRECTORY), archiveName);
+    }
+
+    /**
+     * @return The archive file name to use for the given instrumentation ID
+     */
+    @Nonnull
+    public static String getName(@Nonnull String runId) {
+        return runId + EXTENSION;
+    }
+
+    /**
+     * @return {@code true} if the given file looks like a record archive rather than a directory
+     */
+    public static boolean isArchive(@Nonnull File file) {
+        return file.isFile() && file.getName().endsWith(EXTENSION);
+    }
+}
@@ -0,0 +1,91 @@
+package net.explorviz.jenkins.kieker.archive;
+
+import hudson.remoting.RemoteOutputStream;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+import kieker.common.util.filesystem.FSUtil;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Packs record folders into a {@link RecordArchive} on the node that holds them, streaming the archive to the
+ * controller while it is written. Nothing is written to the node's disk.
+ * <p>
+ * Returns the number of files archived.
+ */
+public class RecordArchiveCallable extends MasterToSlaveFileCallable<Integer> {
+    private static final long serialVersionUID = 7402963557153084981L;
+
+    private static final int BUFFER_SIZE = 65536;
+
+    /**
+     * Extensions of log files kieker already compressed. Compressing them again only costs time.
+     */
+    private static final String[] COMPRESSED_EXTENSIONS = {
+            FSUtil.GZIP_FILE_EXTENSION, FSUtil.XZ_FILE_EXTENSION, FSUtil.ZIP_FILE_EXTENSION,
+            FSUtil.DEFLATE_FILE_EXTENSION
+    };
+
+    private final String[] recordDirectories;
+    private final OutputStream out;
+
+    /**
+     * @param recordDirectories Record folders to archive, relative to the directory this callable is invoked on
+     * @param out               Receives the archive. Closed when done.
+     */
+    public RecordArchiveCallable(String[] recordDirectories, OutputStream out) {
+        this.recordDirectories = recordDirectories.clone();
+        this.out = new RemoteOutputStream(out);
+    }
+
+    @Override
+    public Integer invoke(File directory, VirtualChannel channel) throws IOException {
+        int files = 0;
+        try (ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(out, BUFFER_SIZE))) {
+            for (String recordDirectory : recordDirectories) {
+                File[] recordFiles = new File(directory, recordDirectory).listFiles(File::isFile);
+                if (recordFiles == null) {
+                    throw new IOException("Record directory '" + recordDirectory + "' can not be listed");
+                }
+
+                // Map file first, so readers know the string registry before the first record
+                Arrays.sort(recordFiles, (a, b) -> isMapFile(a) != isMapFile(b) ? (isMapFile(a) ? -1 : 1) :
+                        a.getName().compareTo(b.getName()));
+
+                for (File recordFile : recordFiles) {
+                    zip.setLevel(isCompressed(recordFile) ? Deflater.NO_COMPRESSION : Deflater.BEST_SPEED);
+
+                    ZipEntry entry = new ZipEntry(recordDirectory.replace(File.separatorChar, '/') + '/' +
+                            recordFile.getName());
+                    entry.setTime(recordFile.lastModified());
+                    zip.putNextEntry(entry);
+                    Files.copy(recordFile.toPath(), zip);
+                    zip.closeEntry();
+                    files++;
+                }
+            }
+        }
+        return files;
+    }
+
+    private static boolean isMapFile(File file) {
+        return file.getName().endsWith(FSUtil.MAP_FILE_EXTENSION);
+    }
+
+    private static boolean isCompressed(File file) {
+        for (String extension : COMPRESSED_EXTENSIONS) {
+            if (file.getName().endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
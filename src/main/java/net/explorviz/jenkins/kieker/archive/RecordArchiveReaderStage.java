@@ -0,0 +1,119 @@
+package net.explorviz.jenkins.kieker.archive;
+
+import kieker.analysis.plugin.reader.depcompression.AbstractDecompressionFilter;
+import kieker.analysis.plugin.reader.depcompression.NoneDecompressionFilter;
+import kieker.analysis.plugin.reader.util.FSReaderUtil;
+import kieker.analysis.source.file.AbstractEventDeserializer;
+import kieker.analysis.source.file.AbstractMapDeserializer;
+import kieker.common.configuration.Configuration;
+import kieker.common.record.IMonitoringRecord;
+import kieker.common.registry.reader.ReaderRegistry;
+import org.apache.commons.io.input.CloseShieldInputStream;
+import teetime.framework.AbstractProducerStage;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * TeeTime producer stage that reads all records from a {@link RecordArchive} front to back, without extracting it.
+ * <p>
+ * Each entry is decoded the same way kieker's {@code DirectoryReaderStage} decodes the files of a record folder:
+ * compression and format are derived from the file extension, and each folder has its own string registry.
+ */
+public class RecordArchiveReaderStage extends AbstractProducerStage<IMonitoringRecord> {
+    private static final Logger LOGGER = Logger.getLogger(RecordArchiveReaderStage.class.getName());
+
+    private static final int BUFFER_SIZE = 65536;
+
+    private final File archive;
+    private final Configuration configuration;
+    private final List<String> failures = new CopyOnWriteArrayList<>();
+
+    public RecordArchiveReaderStage(File archive, Configuration configuration) {
+        this.archive = archive;
+        this.configuration = configuration;
+    }
+
+    @Override
+    protected void execute() {
+        try (ZipInputStream zip = new ZipInputStream(
+                new BufferedInputStream(Files.newInputStream(archive.toPath()), BUFFER_SIZE))) {
+            String currentFolder = null;
+            ReaderRegistry<String> registry = new ReaderRegistry<>();
+
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                if (entry.isDirectory()) {
+                    continue;
+                }
+
+                String name = entry.getName();
+                int separator = name.lastIndexOf('/');
+                String folder = separator < 0 ? "" : name.substring(0, separator);
+                String fileName = name.substring(separator + 1);
+
+                if (!folder.equals(currentFolder)) {
+                    currentFolder = folder;
+                    registry = new ReaderRegistry<>();
+                }
+
+                // Deserializers may close their stream, which must not close the archive
+                readEntry(new CloseShieldInputStream(zip), fileName, registry);
+            }
+        } catch (IOException e) {
+            // The records read up to here were emitted already
+            LOGGER.log(Level.WARNING, "Reading record archive " + archive + " failed", e);
+            failures.add(archive + ": " + e);
+        }
+
+        workCompleted();
+    }
+
+    /**
+     * @return Empty if the whole archive was read, otherwise the reason it was not. Only accurate once the stage has
+     * terminated.
+     */
+    public List<String> getFailures() {
+        return failures;
+    }
+
+    private void readEntry(InputStream in, String fileName, ReaderRegistry<String> registry) throws IOException {
+        Class<? extends AbstractDecompressionFilter> filterClass =
+                FSReaderUtil.findDecompressionFilterByExtension(fileName);
+        String uncompressedName = NoneDecompressionFilter.class.equals(filterClass) ? fileName :
+                fileName.substring(0, fileName.lastIndexOf('.'));
+
+        Class<? extends AbstractMapDeserializer> mapDeserializerClass =
+                FSReaderUtil.findMapDeserializer(uncompressedName);
+        Class<? extends AbstractEventDeserializer> eventDeserializerClass =
+                FSReaderUtil.findEventDeserializer(uncompressedName);
+
+        try {
+            InputStream decompressed = filterClass.getConstructor(Configuration.class).newInstance(configuration)
+                    .chainInputStream(in);
+
+            if (mapDeserializerClass != null) {
+                mapDeserializerClass.getConstructor(Configuration.class).newInstance(configuration)
+                        .processDataStream(decompressed, registry, fileName);
+            } else if (eventDeserializerClass != null) {
+                eventDeserializerClass.getConstructor(Configuration.class, ReaderRegistry.class)
+                        .newInstance(configuration, registry).processDataStream(decompressed, getOutputPort());
+            } else {
+                LOGGER.log(Level.FINE, "Skipping archive entry {0}, it is not a record file", fileName);
+            }
+        } catch (NoSuchMethodException | InstantiationException | IllegalAccessException |
+                InvocationTargetException e) {
+            throw new IOException("Cannot instantiate kieker reader for archive entry " + fileName, e);
+        }
+    }
+}
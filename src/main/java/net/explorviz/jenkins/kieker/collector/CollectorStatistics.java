@@ -0,0 +1,73 @@
+package net.explorviz.jenkins.kieker.collector;
+
+import java.io.Serializable;
+
+/**
+ * Totals of a {@link RecordCollector} run, returned to the controller when the collector is stopped.
+ */
+public class CollectorStatistics implements Serializable {
+    private static final long serialVersionUID = -6872381541398315470L;
+
+    private final int connections;
+    private final long records;
+    private final long droppedRecords;
+    private final long bytesReceived;
+    private final long bytesForwarded;
+    private final int failedForwards;
+    private final int protocolErrors;
+
+    public CollectorStatistics(int connections, long records, long droppedRecords, long bytesReceived,
+                               long bytesForwarded, int failedForwards, int protocolErrors) {
+        this.connections = connections;
+        this.records = records;
+        this.droppedRecords = droppedRecords;
+        this.bytesReceived = bytesReceived;
+        this.bytesForwarded = bytesForwarded;
+        this.failedForwards = failedForwards;
+        this.protocolErrors = protocolErrors;
+    }
+
+    /**
+     * @return Number of monitored processes (kieker writers) that connected to the collector
+     */
+    public int getConnections() {
+        return connections;
+    }
+
+    /**
+     * @return Number of records persisted
+     */
+    public long getRecords() {
+        return records;
+    }
+
+    /**
+     * @return Number of records received but dropped because their trace was not sampled
+     */
+    public long getDroppedRecords() {
+        return droppedRecords;
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    public long getBytesForwarded() {
+        return bytesForwarded;
+    }
+
+    /**
+     * @return Number of connections whose live forwarding was given up, either because the forward target could not
+     * be reached or because it could not keep up
+     */
+    public int getFailedForwards() {
+        return failedForwards;
+    }
+
+    /**
+     * @return Number of connections that were closed because their stream could not be decoded
+     */
+    public int getProtocolErrors() {
+        return protocolErrors;
+    }
+}
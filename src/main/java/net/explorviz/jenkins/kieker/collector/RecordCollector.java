@@ -0,0 +1,626 @@
+package net.explorviz.jenkins.kieker.collector;
+
+import hudson.FilePath;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+import kieker.common.record.factory.CachedRecordFactoryCatalog;
+import kieker.common.record.factory.IRecordFactory;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Non-blocking TCP server that receives records from kieker's {@code SingleSocketTcpWriter} and persists them as a
+ * binary kieker record folder (see {@link RecordStreamWriter}), one folder per connection.
+ * <p>
+ * Optionally, every connection is forwarded unchanged to another TCP endpoint, e.g. a running ExplorViz instance. The
+ * forward never slows down the collector: if the target can't be reached or falls too far behind, forwarding is given
+ * up for that connection while persisting continues.
+ * <p>
+ * Optionally, only a fraction of all traces is persisted and forwarded (see {@link TraceSampler}). Records of
+ * unsampled traces are dropped while decoding the stream.
+ * <p>
+ * Collectors run on the node of the instrumented application. Use {@link #startOn(FilePath, String)} and
+ * {@link #stopOn(FilePath)} to control them from the controller.
+ */
+public class RecordCollector implements Runnable {
+    private static final Logger LOGGER = Logger.getLogger(RecordCollector.class.getName());
+
+    /**
+     * Collectors running in this JVM, by absolute path of their output directory.
+     */
+    private static final Map<String, RecordCollector> RUNNING = new ConcurrentHashMap<>();
+
+    private static final int READ_BUFFER_SIZE = 256 * 1024;
+    private static final int MAX_PENDING_FORWARD_BYTES = 16 * 1024 * 1024;
+    private static final long SELECT_TIMEOUT_MILLIS = 500;
+    private static final long STOP_TIMEOUT_SECONDS = 10;
+
+    /*
+     * Wire format of SingleSocketTcpWriter: registry entries are (-1, id, length, UTF-8 bytes), records are
+     * (class name id, logging timestamp, payload) with a payload size determined by the record type.
+     */
+    private static final int REGISTRY_ENTRY_MARKER = -1;
+    private static final int REGISTRY_HEADER_SIZE = 3 * Integer.BYTES;
+    private static final int RECORD_HEADER_SIZE = Integer.BYTES + Long.BYTES;
+
+    private final File directory;
+    private final InetSocketAddress forwardTarget;
+    private final TraceSampler sampler;
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final Thread thread;
+
+    /**
+     * Connections and forwards that are still open. Only accessed from the collector thread.
+     */
+    private final Set<Endpoint> endpoints = new HashSet<>();
+
+    private volatile long stopDeadline;
+    private volatile boolean stopping;
+
+    // Statistics, only modified by the collector thread and read after it terminated
+    private int connectionCount;
+    // Also read while the collector is running, see getRecordCount(File)
+    private volatile long recordCount;
+    private long droppedRecordCount;
+    private long bytesReceived;
+    private long bytesForwarded;
+    private int failedForwards;
+    private int protocolErrors;
+
+    /**
+     * Create a collector listening on an ephemeral port of the loopback interface.
+     *
+     * @param directory     Directory to create the record folders in
+     * @param forwardTarget Where to forward all connections to, or {@code null} to only persist records
+     */
+    public RecordCollector(@Nonnull File directory, @Nullable InetSocketAddress forwardTarget) throws IOException {
+        this(directory, forwardTarget, 1);
+    }
+
+    /**
+     * Create a collector listening on an ephemeral port of the loopback interface.
+     *
+     * @param directory     Directory to create the record folders in
+     * @param forwardTarget Where to forward all connections to, or {@code null} to only persist records
+     * @param samplingRate  Fraction of traces to keep, in {@code (0, 1]}
+     */
+    public RecordCollector(@Nonnull File directory, @Nullable InetSocketAddress forwardTarget, double samplingRate)
+            throws IOException {
+        this.directory = directory;
+        this.forwardTarget = forwardTarget;
+        this.sampler = new TraceSampler(samplingRate);
+
+        this.selector = Selector.open();
+        try {
+            this.serverChannel = ServerSocketChannel.open();
+            this.serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            this.serverChannel.configureBlocking(false);
+            this.serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            selector.close();
+            throw e;
+        }
+
+        this.thread = new Thread(this, "ExplorViz record collector for " + directory);
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Start accepting connections.
+     *
+     * @return The address kieker's {@code SingleSocketTcpWriter} should connect to
+     */
+    public InetSocketAddress start() {
+        thread.start();
+        return (InetSocketAddress) serverChannel.socket().getLocalSocketAddress();
+    }
+
+    /**
+     * Stop accepting connections and wait until all connected writers have disconnected and their records are
+     * persisted, or until the timeout is hit.
+     *
+     * @return Totals of this collector
+     */
+    public CollectorStatistics stop(long timeout, TimeUnit unit) throws InterruptedException {
+        stopDeadline = System.nanoTime() + unit.toNanos(timeout);
+        stopping = true;
+        selector.wakeup();
+
+        // The collector thread enforces the deadline itself, give it some time to close its files afterwards
+        thread.join(unit.toMillis(timeout) + TimeUnit.SECONDS.toMillis(STOP_TIMEOUT_SECONDS));
+
+        return new CollectorStatistics(connectionCount, recordCount, droppedRecordCount, bytesReceived,
+                bytesForwarded, failedForwards, protocolErrors);
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                if (stopping) {
+                    if (serverChannel.isOpen()) {
+                        serverChannel.close();
+                    }
+                    if (endpoints.isEmpty() || System.nanoTime() - stopDeadline >= 0) {
+                        break;
+                    }
+                }
+
+                selector.select(SELECT_TIMEOUT_MILLIS);
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+
+                    if (!key.isValid()) {
+                        continue;
+                    }
+
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        ((Endpoint) key.attachment()).onReady(key);
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Record collector for " + directory + " failed", e);
+        } finally {
+            for (Endpoint endpoint : new ArrayList<>(endpoints)) {
+                endpoint.close();
+            }
+            closeQuietly(serverChannel);
+            closeQuietly(selector);
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+
+        connectionCount++;
+        channel.configureBlocking(false);
+
+        Connection connection;
+        try {
+            connection = new Connection(channel, new RecordStreamWriter(directory, "stream-" + connectionCount));
+        } catch (IOException e) {
+            closeQuietly(channel);
+            throw e;
+        }
+        channel.register(selector, SelectionKey.OP_READ, connection);
+        endpoints.add(connection);
+
+        if (forwardTarget != null) {
+            connection.forward = openForward();
+        }
+    }
+
+    @CheckForNull
+    private Forward openForward() {
+        SocketChannel channel = null;
+        try {
+            channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            boolean connected = channel.connect(forwardTarget);
+            return new Forward(channel, channel.register(selector, connected ? 0 : SelectionKey.OP_CONNECT));
+        } catch (IOException e) {
+            closeQuietly(channel);
+            failedForwards++;
+            LOGGER.log(Level.WARNING, "Can not forward records to " + forwardTarget, e);
+            return null;
+        }
+    }
+
+    private static void closeQuietly(@CheckForNull Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Failed to close " + closeable, e);
+        }
+    }
+
+    /**
+     * Something registered with the selector that needs to be closed when the collector stops.
+     */
+    private abstract static class Endpoint {
+        abstract void onReady(SelectionKey key);
+
+        abstract void close();
+    }
+
+    /**
+     * A connection from a monitored application.
+     */
+    private final class Connection extends Endpoint {
+        private final SocketChannel channel;
+        private final RecordStreamWriter writer;
+        private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        private final Map<Integer, String> registry = new HashMap<>();
+        private final Map<Integer, Integer> recordSizes = new HashMap<>();
+        private final Map<Integer, Integer> traceIdOffsets = new HashMap<>();
+
+        @CheckForNull
+        private Forward forward;
+
+        Connection(SocketChannel channel, RecordStreamWriter writer) {
+            this.channel = channel;
+            this.writer = writer;
+        }
+
+        @Override
+        void onReady(SelectionKey key) {
+            try {
+                int read = channel.read(readBuffer);
+                if (read == -1) {
+                    close();
+                    return;
+                }
+                bytesReceived += read;
+
+                readBuffer.flip();
+                decode();
+                readBuffer.compact();
+
+                if (!readBuffer.hasRemaining()) {
+                    throw new ProtocolException("Registry entry exceeds " + READ_BUFFER_SIZE + " bytes");
+                }
+            } catch (ProtocolException e) {
+                protocolErrors++;
+                LOGGER.log(Level.WARNING, "Closing undecodable record stream to " + writer.getDirectory(), e);
+                close();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to receive record stream to " + writer.getDirectory(), e);
+                close();
+            }
+        }
+
+        /**
+         * Persist and forward all complete registry entries and records of sampled traces in the read buffer.
+         * Incomplete data is left in the buffer.
+         */
+        private void decode() throws IOException {
+            byte[] array = readBuffer.array();
+            // Start of the data decoded but not forwarded yet. Forwarded in one piece unless records are dropped.
+            int forwardStart = readBuffer.position();
+
+            while (readBuffer.remaining() >= Integer.BYTES) {
+                int start = readBuffer.position();
+                int marker = readBuffer.getInt(start);
+
+                if (marker == REGISTRY_ENTRY_MARKER) {
+                    if (readBuffer.remaining() < REGISTRY_HEADER_SIZE) {
+                        break;
+                    }
+
+                    int id = readBuffer.getInt(start + Integer.BYTES);
+                    int length = readBuffer.getInt(start + 2 * Integer.BYTES);
+                    if (length < 0) {
+                        throw new ProtocolException("Negative registry entry length " + length);
+                    }
+                    if (readBuffer.remaining() < REGISTRY_HEADER_SIZE + length) {
+                        break;
+                    }
+
+                    String value = new String(array, start + REGISTRY_HEADER_SIZE, length, StandardCharsets.UTF_8);
+                    registry.put(id, value);
+                    writer.writeRegistryEntry(id, value);
+                    readBuffer.position(start + REGISTRY_HEADER_SIZE + length);
+                } else {
+                    int frameSize = RECORD_HEADER_SIZE + getRecordSize(marker);
+                    if (readBuffer.remaining() < frameSize) {
+                        break;
+                    }
+
+                    if (isSampled(marker, start)) {
+                        writer.writeRecord(array, start, frameSize);
+                        recordCount++;
+                    } else {
+                        forward(forwardStart, start);
+                        forwardStart = start + frameSize;
+                        droppedRecordCount++;
+                    }
+                    readBuffer.position(start + frameSize);
+                }
+            }
+
+            forward(forwardStart, readBuffer.position());
+        }
+
+        private void forward(int start, int end) {
+            if (forward != null && end > start) {
+                forward.enqueue(readBuffer.array(), start, end - start);
+            }
+        }
+
+        private boolean isSampled(int classId, int start) {
+            if (!sampler.isSampling()) {
+                return true;
+            }
+
+            Integer offset = traceIdOffsets.get(classId);
+            if (offset == null) {
+                offset = TraceSampler.getTraceIdOffset(registry.get(classId));
+                traceIdOffsets.put(classId, offset);
+            }
+
+            return offset == TraceSampler.NO_TRACE_ID
+                    || sampler.isSampled(readBuffer.getLong(start + RECORD_HEADER_SIZE + offset));
+        }
+
+        private int getRecordSize(int classId) throws ProtocolException {
+            Integer size = recordSizes.get(classId);
+            if (size != null) {
+                return size;
+            }
+
+            String className = registry.get(classId);
+            if (className == null) {
+                throw new ProtocolException("Record class id " + classId + " was never registered");
+            }
+
+            IRecordFactory<?> factory;
+            try {
+                factory = CachedRecordFactoryCatalog.getInstance().get(className);
+            } catch (RuntimeException e) {
+                throw new ProtocolException("Unknown record type " + className + ": " + e.getMessage());
+            }
+            if (factory == null) {
+                throw new ProtocolException("Unknown record type " + className);
+            }
+
+            size = factory.getRecordSizeInBytes();
+            if (size < 0) {
+                throw new ProtocolException("Record type " + className + " has no fixed binary size");
+            }
+
+            recordSizes.put(classId, size);
+            return size;
+        }
+
+        @Override
+        void close() {
+            if (!endpoints.remove(this)) {
+                return;
+            }
+
+            closeQuietly(channel);
+            closeQuietly(writer);
+
+            if (forward != null) {
+                forward.onSourceClosed();
+            }
+        }
+    }
+
+    /**
+     * Forwards the raw byte stream of one {@link Connection} to {@link #forwardTarget}.
+     */
+    private final class Forward extends Endpoint {
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        private final Queue<ByteBuffer> pending = new ArrayDeque<>();
+        private int pendingBytes;
+        private boolean sourceClosed;
+
+        Forward(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+            key.attach(this);
+            endpoints.add(this);
+        }
+
+        void enqueue(byte[] data, int offset, int length) {
+            if (pendingBytes + length > MAX_PENDING_FORWARD_BYTES) {
+                fail("forward target can not keep up", null);
+                return;
+            }
+
+            ByteBuffer copy = ByteBuffer.allocate(length);
+            copy.put(data, offset, length);
+            copy.flip();
+            pending.add(copy);
+            pendingBytes += length;
+
+            if (channel.isConnected()) {
+                key.interestOps(SelectionKey.OP_WRITE);
+            }
+        }
+
+        void onSourceClosed() {
+            sourceClosed = true;
+            if (pending.isEmpty()) {
+                close();
+            }
+        }
+
+        @Override
+        void onReady(SelectionKey key) {
+            try {
+                if (key.isConnectable() && !channel.finishConnect()) {
+                    return;
+                }
+
+                while (!pending.isEmpty()) {
+                    ByteBuffer head = pending.peek();
+                    int written = channel.write(head);
+                    bytesForwarded += written;
+                    pendingBytes -= written;
+                    if (head.hasRemaining()) {
+                        break;
+                    }
+                    pending.remove();
+                }
+
+                if (pending.isEmpty()) {
+                    if (sourceClosed) {
+                        close();
+                    } else {
+                        key.interestOps(0);
+                    }
+                } else {
+                    key.interestOps(SelectionKey.OP_WRITE);
+                }
+            } catch (IOException e) {
+                fail("forward connection failed", e);
+            }
+        }
+
+        private void fail(String reason, @CheckForNull IOException e) {
+            failedForwards++;
+            LOGGER.log(Level.WARNING, "Giving up forwarding records to " + forwardTarget + ": " + reason, e);
+            close();
+        }
+
+        @Override
+        void close() {
+            if (!endpoints.remove(this)) {
+                return;
+            }
+
+            pending.clear();
+            pendingBytes = 0;
+            closeQuietly(channel);
+
+            for (Endpoint endpoint : endpoints) {
+                if (endpoint instanceof Connection && ((Connection) endpoint).forward == this) {
+                    ((Connection) endpoint).forward = null;
+                }
+            }
+        }
+    }
+
+    /*
+     * Remote control
+     */
+
+    /**
+     * Start a collector on the node that holds the given directory.
+     *
+     * @param directory     Directory to create the record folders in
+     * @param forwardTarget {@code host:port} to forward records to, or {@code null}
+     * @return The address the monitored application should send its records to, as seen from that node
+     */
+    public static InetSocketAddress startOn(@Nonnull FilePath directory, @Nullable String forwardTarget)
+            throws IOException, InterruptedException {
+        return startOn(directory, forwardTarget, 1);
+    }
+
+    /**
+     * Start a collector on the node that holds the given directory.
+     *
+     * @param directory     Directory to create the record folders in
+     * @param forwardTarget {@code host:port} to forward records to, or {@code null}
+     * @param samplingRate  Fraction of traces to persist and forward, in {@code (0, 1]}
+     * @return The address the monitored application should send its records to, as seen from that node
+     */
+    public static InetSocketAddress startOn(@Nonnull FilePath directory, @Nullable String forwardTarget,
+                                            double samplingRate) throws IOException, InterruptedException {
+        return directory.act(new StartCallable(forwardTarget, samplingRate));
+    }
+
+    /**
+     * Stop the collector started with {@link #startOn(FilePath, String)} for the same directory.
+     *
+     * @return Totals of the collector, or {@code null} if no collector was running for this directory
+     */
+    @CheckForNull
+    public static CollectorStatistics stopOn(@Nonnull FilePath directory) throws IOException, InterruptedException {
+        return directory.act(new StopCallable());
+    }
+
+    /**
+     * Must be called on the node the collector runs on.
+     *
+     * @return Number of records the collector for the given directory persisted so far, or {@code -1} if no collector
+     * is running for it
+     */
+    public static long getRecordCount(@Nonnull File directory) {
+        RecordCollector collector = RUNNING.get(directory.getAbsolutePath());
+        return collector == null ? -1 : collector.recordCount;
+    }
+
+    /**
+     * Parse a {@code host:port} string.
+     *
+     * @throws IllegalArgumentException If the string is not of that form
+     */
+    @Nonnull
+    public static InetSocketAddress parseTarget(@Nonnull String target) {
+        int separator = target.lastIndexOf(':');
+        if (separator <= 0 || separator == target.length() - 1) {
+            throw new IllegalArgumentException("Expected host:port, got '" + target + "'");
+        }
+
+        return new InetSocketAddress(target.substring(0, separator), Integer.parseInt(target.substring(separator + 1)));
+    }
+
+    private static final class StartCallable extends MasterToSlaveFileCallable<InetSocketAddress> {
+        private static final long serialVersionUID = 2963604315412478021L;
+
+        private final String forwardTarget;
+        private final double samplingRate;
+
+        StartCallable(@Nullable String forwardTarget, double samplingRate) {
+            this.forwardTarget = forwardTarget;
+            this.samplingRate = samplingRate;
+        }
+
+        @Override
+        public InetSocketAddress invoke(File directory, VirtualChannel channel) throws IOException {
+            InetSocketAddress target = forwardTarget == null ? null : parseTarget(forwardTarget);
+            RecordCollector collector = new RecordCollector(directory, target, samplingRate);
+
+            if (RUNNING.putIfAbsent(directory.getAbsolutePath(), collector) != null) {
+                closeQuietly(collector.serverChannel);
+                closeQuietly(collector.selector);
+                throw new IOException("A record collector is already running for " + directory);
+            }
+
+            return collector.start();
+        }
+    }
+
+    private static final class StopCallable extends MasterToSlaveFileCallable<CollectorStatistics> {
+        private static final long serialVersionUID = -1729470017446305418L;
+
+        @Override
+        public CollectorStatistics invoke(File directory, VirtualChannel channel) throws InterruptedException {
+            RecordCollector collector = RUNNING.remove(directory.getAbsolutePath());
+            return collector == null ? null : collector.stop(STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+}
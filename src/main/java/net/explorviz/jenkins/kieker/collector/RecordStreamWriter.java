@@ -0,0 +1,101 @@
+package net.explorviz.jenkins.kieker.collector;
+
+import kieker.common.util.filesystem.FSUtil;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Persists a kieker record stream as a regular kieker record folder in binary format: string registry entries go to
+ * the text map file, record frames are written unchanged to rotating {@code .bin} log files. The result can be read
+ * by kieker's {@code DirectoryReaderStage} like any folder written by kieker's own {@code FileWriter}.
+ */
+class RecordStreamWriter implements Closeable {
+    private static final long MAX_LOG_FILE_BYTES = 64L * 1024 * 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File directory;
+    private final String filePrefix;
+    private final Writer mapWriter;
+
+    private OutputStream logStream;
+    private int logFileIndex;
+    private long logFileBytes;
+
+    /**
+     * @param parent Directory to create the record folder in
+     * @param name   Distinguishes folders of multiple streams written at the same time
+     */
+    RecordStreamWriter(File parent, String name) throws IOException {
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyyMMdd'-'HHmmssSSS", Locale.US);
+        dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+        String timestamp = dateFormat.format(new Date());
+
+        this.filePrefix = FSUtil.FILE_PREFIX + "-" + timestamp + "-UTC";
+        this.directory = new File(parent, this.filePrefix + "-" + name);
+        Files.createDirectories(this.directory.toPath());
+
+        this.mapWriter = Files.newBufferedWriter(new File(this.directory, FSUtil.MAP_FILENAME).toPath(),
+                StandardCharsets.UTF_8);
+    }
+
+    File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Append a string registry entry to the map file, using the same format as kieker's {@code TextMapFileHandler}.
+     */
+    void writeRegistryEntry(int id, String value) throws IOException {
+        mapWriter.write('$');
+        mapWriter.write(Integer.toString(id));
+        mapWriter.write('=');
+        mapWriter.write(value);
+        mapWriter.write('\n');
+    }
+
+    /**
+     * Append a complete binary record frame (class id, logging timestamp, payload) to the current log file.
+     */
+    void writeRecord(byte[] frame, int offset, int length) throws IOException {
+        if (logStream == null || logFileBytes >= MAX_LOG_FILE_BYTES) {
+            rotateLogFile();
+        }
+
+        logStream.write(frame, offset, length);
+        logFileBytes += length;
+    }
+
+    private void rotateLogFile() throws IOException {
+        if (logStream != null) {
+            logStream.close();
+        }
+
+        logFileIndex++;
+        File logFile = new File(directory,
+                String.format(Locale.US, "%s-%03d%s", filePrefix, logFileIndex, FSUtil.BINARY_FILE_EXTENSION));
+        logStream = new BufferedOutputStream(Files.newOutputStream(logFile.toPath()), BUFFER_SIZE);
+        logFileBytes = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            mapWriter.close();
+        } finally {
+            if (logStream != null) {
+                logStream.close();
+            }
+        }
+    }
+}
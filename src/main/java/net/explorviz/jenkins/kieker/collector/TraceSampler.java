@@ -0,0 +1,101 @@
+package net.explorviz.jenkins.kieker.collector;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Decides per trace whether its records are kept, so a sampled record set contains complete traces only.
+ * <p>
+ * The decision is a hash of the trace id, so all records of a trace get the same decision without keeping any state,
+ * even across connections. Records that belong to no trace are always kept.
+ */
+final class TraceSampler {
+    private static final Logger LOGGER = Logger.getLogger(TraceSampler.class.getName());
+
+    /**
+     * Returned by {@link #getTraceIdOffset(String)} for record types without a trace id.
+     */
+    static final int NO_TRACE_ID = -1;
+
+    private static final String TRACE_METADATA = "kieker.common.record.flow.trace.TraceMetadata";
+    private static final String ABSTRACT_TRACE_EVENT = "kieker.common.record.flow.trace.AbstractTraceEvent";
+    private static final String OPERATION_EXECUTION_RECORD =
+            "kieker.common.record.controlflow.OperationExecutionRecord";
+
+    /*
+     * Offsets of the trace id in the binary payload: TraceMetadata starts with it, trace events with their timestamp
+     * and OperationExecutionRecords with two string registry ids.
+     */
+    private static final int TRACE_METADATA_OFFSET = 0;
+    private static final int TRACE_EVENT_OFFSET = Long.BYTES;
+    private static final int OPERATION_EXECUTION_OFFSET = 2 * Integer.BYTES;
+
+    private final double rate;
+    private final long threshold;
+
+    /**
+     * @param rate Fraction of traces to keep, in {@code (0, 1]}
+     */
+    TraceSampler(double rate) {
+        if (!(rate > 0 && rate <= 1)) {
+            throw new IllegalArgumentException("rate must be in (0, 1]");
+        }
+        this.rate = rate;
+        this.threshold = (long) (rate * Long.MAX_VALUE);
+    }
+
+    /**
+     * @return {@code false} if this sampler keeps all traces and {@link #isSampled(long)} need not be called
+     */
+    boolean isSampling() {
+        return rate < 1;
+    }
+
+    boolean isSampled(long traceId) {
+        return !isSampling() || (mix(traceId) >>> 1) < threshold;
+    }
+
+    /**
+     * @param className Record type as registered in the record stream
+     * @return Offset of the trace id within the payload of records of that type, or {@link #NO_TRACE_ID}
+     */
+    static int getTraceIdOffset(String className) {
+        Class<?> recordClass;
+        try {
+            recordClass = Class.forName(className, false, TraceSampler.class.getClassLoader());
+        } catch (ClassNotFoundException | LinkageError e) {
+            LOGGER.log(Level.FINE, "Can not sample records of unknown type " + className, e);
+            return NO_TRACE_ID;
+        }
+
+        if (isSubclass(recordClass, TRACE_METADATA)) {
+            return TRACE_METADATA_OFFSET;
+        }
+        if (isSubclass(recordClass, ABSTRACT_TRACE_EVENT)) {
+            return TRACE_EVENT_OFFSET;
+        }
+        if (isSubclass(recordClass, OPERATION_EXECUTION_RECORD)) {
+            return OPERATION_EXECUTION_OFFSET;
+        }
+        return NO_TRACE_ID;
+    }
+
+    private static boolean isSubclass(Class<?> recordClass, String superclassName) {
+        for (Class<?> c = recordClass; c != null; c = c.getSuperclass()) {
+            if (c.getName().equals(superclassName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finalizer of SplitMix64, spreads sequential trace ids uniformly over all longs.
+     */
+    private static long mix(long value) {
+        long z = value;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -28,8 +28,27 @@ public abstract class AbstractKiekerConfiguration implements KiekerConfiguration
 
     public static final String PROP_WRITER = PROPS_PREFIX + "writer";
 
+    private static final String PROP_ENABLED = PROPS_PREFIX + "enabled"; // default: true
     private static final String PROP_APPLICATIONNAME = PROPS_PREFIX + "applicationName"; // default: empty
     private static final String PROP_AUTO_TIMESTAMPS = PROPS_PREFIX + "setLoggingTimestamp"; // default: true
+    public static final String PROP_QUEUE_INSERT_BEHAVIOR =
+            PROPS_PREFIX + "core.controller.WriterController.RecordQueueInsertBehavior"; // default: 2
+    private static final String PROP_JMX = PROPS_PREFIX + "jmx"; // default: false
+    private static final String PROP_ADAPTIVE_MONITORING_ENABLED =
+            PROPS_PREFIX + "adaptiveMonitoring.enabled"; // default: false
+    // default: META-INF/kieker.monitoring.adaptiveMonitoring.conf
+    private static final String PROP_ADAPTIVE_MONITORING_CONFIG_FILE = PROPS_PREFIX + "adaptiveMonitoring.configFile";
+    private static final String PROP_ADAPTIVE_MONITORING_UPDATE_CONFIG_FILE =
+            PROPS_PREFIX + "adaptiveMonitoring.updateConfigFile"; // default: false
+
+    /**
+     * The monitored thread blocks until the writer queue has capacity again.
+     */
+    public static final int QUEUE_INSERT_BEHAVIOR_BLOCK = 1;
+    /**
+     * New records are discarded while the writer queue is full.
+     */
+    public static final int QUEUE_INSERT_BEHAVIOR_DISCARD = 2;
 
     protected final Configuration configuration;
 
@@ -63,6 +82,17 @@ public abstract class AbstractKiekerConfiguration implements KiekerConfiguration
         return this.configuration.getStringProperty(PROP_APPLICATIONNAME);
     }
 
+    /**
+     * Disabled monitoring still weaves the probes, but they do not record anything.
+     */
+    public void setMonitoringEnabled(boolean enabled) {
+        this.configuration.setProperty(PROP_ENABLED, enabled);
+    }
+
+    public boolean isMonitoringEnabled() {
+        return this.configuration.getBooleanProperty(PROP_ENABLED);
+    }
+
     public void setAutoTimestamps(boolean autoTimestamps) {
         this.configuration.setProperty(PROP_AUTO_TIMESTAMPS, autoTimestamps);
     }
@@ -71,6 +101,49 @@ public abstract class AbstractKiekerConfiguration implements KiekerConfiguration
         return this.configuration.getBooleanProperty(PROP_AUTO_TIMESTAMPS);
     }
 
+    /**
+     * Set what happens to records when the writer cannot keep up and its queue is full.
+     *
+     * @param queueInsertBehavior {@link #QUEUE_INSERT_BEHAVIOR_BLOCK} or {@link #QUEUE_INSERT_BEHAVIOR_DISCARD}
+     */
+    public void setQueueInsertBehavior(int queueInsertBehavior) {
+        Validate.isTrue(queueInsertBehavior == QUEUE_INSERT_BEHAVIOR_BLOCK
+            || queueInsertBehavior == QUEUE_INSERT_BEHAVIOR_DISCARD, "unsupported queueInsertBehavior");
+        this.configuration.setProperty(PROP_QUEUE_INSERT_BEHAVIOR, queueInsertBehavior);
+    }
+
+    public int getQueueInsertBehavior() {
+        return this.configuration.getIntProperty(PROP_QUEUE_INSERT_BEHAVIOR);
+    }
+
+    /**
+     * Enable adaptive monitoring, so only probes activated by the given pattern file record anything.
+     *
+     * @param patternFile Absolute path of a file written by {@link ProbePatternConfiguration}
+     */
+    public void setProbePatternFile(@Nonnull String patternFile) {
+        Validate.notEmpty(patternFile, "patternFile may not be empty");
+        this.configuration.setProperty(PROP_ADAPTIVE_MONITORING_ENABLED, true);
+        this.configuration.setProperty(PROP_ADAPTIVE_MONITORING_CONFIG_FILE, patternFile);
+        // Kieker would otherwise append the patterns it receives at runtime to our generated file
+        this.configuration.setProperty(PROP_ADAPTIVE_MONITORING_UPDATE_CONFIG_FILE, false);
+    }
+
+    public boolean isAdaptiveMonitoring() {
+        return this.configuration.getBooleanProperty(PROP_ADAPTIVE_MONITORING_ENABLED);
+    }
+
+    /**
+     * Register kiekers monitoring controller as an MBean with the platform MBean server of the application.
+     */
+    public void setJmxEnabled(boolean jmxEnabled) {
+        this.configuration.setProperty(PROP_JMX, jmxEnabled);
+    }
+
+    public boolean isJmxEnabled() {
+        return this.configuration.getBooleanProperty(PROP_JMX);
+    }
+
     @SuppressWarnings("AssignmentOrReturnOfFieldWithMutableType")
     public Configuration getConfiguration() {
         return configuration;
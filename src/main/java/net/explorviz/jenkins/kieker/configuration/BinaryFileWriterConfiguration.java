@@ -0,0 +1,94 @@
+package net.explorviz.jenkins.kieker.configuration;
+
+import org.apache.commons.lang.Validate;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+
+/**
+ * A kieker configuration using the
+ * <pre>
+ *     kieker.monitoring.writer.filesystem.FileWriter
+ * </pre>
+ * writer with the
+ * <pre>
+ *     kieker.monitoring.writer.filesystem.BinaryLogStreamHandler
+ * </pre>
+ * to write records to a local directory in kieker's binary format, optionally compressed.
+ * <p>
+ * Binary records are considerably smaller than text records and are cheaper to serialize, which reduces the disk I/O
+ * the monitored application competes with.
+ */
+public class BinaryFileWriterConfiguration extends FileWriterConfiguration {
+    private static final long serialVersionUID = -3194728541006527349L;
+
+    private static final String LOG_STREAM_HANDLER_BINARY = "kieker.monitoring.writer.filesystem.BinaryLogStreamHandler";
+
+    public static final int DEFAULT_BUFFER_SIZE = 65536;
+
+    /**
+     * Compression codecs supported by kieker's {@code FileWriter}. Each log file is compressed individually.
+     */
+    public enum Compression {
+        NONE("kieker.monitoring.writer.compression.NoneCompressionFilter"),
+        DEFLATE("kieker.monitoring.writer.compression.DeflateCompressionFilter"),
+        GZIP("kieker.monitoring.writer.compression.GZipCompressionFilter"),
+        ZIP("kieker.monitoring.writer.compression.ZipCompressionFilter"),
+        XZ("kieker.monitoring.writer.compression.XZCompressionFilter");
+
+        private final String filterClass;
+
+        Compression(String filterClass) {
+            this.filterClass = filterClass;
+        }
+
+        /**
+         * @return The canonical class name of the kieker compression filter
+         */
+        public String getFilterClass() {
+            return filterClass;
+        }
+
+        /**
+         * @return The {@link Compression} using the given filter class, or {@link #NONE} if it is unknown
+         */
+        @Nonnull
+        public static Compression fromFilterClass(String filterClass) {
+            for (Compression compression : values()) {
+                if (compression.filterClass.equals(filterClass)) {
+                    return compression;
+                }
+            }
+            return NONE;
+        }
+    }
+
+    public BinaryFileWriterConfiguration() throws IOException {
+        super();
+        this.configuration.setProperty(PROP_LOG_STREAM_HANDLER, LOG_STREAM_HANDLER_BINARY);
+        this.configuration.setProperty(PROP_BUFFER_SIZE, DEFAULT_BUFFER_SIZE);
+    }
+
+    public void setCompression(@Nonnull Compression compression) {
+        Validate.notNull(compression, "compression may not be null");
+        this.configuration.setProperty(PROP_COMPRESSION, compression.getFilterClass());
+    }
+
+    public Compression getCompression() {
+        return Compression.fromFilterClass(this.configuration.getStringProperty(PROP_COMPRESSION));
+    }
+
+    /**
+     * Set the size of the buffer records are serialized into before being written to the (compressed) log file.
+     *
+     * @param bufferSize Buffer size in bytes. Must be large enough to hold any single record.
+     */
+    public void setBufferSize(int bufferSize) {
+        Validate.isTrue(bufferSize > 0, "bufferSize must be positive");
+        this.configuration.setProperty(PROP_BUFFER_SIZE, bufferSize);
+    }
+
+    public int getBufferSize() {
+        return this.configuration.getIntProperty(PROP_BUFFER_SIZE);
+    }
+}
@@ -19,6 +19,10 @@ public class FileWriterConfiguration extends AbstractKiekerConfiguration {
 
     public static final String PROP_STORAGE_PATH = WRITER_CLASS_FILE + ".customStoragePath"; // default: empty
 
+    protected static final String PROP_LOG_STREAM_HANDLER = WRITER_CLASS_FILE + ".logStreamHandler";
+    protected static final String PROP_COMPRESSION = WRITER_CLASS_FILE + ".compression";
+    protected static final String PROP_BUFFER_SIZE = WRITER_CLASS_FILE + ".bufferSize";
+
     public FileWriterConfiguration() throws IOException {
         super(WRITER_CLASS_FILE);
     }
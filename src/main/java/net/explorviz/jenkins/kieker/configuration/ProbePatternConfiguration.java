@@ -0,0 +1,111 @@
+package net.explorviz.jenkins.kieker.configuration;
+
+import hudson.FilePath;
+import kieker.monitoring.core.signaturePattern.InvalidPatternException;
+import kieker.monitoring.core.signaturePattern.PatternParser;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Represents kiekers adaptive monitoring pattern file, which decides at runtime which of the woven probes record
+ * anything. Patterns use kiekers signature pattern syntax, e.g. {@code * net.example..*.*(..)}.
+ * <p>
+ * Kieker applies the last pattern matching a signature, and probes matching no pattern at all stay active. The file is
+ * therefore generated as: deactivate everything if there are include patterns, then activate all includes, then
+ * deactivate all excludes. Excludes always win over includes.
+ *
+ * @see AbstractKiekerConfiguration#setProbePatternFile(String)
+ */
+public class ProbePatternConfiguration {
+    public static final String FILE_NAME = "kieker.monitoring.adaptiveMonitoring.conf";
+
+    private static final String PATTERN_ALL = "*";
+    private static final char ACTIVATE = '+';
+    private static final char DEACTIVATE = '-';
+    private static final char COMMENT = '#';
+
+    private final List<String> includes;
+    private final List<String> excludes;
+
+    /**
+     * @param includes Patterns of the probes to activate. If empty, all probes are active unless excluded.
+     * @param excludes Patterns of the probes to deactivate
+     *
+     * @throws InvalidPatternException If any of the patterns is not a valid kieker signature pattern
+     */
+    public ProbePatternConfiguration(@Nonnull List<String> includes, @Nonnull List<String> excludes)
+            throws InvalidPatternException {
+        for (String pattern : includes) {
+            PatternParser.parseToPattern(pattern);
+        }
+        for (String pattern : excludes) {
+            PatternParser.parseToPattern(pattern);
+        }
+
+        this.includes = Collections.unmodifiableList(new ArrayList<>(includes));
+        this.excludes = Collections.unmodifiableList(new ArrayList<>(excludes));
+    }
+
+    /**
+     * Split user input into patterns: one pattern per line, blank lines and lines starting with {@code #} are ignored.
+     */
+    @Nonnull
+    public static List<String> parsePatterns(String text) {
+        List<String> patterns = new ArrayList<>();
+        if (text == null) {
+            return patterns;
+        }
+
+        for (String line : text.split("\\r?\\n")) {
+            String pattern = line.trim();
+            if (!pattern.isEmpty() && pattern.charAt(0) != COMMENT) {
+                patterns.add(pattern);
+            }
+        }
+        return patterns;
+    }
+
+    public List<String> getIncludes() {
+        return includes;
+    }
+
+    public List<String> getExcludes() {
+        return excludes;
+    }
+
+    /**
+     * @return {@code true} if this configuration restricts nothing, i.e. all woven probes stay active
+     */
+    public boolean isEmpty() {
+        return includes.isEmpty() && excludes.isEmpty();
+    }
+
+    public void write(FilePath outputFile) throws IOException, InterruptedException {
+        try (Writer out = new OutputStreamWriter(outputFile.write(), StandardCharsets.UTF_8)) {
+            out.write(COMMENT + " This file was automatically generated by ExplorViz/jenkins-plugin.\n");
+
+            if (!includes.isEmpty()) {
+                writePattern(out, DEACTIVATE, PATTERN_ALL);
+            }
+            for (String pattern : includes) {
+                writePattern(out, ACTIVATE, pattern);
+            }
+            for (String pattern : excludes) {
+                writePattern(out, DEACTIVATE, pattern);
+            }
+        }
+    }
+
+    private static void writePattern(Writer out, char prefix, String pattern) throws IOException {
+        out.write(prefix);
+        out.write(pattern);
+        out.write('\n');
+    }
+}
@@ -16,10 +16,12 @@ public class SingleSocketTcpWriterConfiguration extends AbstractKiekerConfigurat
 
     private static final int PORT_MAX = 65535;
 
-    private static final String WRITER_CLASS_TCP = "kieker.monitoring.writer.tcp.SingleSocketTcpWriter";
+    public static final String WRITER_CLASS_TCP = "kieker.monitoring.writer.tcp.SingleSocketTcpWriter";
 
     private static final String PROP_HOSTNAME = WRITER_CLASS_TCP + ".hostname"; // default: localhost
     private static final String PROP_PORT = WRITER_CLASS_TCP + ".port"; // default: 10133
+    public static final String PROP_BUFFER_SIZE = WRITER_CLASS_TCP + ".bufferSize"; // default: 1024
+    public static final String PROP_FLUSH = WRITER_CLASS_TCP + ".flush"; // default: true
 
     public SingleSocketTcpWriterConfiguration() throws IOException {
         super(WRITER_CLASS_TCP);
@@ -42,4 +44,29 @@ public class SingleSocketTcpWriterConfiguration extends AbstractKiekerConfigurat
     public int getPort() {
         return this.configuration.getIntProperty(PROP_PORT);
     }
+
+    /**
+     * Set the size of the buffer records are serialized into before being sent.
+     *
+     * @param bufferSize Buffer size in bytes. Must be large enough to hold any single record.
+     */
+    public void setBufferSize(int bufferSize) {
+        Validate.isTrue(bufferSize > 0, "bufferSize must be positive");
+        this.configuration.setProperty(PROP_BUFFER_SIZE, bufferSize);
+    }
+
+    public int getBufferSize() {
+        return this.configuration.getIntProperty(PROP_BUFFER_SIZE);
+    }
+
+    /**
+     * @param flush {@code true} to send each record immediately, {@code false} to only send full buffers
+     */
+    public void setFlush(boolean flush) {
+        this.configuration.setProperty(PROP_FLUSH, flush);
+    }
+
+    public boolean getFlush() {
+        return this.configuration.getBooleanProperty(PROP_FLUSH);
+    }
 }
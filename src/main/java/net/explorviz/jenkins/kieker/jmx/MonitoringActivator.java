@@ -0,0 +1,156 @@
+package net.explorviz.jenkins.kieker.jmx;
+
+import hudson.FilePath;
+import hudson.model.TaskListener;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Enables kieker monitoring over JMX once the monitored application has warmed up, so JIT compilation and cold caches
+ * don't distort the recorded latencies.
+ * <p>
+ * The application must be started with monitoring disabled. Kieker still sets up its writer and registers its
+ * monitoring controller as an MBean then, which this activator polls until the JVM's uptime exceeds the warm-up
+ * period. The warm-up is thereby counted from the start of the application's JVM, not from launching it.
+ * <p>
+ * Use {@link #startOn(FilePath, int, long, TaskListener)} before launching the application with
+ * {@link MonitoringControllerConnection#getJvmArguments(int)} and {@link #stopOn(FilePath)} after it exited.
+ */
+public class MonitoringActivator implements Runnable {
+    /**
+     * Activators running in this JVM, by absolute path of the working directory.
+     */
+    private static final Map<String, MonitoringActivator> RUNNING = new ConcurrentHashMap<>();
+
+    private static final long POLL_INTERVAL_MILLIS = 100;
+
+    private static final String ENABLE_OPERATION = "enableMonitoring";
+
+    private final MonitoringControllerConnection connection;
+    private final long warmUpMillis;
+    private final TaskListener listener;
+    private final Thread thread;
+
+    private volatile boolean stopping;
+
+    // Only modified by the activator thread
+    private volatile long enabledAfterMillis = -1;
+
+    MonitoringActivator(File directory, int port, long warmUpMillis, TaskListener listener) {
+        this.connection = new MonitoringControllerConnection(port);
+        this.warmUpMillis = warmUpMillis;
+        this.listener = listener;
+        this.thread = new Thread(this, "ExplorViz kieker monitoring activator for " + directory);
+        this.thread.setDaemon(true);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    /**
+     * @return Uptime when monitoring was enabled, {@code -1} if it never was, or {@code null} if the activator did not
+     * stop in time, e.g. because a JMX call hangs, so it may still enable monitoring
+     */
+    @CheckForNull
+    Long stop() throws InterruptedException {
+        stopping = true;
+        thread.interrupt();
+        thread.join(TimeUnit.SECONDS.toMillis(10));
+
+        return thread.isAlive() ? null : enabledAfterMillis;
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (!stopping) {
+                long uptime = connection.getUptime();
+                if (uptime >= warmUpMillis && Boolean.TRUE.equals(connection.invokeController(ENABLE_OPERATION))) {
+                    enabledAfterMillis = uptime;
+                    listener.getLogger().printf("Warm-up over after %d ms, kieker monitoring enabled%n", uptime);
+                    return;
+                }
+
+                // Wake up right when the warm-up is over
+                long remaining = uptime < 0 ? POLL_INTERVAL_MILLIS : warmUpMillis - uptime;
+                Thread.sleep(remaining > 0 ? Math.min(remaining, POLL_INTERVAL_MILLIS) : POLL_INTERVAL_MILLIS);
+            }
+        } catch (InterruptedException e) {
+            // Stopped
+        } finally {
+            connection.close();
+        }
+    }
+
+    /*
+     * Remote control
+     */
+
+    /**
+     * Start an activator on the node that holds the given working directory. It keeps trying to reach the application
+     * until it has started.
+     *
+     * @param port         Port the application exposes its MBean server on, see
+     *                     {@link MonitoringControllerConnection#allocatePortOn(FilePath)}
+     * @param warmUpMillis Uptime of the application after which monitoring is enabled
+     * @param listener     Told when monitoring is enabled
+     */
+    public static void startOn(@Nonnull FilePath workingDirectory, int port, long warmUpMillis,
+                               @Nonnull TaskListener listener) throws IOException, InterruptedException {
+        workingDirectory.act(new StartCallable(port, warmUpMillis, listener));
+    }
+
+    /**
+     * Stop the activator started with {@link #startOn(FilePath, int, long, TaskListener)} for the same directory.
+     *
+     * @return Uptime of the application in milliseconds when monitoring was enabled, {@code -1} if it never was, or
+     * {@code null} if it is unknown because no activator was running for this directory or it did not stop in time
+     */
+    @CheckForNull
+    public static Long stopOn(@Nonnull FilePath workingDirectory) throws IOException, InterruptedException {
+        return workingDirectory.act(new StopCallable());
+    }
+
+    private static final class StartCallable extends MasterToSlaveFileCallable<Void> {
+        private static final long serialVersionUID = -8015418447165231372L;
+
+        private final int port;
+        private final long warmUpMillis;
+        private final TaskListener listener;
+
+        StartCallable(int port, long warmUpMillis, TaskListener listener) {
+            this.port = port;
+            this.warmUpMillis = warmUpMillis;
+            this.listener = listener;
+        }
+
+        @Override
+        public Void invoke(File directory, VirtualChannel channel) throws IOException {
+            MonitoringActivator activator = new MonitoringActivator(directory, port, warmUpMillis, listener);
+            if (RUNNING.putIfAbsent(directory.getAbsolutePath(), activator) != null) {
+                throw new IOException("A kieker monitoring activator is already running for " + directory);
+            }
+            activator.start();
+            return null;
+        }
+    }
+
+    private static final class StopCallable extends MasterToSlaveFileCallable<Long> {
+        private static final long serialVersionUID = 2961374306153920547L;
+
+        @Override
+        public Long invoke(File directory, VirtualChannel channel) throws InterruptedException {
+            MonitoringActivator activator = RUNNING.remove(directory.getAbsolutePath());
+            return activator == null ? null : activator.stop();
+        }
+    }
+}
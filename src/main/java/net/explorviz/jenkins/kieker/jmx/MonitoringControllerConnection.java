@@ -0,0 +1,142 @@
+package net.explorviz.jenkins.kieker.jmx;
+
+import hudson.FilePath;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import javax.management.JMException;
+import javax.management.MBeanServerConnection;
+import javax.management.ObjectName;
+import javax.management.remote.JMXConnector;
+import javax.management.remote.JMXConnectorFactory;
+import javax.management.remote.JMXServiceURL;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Connection to kieker's monitoring controller in an application that exposes its platform MBean server on a local
+ * port, see {@link #getJvmArguments(int)}. The connection is (re-)established lazily, as the application may not have
+ * started yet or may have exited already.
+ */
+public final class MonitoringControllerConnection implements Closeable {
+    private static final Logger LOGGER = Logger.getLogger(MonitoringControllerConnection.class.getName());
+
+    private static final String CONTROLLER_OBJECT_NAME = "kieker.monitoring:type=MonitoringController";
+    private static final String RUNTIME_OBJECT_NAME = "java.lang:type=Runtime";
+
+    private final int port;
+
+    private JMXConnector connector;
+
+    MonitoringControllerConnection(int port) {
+        this.port = port;
+    }
+
+    /**
+     * @param port Port to expose the platform MBean server of the application on, bound to the loopback interface
+     * @return Arguments to add to the application's JVM to reach kieker
+     * @see #allocatePortOn(FilePath)
+     */
+    public static List<String> getJvmArguments(int port) {
+        return Arrays.asList(
+                "-Dcom.sun.management.jmxremote.port=" + port,
+                "-Dcom.sun.management.jmxremote.rmi.port=" + port,
+                "-Dcom.sun.management.jmxremote.host=" + InetAddress.getLoopbackAddress().getHostAddress(),
+                "-Djava.rmi.server.hostname=" + InetAddress.getLoopbackAddress().getHostAddress(),
+                "-Dcom.sun.management.jmxremote.authenticate=false",
+                "-Dcom.sun.management.jmxremote.ssl=false");
+    }
+
+    /**
+     * @return {@code true} if the application was reached by the last call
+     */
+    boolean isConnected() {
+        return connector != null;
+    }
+
+    /**
+     * Invoke an operation without parameters on kieker's monitoring controller.
+     *
+     * @return Result of the operation, or {@code null} if kieker could not be reached
+     */
+    @CheckForNull
+    Object invokeController(String operation) {
+        try {
+            return connect().invoke(new ObjectName(CONTROLLER_OBJECT_NAME), operation, null, null);
+        } catch (IOException e) {
+            // Application not started yet or exited already
+            LOGGER.log(Level.FINEST, "Kieker not reachable via JMX on port " + port, e);
+            close();
+            return null;
+        } catch (JMException e) {
+            // Kieker registers its controller only after its writer has been set up
+            LOGGER.log(Level.FINE, "Failed to invoke " + operation + " on kieker's monitoring controller", e);
+            return null;
+        }
+    }
+
+    /**
+     * @return Milliseconds since the application's JVM started, or {@code -1} if it could not be reached
+     */
+    long getUptime() {
+        try {
+            return (Long) connect().getAttribute(new ObjectName(RUNTIME_OBJECT_NAME), "Uptime");
+        } catch (IOException e) {
+            LOGGER.log(Level.FINEST, "Application not reachable via JMX on port " + port, e);
+            close();
+            return -1;
+        } catch (JMException e) {
+            LOGGER.log(Level.FINE, "Failed to read the application's uptime", e);
+            return -1;
+        }
+    }
+
+    private MBeanServerConnection connect() throws IOException {
+        if (connector == null) {
+            connector = JMXConnectorFactory.connect(new JMXServiceURL(
+                    "service:jmx:rmi:///jndi/rmi://" + InetAddress.getLoopbackAddress().getHostAddress() + ":" + port
+                            + "/jmxrmi"));
+        }
+        return connector.getMBeanServerConnection();
+    }
+
+    @Override
+    public void close() {
+        if (connector != null) {
+            try {
+                connector.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Failed to close JMX connection", e);
+            }
+            connector = null;
+        }
+    }
+
+    /**
+     * Find a free port on the loopback interface of the node that holds the given directory.
+     */
+    public static int allocatePortOn(@Nonnull FilePath node) throws IOException, InterruptedException {
+        return node.act(new AllocatePortCallable());
+    }
+
+    private static final class AllocatePortCallable extends MasterToSlaveFileCallable<Integer> {
+        private static final long serialVersionUID = 6210466390113894017L;
+
+        @Override
+        public Integer invoke(File file, VirtualChannel channel) throws IOException {
+            // The port may be taken again until the application binds it, which is unlikely for ephemeral ports
+            try (ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+                return socket.getLocalPort();
+            }
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package net.explorviz.jenkins.kieker.jmx;
+
+import hudson.FilePath;
+import hudson.model.TaskListener;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+import net.explorviz.jenkins.kieker.collector.RecordCollector;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Polls kieker's monitoring controller over JMX while the monitored application runs, and periodically prints how
+ * well kieker's writer keeps up to the build log.
+ * <p>
+ * Kieker only exposes its monitoring controller as an MBean, whose state description contains the counters of the
+ * writer queue's insert behavior: the number of records dropped (insert behavior 2) or the number of times the
+ * application blocked (insert behavior 1) because the queue was full. Its fill level is not exposed, so the monitor
+ * reports whether the queue ran full since the last poll instead. The rate of records written is only known when
+ * records are streamed to the {@link RecordCollector}.
+ * <p>
+ * Use {@link #startOn(FilePath, int, TaskListener)} before launching the application with
+ * {@link MonitoringControllerConnection#getJvmArguments(int)} and {@link #stopOn(FilePath)} after it exited.
+ */
+public class WriterMonitor implements Runnable {
+    /**
+     * Monitors running in this JVM, by absolute path of the working directory.
+     */
+    private static final Map<String, WriterMonitor> RUNNING = new ConcurrentHashMap<>();
+
+    private static final long POLL_INTERVAL_MILLIS = 1000;
+    private static final int POLLS_PER_REPORT = 10;
+
+    /*
+     * The counters are scraped from the state description of kieker 1.14 (CountOnFailedInsertBehavior and
+     * BlockOnFailedInsertBehavior), which is no stable API; check these patterns when updating kieker.
+     */
+    private static final String STATE_OPERATION = "toString";
+    private static final Pattern DROPPED_RECORDS = Pattern.compile("Number of failed inserts: (\\d+)");
+    private static final Pattern BLOCKED_INSERTS = Pattern.compile("numBlocked: (\\d+)");
+
+    private final File directory;
+    private final MonitoringControllerConnection connection;
+    private final TaskListener listener;
+    private final Thread thread;
+
+    private volatile boolean stopping;
+
+    // Only modified by the monitor thread and read after it terminated
+    private long droppedRecords = WriterStatistics.UNKNOWN;
+    private long blockedInserts = WriterStatistics.UNKNOWN;
+    private long writtenRecords = WriterStatistics.UNKNOWN;
+    private long peakRecordsPerSecond = WriterStatistics.UNKNOWN;
+    private int fullQueueIntervals;
+
+    // State of the current report interval
+    private int polls;
+    private long reportWrittenRecords;
+    private long reportDroppedRecords;
+    private boolean queueFull;
+
+    private boolean stateUnrecognized;
+
+    WriterMonitor(File directory, int port, TaskListener listener) {
+        this.directory = directory;
+        this.connection = new MonitoringControllerConnection(port);
+        this.listener = listener;
+        this.thread = new Thread(this, "ExplorViz kieker writer monitor for " + directory);
+        this.thread.setDaemon(true);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    WriterStatistics stop() throws InterruptedException {
+        stopping = true;
+        thread.interrupt();
+        thread.join(TimeUnit.SECONDS.toMillis(10));
+
+        return new WriterStatistics(droppedRecords, blockedInserts, peakRecordsPerSecond, fullQueueIntervals);
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (!stopping) {
+                Thread.sleep(POLL_INTERVAL_MILLIS);
+                poll();
+            }
+        } catch (InterruptedException e) {
+            // Stopped
+        } finally {
+            connection.close();
+        }
+    }
+
+    private void poll() {
+        long written = RecordCollector.getRecordCount(directory);
+        if (written >= 0) {
+            if (writtenRecords >= 0) {
+                long recordsPerSecond = (written - writtenRecords) * 1000 / POLL_INTERVAL_MILLIS;
+                peakRecordsPerSecond = Math.max(peakRecordsPerSecond, recordsPerSecond);
+            }
+            writtenRecords = written;
+        }
+
+        String state = (String) connection.invokeController(STATE_OPERATION);
+        if (state != null) {
+            long dropped = parseCounter(DROPPED_RECORDS, state);
+            long blocked = parseCounter(BLOCKED_INSERTS, state);
+            if (dropped < 0 && blocked < 0 && !stateUnrecognized) {
+                stateUnrecognized = true;
+                listener.getLogger().println("Kieker writer: no queue counters found in the monitoring controller's "
+                        + "state, dropped records and blocked inserts can't be reported for this kieker version");
+            }
+            boolean full = dropped > droppedRecords && droppedRecords >= 0
+                    || blocked > blockedInserts && blockedInserts >= 0;
+            if (full) {
+                fullQueueIntervals++;
+                queueFull = true;
+            }
+            droppedRecords = Math.max(droppedRecords, dropped);
+            blockedInserts = Math.max(blockedInserts, blocked);
+        }
+
+        if (++polls >= POLLS_PER_REPORT) {
+            report();
+        }
+    }
+
+    private void report() {
+        StringBuilder line = new StringBuilder("Kieker writer: queue ").append(queueFull ? "ran full" : "ok");
+        if (writtenRecords >= 0) {
+            long recordsPerSecond = (writtenRecords - reportWrittenRecords) * 1000 / (polls * POLL_INTERVAL_MILLIS);
+            line.append(", ").append(recordsPerSecond).append(" records/s written");
+            reportWrittenRecords = writtenRecords;
+        }
+        if (droppedRecords >= 0) {
+            line.append(", ").append(droppedRecords - reportDroppedRecords).append(" records dropped");
+            reportDroppedRecords = droppedRecords;
+        }
+        if (!connection.isConnected()) {
+            line.append(" (kieker not reachable via JMX yet)");
+        }
+        listener.getLogger().println(line);
+
+        polls = 0;
+        queueFull = false;
+    }
+
+    private static long parseCounter(Pattern pattern, String state) {
+        Matcher matcher = pattern.matcher(state);
+        return matcher.find() ? Long.parseLong(matcher.group(1)) : WriterStatistics.UNKNOWN;
+    }
+
+    /*
+     * Remote control
+     */
+
+    /**
+     * Start a monitor on the node that holds the given working directory. It keeps trying to reach kieker until the
+     * application has started.
+     *
+     * @param port     Port the application exposes its MBean server on, see
+     *                 {@link MonitoringControllerConnection#allocatePortOn(FilePath)}
+     * @param listener Receives the periodic reports
+     */
+    public static void startOn(@Nonnull FilePath workingDirectory, int port, @Nonnull TaskListener listener)
+            throws IOException, InterruptedException {
+        workingDirectory.act(new StartCallable(port, listener));
+    }
+
+    /**
+     * Stop the monitor started with {@link #startOn(FilePath, int, TaskListener)} for the same directory.
+     *
+     * @return Totals of the monitor, or {@code null} if no monitor was running for this directory
+     */
+    @CheckForNull
+    public static WriterStatistics stopOn(@Nonnull FilePath workingDirectory)
+            throws IOException, InterruptedException {
+        return workingDirectory.act(new StopCallable());
+    }
+
+    private static final class StartCallable extends MasterToSlaveFileCallable<Void> {
+        private static final long serialVersionUID = 3127745236049315768L;
+
+        private final int port;
+        private final TaskListener listener;
+
+        StartCallable(int port, TaskListener listener) {
+            this.port = port;
+            this.listener = listener;
+        }
+
+        @Override
+        public Void invoke(File directory, VirtualChannel channel) throws IOException {
+            WriterMonitor monitor = new WriterMonitor(directory, port, listener);
+            if (RUNNING.putIfAbsent(directory.getAbsolutePath(), monitor) != null) {
+                throw new IOException("A kieker writer monitor is already running for " + directory);
+            }
+            monitor.start();
+            return null;
+        }
+    }
+
+    private static final class StopCallable extends MasterToSlaveFileCallable<WriterStatistics> {
+        private static final long serialVersionUID = -4600305779683226416L;
+
+        @Override
+        public WriterStatistics invoke(File directory, VirtualChannel channel) throws InterruptedException {
+            WriterMonitor monitor = RUNNING.remove(directory.getAbsolutePath());
+            return monitor == null ? null : monitor.stop();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package net.explorviz.jenkins.kieker.jmx;
+
+import java.io.Serializable;
+
+/**
+ * Totals of a {@link WriterMonitor} run: how well kieker's writer kept up with the monitored application.
+ * <p>
+ * Values that could not be observed are {@link #UNKNOWN}, e.g. because the application exited before its JMX
+ * interface could be reached.
+ */
+public class WriterStatistics implements Serializable {
+    private static final long serialVersionUID = -1342208757395183263L;
+
+    public static final long UNKNOWN = -1;
+
+    private final long droppedRecords;
+    private final long blockedInserts;
+    private final long peakRecordsPerSecond;
+    private final int fullQueueIntervals;
+
+    /**
+     * @param droppedRecords       Records kieker discarded because its writer queue was full
+     * @param blockedInserts       Times the application blocked because the writer queue was full
+     * @param peakRecordsPerSecond Highest rate of records arriving at the record collector
+     * @param fullQueueIntervals   Number of polling intervals in which the writer queue ran full
+     */
+    public WriterStatistics(long droppedRecords, long blockedInserts, long peakRecordsPerSecond,
+                            int fullQueueIntervals) {
+        this.droppedRecords = droppedRecords;
+        this.blockedInserts = blockedInserts;
+        this.peakRecordsPerSecond = peakRecordsPerSecond;
+        this.fullQueueIntervals = fullQueueIntervals;
+    }
+
+    public long getDroppedRecords() {
+        return droppedRecords;
+    }
+
+    public long getBlockedInserts() {
+        return blockedInserts;
+    }
+
+    /**
+     * @return Highest rate of records written, only known when records are streamed to the record collector
+     */
+    public long getPeakRecordsPerSecond() {
+        return peakRecordsPerSecond;
+    }
+
+    public int getFullQueueIntervals() {
+        return fullQueueIntervals;
+    }
+
+    /**
+     * @return {@code true} if kieker lost records
+     */
+    public boolean hasDroppedRecords() {
+        return droppedRecords > 0;
+    }
+}
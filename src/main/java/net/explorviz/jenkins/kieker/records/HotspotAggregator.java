@@ -0,0 +1,224 @@
+package net.explorviz.jenkins.kieker.records;
+
+import kieker.common.record.IMonitoringRecord;
+import kieker.common.record.controlflow.OperationExecutionRecord;
+import kieker.common.record.flow.trace.operation.AfterOperationEvent;
+import kieker.common.record.flow.trace.operation.BeforeOperationEvent;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streaming aggregation of operation executions into per-operation call counts, total and self time and latency
+ * percentiles.
+ * <p>
+ * Supports both kinds of kieker trace records:
+ * <ul>
+ *     <li>Flow events ({@link BeforeOperationEvent} / {@link AfterOperationEvent}): executions are matched up using a
+ *     call stack per trace</li>
+ *     <li>{@link OperationExecutionRecord}s: these are written when an execution ends, i.e. callees before their
+ *     caller, so the callees' time is summed up per stack depth until the caller arrives</li>
+ * </ul>
+ * Memory use is bounded by the number of distinct operations (one fixed-size histogram each) and the number of traces
+ * open at the same time, which is limited to {@link #MAX_OPEN_TRACES}.
+ */
+public class HotspotAggregator {
+    public static final int MAX_REPORTED_OPERATIONS = 100;
+    /**
+     * Latency profiles are stored with the build for every operation, up to this many.
+     */
+    public static final int MAX_PROFILED_OPERATIONS = 2000;
+
+    static final int MAX_OPEN_TRACES = 65536;
+
+    private static final Comparator<OperationHotspot> BY_SELF_TIME =
+            Comparator.comparingLong(OperationHotspot::getSelfNanos).reversed();
+
+    private final Map<String, OperationStatistics> operations = new HashMap<>();
+
+    private final OpenTraces<Deque<Frame>> openFlowTraces = new OpenTraces<>();
+    private final OpenTraces<long[]> openExecutionTraces = new OpenTraces<>();
+
+    private long incompleteExecutions;
+
+    public void add(IMonitoringRecord record) {
+        if (record instanceof BeforeOperationEvent) {
+            BeforeOperationEvent event = (BeforeOperationEvent) record;
+            openFlowTraces.computeIfAbsent(event.getTraceId(), traceId -> new ArrayDeque<>())
+                    .push(new Frame(event.getOperationSignature(), event.getTimestamp()));
+        } else if (record instanceof AfterOperationEvent) {
+            // Includes AfterOperationFailedEvent
+            addFlowExecutionEnd((AfterOperationEvent) record);
+        } else if (record instanceof OperationExecutionRecord) {
+            addOperationExecution((OperationExecutionRecord) record);
+        }
+    }
+
+    private void addFlowExecutionEnd(AfterOperationEvent event) {
+        Deque<Frame> stack = openFlowTraces.get(event.getTraceId());
+        if (stack == null || stack.isEmpty()) {
+            incompleteExecutions++;
+            return;
+        }
+
+        Frame frame = stack.pop();
+        if (!frame.operationSignature.equals(event.getOperationSignature())) {
+            // Records of this trace are missing (e.g. dropped by a full writer queue), so its timings are unreliable
+            incompleteExecutions += stack.size() + 1;
+            openFlowTraces.remove(event.getTraceId());
+            return;
+        }
+
+        long duration = event.getTimestamp() - frame.start;
+        addExecution(frame.operationSignature, duration, duration - frame.calleeNanos);
+
+        if (stack.isEmpty()) {
+            openFlowTraces.remove(event.getTraceId());
+        } else {
+            stack.peek().calleeNanos += duration;
+        }
+    }
+
+    private void addOperationExecution(OperationExecutionRecord record) {
+        int depth = record.getEss();
+        if (depth < 0) {
+            incompleteExecutions++;
+            return;
+        }
+
+        // calleeNanos[d] holds the time of completed executions at depth d whose caller has not arrived yet
+        long[] calleeNanos = openExecutionTraces.get(record.getTraceId());
+        if (calleeNanos == null || calleeNanos.length < depth + 2) {
+            long[] grown = new long[Math.max(depth + 2, calleeNanos == null ? 8 : calleeNanos.length * 2)];
+            if (calleeNanos != null) {
+                System.arraycopy(calleeNanos, 0, grown, 0, calleeNanos.length);
+            }
+            calleeNanos = grown;
+            openExecutionTraces.put(record.getTraceId(), calleeNanos);
+        }
+
+        long duration = record.getTout() - record.getTin();
+        addExecution(record.getOperationSignature(), duration, duration - calleeNanos[depth + 1]);
+        calleeNanos[depth + 1] = 0;
+
+        if (depth == 0) {
+            openExecutionTraces.remove(record.getTraceId());
+        } else {
+            calleeNanos[depth] += duration;
+        }
+    }
+
+    private void addExecution(String operationSignature, long totalNanos, long selfNanos) {
+        operations.computeIfAbsent(operationSignature, signature -> new OperationStatistics())
+                .add(totalNanos, Math.max(0, selfNanos));
+    }
+
+    /**
+     * @return The {@link #MAX_REPORTED_OPERATIONS} operations with the highest self time. Executions of traces that
+     * are still open are counted as incomplete.
+     */
+    @Nonnull
+    public HotspotReport toReport() {
+        List<OperationHotspot> hotspots = new ArrayList<>(operations.size());
+        for (Map.Entry<String, OperationStatistics> entry : operations.entrySet()) {
+            hotspots.add(entry.getValue().toHotspot(entry.getKey()));
+        }
+        hotspots.sort(BY_SELF_TIME);
+
+        long open = 0;
+        for (Deque<Frame> stack : openFlowTraces.values()) {
+            open += stack.size();
+        }
+
+        return new HotspotReport(hotspots.subList(0, Math.min(MAX_REPORTED_OPERATIONS, hotspots.size())),
+                hotspots.size(), incompleteExecutions + openFlowTraces.dropped + openExecutionTraces.dropped + open);
+    }
+
+    /**
+     * @return Latency profiles of the {@link #MAX_PROFILED_OPERATIONS} operations with the highest total time, by
+     * operation signature
+     */
+    @Nonnull
+    public Map<String, LatencyProfile> toLatencyProfiles() {
+        List<Map.Entry<String, OperationStatistics>> entries = new ArrayList<>(operations.entrySet());
+        entries.sort(Comparator.comparingLong(
+                (Map.Entry<String, OperationStatistics> entry) -> entry.getValue().totalNanos).reversed());
+
+        Map<String, LatencyProfile> profiles = new HashMap<>();
+        for (Map.Entry<String, OperationStatistics> entry : entries.subList(0,
+                Math.min(MAX_PROFILED_OPERATIONS, entries.size()))) {
+            profiles.put(entry.getKey(), entry.getValue().toProfile());
+        }
+        return profiles;
+    }
+
+    private static final class Frame {
+        private final String operationSignature;
+        private final long start;
+        private long calleeNanos;
+
+        Frame(String operationSignature, long start) {
+            this.operationSignature = operationSignature;
+            this.start = start;
+        }
+    }
+
+    private static final class OperationStatistics {
+        private final LatencyHistogram histogram = new LatencyHistogram();
+        private long calls;
+        private long totalNanos;
+        private long selfNanos;
+        // Welford's running mean and sum of squared deviations of the logarithmic durations
+        private double logMean;
+        private double logSquaredDeviations;
+
+        void add(long total, long self) {
+            calls++;
+            totalNanos += total;
+            selfNanos += self;
+            histogram.record(total);
+
+            double logDuration = Math.log(Math.max(1, total));
+            double deviation = logDuration - logMean;
+            logMean += deviation / calls;
+            logSquaredDeviations += deviation * (logDuration - logMean);
+        }
+
+        LatencyProfile toProfile() {
+            return new LatencyProfile(calls, logMean, calls < 2 ? 0 : logSquaredDeviations / (calls - 1),
+                    histogram.getValueAtQuantile(0.5), histogram.getValueAtQuantile(0.9));
+        }
+
+        OperationHotspot toHotspot(String operationSignature) {
+            return new OperationHotspot(operationSignature, calls, totalNanos, selfNanos,
+                    histogram.getValueAtQuantile(0.5), histogram.getValueAtQuantile(0.9),
+                    histogram.getValueAtQuantile(0.99), histogram.getMax());
+        }
+    }
+
+    /**
+     * Drops the least recently started trace once more than {@link #MAX_OPEN_TRACES} are open, e.g. because their
+     * last records were never written.
+     */
+    private static final class OpenTraces<V> extends LinkedHashMap<Long, V> {
+        private static final long serialVersionUID = 1L;
+
+        private long dropped;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, V> eldest) {
+            if (size() > MAX_OPEN_TRACES) {
+                dropped++;
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package net.explorviz.jenkins.kieker.records;
+
+import javax.annotation.Nonnull;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The operations of an instrumentation that took the most time, ordered by self time (descending).
+ * <p>
+ * Only the top {@link HotspotAggregator#MAX_REPORTED_OPERATIONS} operations are kept, as the report is stored with the
+ * build.
+ */
+public class HotspotReport implements Serializable {
+    private static final long serialVersionUID = -1805724407926415833L;
+
+    private final List<OperationHotspot> hotspots;
+    private final int operationCount;
+    private final long incompleteExecutions;
+
+    /**
+     * @param hotspots             The hotspots to keep, ordered by self time (descending)
+     * @param operationCount       Number of operations that had at least one complete execution
+     * @param incompleteExecutions Number of executions whose start or end was missing from the records
+     */
+    public HotspotReport(@Nonnull List<OperationHotspot> hotspots, int operationCount, long incompleteExecutions) {
+        this.hotspots = new ArrayList<>(hotspots);
+        this.operationCount = operationCount;
+        this.incompleteExecutions = incompleteExecutions;
+    }
+
+    @Nonnull
+    public List<OperationHotspot> getHotspots() {
+        return Collections.unmodifiableList(hotspots);
+    }
+
+    public int getOperationCount() {
+        return operationCount;
+    }
+
+    /**
+     * @return {@code true} if operations were left out of {@link #getHotspots()}
+     */
+    public boolean isTruncated() {
+        return hotspots.size() < operationCount;
+    }
+
+    public long getIncompleteExecutions() {
+        return incompleteExecutions;
+    }
+}
@@ -0,0 +1,61 @@
+package net.explorviz.jenkins.kieker.records;
+
+import java.io.Serializable;
+
+/**
+ * Compact latency distribution of a single operation, computed by {@link HotspotAggregator}, to compare operations
+ * across builds.
+ * <p>
+ * Operation latencies are skewed to the right, so besides percentiles the profile holds the mean and variance of the
+ * logarithm of the durations. Their difference between two builds is approximately normally distributed, which
+ * allows significance tests without storing every duration.
+ */
+public class LatencyProfile implements Serializable {
+    private static final long serialVersionUID = -6390254728615032147L;
+
+    private final long calls;
+    private final double logMean;
+    private final double logVariance;
+    private final long p50Nanos;
+    private final long p90Nanos;
+
+    /**
+     * @param calls       Number of complete executions
+     * @param logMean     Mean of the natural logarithm of the durations in nanoseconds
+     * @param logVariance Sample variance of the natural logarithm of the durations in nanoseconds
+     */
+    public LatencyProfile(long calls, double logMean, double logVariance, long p50Nanos, long p90Nanos) {
+        this.calls = calls;
+        this.logMean = logMean;
+        this.logVariance = logVariance;
+        this.p50Nanos = p50Nanos;
+        this.p90Nanos = p90Nanos;
+    }
+
+    public long getCalls() {
+        return calls;
+    }
+
+    public double getLogMean() {
+        return logMean;
+    }
+
+    public double getLogVariance() {
+        return logVariance;
+    }
+
+    /**
+     * @return Geometric mean of the durations, in nanoseconds
+     */
+    public double getGeometricMeanNanos() {
+        return Math.exp(logMean);
+    }
+
+    public long getP50Nanos() {
+        return p50Nanos;
+    }
+
+    public long getP90Nanos() {
+        return p90Nanos;
+    }
+}
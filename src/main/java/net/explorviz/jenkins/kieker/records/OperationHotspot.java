@@ -0,0 +1,100 @@
+package net.explorviz.jenkins.kieker.records;
+
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Aggregated timing of a single operation, computed by {@link HotspotAggregator}. All durations are in nanoseconds.
+ */
+public class OperationHotspot implements Serializable {
+    private static final long serialVersionUID = 6002474853318907134L;
+
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final String operationSignature;
+    private final long calls;
+    private final long totalNanos;
+    private final long selfNanos;
+    private final long p50Nanos;
+    private final long p90Nanos;
+    private final long p99Nanos;
+    private final long maxNanos;
+
+    public OperationHotspot(String operationSignature, long calls, long totalNanos, long selfNanos, long p50Nanos,
+                            long p90Nanos, long p99Nanos, long maxNanos) {
+        this.operationSignature = operationSignature;
+        this.calls = calls;
+        this.totalNanos = totalNanos;
+        this.selfNanos = selfNanos;
+        this.p50Nanos = p50Nanos;
+        this.p90Nanos = p90Nanos;
+        this.p99Nanos = p99Nanos;
+        this.maxNanos = maxNanos;
+    }
+
+    public String getOperationSignature() {
+        return operationSignature;
+    }
+
+    public long getCalls() {
+        return calls;
+    }
+
+    /**
+     * @return Time spent in this operation, including the operations it called
+     */
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    /**
+     * @return Time spent in this operation, excluding the monitored operations it called
+     */
+    public long getSelfNanos() {
+        return selfNanos;
+    }
+
+    public long getP50Nanos() {
+        return p50Nanos;
+    }
+
+    public long getP90Nanos() {
+        return p90Nanos;
+    }
+
+    public long getP99Nanos() {
+        return p99Nanos;
+    }
+
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    /*
+     * Milliseconds, for display
+     */
+
+    public double getTotalMillis() {
+        return totalNanos / NANOS_PER_MILLI;
+    }
+
+    public double getSelfMillis() {
+        return selfNanos / NANOS_PER_MILLI;
+    }
+
+    public double getP50Millis() {
+        return p50Nanos / NANOS_PER_MILLI;
+    }
+
+    public double getP90Millis() {
+        return p90Nanos / NANOS_PER_MILLI;
+    }
+
+    public double getP99Millis() {
+        return p99Nanos / NANOS_PER_MILLI;
+    }
+
+    public double getMaxMillis() {
+        return maxNanos / NANOS_PER_MILLI;
+    }
+}
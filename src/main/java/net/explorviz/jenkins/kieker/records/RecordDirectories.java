@@ -0,0 +1,54 @@
+package net.explorviz.jenkins.kieker.records;
+
+import kieker.common.util.filesystem.FSUtil;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Locates kieker record folders, i.e. directories containing a map file, on the local filesystem.
+ */
+public final class RecordDirectories {
+    private RecordDirectories() {
+    }
+
+    /**
+     * @return {@code true} if the given directory directly contains a kieker map file
+     */
+    public static boolean isRecordDirectory(@Nonnull File directory) {
+        File[] mapFiles = directory.listFiles((dir, name) -> name.endsWith(FSUtil.MAP_FILE_EXTENSION));
+        return mapFiles != null && mapFiles.length > 0;
+    }
+
+    /**
+     * Recursively find all record folders below (and including) the given directories.
+     *
+     * @return The record folders found, sorted by path. As kieker puts the creation time into folder names, this
+     * roughly orders folders of the same application by time.
+     */
+    @Nonnull
+    public static List<File> find(@Nonnull File... directories) {
+        List<File> found = new ArrayList<>();
+        for (File directory : directories) {
+            collect(directory, found);
+        }
+        found.sort(null);
+        return found;
+    }
+
+    private static void collect(File directory, List<File> found) {
+        if (isRecordDirectory(directory)) {
+            found.add(directory);
+            return;
+        }
+
+        File[] children = directory.listFiles(File::isDirectory);
+        if (children != null) {
+            for (File child : children) {
+                collect(child, found);
+            }
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package net.explorviz.jenkins.kieker.records;
+
+import hudson.FilePath;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+import kieker.common.record.flow.trace.operation.BeforeOperationEvent;
+import kieker.common.util.filesystem.FSUtil;
+import net.explorviz.jenkins.kieker.collector.RecordCollector;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+
+/**
+ * Measures how far kieker got writing the records of a running application, by looking at the record folders below
+ * its working directory on the node that holds them.
+ * <p>
+ * A sample only lists the folders and reads the sizes of their log files, so it is cheap enough to be taken every few
+ * seconds without disturbing the monitored application. The number of records is exact when they are streamed to the
+ * {@link RecordCollector} and estimated from the log sizes otherwise: text logs by the average line length of the
+ * beginning of a log, binary logs by the frame size of a {@link BeforeOperationEvent}, the most frequent record of
+ * the default instrumentation. Compressed logs give no clue about the number of records they hold.
+ * <p>
+ * Use {@link #sampleOn(FilePath)} and compare consecutive samples to get the rate at which records are written.
+ */
+public final class RecordDirectoryMeter {
+    /**
+     * Size of a binary record frame, i.e. class name id, logging timestamp and record fields.
+     */
+    private static final int BINARY_RECORD_BYTES = Integer.BYTES + Long.BYTES + BeforeOperationEvent.SIZE;
+
+    private static final int TEXT_CALIBRATION_BYTES = 64 * 1024;
+
+    private RecordDirectoryMeter() {
+    }
+
+    /**
+     * Sample the record folders below the given working directory, on the node that holds it.
+     */
+    @Nonnull
+    public static Sample sampleOn(@Nonnull FilePath workingDirectory) throws IOException, InterruptedException {
+        return workingDirectory.act(new SampleCallable());
+    }
+
+    @Nonnull
+    static Sample sample(@Nonnull File directory) throws IOException {
+        int files = 0;
+        long bytes = 0;
+        long textBytes = 0;
+        long binaryBytes = 0;
+        boolean compressed = false;
+        File textLog = null;
+
+        for (File folder : RecordDirectories.find(directory)) {
+            File[] logs = folder.listFiles(File::isFile);
+            if (logs == null) {
+                continue;
+            }
+            for (File log : logs) {
+                String name = log.getName();
+                if (name.endsWith(FSUtil.MAP_FILE_EXTENSION)) {
+                    continue;
+                }
+
+                long length = log.length();
+                files++;
+                bytes += length;
+                if (name.endsWith(FSUtil.DAT_FILE_EXTENSION)) {
+                    textBytes += length;
+                    if (textLog == null || length > textLog.length()) {
+                        textLog = log;
+                    }
+                } else if (name.endsWith(FSUtil.BINARY_FILE_EXTENSION)) {
+                    binaryBytes += length;
+                } else {
+                    compressed = true;
+                }
+            }
+        }
+
+        long records = RecordCollector.getRecordCount(directory);
+        if (records < 0 && !compressed) {
+            records = binaryBytes / BINARY_RECORD_BYTES;
+            if (textLog != null) {
+                records += textBytes / averageLineLength(textLog);
+            }
+        }
+        return new Sample(files, bytes, records);
+    }
+
+    private static long averageLineLength(File log) throws IOException {
+        byte[] buffer = new byte[TEXT_CALIBRATION_BYTES];
+        int length = 0;
+        try (InputStream in = Files.newInputStream(log.toPath())) {
+            int read;
+            while (length < buffer.length && (read = in.read(buffer, length, buffer.length - length)) > 0) {
+                length += read;
+            }
+        }
+
+        int lines = 0;
+        for (int i = 0; i < length; i++) {
+            if (buffer[i] == '\n') {
+                lines++;
+            }
+        }
+        return lines == 0 ? Math.max(length, 1) : length / lines;
+    }
+
+    /**
+     * Size of the record folders of an application at one point in time.
+     */
+    public static final class Sample implements Serializable {
+        private static final long serialVersionUID = -2207482290165126584L;
+
+        private final int files;
+        private final long bytes;
+        private final long records;
+
+        Sample(int files, long bytes, long records) {
+            this.files = files;
+            this.bytes = bytes;
+            this.records = records;
+        }
+
+        /**
+         * @return Number of log files, not counting map files
+         */
+        public int getFiles() {
+            return files;
+        }
+
+        /**
+         * @return Combined size of the log files in bytes
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * @return (Estimated) number of records written, or {@code -1} if it can't be estimated
+         */
+        public long getRecords() {
+            return records;
+        }
+    }
+
+    private static final class SampleCallable extends MasterToSlaveFileCallable<Sample> {
+        private static final long serialVersionUID = 6012785583322051733L;
+
+        @Override
+        public Sample invoke(File directory, VirtualChannel channel) throws IOException {
+            return sample(directory);
+        }
+    }
+}
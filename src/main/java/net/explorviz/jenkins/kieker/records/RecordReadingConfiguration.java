@@ -0,0 +1,24 @@
+package net.explorviz.jenkins.kieker.records;
+
+import kieker.analysis.source.file.DirectoryReaderStage;
+import kieker.analysis.source.file.DirectoryScannerStage;
+import kieker.common.record.IMonitoringRecord;
+import teetime.framework.AbstractConsumerStage;
+import teetime.framework.Configuration;
+
+import java.io.File;
+
+/**
+ * TeeTime stage configuration that reads all records from the given kieker record folders (text or binary, possibly
+ * compressed) and passes them to an arbitrary consumer stage.
+ */
+public class RecordReadingConfiguration extends Configuration {
+    public RecordReadingConfiguration(File[] directories, AbstractConsumerStage<IMonitoringRecord> consumer) {
+        DirectoryScannerStage directoryScannerStage = new DirectoryScannerStage(directories);
+        DirectoryReaderStage directoryReaderStage =
+                new DirectoryReaderStage(new kieker.common.configuration.Configuration());
+
+        this.connectPorts(directoryScannerStage.getOutputPort(), directoryReaderStage.getInputPort());
+        this.connectPorts(directoryReaderStage.getOutputPort(), consumer.getInputPort());
+    }
+}
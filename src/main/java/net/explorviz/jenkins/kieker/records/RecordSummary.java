@@ -0,0 +1,180 @@
+package net.explorviz.jenkins.kieker.records;
+
+import hudson.Util;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Statistics about the kieker records of an instrumentation, computed by {@link RecordSummaryCallable} on the node
+ * that holds the records.
+ * <p>
+ * Summaries are stored with the build, so everything shown about an instrumentation must be available from here
+ * without accessing the workspace.
+ */
+@ExportedBean
+public class RecordSummary implements Serializable {
+    private static final long serialVersionUID = 4215593781043925066L;
+
+    /**
+     * Bytes that precede each record in kieker's binary format: the class id ({@code int}) and the logging timestamp
+     * ({@code long}).
+     */
+    static final int BINARY_RECORD_HEADER_SIZE = Integer.BYTES + Long.BYTES;
+
+    private final String[] recordDirectories;
+    private final long recordCount;
+    private final long traceCount;
+    private final int operationCount;
+    private final long firstTimestamp;
+    private final long lastTimestamp;
+    private final long diskBytes;
+    private final long logBytes;
+    private final long binaryBytes;
+    private final HotspotReport hotspots;
+    private final HashMap<String, LatencyProfile> latencyProfiles;
+
+    /**
+     * @param recordDirectories Paths of the record folders read, relative to the directory that was searched
+     * @param recordCount       Number of records read
+     * @param traceCount        Number of traces started
+     * @param operationCount    Number of distinct operation signatures
+     * @param firstTimestamp    Logging timestamp of the oldest record, in nanoseconds
+     * @param lastTimestamp     Logging timestamp of the newest record, in nanoseconds
+     * @param diskBytes         Size of all files in the record folders, in bytes
+     * @param logBytes          Size of all log files on disk (excluding the map file), in bytes
+     * @param binaryBytes       Size the records would have in kieker's uncompressed binary format, in bytes
+     * @param hotspots          The operations that took the most time
+     * @param latencyProfiles   Latency profiles of the operations, by operation signature
+     */
+    public RecordSummary(@Nonnull String[] recordDirectories, long recordCount, long traceCount, int operationCount,
+                         long firstTimestamp, long lastTimestamp, long diskBytes, long logBytes, long binaryBytes,
+                         @Nonnull HotspotReport hotspots, @Nonnull Map<String, LatencyProfile> latencyProfiles) {
+        this.recordDirectories = recordDirectories.clone();
+        this.recordCount = recordCount;
+        this.traceCount = traceCount;
+        this.operationCount = operationCount;
+        this.firstTimestamp = firstTimestamp;
+        this.lastTimestamp = lastTimestamp;
+        this.diskBytes = diskBytes;
+        this.logBytes = logBytes;
+        this.binaryBytes = binaryBytes;
+        this.hotspots = hotspots;
+        this.latencyProfiles = new HashMap<>(latencyProfiles);
+    }
+
+    /**
+     * @return Paths of the record folders, relative to the directory that was searched (usually the instrumentation's
+     * working directory)
+     */
+    @Nonnull
+    public String[] getRecordDirectories() {
+        return recordDirectories.clone();
+    }
+
+    @Exported
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    public boolean isEmpty() {
+        return recordCount == 0;
+    }
+
+    /**
+     * @return Number of traces, counted by their {@code TraceMetadata} records (or root executions for
+     * {@code OperationExecutionRecord}s)
+     */
+    @Exported
+    public long getTraceCount() {
+        return traceCount;
+    }
+
+    /**
+     * @return Number of distinct operation signatures
+     */
+    @Exported
+    public int getOperationCount() {
+        return operationCount;
+    }
+
+    @Exported
+    public long getFirstTimestamp() {
+        return firstTimestamp;
+    }
+
+    @Exported
+    public long getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    /**
+     * @return Time between the oldest and the newest record, in milliseconds
+     */
+    @Exported
+    public long getTimeSpanMillis() {
+        return isEmpty() ? 0 : TimeUnit.NANOSECONDS.toMillis(lastTimestamp - firstTimestamp);
+    }
+
+    /**
+     * @return {@link #getTimeSpanMillis()} as human readable string
+     */
+    public String getTimeSpanString() {
+        return Util.getTimeSpanString(getTimeSpanMillis());
+    }
+
+    @Exported
+    public long getDiskBytes() {
+        return diskBytes;
+    }
+
+    @Exported
+    public long getLogBytes() {
+        return logBytes;
+    }
+
+    @Exported
+    public long getBinaryBytes() {
+        return binaryBytes;
+    }
+
+    /**
+     * @return The operations that took the most time
+     */
+    @Nonnull
+    public HotspotReport getHotspots() {
+        return hotspots;
+    }
+
+    /**
+     * @return Latency profiles by operation signature, limited to
+     * {@link HotspotAggregator#MAX_PROFILED_OPERATIONS} operations. {@code null} for summaries computed by older
+     * versions of this plugin.
+     */
+    @CheckForNull
+    public Map<String, LatencyProfile> getLatencyProfiles() {
+        return latencyProfiles == null ? null : Collections.unmodifiableMap(latencyProfiles);
+    }
+
+    /**
+     * @return Average bytes on disk per record, or {@code 0} if there are no records
+     */
+    public double getBytesPerRecord() {
+        return recordCount == 0 ? 0 : (double) logBytes / recordCount;
+    }
+
+    /**
+     * @return The ratio of uncompressed binary size to actual size on disk. Values above {@code 1} mean the records
+     * take less space than plain binary records would, or {@code 0} if nothing was written.
+     */
+    public double getCompressionRatio() {
+        return logBytes == 0 ? 0 : (double) binaryBytes / logBytes;
+    }
+}
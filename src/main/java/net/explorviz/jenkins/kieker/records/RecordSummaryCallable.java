@@ -0,0 +1,93 @@
+package net.explorviz.jenkins.kieker.records;
+
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+import kieker.common.util.filesystem.FSUtil;
+import net.explorviz.jenkins.kieker.store.TraceStore;
+import net.explorviz.jenkins.kieker.store.TraceStoreWriter;
+import teetime.framework.Execution;
+
+import javax.annotation.CheckForNull;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Finds, validates and reads all kieker record folders below a directory on the node that holds them and returns a
+ * {@link RecordSummary}, all in a single remoting call. Only the summary is sent over the remoting channel.
+ * <p>
+ * Record folders that contain a map file but no log files (e.g. because the application was killed before kieker
+ * wrote its first record) are skipped. The callable returns {@code null} if no valid record folder was found.
+ * <p>
+ * If a store name is given, the same pass writes a {@link TraceStore} of the records into the directory.
+ */
+public class RecordSummaryCallable extends MasterToSlaveFileCallable<RecordSummary> {
+    private static final long serialVersionUID = -2201541369581402788L;
+
+    @CheckForNull
+    private final String traceStoreName;
+
+    public RecordSummaryCallable() {
+        this(null);
+    }
+
+    /**
+     * @param traceStoreName File name of the {@link TraceStore} to write into the directory, or {@code null} to not
+     *                       write one. Not written if the records can't be read completely.
+     */
+    public RecordSummaryCallable(@CheckForNull String traceStoreName) {
+        this.traceStoreName = traceStoreName;
+    }
+
+    @Override
+    public RecordSummary invoke(File directory, VirtualChannel channel) throws IOException {
+        List<File> recordDirectories = new ArrayList<>();
+        List<String> relativePaths = new ArrayList<>();
+        long diskBytes = 0;
+        long logBytes = 0;
+
+        for (File recordDirectory : RecordDirectories.find(directory)) {
+            File[] files = recordDirectory.listFiles(File::isFile);
+            if (files == null) {
+                throw new IOException("Record directory '" + recordDirectory + "' can not be listed");
+            }
+
+            long directoryLogBytes = 0;
+            for (File file : files) {
+                diskBytes += file.length();
+                if (!file.getName().endsWith(FSUtil.MAP_FILE_EXTENSION)) {
+                    directoryLogBytes += file.length();
+                }
+            }
+
+            if (directoryLogBytes > 0) {
+                recordDirectories.add(recordDirectory);
+                relativePaths.add(directory.toPath().relativize(recordDirectory.toPath()).toString());
+                logBytes += directoryLogBytes;
+            }
+        }
+
+        if (recordDirectories.isEmpty()) {
+            return null;
+        }
+
+        File traceStore = traceStoreName == null ? null : new File(directory, traceStoreName);
+        TraceStoreWriter traceStoreWriter = traceStore == null ? null : new TraceStoreWriter(traceStore);
+        RecordSummaryStage summaryStage = new RecordSummaryStage(traceStoreWriter);
+        try {
+            new Execution<>(new RecordReadingConfiguration(recordDirectories.toArray(new File[0]), summaryStage))
+                    .executeBlocking();
+        } finally {
+            if (traceStoreWriter != null) {
+                traceStoreWriter.close();
+                if (!summaryStage.isTraceStoreComplete()) {
+                    Files.deleteIfExists(traceStore.toPath());
+                }
+            }
+        }
+
+        return summaryStage.toSummary(relativePaths.toArray(new String[0]), diskBytes, logBytes);
+    }
+}
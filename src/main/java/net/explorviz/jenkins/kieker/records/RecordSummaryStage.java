@@ -0,0 +1,102 @@
+package net.explorviz.jenkins.kieker.records;
+
+import kieker.common.record.IMonitoringRecord;
+import kieker.common.record.controlflow.OperationExecutionRecord;
+import kieker.common.record.flow.IOperationSignature;
+import kieker.common.record.flow.trace.TraceMetadata;
+import net.explorviz.jenkins.kieker.store.TraceStoreWriter;
+import teetime.framework.AbstractConsumerStage;
+
+import javax.annotation.CheckForNull;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * TeeTime stage that consumes records and aggregates them into a {@link RecordSummary}.
+ * <p>
+ * Apart from the set of operation signatures, whose size is bounded by the monitored code rather than the number of
+ * records, this stage uses constant memory. Operation executions are additionally passed to a
+ * {@link HotspotAggregator} and, if given, a {@link TraceStoreWriter}.
+ */
+public class RecordSummaryStage extends AbstractConsumerStage<IMonitoringRecord> {
+    private static final Logger LOGGER = Logger.getLogger(RecordSummaryStage.class.getName());
+
+    private final Set<String> operationSignatures = new HashSet<>();
+    private final HotspotAggregator hotspotAggregator = new HotspotAggregator();
+    @CheckForNull
+    private TraceStoreWriter traceStoreWriter;
+
+    private long recordCount;
+    private long traceCount;
+    private long firstTimestamp = Long.MAX_VALUE;
+    private long lastTimestamp = Long.MIN_VALUE;
+    private long binaryBytes;
+
+    public RecordSummaryStage() {
+        this(null);
+    }
+
+    /**
+     * @param traceStoreWriter Receives all records as well, or {@code null}. Writing stops at the first error, the
+     *                         caller has to close the writer.
+     */
+    public RecordSummaryStage(@CheckForNull TraceStoreWriter traceStoreWriter) {
+        this.traceStoreWriter = traceStoreWriter;
+    }
+
+    @Override
+    protected void execute(IMonitoringRecord record) {
+        recordCount++;
+        binaryBytes += RecordSummary.BINARY_RECORD_HEADER_SIZE + record.getSize();
+
+        long timestamp = record.getLoggingTimestamp();
+        firstTimestamp = Math.min(firstTimestamp, timestamp);
+        lastTimestamp = Math.max(lastTimestamp, timestamp);
+
+        if (record instanceof TraceMetadata) {
+            traceCount++;
+        } else if (record instanceof IOperationSignature) {
+            operationSignatures.add(((IOperationSignature) record).getOperationSignature());
+        } else if (record instanceof OperationExecutionRecord) {
+            OperationExecutionRecord execution = (OperationExecutionRecord) record;
+            operationSignatures.add(execution.getOperationSignature());
+            if (execution.getEoi() == 0) {
+                traceCount++;
+            }
+        }
+
+        hotspotAggregator.add(record);
+
+        if (traceStoreWriter != null) {
+            try {
+                traceStoreWriter.add(record);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to write the trace store, continuing without it", e);
+                traceStoreWriter = null;
+            }
+        }
+    }
+
+    /**
+     * @return {@code false} if no trace store is written or writing it failed
+     */
+    public boolean isTraceStoreComplete() {
+        return traceStoreWriter != null;
+    }
+
+    /**
+     * @param recordDirectories Paths of the record folders the records were read from
+     * @param diskBytes         Size of all files in these folders
+     * @param logBytes          Size of the log files in these folders
+     * @return The summary of all records consumed so far
+     */
+    public RecordSummary toSummary(String[] recordDirectories, long diskBytes, long logBytes) {
+        boolean empty = recordCount == 0;
+        return new RecordSummary(recordDirectories, recordCount, traceCount, operationSignatures.size(),
+                empty ? 0 : firstTimestamp, empty ? 0 : lastTimestamp, diskBytes, logBytes, binaryBytes,
+                hotspotAggregator.toReport(), hotspotAggregator.toLatencyProfiles());
+    }
+}
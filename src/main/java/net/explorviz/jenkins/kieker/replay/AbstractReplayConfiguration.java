@@ -0,0 +1,52 @@
+package net.explorviz.jenkins.kieker.replay;
+
+import kieker.analysis.sink.DataSinkStage;
+import kieker.common.record.IMonitoringRecord;
+import teetime.framework.Configuration;
+import teetime.framework.OutputPort;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Base for replay configurations: connects a source of records to a {@link PacingStage} followed by kieker's
+ * {@link DataSinkStage}. Configurations that don't pass record objects, like {@link FrameForwardingConfiguration},
+ * report their own {@link #getStatistics() statistics} instead.
+ */
+public abstract class AbstractReplayConfiguration extends Configuration {
+    private final PacingStage pacingStage;
+
+    protected AbstractReplayConfiguration(ReplaySpeed speed) {
+        super(/* TODO: Add a AbstractExceptionListenerFactory */);
+        // Until the recording's metadata record tells the unit of its timestamps
+        this.pacingStage = new PacingStage(speed, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Connect the given record source to the pacing stage and a sink configured via the given kieker configuration
+     * (in most cases you will want to write them to another sink, e.g. TCP).
+     */
+    protected void connectToSink(OutputPort<IMonitoringRecord> source,
+                                 kieker.common.configuration.Configuration kiekerConfig) {
+        DataSinkStage dataSinkStage = new DataSinkStage(kiekerConfig);
+
+        this.connectPorts(source, pacingStage.getInputPort());
+        this.connectPorts(pacingStage.getOutputPort(), dataSinkStage.getInputPort());
+    }
+
+    /**
+     * @return Records replayed and the time it took. Only accurate once the replay has finished.
+     */
+    public ReplayStatistics getStatistics() {
+        return pacingStage.getStatistics().withFailures(getReadFailures());
+    }
+
+    /**
+     * @return Sources the reader stage could not read completely, with the reason. Empty for readers that don't
+     * report them.
+     */
+    protected List<String> getReadFailures() {
+        return Collections.emptyList();
+    }
+}
@@ -0,0 +1,32 @@
+package net.explorviz.jenkins.kieker.replay;
+
+import net.explorviz.jenkins.kieker.archive.RecordArchive;
+import net.explorviz.jenkins.kieker.archive.RecordArchiveReaderStage;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * TeeTime stage configuration that replays the records of a {@link RecordArchive}:
+ * <ul>
+ *     <li>Read the records from the archive front to back, without extracting it</li>
+ *     <li>Pace them according to the given {@link ReplaySpeed}</li>
+ *     <li>Process them using Kieker, configured via the given kieker configuration</li>
+ * </ul>
+ */
+public class ArchiveReplayConfiguration extends AbstractReplayConfiguration {
+    private final RecordArchiveReaderStage readerStage;
+
+    public ArchiveReplayConfiguration(File archive, ReplaySpeed speed,
+                                      kieker.common.configuration.Configuration kiekerConfig) {
+        super(speed);
+
+        readerStage = new RecordArchiveReaderStage(archive, kiekerConfig);
+        this.connectToSink(readerStage.getOutputPort(), kiekerConfig);
+    }
+
+    @Override
+    protected List<String> getReadFailures() {
+        return readerStage.getFailures();
+    }
+}
@@ -0,0 +1,38 @@
+package net.explorviz.jenkins.kieker.replay;
+
+import kieker.monitoring.writer.tcp.SingleSocketTcpWriter;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TeeTime stage configuration that forwards binary record folders to a TCP endpoint without deserializing them:
+ * <ul>
+ *     <li>Recursively scan the given directories for kieker record folders</li>
+ *     <li>Memory-map their log files and convert the records to kieker's TCP wire format, paced according to the
+ *         given {@link ReplaySpeed}, see {@link MappedFrameReaderStage}</li>
+ *     <li>Send them to the host and port of the given {@link SingleSocketTcpWriter} configuration</li>
+ * </ul>
+ * The result on the wire is the same as with {@link ReplayConfiguration} and a {@link SingleSocketTcpWriter} sink.
+ */
+public class FrameForwardingConfiguration extends AbstractReplayConfiguration {
+    private final MappedFrameReaderStage readerStage;
+
+    public FrameForwardingConfiguration(File[] directories, ReplaySpeed speed,
+                                        kieker.common.configuration.Configuration kiekerConfig) {
+        super(speed);
+
+        // Until the recording's metadata record tells the unit of its timestamps, like the record pipeline
+        readerStage = new MappedFrameReaderStage(directories, speed, TimeUnit.NANOSECONDS);
+        FrameSenderStage senderStage = new FrameSenderStage(
+                kiekerConfig.getStringProperty(SingleSocketTcpWriter.CONFIG_HOSTNAME),
+                kiekerConfig.getIntProperty(SingleSocketTcpWriter.CONFIG_PORT));
+
+        this.connectPorts(readerStage.getOutputPort(), senderStage.getInputPort());
+    }
+
+    @Override
+    public ReplayStatistics getStatistics() {
+        return readerStage.getStatistics();
+    }
+}
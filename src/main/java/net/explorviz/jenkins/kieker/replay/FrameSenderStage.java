@@ -0,0 +1,55 @@
+package net.explorviz.jenkins.kieker.replay;
+
+import teetime.framework.AbstractConsumerStage;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * TeeTime stage that writes buffers of already serialized records, e.g. from {@link MappedFrameReaderStage}, to a TCP
+ * endpoint such as ExplorViz. The connection is opened with the first buffer and closed when the stage terminates.
+ */
+public class FrameSenderStage extends AbstractConsumerStage<ByteBuffer> {
+    private static final Logger LOGGER = Logger.getLogger(FrameSenderStage.class.getName());
+
+    private static final int CONNECT_TIMEOUT_MILLIS = (int) TimeUnit.SECONDS.toMillis(10);
+
+    private final String hostname;
+    private final int port;
+
+    private SocketChannel channel;
+
+    public FrameSenderStage(String hostname, int port) {
+        this.hostname = hostname;
+        this.port = port;
+    }
+
+    @Override
+    protected void execute(ByteBuffer frames) throws IOException {
+        if (channel == null) {
+            channel = SocketChannel.open();
+            channel.socket().connect(new InetSocketAddress(hostname, port), CONNECT_TIMEOUT_MILLIS);
+        }
+        while (frames.hasRemaining()) {
+            channel.write(frames);
+        }
+    }
+
+    @Override
+    public void onTerminating() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Failed to close the connection to " + hostname + ":" + port, e);
+            }
+            channel = null;
+        }
+        super.onTerminating();
+    }
+}
@@ -0,0 +1,406 @@
+package net.explorviz.jenkins.kieker.replay;
+
+import kieker.common.record.IMonitoringRecord;
+import kieker.common.record.misc.KiekerMetadataRecord;
+import kieker.common.util.filesystem.FSUtil;
+import net.explorviz.jenkins.kieker.records.RecordDirectories;
+import teetime.framework.AbstractProducerStage;
+
+import javax.annotation.CheckForNull;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * TeeTime producer stage that turns kieker binary record folders into kieker's TCP wire format without deserializing
+ * a single record.
+ * <p>
+ * kieker's binary file writer and its TCP writer serialize records identically, except that strings are ids into a
+ * registry which the file writer keeps in the folder's map file while the TCP writer sends new entries inline. This
+ * stage memory-maps the log files, copies each record into a batch buffer with one bulk copy and only rewrites its
+ * {@link RecordFrameLayout#getStringOffsets() registry ids} to ids of a registry kept for the connection. Registry
+ * entries are put into the batch right before the first record using them, like the TCP writer does. No objects are
+ * created per record.
+ * <p>
+ * Folders are read one after another. Records are paced according to their logging timestamps like
+ * {@link PacingStage} does, in the unit given by the {@link KiekerMetadataRecord} of the recording.
+ * <p>
+ * Only uncompressed binary folders whose record types all have a fixed layout can be forwarded, see
+ * {@link #canForward(List)}. The emitted batch buffer is reused, so this stage must be connected to a consumer
+ * running on the same thread, which is done by TeeTime for consumers that are not declared active.
+ */
+public class MappedFrameReaderStage extends AbstractProducerStage<ByteBuffer> {
+    private static final Logger LOGGER = Logger.getLogger(MappedFrameReaderStage.class.getName());
+
+    private static final int BATCH_SIZE = 65536;
+    private static final long MIN_SLEEP_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * Marks a registry entry in the TCP wire format, in place of a class name id.
+     */
+    private static final int REGISTRY_ENTRY = -1;
+
+    private static final String TIME_UNIT_VALUE = "timeUnit";
+
+    private final File[] directories;
+    private final ReplaySpeed speed;
+    private TimeUnit timestampUnit;
+
+    private final Map<String, RecordFrameLayout> layouts = new HashMap<>();
+    private final Map<String, Integer> wireIds = new HashMap<>();
+    private final List<String> failures = new CopyOnWriteArrayList<>();
+    private ByteBuffer batch = ByteBuffer.allocateDirect(BATCH_SIZE);
+
+    private long records;
+    private long bytes;
+    private long firstTimestamp;
+    private long startNanos;
+    private volatile long lastNanos;
+
+    /**
+     * @param directories Directories to search for record folders, recursively. Check them with
+     *                    {@link #canForward(List)} first.
+     * @param timestampUnit Unit of the records' logging timestamps until a {@link KiekerMetadataRecord} tells
+     *                      otherwise, see {@link PacingStage#PacingStage(ReplaySpeed, TimeUnit)}
+     */
+    public MappedFrameReaderStage(File[] directories, ReplaySpeed speed, TimeUnit timestampUnit) {
+        this.directories = directories.clone();
+        this.speed = speed;
+        this.timestampUnit = timestampUnit;
+    }
+
+    /**
+     * @return {@code true} if all given record folders only contain uncompressed binary log files and all record
+     * types in their map files have a fixed layout
+     */
+    public static boolean canForward(List<File> recordDirectories) {
+        if (recordDirectories.isEmpty()) {
+            return false;
+        }
+
+        Map<String, Boolean> checked = new HashMap<>();
+        for (File directory : recordDirectories) {
+            File[] files = directory.listFiles(File::isFile);
+            File mapFile = findMapFile(directory);
+            if (files == null || mapFile == null) {
+                return false;
+            }
+            for (File file : files) {
+                String name = file.getName();
+                if (!name.endsWith(FSUtil.MAP_FILE_EXTENSION) && !name.endsWith(FSUtil.BINARY_FILE_EXTENSION)) {
+                    // Text or compressed logs
+                    return false;
+                }
+            }
+
+            String[] strings;
+            try {
+                strings = readMapFile(mapFile);
+            } catch (IOException | IllegalArgumentException e) {
+                LOGGER.log(Level.FINE, "Cannot read map file " + mapFile, e);
+                return false;
+            }
+            for (String string : strings) {
+                if (string != null && looksLikeClassName(string)
+                        && !checked.computeIfAbsent(string, MappedFrameReaderStage::isForwardable)) {
+                    LOGGER.log(Level.FINE, "Records of type {0} cannot be forwarded", string);
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Other strings in map files are mostly operation signatures, which never pass this test.
+     */
+    private static boolean looksLikeClassName(String string) {
+        return string.indexOf('.') > 0 && string.indexOf(' ') < 0 && string.indexOf('(') < 0;
+    }
+
+    /**
+     * @return {@code false} only for record classes with a variable layout. Strings that aren't record classes can't
+     * stand in for a class name.
+     */
+    private static boolean isForwardable(String className) {
+        Class<?> recordClass = loadClass(className);
+        return recordClass == null || !IMonitoringRecord.class.isAssignableFrom(recordClass)
+                || RecordFrameLayout.of(recordClass) != null;
+    }
+
+    @CheckForNull
+    private static Class<?> loadClass(String className) {
+        try {
+            return Class.forName(className, false, MappedFrameReaderStage.class.getClassLoader());
+        } catch (ClassNotFoundException | LinkageError e) {
+            return null;
+        }
+    }
+
+    @CheckForNull
+    private static File findMapFile(File directory) {
+        File[] mapFiles = directory.listFiles((dir, name) -> name.endsWith(FSUtil.MAP_FILE_EXTENSION));
+        return mapFiles == null || mapFiles.length == 0 ? null : mapFiles[0];
+    }
+
+    /**
+     * Read a map file consisting of {@code $id=string} lines.
+     *
+     * @return The strings indexed by their id
+     */
+    private static String[] readMapFile(File mapFile) throws IOException {
+        Map<Integer, String> entries = new HashMap<>();
+        int maxId = -1;
+        try (BufferedReader reader = Files.newBufferedReader(mapFile.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int separator = line.indexOf('=');
+                if (line.isEmpty() || separator < 0) {
+                    continue;
+                }
+                int id = Integer.parseInt(line.substring(line.charAt(0) == '$' ? 1 : 0, separator));
+                if (id < 0) {
+                    throw new IllegalArgumentException("Negative id in line " + line);
+                }
+                entries.put(id, line.substring(separator + 1));
+                maxId = Math.max(maxId, id);
+            }
+        }
+
+        String[] strings = new String[maxId + 1];
+        for (Map.Entry<Integer, String> entry : entries.entrySet()) {
+            strings[entry.getKey()] = entry.getValue();
+        }
+        return strings;
+    }
+
+    @Override
+    protected void execute() {
+        for (File directory : RecordDirectories.find(directories)) {
+            try {
+                forwardFolder(directory);
+            } catch (IOException | IllegalArgumentException e) {
+                LOGGER.log(Level.WARNING, "Cannot forward records from " + directory, e);
+                failures.add(directory + ": " + e);
+            }
+        }
+        flush();
+        lastNanos = System.nanoTime();
+
+        workCompleted();
+    }
+
+    private void forwardFolder(File directory) throws IOException {
+        File mapFile = findMapFile(directory);
+        File[] logFiles = directory.listFiles((dir, name) -> name.endsWith(FSUtil.BINARY_FILE_EXTENSION));
+        if (mapFile == null || logFiles == null) {
+            return;
+        }
+        // Log file names contain the time they were created and a sequence number
+        Arrays.sort(logFiles);
+
+        RecordFolder folder = new RecordFolder(readMapFile(mapFile));
+        for (File logFile : logFiles) {
+            MappedByteBuffer log;
+            try (FileChannel channel = FileChannel.open(logFile.toPath(), StandardOpenOption.READ)) {
+                // The mapping stays valid after closing the channel
+                log = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            forwardLog(log, folder, logFile);
+        }
+    }
+
+    private void forwardLog(ByteBuffer log, RecordFolder folder, File logFile) {
+        while (log.remaining() >= RecordFrameLayout.HEADER_SIZE) {
+            int start = log.position();
+            RecordFrameLayout layout = folder.getLayout(log.getInt(start));
+            if (layout == null) {
+                LOGGER.log(Level.WARNING, "Unknown record type id {0} at byte {1} of {2}, skipping the rest of it",
+                        new Object[]{log.getInt(start), start, logFile});
+                failures.add(logFile + ": unknown record type id " + log.getInt(start) + " at byte " + start);
+                return;
+            }
+            if (log.remaining() < layout.getSize()) {
+                // The monitored application was killed while writing
+                LOGGER.log(Level.FINE, "Incomplete record at the end of {0}", logFile);
+                return;
+            }
+
+            if (layout.getRecordClass() == KiekerMetadataRecord.class) {
+                readTimestampUnit(log, start, layout, folder);
+            }
+            pace(log.getLong(start + RecordFrameLayout.TIMESTAMP_OFFSET));
+
+            // Registry entries have to be sent before the record using them
+            int[] stringOffsets = layout.getStringOffsets();
+            for (int offset : stringOffsets) {
+                if (folder.getWireId(log.getInt(start + offset)) < 0) {
+                    LOGGER.log(Level.WARNING, "Unknown string id {0} at byte {1} of {2}, skipping the rest of it",
+                            new Object[]{log.getInt(start + offset), start, logFile});
+                    failures.add(logFile + ": unknown string id " + log.getInt(start + offset) + " at byte "
+                            + start);
+                    return;
+                }
+            }
+
+            requestBatchSpace(layout.getSize());
+            int frameStart = batch.position();
+            log.limit(start + layout.getSize());
+            batch.put(log);
+            log.limit(log.capacity());
+            for (int offset : stringOffsets) {
+                batch.putInt(frameStart + offset, folder.getWireId(log.getInt(start + offset)));
+            }
+            records++;
+        }
+    }
+
+    private void pace(long timestamp) {
+        if (records == 0) {
+            startNanos = System.nanoTime();
+            firstTimestamp = timestamp;
+        }
+        if (speed.isUnthrottled()) {
+            return;
+        }
+
+        long recordOffset = timestampUnit.toNanos(timestamp - firstTimestamp);
+        long ahead = startNanos + (long) (recordOffset / speed.getFactor()) - System.nanoTime();
+        if (ahead > MIN_SLEEP_NANOS) {
+            // Send what is due before waiting
+            flush();
+            LockSupport.parkNanos(ahead);
+        }
+    }
+
+    private void readTimestampUnit(ByteBuffer log, int start, RecordFrameLayout layout, RecordFolder folder) {
+        int offset = layout.getOffset(TIME_UNIT_VALUE);
+        String unit = offset < 0 ? null : folder.getString(log.getInt(start + offset));
+        try {
+            timestampUnit = TimeUnit.valueOf(unit);
+        } catch (IllegalArgumentException | NullPointerException e) {
+            LOGGER.log(Level.FINE, "Unknown timestamp unit {0}, keeping {1}", new Object[]{unit, timestampUnit});
+        }
+    }
+
+    /**
+     * @return The id the given string has on the connection, sending a registry entry if it is new
+     */
+    private int registerString(String string) {
+        Integer id = wireIds.get(string);
+        if (id == null) {
+            id = wireIds.size();
+            wireIds.put(string, id);
+
+            byte[] encoded = string.getBytes(StandardCharsets.UTF_8);
+            requestBatchSpace(3 * Integer.BYTES + encoded.length);
+            batch.putInt(REGISTRY_ENTRY).putInt(id).putInt(encoded.length).put(encoded);
+        }
+        return id;
+    }
+
+    private void requestBatchSpace(int size) {
+        if (batch.remaining() < size) {
+            flush();
+            if (batch.capacity() < size) {
+                batch = ByteBuffer.allocateDirect(size);
+            }
+        }
+    }
+
+    private void flush() {
+        if (batch.position() > 0) {
+            batch.flip();
+            bytes += batch.remaining();
+            getOutputPort().send(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * @return Records forwarded so far, the time it took and the folders that could not be forwarded completely. Only
+     * accurate once the stage has terminated.
+     */
+    public ReplayStatistics getStatistics() {
+        long last = lastNanos;
+        return new ReplayStatistics(records, records == 0 ? 0 : last - startNanos, failures);
+    }
+
+    /**
+     * @return Bytes emitted so far, including registry entries
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Registry and record types of one record folder, with its ids translated lazily.
+     */
+    private final class RecordFolder {
+        private final String[] strings;
+        private final int[] wireIdsById;
+        private final RecordFrameLayout[] layoutsById;
+
+        RecordFolder(String[] strings) {
+            this.strings = strings;
+            this.wireIdsById = new int[strings.length];
+            this.layoutsById = new RecordFrameLayout[strings.length];
+            Arrays.fill(wireIdsById, -1);
+        }
+
+        /**
+         * @return The string with the given id in this folder, or {@code null} if there is none
+         */
+        @CheckForNull
+        String getString(int id) {
+            return id < 0 || id >= strings.length ? null : strings[id];
+        }
+
+        /**
+         * @return The connection id of the string with the given id in this folder, or {@code -1} if there is none
+         */
+        int getWireId(int id) {
+            if (id < 0 || id >= strings.length || strings[id] == null) {
+                return -1;
+            }
+            int wireId = wireIdsById[id];
+            if (wireId < 0) {
+                wireId = registerString(strings[id]);
+                wireIdsById[id] = wireId;
+            }
+            return wireId;
+        }
+
+        @CheckForNull
+        RecordFrameLayout getLayout(int classNameId) {
+            if (classNameId < 0 || classNameId >= strings.length || strings[classNameId] == null) {
+                return null;
+            }
+            RecordFrameLayout layout = layoutsById[classNameId];
+            if (layout == null) {
+                String className = strings[classNameId];
+                layout = layouts.computeIfAbsent(className, name -> {
+                    Class<?> recordClass = loadClass(name);
+                    return recordClass == null ? null : RecordFrameLayout.of(recordClass);
+                });
+                layoutsById[classNameId] = layout;
+            }
+            return layout;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package net.explorviz.jenkins.kieker.replay;
+
+import kieker.common.record.IMonitoringRecord;
+import kieker.common.record.misc.KiekerMetadataRecord;
+import teetime.framework.AbstractConsumerStage;
+import teetime.framework.OutputPort;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * TeeTime stage that passes records on no faster than their logging timestamps allow at the given
+ * {@link ReplaySpeed}, and counts them.
+ * <p>
+ * The stage only sleeps once it is more than {@link #MIN_SLEEP_NANOS} ahead of schedule, so records that were logged
+ * close together are passed on as a burst. This keeps the overhead per record low and lets the sink write them in
+ * batches.
+ * <p>
+ * The unit of the logging timestamps is taken from the {@link KiekerMetadataRecord} kieker writes first into every
+ * recording, as it depends on the {@code TimeSource} the application was monitored with.
+ */
+public class PacingStage extends AbstractConsumerStage<IMonitoringRecord> {
+    private static final Logger LOGGER = Logger.getLogger(PacingStage.class.getName());
+
+    private static final long MIN_SLEEP_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final OutputPort<IMonitoringRecord> outputPort = createOutputPort(IMonitoringRecord.class);
+
+    private final ReplaySpeed speed;
+    private TimeUnit timestampUnit;
+
+    private long records;
+    private long firstTimestamp;
+    private long startNanos;
+    private volatile long lastNanos;
+
+    /**
+     * @param speed         Replay speed
+     * @param timestampUnit Unit of the records' logging timestamps until a {@link KiekerMetadataRecord} tells
+     *                      otherwise. The configurations generated by this plugin use kieker's
+     *                      {@code SystemNanoTimer}, i.e. {@link TimeUnit#NANOSECONDS}.
+     */
+    public PacingStage(ReplaySpeed speed, TimeUnit timestampUnit) {
+        this.speed = speed;
+        this.timestampUnit = timestampUnit;
+    }
+
+    @Override
+    protected void execute(IMonitoringRecord record) {
+        if (record instanceof KiekerMetadataRecord) {
+            readTimestampUnit((KiekerMetadataRecord) record);
+        }
+
+        long now = System.nanoTime();
+        if (records == 0) {
+            startNanos = now;
+            firstTimestamp = record.getLoggingTimestamp();
+        }
+
+        if (!speed.isUnthrottled()) {
+            long recordOffset = timestampUnit.toNanos(record.getLoggingTimestamp() - firstTimestamp);
+            long ahead = startNanos + (long) (recordOffset / speed.getFactor()) - now;
+            if (ahead > MIN_SLEEP_NANOS) {
+                LockSupport.parkNanos(ahead);
+            }
+        }
+
+        outputPort.send(record);
+        records++;
+        lastNanos = System.nanoTime();
+    }
+
+    private void readTimestampUnit(KiekerMetadataRecord metadata) {
+        try {
+            timestampUnit = TimeUnit.valueOf(metadata.getTimeUnit());
+        } catch (IllegalArgumentException | NullPointerException e) {
+            LOGGER.log(Level.FINE, "Unknown timestamp unit {0}, keeping {1}",
+                    new Object[]{metadata.getTimeUnit(), timestampUnit});
+        }
+    }
+
+    public OutputPort<IMonitoringRecord> getOutputPort() {
+        return outputPort;
+    }
+
+    /**
+     * @return Records passed on so far and the time it took. Only accurate once the stage has terminated.
+     */
+    public ReplayStatistics getStatistics() {
+        long last = lastNanos;
+        return new ReplayStatistics(records, records == 0 ? 0 : last - startNanos);
+    }
+}
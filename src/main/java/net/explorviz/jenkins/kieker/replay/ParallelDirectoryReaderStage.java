@@ -0,0 +1,161 @@
+package net.explorviz.jenkins.kieker.replay;
+
+import kieker.common.record.IMonitoringRecord;
+import kieker.common.record.misc.EmptyRecord;
+import net.explorviz.jenkins.kieker.records.RecordDirectories;
+import net.explorviz.jenkins.kieker.records.RecordReadingConfiguration;
+import teetime.framework.AbstractProducerStage;
+import teetime.framework.Execution;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * TeeTime producer stage that reads kieker record folders on multiple threads and emits their records merged in
+ * logging timestamp order.
+ * <p>
+ * The record folders found are distributed round-robin over {@code parallelism} readers. Each reader is a separate
+ * TeeTime execution (and therefore thread) that reads its folders one after another into a bounded queue. This stage
+ * then merges the heads of all queues, always emitting the oldest record first.
+ * <p>
+ * Records within a folder are always emitted in order. Records of different folders are in exact global order as long
+ * as there are no more folders than readers; otherwise folders sharing a reader are emitted one after another.
+ */
+public class ParallelDirectoryReaderStage extends AbstractProducerStage<IMonitoringRecord> {
+    private static final Logger LOGGER = Logger.getLogger(ParallelDirectoryReaderStage.class.getName());
+
+    private static final int QUEUE_CAPACITY = 4096;
+
+    /**
+     * Put into a reader's queue after its last record.
+     */
+    private static final IMonitoringRecord END_OF_STREAM = new EmptyRecord();
+
+    private static final Comparator<Head> HEAD_ORDER =
+            Comparator.comparingLong((Head head) -> head.record.getLoggingTimestamp()).thenComparingInt(
+                    head -> head.reader);
+
+    private final File[] directories;
+    private final int parallelism;
+    private final List<String> failures = new CopyOnWriteArrayList<>();
+
+    /**
+     * @param directories Directories to search for record folders, recursively
+     * @param parallelism Maximum number of record folders read at the same time
+     */
+    public ParallelDirectoryReaderStage(File[] directories, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+        this.directories = directories.clone();
+        this.parallelism = parallelism;
+    }
+
+    @Override
+    protected void execute() {
+        List<File> recordDirectories = RecordDirectories.find(directories);
+        int readerCount = Math.min(parallelism, recordDirectories.size());
+
+        List<BlockingQueue<IMonitoringRecord>> queues = new ArrayList<>(readerCount);
+        List<Execution<RecordReadingConfiguration>> executions = new ArrayList<>(readerCount);
+        try {
+            for (int reader = 0; reader < readerCount; reader++) {
+                List<File> assigned = new ArrayList<>();
+                for (int i = reader; i < recordDirectories.size(); i += readerCount) {
+                    assigned.add(recordDirectories.get(i));
+                }
+
+                BlockingQueue<IMonitoringRecord> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+                queues.add(queue);
+                executions.add(startReader(assigned, queue));
+            }
+
+            merge(queues);
+        } catch (InterruptedException e) {
+            LOGGER.log(Level.FINE, "Parallel replay was interrupted", e);
+            for (Execution<RecordReadingConfiguration> execution : executions) {
+                execution.abortEventually();
+            }
+            Thread.currentThread().interrupt();
+        }
+
+        workCompleted();
+    }
+
+    private Execution<RecordReadingConfiguration> startReader(List<File> assigned,
+                                                              BlockingQueue<IMonitoringRecord> queue) {
+        Execution<RecordReadingConfiguration> execution = new Execution<>(
+                new RecordReadingConfiguration(assigned.toArray(new File[0]), new RecordQueueStage(queue)));
+        execution.executeNonBlocking();
+
+        // Signal the end of this reader's records once its execution has finished, however it finished
+        Thread terminationWatcher = new Thread(() -> {
+            try {
+                execution.waitForTermination();
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Reading records from " + assigned + " failed", e);
+                failures.add(assigned + ": " + e);
+            } finally {
+                try {
+                    queue.put(END_OF_STREAM);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, "ExplorViz replay reader watcher");
+        terminationWatcher.setDaemon(true);
+        terminationWatcher.start();
+
+        return execution;
+    }
+
+    /**
+     * @return Empty if all folders were read, otherwise the folders of the readers that failed and why. Only accurate
+     * once the stage has terminated.
+     */
+    public List<String> getFailures() {
+        return failures;
+    }
+
+    /**
+     * K-way merge over the reader queues, emitting records in logging timestamp order.
+     */
+    private void merge(List<BlockingQueue<IMonitoringRecord>> queues) throws InterruptedException {
+        PriorityQueue<Head> heads = new PriorityQueue<>(Math.max(1, queues.size()), HEAD_ORDER);
+        for (int reader = 0; reader < queues.size(); reader++) {
+            IMonitoringRecord record = queues.get(reader).take();
+            if (record != END_OF_STREAM) {
+                heads.add(new Head(record, reader));
+            }
+        }
+
+        while (!heads.isEmpty()) {
+            Head head = heads.poll();
+            getOutputPort().send(head.record);
+
+            IMonitoringRecord next = queues.get(head.reader).take();
+            if (next != END_OF_STREAM) {
+                head.record = next;
+                heads.add(head);
+            }
+        }
+    }
+
+    private static final class Head {
+        private IMonitoringRecord record;
+        private final int reader;
+
+        Head(IMonitoringRecord record, int reader) {
+            this.record = record;
+            this.reader = reader;
+        }
+    }
+}
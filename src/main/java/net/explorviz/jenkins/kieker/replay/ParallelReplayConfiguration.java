@@ -0,0 +1,32 @@
+package net.explorviz.jenkins.kieker.replay;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * TeeTime stage configuration that works like {@link ReplayConfiguration}, but reads multiple record folders in
+ * parallel:
+ * <ul>
+ *     <li>Recursively scan the given directories for kieker record folders</li>
+ *     <li>Read the folders found on up to {@code parallelism} threads and merge their records by timestamp
+ *         (see {@link ParallelDirectoryReaderStage})</li>
+ *     <li>Pace them according to the given {@link ReplaySpeed}</li>
+ *     <li>Process them using Kieker, configured via the given kieker configuration</li>
+ * </ul>
+ */
+public class ParallelReplayConfiguration extends AbstractReplayConfiguration {
+    private final ParallelDirectoryReaderStage readerStage;
+
+    public ParallelReplayConfiguration(File[] directories, int parallelism, ReplaySpeed speed,
+                                       kieker.common.configuration.Configuration kiekerConfig) {
+        super(speed);
+
+        readerStage = new ParallelDirectoryReaderStage(directories, parallelism);
+        this.connectToSink(readerStage.getOutputPort(), kiekerConfig);
+    }
+
+    @Override
+    protected List<String> getReadFailures() {
+        return readerStage.getFailures();
+    }
+}
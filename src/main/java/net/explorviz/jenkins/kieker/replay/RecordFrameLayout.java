@@ -0,0 +1,151 @@
+package net.explorviz.jenkins.kieker.replay;
+
+import kieker.common.record.IMonitoringRecord;
+
+import javax.annotation.CheckForNull;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+
+/**
+ * Position of the fields in a serialized record of a given type, as written by kieker's binary serializer: the
+ * registry id of the record's class name, its logging timestamp and then its fields in the order of the record class'
+ * {@code TYPES}. Strings are registry ids, enums their ordinal as {@code int}.
+ * <p>
+ * kieker's binary file writer and its TCP writer both use this layout and differ only in how registry ids are
+ * assigned, so {@link MappedFrameReaderStage} can forward records by copying them and rewriting the ids at
+ * {@link #getStringOffsets()}.
+ */
+final class RecordFrameLayout {
+    /**
+     * Class name id and logging timestamp preceding the fields of every record.
+     */
+    static final int HEADER_SIZE = Integer.BYTES + Long.BYTES;
+
+    static final int TIMESTAMP_OFFSET = Integer.BYTES;
+
+    private final Class<?> recordClass;
+    private final int size;
+    private final int[] stringOffsets;
+    @CheckForNull
+    private final String[] valueNames;
+    private final int[] valueOffsets;
+
+    private RecordFrameLayout(Class<?> recordClass, int size, int[] stringOffsets, @CheckForNull String[] valueNames,
+                              int[] valueOffsets) {
+        this.recordClass = recordClass;
+        this.size = size;
+        this.stringOffsets = stringOffsets;
+        this.valueNames = valueNames;
+        this.valueOffsets = valueOffsets;
+    }
+
+    /**
+     * @return The layout of the given record class, or {@code null} if it is not a record class or has fields of a
+     * variable size, e.g. arrays
+     */
+    @CheckForNull
+    static RecordFrameLayout of(Class<?> recordClass) {
+        if (!IMonitoringRecord.class.isAssignableFrom(recordClass)) {
+            return null;
+        }
+
+        Class<?>[] types;
+        int declaredSize;
+        try {
+            types = (Class<?>[]) getConstant(recordClass, "TYPES");
+            declaredSize = (Integer) getConstant(recordClass, "SIZE");
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            return null;
+        }
+
+        String[] valueNames;
+        try {
+            valueNames = (String[]) getConstant(recordClass, "VALUE_NAMES");
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            // Only needed to look up single fields
+            valueNames = null;
+        }
+        if (valueNames != null && valueNames.length != types.length) {
+            valueNames = null;
+        }
+
+        int[] stringOffsets = new int[types.length + 1];
+        int[] valueOffsets = new int[types.length];
+        int strings = 1; // The class name at offset 0
+        int offset = HEADER_SIZE;
+        for (int i = 0; i < types.length; i++) {
+            Class<?> type = types[i];
+            valueOffsets[i] = offset;
+            if (type == String.class) {
+                stringOffsets[strings++] = offset;
+            }
+            int fieldSize = sizeOf(type);
+            if (fieldSize < 0) {
+                return null;
+            }
+            offset += fieldSize;
+        }
+
+        if (offset - HEADER_SIZE != declaredSize) {
+            // Serialized differently than its TYPES suggest
+            return null;
+        }
+        return new RecordFrameLayout(recordClass, offset, Arrays.copyOf(stringOffsets, strings), valueNames,
+                valueOffsets);
+    }
+
+    private static Object getConstant(Class<?> recordClass, String name) throws ReflectiveOperationException {
+        Field field = recordClass.getField(name);
+        if (!Modifier.isStatic(field.getModifiers())) {
+            throw new NoSuchFieldException(name);
+        }
+        return field.get(null);
+    }
+
+    private static int sizeOf(Class<?> type) {
+        if (type == String.class || type == int.class || type == float.class || type.isEnum()) {
+            return Integer.BYTES;
+        } else if (type == long.class || type == double.class) {
+            return Long.BYTES;
+        } else if (type == short.class || type == char.class) {
+            return Short.BYTES;
+        } else if (type == byte.class || type == boolean.class) {
+            return Byte.BYTES;
+        }
+        return -1;
+    }
+
+    Class<?> getRecordClass() {
+        return recordClass;
+    }
+
+    /**
+     * @param valueName Name of the field as in the record class' {@code VALUE_NAMES}
+     * @return Offset of the field in a serialized record, or {@code -1} if the record class has no such field
+     */
+    int getOffset(String valueName) {
+        if (valueNames != null) {
+            for (int i = 0; i < valueNames.length; i++) {
+                if (valueNames[i].equals(valueName)) {
+                    return valueOffsets[i];
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return Size of a serialized record including its header
+     */
+    int getSize() {
+        return size;
+    }
+
+    /**
+     * @return Offsets of all registry ids in a serialized record, starting with the class name at {@code 0}
+     */
+    int[] getStringOffsets() {
+        return stringOffsets;
+    }
+}
@@ -0,0 +1,22 @@
+package net.explorviz.jenkins.kieker.replay;
+
+import kieker.common.record.IMonitoringRecord;
+import teetime.framework.AbstractConsumerStage;
+
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * TeeTime stage that hands records over to another thread through a bounded queue, blocking while the queue is full.
+ */
+class RecordQueueStage extends AbstractConsumerStage<IMonitoringRecord> {
+    private final BlockingQueue<IMonitoringRecord> queue;
+
+    RecordQueueStage(BlockingQueue<IMonitoringRecord> queue) {
+        this.queue = queue;
+    }
+
+    @Override
+    protected void execute(IMonitoringRecord record) throws InterruptedException {
+        queue.put(record);
+    }
+}
@@ -1,16 +1,108 @@
 package net.explorviz.jenkins.kieker.replay;
 
+import kieker.common.configuration.Configuration;
+import kieker.common.configuration.ReadOnlyConfiguration;
+import net.explorviz.jenkins.kieker.archive.RecordArchive;
+import net.explorviz.jenkins.kieker.configuration.AbstractKiekerConfiguration;
 import net.explorviz.jenkins.kieker.configuration.KiekerConfiguration;
+import net.explorviz.jenkins.kieker.configuration.SingleSocketTcpWriterConfiguration;
+import net.explorviz.jenkins.kieker.records.RecordDirectories;
 import teetime.framework.Execution;
 
 import java.io.File;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
+/**
+ * Replays records from a directory or {@link RecordArchive} of the local file system to a kieker sink. Use
+ * {@link ReplayCallable} to replay records on the node that holds them.
+ * <p>
+ * When sending to a TCP sink, uncompressed binary record folders are forwarded by the
+ * {@link FrameForwardingConfiguration} without deserializing the records, which is considerably cheaper. All other
+ * sources are read record by record.
+ */
 public class RecordReplayer {
-    private final ReplayConfiguration config;
-    private Execution<ReplayConfiguration> execution;
+    private static final Logger LOGGER = Logger.getLogger(RecordReplayer.class.getName());
 
-    public RecordReplayer(File sourceDirectory, KiekerConfiguration kiekerConfig) {
-        config = new ReplayConfiguration(new File[]{sourceDirectory}, kiekerConfig.readOnlyConfiguration());
+    /**
+     * Minimum TCP writer buffer size used for replays, so records are sent in batches rather than one by one.
+     */
+    private static final int MIN_TCP_BUFFER_SIZE = 65536;
+
+    private final AbstractReplayConfiguration config;
+    private Execution<AbstractReplayConfiguration> execution;
+
+    public RecordReplayer(File source, KiekerConfiguration kiekerConfig) {
+        this(source, kiekerConfig, 1);
+    }
+
+    /**
+     * @param parallelism Number of record folders to read in parallel. {@code 1} reads all folders sequentially on a
+     *                    single thread, higher values use {@link ParallelReplayConfiguration}.
+     */
+    public RecordReplayer(File source, KiekerConfiguration kiekerConfig, int parallelism) {
+        this(source, kiekerConfig, parallelism, ReplaySpeed.UNTHROTTLED);
+    }
+
+    /**
+     * @param source      Directory to search for record folders, or a {@link RecordArchive} to read directly
+     * @param parallelism Number of record folders to read in parallel. {@code 1} reads all folders sequentially on a
+     *                    single thread, higher values use {@link ParallelReplayConfiguration}. Archives are always
+     *                    read sequentially.
+     * @param speed       How fast to replay the records relative to their original timing
+     */
+    public RecordReplayer(File source, KiekerConfiguration kiekerConfig, int parallelism, ReplaySpeed speed) {
+        this(source, kiekerConfig, parallelism, speed, true);
+    }
+
+    /**
+     * @param forwardFrames {@code false} to always read records into objects, even if they could be
+     *                      {@link FrameForwardingConfiguration forwarded} as they are
+     * @see #RecordReplayer(File, KiekerConfiguration, int, ReplaySpeed)
+     */
+    public RecordReplayer(File source, KiekerConfiguration kiekerConfig, int parallelism, ReplaySpeed speed,
+                          boolean forwardFrames) {
+        File[] directories = new File[]{source};
+        Configuration sinkConfig = createSinkConfiguration(kiekerConfig);
+        if (forwardFrames && canForwardFrames(source, sinkConfig)) {
+            // Folders are read sequentially, mapping them is cheap enough that parallel readers wouldn't pay off
+            config = new FrameForwardingConfiguration(directories, speed, sinkConfig);
+        } else if (RecordArchive.isArchive(source)) {
+            config = new ArchiveReplayConfiguration(source, speed, sinkConfig);
+        } else if (parallelism > 1) {
+            config = new ParallelReplayConfiguration(directories, parallelism, speed, sinkConfig);
+        } else {
+            config = new ReplayConfiguration(directories, speed, sinkConfig);
+        }
+    }
+
+    private static boolean canForwardFrames(File source, Configuration sinkConfig) {
+        return SingleSocketTcpWriterConfiguration.WRITER_CLASS_TCP.equals(
+                sinkConfig.getStringProperty(AbstractKiekerConfiguration.PROP_WRITER))
+                && source.isDirectory() && MappedFrameReaderStage.canForward(RecordDirectories.find(source));
+    }
+
+    /**
+     * Copy the given configuration and adjust it for replaying: unlike a monitored application, a replay must not
+     * lose records when the sink falls behind, so the writer queue blocks the replay instead of discarding records.
+     * TCP writers only send full buffers.
+     */
+    private static Configuration createSinkConfiguration(KiekerConfiguration kiekerConfig) {
+        Configuration sinkConfig = new Configuration();
+        sinkConfig.putAll(kiekerConfig.getConfiguration());
+
+        sinkConfig.setProperty(AbstractKiekerConfiguration.PROP_QUEUE_INSERT_BEHAVIOR,
+                AbstractKiekerConfiguration.QUEUE_INSERT_BEHAVIOR_BLOCK);
+
+        if (SingleSocketTcpWriterConfiguration.WRITER_CLASS_TCP.equals(
+                sinkConfig.getStringProperty(AbstractKiekerConfiguration.PROP_WRITER))) {
+            int bufferSize = sinkConfig.getIntProperty(SingleSocketTcpWriterConfiguration.PROP_BUFFER_SIZE);
+            sinkConfig.setProperty(SingleSocketTcpWriterConfiguration.PROP_BUFFER_SIZE,
+                    Math.max(bufferSize, MIN_TCP_BUFFER_SIZE));
+            sinkConfig.setProperty(SingleSocketTcpWriterConfiguration.PROP_FLUSH, false);
+        }
+
+        return new ReadOnlyConfiguration(sinkConfig);
     }
 
     public void run() {
@@ -23,4 +115,27 @@ public class RecordReplayer {
             execution.abortEventually();
         }
     }
+
+    /**
+     * Block until the replay started by {@link #run()} has finished.
+     *
+     * @return Records replayed and the throughput achieved. Check {@link ReplayStatistics#isComplete()}, some sources
+     * may not have been read completely.
+     */
+    public ReplayStatistics waitForCompletion() {
+        if (execution != null) {
+            execution.waitForTermination();
+        }
+
+        ReplayStatistics statistics = config.getStatistics();
+        LOGGER.log(statistics.isComplete() ? Level.INFO : Level.WARNING, "Replayed " + statistics);
+        return statistics;
+    }
+
+    /**
+     * @return Records replayed so far. Only accurate once the replay has finished.
+     */
+    public ReplayStatistics getStatistics() {
+        return config.getStatistics();
+    }
 }
@@ -0,0 +1,80 @@
+package net.explorviz.jenkins.kieker.replay;
+
+import hudson.FilePath;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+import net.explorviz.jenkins.kieker.configuration.KiekerConfiguration;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Replays records on the node that holds them, sending them from there straight to the sink, e.g. the TCP endpoint of
+ * ExplorViz. The records never pass through the controller.
+ * <p>
+ * Use {@link #startOn(FilePath, KiekerConfiguration, int, ReplaySpeed)} with a directory to search for record folders
+ * or a record archive, like {@link RecordReplayer}. Cancelling the returned future interrupts the replay on the node,
+ * which then {@link RecordReplayer#kill() kills} its pipeline.
+ */
+public class ReplayCallable extends MasterToSlaveFileCallable<ReplayStatistics> {
+    private static final long serialVersionUID = 3395012476125094627L;
+
+    private final KiekerConfiguration sinkConfig;
+    private final int parallelism;
+    private final ReplaySpeed speed;
+
+    /**
+     * @see RecordReplayer#RecordReplayer(File, KiekerConfiguration, int, ReplaySpeed)
+     */
+    public ReplayCallable(@Nonnull KiekerConfiguration sinkConfig, int parallelism, @Nonnull ReplaySpeed speed) {
+        this.sinkConfig = sinkConfig;
+        this.parallelism = parallelism;
+        this.speed = speed;
+    }
+
+    /**
+     * Start replaying the records in the given directory or archive on the node that holds it.
+     *
+     * @return Completes with the replay's statistics once all records were sent, or fails if some could not be read.
+     * Cancel it to stop the replay.
+     */
+    @Nonnull
+    public static Future<ReplayStatistics> startOn(@Nonnull FilePath source, @Nonnull KiekerConfiguration sinkConfig,
+                                                   int parallelism, @Nonnull ReplaySpeed speed)
+            throws IOException, InterruptedException {
+        return source.actAsync(new ReplayCallable(sinkConfig, parallelism, speed));
+    }
+
+    @Override
+    public ReplayStatistics invoke(File source, VirtualChannel channel) throws IOException, InterruptedException {
+        RecordReplayer replayer = new RecordReplayer(source, sinkConfig, parallelism, speed);
+        replayer.run();
+
+        // The pipeline can't be interrupted while waiting for it, so wait on another thread
+        FutureTask<ReplayStatistics> completion = new FutureTask<>(replayer::waitForCompletion);
+        Thread waiter = new Thread(completion, "ExplorViz replay of " + source);
+        waiter.setDaemon(true);
+        waiter.start();
+
+        ReplayStatistics statistics;
+        try {
+            statistics = completion.get();
+        } catch (InterruptedException e) {
+            // Cancelled by the controller
+            replayer.kill();
+            throw e;
+        } catch (ExecutionException e) {
+            replayer.kill();
+            throw new IOException("Failed to replay records from " + source, e.getCause());
+        }
+
+        if (!statistics.isComplete()) {
+            throw new IOException("Replay of " + source + " is incomplete, replayed " + statistics);
+        }
+        return statistics;
+    }
+}
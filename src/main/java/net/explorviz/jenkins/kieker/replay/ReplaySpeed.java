@@ -0,0 +1,53 @@
+package net.explorviz.jenkins.kieker.replay;
+
+import java.io.Serializable;
+
+/**
+ * How fast records are replayed, relative to the time they were originally recorded.
+ */
+public final class ReplaySpeed implements Serializable {
+    private static final long serialVersionUID = 8620331587207325442L;
+
+    /**
+     * Replay with the original timing between records.
+     */
+    public static final ReplaySpeed REAL_TIME = new ReplaySpeed(1);
+
+    /**
+     * Replay as fast as the pipeline and the receiver allow.
+     */
+    public static final ReplaySpeed UNTHROTTLED = new ReplaySpeed(0);
+
+    private final double factor;
+
+    private ReplaySpeed(double factor) {
+        this.factor = factor;
+    }
+
+    /**
+     * @param factor Speed-up relative to the original timing, e.g. {@code 10} to replay ten times as fast. Values below
+     *               {@code 1} slow the replay down.
+     */
+    public static ReplaySpeed times(double factor) {
+        if (!(factor > 0) || Double.isInfinite(factor)) {
+            throw new IllegalArgumentException("factor must be positive and finite");
+        }
+        return new ReplaySpeed(factor);
+    }
+
+    /**
+     * @return The speed-up factor, or {@code 0} if unthrottled
+     */
+    public double getFactor() {
+        return factor;
+    }
+
+    public boolean isUnthrottled() {
+        return factor == 0;
+    }
+
+    @Override
+    public String toString() {
+        return isUnthrottled() ? "unthrottled" : factor + "x";
+    }
+}
@@ -0,0 +1,83 @@
+package net.explorviz.jenkins.kieker.replay;
+
+import javax.annotation.Nonnull;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput achieved by a replay, and the sources it could not read completely.
+ */
+public class ReplayStatistics implements Serializable {
+    private static final long serialVersionUID = -4439201856473610298L;
+
+    private final long records;
+    private final long durationNanos;
+    private final List<String> failures;
+
+    public ReplayStatistics(long records, long durationNanos) {
+        this(records, durationNanos, Collections.emptyList());
+    }
+
+    /**
+     * @param failures Sources that could not be read completely, with the reason
+     */
+    public ReplayStatistics(long records, long durationNanos, @Nonnull List<String> failures) {
+        this.records = records;
+        this.durationNanos = durationNanos;
+        this.failures = new ArrayList<>(failures);
+    }
+
+    /**
+     * @return These statistics with the given failures added
+     */
+    @Nonnull
+    public ReplayStatistics withFailures(@Nonnull List<String> failures) {
+        if (failures.isEmpty()) {
+            return this;
+        }
+        List<String> all = new ArrayList<>(this.failures);
+        all.addAll(failures);
+        return new ReplayStatistics(records, durationNanos, all);
+    }
+
+    public long getRecords() {
+        return records;
+    }
+
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    /**
+     * @return Sources that could not be read completely, with the reason. Their records were replayed up to the
+     * failure, if at all.
+     */
+    @Nonnull
+    public List<String> getFailures() {
+        return Collections.unmodifiableList(failures);
+    }
+
+    /**
+     * @return {@code false} if records are missing from the replay, because some sources could not be read
+     */
+    public boolean isComplete() {
+        return failures.isEmpty();
+    }
+
+    /**
+     * @return Average records per second, or {@code 0} if nothing was replayed
+     */
+    public double getRecordsPerSecond() {
+        return durationNanos <= 0 ? 0 : records * (double) TimeUnit.SECONDS.toNanos(1) / durationNanos;
+    }
+
+    @Override
+    public String toString() {
+        String statistics = String.format("%d records in %.1f s (%.0f records/s)", records,
+                durationNanos / (double) TimeUnit.SECONDS.toNanos(1), getRecordsPerSecond());
+        return failures.isEmpty() ? statistics : statistics + ", incomplete: " + String.join("; ", failures);
+    }
+}
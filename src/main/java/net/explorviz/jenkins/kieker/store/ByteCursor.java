@@ -0,0 +1,76 @@
+package net.explorviz.jenkins.kieker.store;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the values written by a {@link ColumnBuffer} from a byte array.
+ */
+final class ByteCursor {
+    private final byte[] bytes;
+    private final int limit;
+    private int position;
+
+    ByteCursor(byte[] bytes, int position, int limit) {
+        this.bytes = bytes;
+        this.position = position;
+        this.limit = limit;
+    }
+
+    long getVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            if (position >= limit) {
+                throw new IOException("Truncated trace store");
+            }
+            byte b = bytes[position++];
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in trace store");
+    }
+
+    long getZigZag() throws IOException {
+        long value = getVarLong();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    int getVarInt() throws IOException {
+        long value = getVarLong();
+        if (value < 0 || value > Integer.MAX_VALUE) {
+            throw new IOException("Value out of range in trace store: " + value);
+        }
+        return (int) value;
+    }
+
+    String getString() throws IOException {
+        int length = getVarInt();
+        if (length > limit - position) {
+            throw new IOException("Truncated trace store");
+        }
+        String value = new String(bytes, position, length, StandardCharsets.UTF_8);
+        position += length;
+        return value;
+    }
+
+    void skip(int length) throws IOException {
+        if (length > limit - position) {
+            throw new IOException("Truncated trace store");
+        }
+        position += length;
+    }
+
+    byte[] bytes() {
+        return bytes;
+    }
+
+    int getPosition() {
+        return position;
+    }
+
+    boolean hasRemaining() {
+        return position < limit;
+    }
+}
@@ -0,0 +1,58 @@
+package net.explorviz.jenkins.kieker.store;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Growable byte buffer for variable-length encoded values, used to encode one column (or the header) of a trace store
+ * block. Values are written as unsigned LEB128 varints, signed values and deltas zigzag encoded first, so small
+ * magnitudes take a single byte.
+ */
+final class ColumnBuffer {
+    private byte[] bytes = new byte[1024];
+    private int size;
+
+    void putVarLong(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[size++] = (byte) value;
+    }
+
+    void putZigZag(long value) {
+        putVarLong((value << 1) ^ (value >> 63));
+    }
+
+    void putString(String value) {
+        byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+        putVarLong(encoded.length);
+        ensureCapacity(encoded.length);
+        System.arraycopy(encoded, 0, bytes, size, encoded.length);
+        size += encoded.length;
+    }
+
+    private void ensureCapacity(int additional) {
+        if (size + additional > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + additional));
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Write the buffered bytes, without a length prefix.
+     */
+    void writeTo(DataOutput out) throws IOException {
+        out.write(bytes, 0, size);
+    }
+
+    void clear() {
+        size = 0;
+    }
+}
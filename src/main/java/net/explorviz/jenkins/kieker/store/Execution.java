@@ -0,0 +1,77 @@
+package net.explorviz.jenkins.kieker.store;
+
+import javax.annotation.Nonnull;
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One operation execution read from a {@link TraceStore}.
+ */
+public final class Execution implements Serializable {
+    private static final long serialVersionUID = 5190863427519377482L;
+
+    private final long traceId;
+    private final long start;
+    private final long durationNanos;
+    private final int eoi;
+    private final int ess;
+    private final String operationSignature;
+    private final String hostname;
+
+    Execution(long traceId, long start, long durationNanos, int eoi, int ess, @Nonnull String operationSignature,
+              @Nonnull String hostname) {
+        this.traceId = traceId;
+        this.start = start;
+        this.durationNanos = durationNanos;
+        this.eoi = eoi;
+        this.ess = ess;
+        this.operationSignature = operationSignature;
+        this.hostname = hostname;
+    }
+
+    public long getTraceId() {
+        return traceId;
+    }
+
+    /**
+     * @return Start of the execution in nanoseconds
+     */
+    public long getStart() {
+        return start;
+    }
+
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    public double getDurationMillis() {
+        return durationNanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * @see ExecutionBlock#getEoi(int)
+     */
+    public int getEoi() {
+        return eoi;
+    }
+
+    /**
+     * @see ExecutionBlock#getEss(int)
+     */
+    public int getEss() {
+        return ess;
+    }
+
+    @Nonnull
+    public String getOperationSignature() {
+        return operationSignature;
+    }
+
+    /**
+     * @return The host the execution ran on, or an empty string if it is unknown
+     */
+    @Nonnull
+    public String getHostname() {
+        return hostname;
+    }
+}
@@ -0,0 +1,123 @@
+package net.explorviz.jenkins.kieker.store;
+
+import java.io.IOException;
+
+/**
+ * Up to {@link TraceStoreWriter#BLOCK_SIZE} operation executions of a {@link TraceStore}, decoded into primitive
+ * columns. Strings are ids into the store's {@link TraceStore#getSignatures() signature} and
+ * {@link TraceStore#getHostnames() hostname} dictionaries.
+ * <p>
+ * {@link TraceStore#scan(java.util.function.Consumer) Scans} reuse the same instance for all blocks, so don't keep a
+ * reference to it.
+ */
+public final class ExecutionBlock {
+    static final int COLUMNS = 7;
+
+    int size;
+    final long[] traceIds = new long[TraceStoreWriter.BLOCK_SIZE];
+    final long[] starts = new long[TraceStoreWriter.BLOCK_SIZE];
+    final long[] durations = new long[TraceStoreWriter.BLOCK_SIZE];
+    final int[] eois = new int[TraceStoreWriter.BLOCK_SIZE];
+    final int[] esses = new int[TraceStoreWriter.BLOCK_SIZE];
+    final int[] signatureIds = new int[TraceStoreWriter.BLOCK_SIZE];
+    final int[] hostnameIds = new int[TraceStoreWriter.BLOCK_SIZE];
+
+    /**
+     * @return Number of executions in this block
+     */
+    public int size() {
+        return size;
+    }
+
+    public long getTraceId(int index) {
+        return traceIds[index];
+    }
+
+    /**
+     * @return Start of the execution in nanoseconds
+     */
+    public long getStart(int index) {
+        return starts[index];
+    }
+
+    public long getDurationNanos(int index) {
+        return durations[index];
+    }
+
+    /**
+     * @return Execution order index, i.e. the position of the execution's start within its trace
+     */
+    public int getEoi(int index) {
+        return eois[index];
+    }
+
+    /**
+     * @return Execution stack size, i.e. the call depth of the execution within its trace
+     */
+    public int getEss(int index) {
+        return esses[index];
+    }
+
+    public int getSignatureId(int index) {
+        return signatureIds[index];
+    }
+
+    public int getHostnameId(int index) {
+        return hostnameIds[index];
+    }
+
+    /**
+     * Decode the columns written by {@link TraceStoreWriter}. Deltas start from zero in every block.
+     */
+    void decode(byte[] bytes, int position, int rows) throws IOException {
+        if (rows > TraceStoreWriter.BLOCK_SIZE) {
+            throw new IOException("Trace store block of " + rows + " executions is too large");
+        }
+        ByteCursor cursor = new ByteCursor(bytes, position, bytes.length);
+
+        decodeDeltas(cursor, rows, traceIds);
+        decodeDeltas(cursor, rows, starts);
+        ByteCursor column = column(cursor);
+        for (int i = 0; i < rows; i++) {
+            durations[i] = column.getZigZag();
+        }
+        decodeDeltas(cursor, rows, eois);
+        decodeDeltas(cursor, rows, esses);
+        decodeIds(cursor, rows, signatureIds);
+        decodeIds(cursor, rows, hostnameIds);
+
+        size = rows;
+    }
+
+    private static ByteCursor column(ByteCursor cursor) throws IOException {
+        int length = cursor.getVarInt();
+        int start = cursor.getPosition();
+        cursor.skip(length);
+        return new ByteCursor(cursor.bytes(), start, start + length);
+    }
+
+    private static void decodeDeltas(ByteCursor cursor, int rows, long[] values) throws IOException {
+        ByteCursor column = column(cursor);
+        long value = 0;
+        for (int i = 0; i < rows; i++) {
+            value += column.getZigZag();
+            values[i] = value;
+        }
+    }
+
+    private static void decodeDeltas(ByteCursor cursor, int rows, int[] values) throws IOException {
+        ByteCursor column = column(cursor);
+        long value = 0;
+        for (int i = 0; i < rows; i++) {
+            value += column.getZigZag();
+            values[i] = (int) value;
+        }
+    }
+
+    private static void decodeIds(ByteCursor cursor, int rows, int[] values) throws IOException {
+        ByteCursor column = column(cursor);
+        for (int i = 0; i < rows; i++) {
+            values[i] = column.getVarInt();
+        }
+    }
+}
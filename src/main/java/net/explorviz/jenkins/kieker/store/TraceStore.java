@@ -0,0 +1,234 @@
+package net.explorviz.jenkins.kieker.store;
+
+import hudson.model.Run;
+
+import javax.annotation.Nonnull;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+/**
+ * Compact, column-oriented store of the operation executions of an instrumentation, written by
+ * {@link TraceStoreWriter} while collecting the records. Signatures and hostnames are stored once in dictionaries,
+ * all other fields as delta-encoded varints, which makes the store a fraction of the size of kieker's logs.
+ * <p>
+ * The store is kept in memory in its encoded form and decoded block by block into primitive columns for every
+ * {@link #scan(Consumer) scan}, which the queries of this class are built on. Stores are kept in the build directory
+ * next to {@link net.explorviz.jenkins.kieker.archive.RecordArchive record archives}, see
+ * {@link #getFile(Run, String)}.
+ */
+public final class TraceStore {
+    public static final String EXTENSION = ".traces";
+
+    private static final String STORE_DIRECTORY = "explorviz";
+
+    private static final Comparator<Execution> BY_DURATION = Comparator.comparingLong(Execution::getDurationNanos);
+
+    private final byte[] bytes;
+    private final List<String> signatures;
+    private final List<String> hostnames;
+    private final int[] blockPositions;
+    private final int[] blockRows;
+    private final long executionCount;
+
+    private TraceStore(byte[] bytes, List<String> signatures, List<String> hostnames, int[] blockPositions,
+                       int[] blockRows, long executionCount) {
+        this.bytes = bytes;
+        this.signatures = signatures;
+        this.hostnames = hostnames;
+        this.blockPositions = blockPositions;
+        this.blockRows = blockRows;
+        this.executionCount = executionCount;
+    }
+
+    /**
+     * @return The store file for the given instrumentation of a build
+     */
+    @Nonnull
+    public static File getFile(@Nonnull Run<?, ?> run, @Nonnull String storeName) {
+        return new File(new File(run.getRootDir(), STORE_DIRECTORY), storeName);
+    }
+
+    /**
+     * @return The store file name to use for the given instrumentation ID
+     */
+    @Nonnull
+    public static String getName(@Nonnull String runId) {
+        return runId + EXTENSION;
+    }
+
+    /**
+     * Load a store and read its dictionaries. The columns are only decoded when scanned.
+     *
+     * @throws IOException If the file can't be read or is not a trace store
+     */
+    @Nonnull
+    public static TraceStore read(@Nonnull File file) throws IOException {
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        DataInputStream header = new DataInputStream(new ByteArrayInputStream(bytes));
+        if (bytes.length < Integer.BYTES + 1 || header.readInt() != TraceStoreWriter.MAGIC) {
+            throw new IOException(file + " is not a trace store");
+        }
+        int version = header.readUnsignedByte();
+        if (version != TraceStoreWriter.VERSION) {
+            throw new IOException(file + " has unsupported trace store version " + version);
+        }
+
+        List<String> signatures = new ArrayList<>();
+        List<String> hostnames = new ArrayList<>();
+        List<int[]> blocks = new ArrayList<>();
+        long executionCount = 0;
+
+        ByteCursor cursor = new ByteCursor(bytes, Integer.BYTES + 1, bytes.length);
+        while (cursor.hasRemaining()) {
+            int rows = cursor.getVarInt();
+            readStrings(cursor, signatures);
+            readStrings(cursor, hostnames);
+            blocks.add(new int[]{cursor.getPosition(), rows});
+            for (int column = 0; column < ExecutionBlock.COLUMNS; column++) {
+                cursor.skip(cursor.getVarInt());
+            }
+            executionCount += rows;
+        }
+
+        int[] blockPositions = new int[blocks.size()];
+        int[] blockRows = new int[blocks.size()];
+        for (int i = 0; i < blocks.size(); i++) {
+            blockPositions[i] = blocks.get(i)[0];
+            blockRows[i] = blocks.get(i)[1];
+        }
+        return new TraceStore(bytes, Collections.unmodifiableList(signatures),
+                Collections.unmodifiableList(hostnames), blockPositions, blockRows, executionCount);
+    }
+
+    private static void readStrings(ByteCursor cursor, List<String> strings) throws IOException {
+        int count = cursor.getVarInt();
+        for (int i = 0; i < count; i++) {
+            strings.add(cursor.getString());
+        }
+    }
+
+    /**
+     * Decode all blocks one after another and pass them to the given visitor, in the order they were written.
+     */
+    public void scan(@Nonnull Consumer<ExecutionBlock> visitor) throws IOException {
+        ExecutionBlock block = new ExecutionBlock();
+        for (int i = 0; i < blockPositions.length; i++) {
+            block.decode(bytes, blockPositions[i], blockRows[i]);
+            visitor.accept(block);
+        }
+    }
+
+    /**
+     * @return The execution at the given index of a scanned block
+     */
+    @Nonnull
+    public Execution getExecution(@Nonnull ExecutionBlock block, int index) {
+        return new Execution(block.getTraceId(index), block.getStart(index), block.getDurationNanos(index),
+                block.getEoi(index), block.getEss(index), signatures.get(block.getSignatureId(index)),
+                hostnames.get(block.getHostnameId(index)));
+    }
+
+    /**
+     * @return Number of executions of each operation, by operation signature
+     */
+    @Nonnull
+    public Map<String, Long> getCallCounts() throws IOException {
+        long[] counts = new long[signatures.size()];
+        scan(block -> {
+            for (int i = 0; i < block.size(); i++) {
+                counts[block.getSignatureId(i)]++;
+            }
+        });
+
+        Map<String, Long> callCounts = new HashMap<>();
+        for (int id = 0; id < counts.length; id++) {
+            callCounts.put(signatures.get(id), counts[id]);
+        }
+        return callCounts;
+    }
+
+    /**
+     * @return All executions of the given trace, in execution order
+     */
+    @Nonnull
+    public List<Execution> getTrace(long traceId) throws IOException {
+        List<Execution> trace = new ArrayList<>();
+        scan(block -> {
+            for (int i = 0; i < block.size(); i++) {
+                if (block.getTraceId(i) == traceId) {
+                    trace.add(getExecution(block, i));
+                }
+            }
+        });
+        trace.sort(Comparator.comparingInt(Execution::getEoi));
+        return trace;
+    }
+
+    /**
+     * @return The root executions (those with an ess of {@code 0}) of the given number of traces that took longest,
+     * slowest first
+     */
+    @Nonnull
+    public List<Execution> getSlowestTraces(int limit) throws IOException {
+        if (limit <= 0) {
+            return Collections.emptyList();
+        }
+
+        PriorityQueue<Execution> slowest = new PriorityQueue<>(limit + 1, BY_DURATION);
+        scan(block -> {
+            for (int i = 0; i < block.size(); i++) {
+                if (block.getEss(i) != 0) {
+                    continue;
+                }
+                if (slowest.size() < limit || block.getDurationNanos(i) > slowest.peek().getDurationNanos()) {
+                    slowest.add(getExecution(block, i));
+                    if (slowest.size() > limit) {
+                        slowest.poll();
+                    }
+                }
+            }
+        });
+
+        List<Execution> sorted = new ArrayList<>(slowest);
+        sorted.sort(BY_DURATION.reversed());
+        return sorted;
+    }
+
+    /**
+     * @return Operation signatures, indexed by the ids in {@link ExecutionBlock#getSignatureId(int)}
+     */
+    @Nonnull
+    public List<String> getSignatures() {
+        return signatures;
+    }
+
+    /**
+     * @return Hostnames, indexed by the ids in {@link ExecutionBlock#getHostnameId(int)}
+     */
+    @Nonnull
+    public List<String> getHostnames() {
+        return hostnames;
+    }
+
+    public long getExecutionCount() {
+        return executionCount;
+    }
+
+    /**
+     * @return Size of the encoded store in bytes
+     */
+    public long getSizeBytes() {
+        return bytes.length;
+    }
+}
@@ -0,0 +1,261 @@
+package net.explorviz.jenkins.kieker.store;
+
+import kieker.common.record.IMonitoringRecord;
+import kieker.common.record.controlflow.OperationExecutionRecord;
+import kieker.common.record.flow.trace.TraceMetadata;
+import kieker.common.record.flow.trace.operation.AfterOperationEvent;
+import kieker.common.record.flow.trace.operation.BeforeOperationEvent;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the operation executions of kieker records into a {@link TraceStore} file.
+ * <p>
+ * Both kinds of trace records are turned into executions with trace id, start, duration, execution order index (eoi)
+ * and execution stack size (ess), operation signature and hostname: {@link OperationExecutionRecord}s are
+ * executions already, flow events ({@link BeforeOperationEvent} / {@link AfterOperationEvent}) are matched up using
+ * a call stack per trace, with the hostname taken from the trace's {@link TraceMetadata}.
+ * <p>
+ * The file is a header followed by blocks of up to {@link #BLOCK_SIZE} executions, each of which holds:
+ * <ul>
+ *     <li>the number of executions in the block</li>
+ *     <li>signatures and hostnames first used in the block, appended to the dictionaries of the previous blocks</li>
+ *     <li>one column per field, each prefixed by its length in bytes so readers can skip it. Trace ids, starts, eoi
+ *     and ess are stored as deltas to the previous execution, durations as they are and strings as dictionary
+ *     ids, all as zigzag or plain varints.</li>
+ * </ul>
+ * Blocks can be decoded independently of each other once the dictionaries are known. Memory use is bounded by one
+ * block, the dictionaries and the number of traces open at the same time, at most {@link #MAX_OPEN_TRACES}.
+ */
+public class TraceStoreWriter implements Closeable {
+    static final int MAGIC = 0x45565453; // "EVTS"
+    static final int VERSION = 1;
+
+    static final int BLOCK_SIZE = 65536;
+    static final int MAX_OPEN_TRACES = 65536;
+
+    private final DataOutputStream out;
+
+    private final Map<String, Integer> signatureIds = new HashMap<>();
+    private final List<String> newSignatures = new ArrayList<>();
+    private final Map<String, Integer> hostnameIds = new HashMap<>();
+    private final List<String> newHostnames = new ArrayList<>();
+
+    private final Map<Long, OpenTrace> openTraces = new OpenTraces();
+
+    private final ColumnBuffer header = new ColumnBuffer();
+    private final ColumnBuffer column = new ColumnBuffer();
+    private final ExecutionBlock block = new ExecutionBlock();
+
+    private long executionCount;
+
+    public TraceStoreWriter(File file) throws IOException {
+        out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file.toPath())));
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+    }
+
+    public void add(IMonitoringRecord record) throws IOException {
+        if (record instanceof TraceMetadata) {
+            TraceMetadata metadata = (TraceMetadata) record;
+            openTraces.put(metadata.getTraceId(), new OpenTrace(getId(hostnameIds, newHostnames,
+                    metadata.getHostname())));
+        } else if (record instanceof BeforeOperationEvent) {
+            BeforeOperationEvent event = (BeforeOperationEvent) record;
+            OpenTrace trace = openTraces.computeIfAbsent(event.getTraceId(),
+                    traceId -> new OpenTrace(getId(hostnameIds, newHostnames, "")));
+            trace.stack.push(new Frame(event.getOperationSignature(), event.getTimestamp(), trace.nextEoi++,
+                    trace.stack.size()));
+        } else if (record instanceof AfterOperationEvent) {
+            // Includes AfterOperationFailedEvent
+            addFlowExecutionEnd((AfterOperationEvent) record);
+        } else if (record instanceof OperationExecutionRecord) {
+            OperationExecutionRecord execution = (OperationExecutionRecord) record;
+            addExecution(execution.getTraceId(), execution.getTin(), execution.getTout() - execution.getTin(),
+                    execution.getEoi(), execution.getEss(), execution.getOperationSignature(),
+                    getId(hostnameIds, newHostnames, execution.getHostname()));
+        }
+    }
+
+    private void addFlowExecutionEnd(AfterOperationEvent event) throws IOException {
+        OpenTrace trace = openTraces.get(event.getTraceId());
+        if (trace == null || trace.stack.isEmpty()) {
+            return;
+        }
+
+        Frame frame = trace.stack.pop();
+        if (!frame.operationSignature.equals(event.getOperationSignature())) {
+            // Records of this trace are missing, its call tree can't be reconstructed
+            openTraces.remove(event.getTraceId());
+            return;
+        }
+
+        addExecution(event.getTraceId(), frame.start, event.getTimestamp() - frame.start, frame.eoi, frame.ess,
+                frame.operationSignature, trace.hostnameId);
+        if (trace.stack.isEmpty()) {
+            openTraces.remove(event.getTraceId());
+        }
+    }
+
+    private void addExecution(long traceId, long start, long duration, int eoi, int ess, String operationSignature,
+                              int hostnameId) throws IOException {
+        int row = block.size++;
+        block.traceIds[row] = traceId;
+        block.starts[row] = start;
+        block.durations[row] = duration;
+        block.eois[row] = eoi;
+        block.esses[row] = ess;
+        block.signatureIds[row] = getId(signatureIds, newSignatures, operationSignature);
+        block.hostnameIds[row] = hostnameId;
+        executionCount++;
+
+        if (block.size == BLOCK_SIZE) {
+            writeBlock();
+        }
+    }
+
+    private static int getId(Map<String, Integer> ids, List<String> added, String value) {
+        Integer id = ids.get(value);
+        if (id == null) {
+            id = ids.size();
+            ids.put(value, id);
+            added.add(value);
+        }
+        return id;
+    }
+
+    private void writeBlock() throws IOException {
+        int rows = block.size;
+        header.clear();
+        header.putVarLong(rows);
+        putStrings(newSignatures);
+        putStrings(newHostnames);
+        header.writeTo(out);
+
+        writeDeltas(block.traceIds, rows);
+        writeDeltas(block.starts, rows);
+        column.clear();
+        for (int i = 0; i < rows; i++) {
+            column.putZigZag(block.durations[i]);
+        }
+        writeColumn();
+        writeDeltas(block.eois, rows);
+        writeDeltas(block.esses, rows);
+        writeIds(block.signatureIds, rows);
+        writeIds(block.hostnameIds, rows);
+
+        block.size = 0;
+    }
+
+    private void putStrings(List<String> strings) {
+        header.putVarLong(strings.size());
+        for (String string : strings) {
+            header.putString(string);
+        }
+        strings.clear();
+    }
+
+    private void writeDeltas(long[] values, int rows) throws IOException {
+        column.clear();
+        long previous = 0;
+        for (int i = 0; i < rows; i++) {
+            column.putZigZag(values[i] - previous);
+            previous = values[i];
+        }
+        writeColumn();
+    }
+
+    private void writeDeltas(int[] values, int rows) throws IOException {
+        column.clear();
+        long previous = 0;
+        for (int i = 0; i < rows; i++) {
+            column.putZigZag(values[i] - previous);
+            previous = values[i];
+        }
+        writeColumn();
+    }
+
+    private void writeIds(int[] values, int rows) throws IOException {
+        column.clear();
+        for (int i = 0; i < rows; i++) {
+            column.putVarLong(values[i]);
+        }
+        writeColumn();
+    }
+
+    private void writeColumn() throws IOException {
+        header.clear();
+        header.putVarLong(column.size());
+        header.writeTo(out);
+        column.writeTo(out);
+    }
+
+    /**
+     * @return Number of executions written so far
+     */
+    public long getExecutionCount() {
+        return executionCount;
+    }
+
+    /**
+     * Write the last block and close the file. Executions of traces that are still open are not written.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (block.size > 0) {
+                writeBlock();
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Drops the least recently started trace once more than {@link #MAX_OPEN_TRACES} are open.
+     */
+    private static final class OpenTraces extends LinkedHashMap<Long, OpenTrace> {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, OpenTrace> eldest) {
+            return size() > MAX_OPEN_TRACES;
+        }
+    }
+
+    private static final class OpenTrace {
+        private final int hostnameId;
+        private final Deque<Frame> stack = new ArrayDeque<>();
+        private int nextEoi;
+
+        OpenTrace(int hostnameId) {
+            this.hostnameId = hostnameId;
+        }
+    }
+
+    private static final class Frame {
+        private final String operationSignature;
+        private final long start;
+        private final int eoi;
+        private final int ess;
+
+        Frame(String operationSignature, long start, int eoi, int ess) {
+            this.operationSignature = operationSignature;
+            this.start = start;
+            this.eoi = eoi;
+            this.ess = ess;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package net.explorviz.jenkins.model;
+
+import hudson.model.Api;
+import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Remote API that answers conditional requests without serializing its bean again, so tools that poll the
+ * instrumentations of a build or job don't cost more than a header comparison while nothing changed.
+ * <p>
+ * Field selection and pagination are those of every Jenkins remote API: {@code tree=records[id,summary[*]]}
+ * selects fields, {@code tree=instrumentations[*]{0,20}} returns the first 20 entries of a list.
+ */
+public class CachingApi extends Api {
+    private final String version;
+    private final long lastModified;
+
+    /**
+     * @param version      Changes whenever the exported data changes, or {@code null} if the data is still changing
+     *                     and must not be cached
+     * @param lastModified Time the exported data last changed, in milliseconds since the epoch
+     */
+    public CachingApi(@Nonnull Object bean, @CheckForNull String version, long lastModified) {
+        super(bean);
+        this.version = version;
+        this.lastModified = lastModified;
+    }
+
+    @Override
+    public void doXml(StaplerRequest req, StaplerResponse rsp, @QueryParameter String xpath,
+                      @QueryParameter String wrapper, @QueryParameter String tree, @QueryParameter int depth)
+            throws IOException, ServletException {
+        if (!isNotModified(req, rsp)) {
+            super.doXml(req, rsp, xpath, wrapper, tree, depth);
+        }
+    }
+
+    @Override
+    public void doJson(StaplerRequest req, StaplerResponse rsp) throws IOException, ServletException {
+        if (!isNotModified(req, rsp)) {
+            super.doJson(req, rsp);
+        }
+    }
+
+    @Override
+    public void doPython(StaplerRequest req, StaplerResponse rsp) throws IOException, ServletException {
+        if (!isNotModified(req, rsp)) {
+            super.doPython(req, rsp);
+        }
+    }
+
+    /**
+     * Set the validators of the response and answer with {@code 304 Not Modified} if the client's copy is current.
+     * Clients cache each URL separately, so the validators need not depend on the query parameters.
+     *
+     * @return {@code true} if the response has been sent
+     */
+    private boolean isNotModified(StaplerRequest req, StaplerResponse rsp) {
+        if (version == null) {
+            return false;
+        }
+
+        String etag = '"' + version + '"';
+        rsp.setHeader("ETag", etag);
+        rsp.setHeader("Cache-Control", "private, no-cache");
+        String ifNoneMatch = req.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            // If-None-Match takes precedence over If-Modified-Since
+            if (ifNoneMatch.equals(etag) || ifNoneMatch.equals("W/" + etag)) {
+                rsp.setDateHeader("Last-Modified", lastModified);
+                rsp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return true;
+            }
+            rsp.setDateHeader("Last-Modified", lastModified);
+            return false;
+        }
+        return req.checkIfModified(lastModified, rsp);
+    }
+}
@@ -1,31 +1,193 @@
 package net.explorviz.jenkins.model;
 
+import hudson.model.Action;
+import hudson.model.Api;
+import hudson.model.Job;
 import hudson.model.Run;
 import jenkins.model.RunAction2;
+import jenkins.tasks.SimpleBuildStep;
+import net.explorviz.jenkins.ExplorVizInstance;
+import net.explorviz.jenkins.ExplorVizInstancePool;
 import net.explorviz.jenkins.Messages;
+import net.explorviz.jenkins.kieker.archive.RecordArchive;
+import net.explorviz.jenkins.kieker.replay.ReplaySpeed;
+import net.explorviz.jenkins.kieker.store.Execution;
+import net.explorviz.jenkins.kieker.store.TraceStore;
+import org.kohsuke.stapler.HttpResponse;
+import org.kohsuke.stapler.HttpResponses;
+import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.StaplerProxy;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+import org.kohsuke.stapler.interceptor.RequirePOST;
 
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
- * Added to builds to display the {@code ExplorViz} entry in the build menu.
+ * Added to builds to display the {@code ExplorViz} entry in the build menu. Also contributes the
+ * {@link OverheadTrendAction} and {@link InstrumentationIndexAction} to the job while it is the action of the last
+ * build.
+ * <p>
+ * The instrumentations of the build are available from the remote API at {@code explorviz/api/json}.
  */
-public class ExplorVizAction implements RunAction2, StaplerProxy {
+@ExportedBean
+public class ExplorVizAction implements RunAction2, StaplerProxy, SimpleBuildStep.LastBuildAction {
+    private static final Logger LOGGER = Logger.getLogger(ExplorVizAction.class.getName());
+
     /**
      * We may only keep a transient copy the parent objects, obtained in {@link #onLoad(Run)}
      */
     private transient Run<?, ?> run;
 
+    /**
+     * Records of the finished build, which don't change anymore
+     */
+    private transient volatile InstrumentationRecord[] completedRecords;
+
     @CheckForNull
     public Run getRun() {
         return this.run;
     }
 
     @Nonnull
+    @Exported
     public InstrumentationRecord[] getRecords() {
-        return run.getActions(InstrumentationAction.class).stream().map(InstrumentationAction::getRecord)
-                .toArray(InstrumentationRecord[]::new);
+        InstrumentationRecord[] records = completedRecords;
+        if (records == null) {
+            records = run.getActions(InstrumentationAction.class).stream().map(InstrumentationAction::getRecord)
+                    .toArray(InstrumentationRecord[]::new);
+            if (!run.isBuilding()) {
+                completedRecords = records;
+            }
+        }
+        return records;
+    }
+
+    @CheckForNull
+    private InstrumentationRecord findRecord(@CheckForNull String id) {
+        for (InstrumentationRecord record : getRecords()) {
+            if (record.getId().equals(id)) {
+                return record;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return Root executions of the slowest traces of the given instrumentation, see
+     * {@link InstrumentationRecord#getSlowestTraces()}. Empty if it has no {@link TraceStore} or was recorded before
+     * the slowest traces were kept with the record, because finding them would mean reading the whole store while
+     * rendering the page.
+     */
+    @Nonnull
+    public List<Execution> getSlowestTraces(@Nonnull InstrumentationRecord record) {
+        List<Execution> slowestTraces = record.getSlowestTraces();
+        return slowestTraces == null ? Collections.emptyList() : slowestTraces;
+    }
+
+    /**
+     * @return Whether the record archive of the given instrumentation can be downloaded, see
+     * {@link #doArchive(StaplerRequest, StaplerResponse, String)}
+     */
+    public boolean isArchiveAvailable(@Nonnull InstrumentationRecord record) {
+        return record.getArchiveName() != null && RecordArchive.getFile(run, record.getArchiveName()).isFile();
+    }
+
+    /**
+     * Show this page. Opening it counts as a use of the build's recordings, see
+     * {@link InstrumentationRecord#markUsed(Run)}.
+     */
+    public void doIndex(StaplerRequest req, StaplerResponse rsp) throws IOException, ServletException {
+        for (InstrumentationRecord record : getRecords()) {
+            record.markUsed(run);
+        }
+        req.getView(this, "index.jelly").forward(req, rsp);
+    }
+
+    /**
+     * Download the record archive of the instrumentation with the given id, which counts as a use of its recording.
+     */
+    public void doArchive(StaplerRequest req, StaplerResponse rsp, @QueryParameter String id)
+            throws IOException, ServletException {
+        InstrumentationRecord record = findRecord(id);
+        if (record == null || !isArchiveAvailable(record)) {
+            rsp.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        File archive = RecordArchive.getFile(run, record.getArchiveName());
+        record.markUsed(run);
+        rsp.setHeader("Content-Disposition", "attachment; filename=\"" + archive.getName() + "\"");
+        rsp.serveFile(req, archive.toURI().toURL());
+    }
+
+    /**
+     * @return Whether the current user may visualize this build, see {@link #doStart(String, String)}
+     */
+    public boolean isStartPermitted() {
+        return run.hasPermission(ExplorVizGlobalConfiguration.RUN);
+    }
+
+    /**
+     * Visualize an instrumentation of this build: replay its records into an ExplorViz instance of the given
+     * definition, see {@link ExplorVizInstancePool#visualize}, and redirect to the instance.
+     *
+     * @param explorVizDefinition Name of the {@link ExplorVizDefinition} to visualize with
+     * @param instrumentation     ID of the instrumentation
+     */
+    @RequirePOST
+    public HttpResponse doStart(@QueryParameter String explorVizDefinition, @QueryParameter String instrumentation)
+            throws IOException, InterruptedException {
+        run.checkPermission(ExplorVizGlobalConfiguration.RUN);
+
+        ExplorVizDefinition definition = ExplorVizDefinition.find(explorVizDefinition);
+        if (definition == null) {
+            return HttpResponses.error(HttpServletResponse.SC_BAD_REQUEST,
+                    "Unknown ExplorViz version " + explorVizDefinition);
+        }
+        InstrumentationRecord record = findRecord(instrumentation);
+        if (record == null) {
+            return HttpResponses.notFound();
+        }
+
+        ExplorVizInstance instance;
+        try {
+            instance = ExplorVizInstancePool.get().visualize(run, record, definition, ReplaySpeed.REAL_TIME);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to visualize " + record.getId() + " of " + run, e);
+            return HttpResponses.error(HttpServletResponse.SC_SERVICE_UNAVAILABLE, e.getMessage());
+        }
+        URL url = instance.getExplorVizURL();
+        if (url == null) {
+            return HttpResponses.error(HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+                    "ExplorViz instance " + instance.getName() + " exited");
+        }
+        return HttpResponses.redirectTo(url.toString());
+    }
+
+    /**
+     * @return The remote API, which lets clients revalidate their copy once the build finished
+     */
+    public Api getApi() {
+        if (run.isBuilding()) {
+            return new CachingApi(this, null, 0);
+        }
+        long completed = run.getStartTimeInMillis() + run.getDuration();
+        return new CachingApi(this, run.getExternalizableId() + "-" + getRecords().length, completed);
     }
 
     /*
@@ -62,6 +224,17 @@ public class ExplorVizAction implements RunAction2, StaplerProxy {
         return "explorviz";
     }
 
+    /*
+     * LastBuildAction
+     */
+
+    @Override
+    public Collection<? extends Action> getProjectActions() {
+        Job<?, ?> job = run.getParent();
+        return Arrays.asList(new OverheadTrendAction(job), new InstrumentationIndexAction(job),
+                new RecordingDiskUsageAction(job));
+    }
+
     /*
      * StaplerProxy
      */
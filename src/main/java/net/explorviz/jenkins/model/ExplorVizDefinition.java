@@ -9,7 +9,14 @@ import org.jenkinsci.Symbol;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.QueryParameter;
 
+import javax.annotation.CheckForNull;
+
 public class ExplorVizDefinition implements Describable<ExplorVizDefinition> {
+    /**
+     * Name of the definition that is offered until definitions can be configured
+     */
+    public static final String BUILTIN_NAME = "builtin1.4.0";
+
     private final String name;
     private final String composeDefinition;
 
@@ -19,6 +26,17 @@ public class ExplorVizDefinition implements Describable<ExplorVizDefinition> {
         this.composeDefinition = composeDefinition;
     }
 
+    /**
+     * @return The definition with the given name, or {@code null} if there is none. Only the built-in definition
+     * exists so far; it has no compose definition yet, so only the {@link net.explorviz.jenkins.LocalProcessLauncher}
+     * can launch it.
+     */
+    @CheckForNull
+    public static ExplorVizDefinition find(@CheckForNull String name) {
+        // TODO: Look up definitions configured in ExplorVizGlobalConfiguration
+        return BUILTIN_NAME.equals(name) ? new ExplorVizDefinition(BUILTIN_NAME, null) : null;
+    }
+
     @Override
     public Descriptor<ExplorVizDefinition> getDescriptor() {
         Jenkins instance = Jenkins.getInstanceOrNull();
@@ -4,10 +4,19 @@ import hudson.Extension;
 import hudson.security.Permission;
 import hudson.security.PermissionGroup;
 import hudson.security.PermissionScope;
+import hudson.util.FormValidation;
 import jenkins.model.GlobalConfiguration;
 import jenkins.model.Jenkins;
+import net.explorviz.jenkins.ExplorVizInstancePool;
 import net.explorviz.jenkins.Messages;
+import net.sf.json.JSONObject;
 import org.jenkinsci.Symbol;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.StaplerRequest;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
 
 /**
  * TODO: ExplorVizGlobalConfiguration to modify available ExplorVizDefinitions and choose default one
@@ -39,4 +48,114 @@ public class ExplorVizGlobalConfiguration extends GlobalConfiguration {
      */
     public static final Permission VIEW = new Permission(PERMISSIONS, "View",
             Messages._ExplorVizGlobalConfiguration_VIEW_description(), RUN, PermissionScope.RUN);
+
+    public static final int DEFAULT_MAX_INSTANCES = 2;
+    public static final int DEFAULT_IDLE_TIMEOUT_MINUTES = 30;
+
+    private int maxInstances = DEFAULT_MAX_INSTANCES;
+    private int idleTimeoutMinutes = DEFAULT_IDLE_TIMEOUT_MINUTES;
+    private RetentionPolicy retention;
+    private long maxTotalMegabytes;
+
+    public ExplorVizGlobalConfiguration() {
+        load();
+    }
+
+    @Nonnull
+    public static ExplorVizGlobalConfiguration get() {
+        ExplorVizGlobalConfiguration configuration = GlobalConfiguration.all().get(ExplorVizGlobalConfiguration.class);
+        if (configuration == null) {
+            throw new IllegalStateException();
+        }
+        return configuration;
+    }
+
+    /**
+     * @return Maximum number of ExplorViz instances to run at the same time
+     * @see ExplorVizInstancePool
+     */
+    public int getMaxInstances() {
+        return maxInstances;
+    }
+
+    @DataBoundSetter
+    public void setMaxInstances(int maxInstances) {
+        this.maxInstances = Math.max(1, maxInstances);
+    }
+
+    /**
+     * @return Minutes after which an ExplorViz instance that is not used anymore is shut down
+     * @see ExplorVizInstancePool
+     */
+    public int getIdleTimeoutMinutes() {
+        return idleTimeoutMinutes;
+    }
+
+    @DataBoundSetter
+    public void setIdleTimeoutMinutes(int idleTimeoutMinutes) {
+        this.idleTimeoutMinutes = Math.max(1, idleTimeoutMinutes);
+    }
+
+    /**
+     * @return The retention policy of jobs that don't configure their own, or {@code null} to keep recordings forever
+     * @see RetentionPolicy#forJob(hudson.model.Job)
+     */
+    @CheckForNull
+    public RetentionPolicy getRetention() {
+        return retention;
+    }
+
+    @DataBoundSetter
+    public void setRetention(@CheckForNull RetentionPolicy retention) {
+        this.retention = retention;
+    }
+
+    /**
+     * @return Maximum combined size of the recordings of all jobs in megabytes, or {@code 0} if unlimited. Applies on
+     * top of the {@link RetentionPolicy} of each job.
+     * @see RecordingRetention
+     */
+    public long getMaxTotalMegabytes() {
+        return maxTotalMegabytes;
+    }
+
+    @DataBoundSetter
+    public void setMaxTotalMegabytes(long maxTotalMegabytes) {
+        this.maxTotalMegabytes = Math.max(0, maxTotalMegabytes);
+    }
+
+    /**
+     * @return Maximum combined size of the recordings of all jobs in bytes, or {@code 0} if unlimited
+     */
+    public long getMaxTotalBytes() {
+        return maxTotalMegabytes * RetentionPolicy.BYTES_PER_MEGABYTE;
+    }
+
+    /**
+     * @return The pool of running instances, to show its statistics
+     */
+    public ExplorVizInstancePool getInstancePool() {
+        return ExplorVizInstancePool.get();
+    }
+
+    @Override
+    public boolean configure(StaplerRequest req, JSONObject json) throws FormException {
+        // Unchecked optional properties are missing from the form data, so they would not be unset otherwise
+        retention = null;
+        req.bindJSON(this, json);
+        save();
+        return true;
+    }
+
+    public FormValidation doCheckMaxInstances(@QueryParameter String value) {
+        return FormValidation.validatePositiveInteger(value);
+    }
+
+    public FormValidation doCheckIdleTimeoutMinutes(@QueryParameter String value) {
+        return FormValidation.validatePositiveInteger(value);
+    }
+
+    public FormValidation doCheckMaxTotalMegabytes(@QueryParameter String value) {
+        return FormValidation.validateNonNegativeInteger(value);
+    }
 }
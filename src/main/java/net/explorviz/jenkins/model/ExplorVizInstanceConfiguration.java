@@ -1,7 +1,6 @@
 package net.explorviz.jenkins.model;
 
 import hudson.Extension;
-import hudson.Util;
 import hudson.model.Describable;
 import hudson.model.Descriptor;
 import hudson.model.Job;
@@ -41,23 +40,24 @@ public class ExplorVizInstanceConfiguration implements Describable<ExplorVizInst
         public ListBoxModel doFillExplorVizDefinitionItems() {
             ListBoxModel items = new ListBoxModel();
             // TODO: Load from global ExplorVizDefinitionConfiguration
-            items.add(new ListBoxModel.Option("Built-in 1.4.0 (default)", "builtin1.4.0", true));
+            items.add(new ListBoxModel.Option("Built-in 1.4.0 (default)", ExplorVizDefinition.BUILTIN_NAME, true));
             return items;
         }
 
-        public ListBoxModel doFillInstrumentationItems(@AncestorInPath Job job) {
+        /**
+         * Lists the instrumentations of all builds of the job, newest first, from the job's
+         * {@link InstrumentationIndex}. Values are {@code <build number>/<instrumentation ID>}.
+         */
+        public ListBoxModel doFillInstrumentationItems(@AncestorInPath Job<?, ?> job) {
             ListBoxModel items = new ListBoxModel();
+            if (job == null || !job.hasPermission(ExplorVizGlobalConfiguration.VIEW)) {
+                return items;
+            }
 
             boolean first = true;
-            for (InstrumentationAction action : job.getActions(InstrumentationAction.class)) {
-                InstrumentationRecord record = action.getRecord();
-
-                String displayName = record.getId();
-                if (Util.fixEmptyAndTrim(record.getName()) != null) {
-                    displayName = record.getName() + " (" + record.getId() + ")";
-                }
-
-                items.add(new ListBoxModel.Option(displayName, record.getId(), first));
+            for (InstrumentationIndex.Entry entry : InstrumentationIndex.forJob(job).getEntries()) {
+                items.add(new ListBoxModel.Option("#" + entry.getBuildNumber() + " " + entry.getDisplayName(),
+                        entry.getBuildNumber() + "/" + entry.getId(), first));
                 first = false;
             }
 
@@ -0,0 +1,52 @@
+package net.explorviz.jenkins.model;
+
+import hudson.Extension;
+import hudson.model.Job;
+import hudson.model.JobProperty;
+import hudson.model.JobPropertyDescriptor;
+import net.explorviz.jenkins.Messages;
+import net.sf.json.JSONObject;
+import org.jenkinsci.Symbol;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.StaplerRequest;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+/**
+ * ExplorViz settings of a job. Currently only the {@link RetentionPolicy} for its recordings, which overrides the
+ * global one.
+ */
+public class ExplorVizJobProperty extends JobProperty<Job<?, ?>> {
+    private final RetentionPolicy retention;
+
+    @DataBoundConstructor
+    public ExplorVizJobProperty(@CheckForNull RetentionPolicy retention) {
+        this.retention = retention;
+    }
+
+    /**
+     * @return The retention policy of this job, or {@code null} to use the global one
+     */
+    @CheckForNull
+    public RetentionPolicy getRetention() {
+        return retention;
+    }
+
+    @Symbol("explorvizRetention")
+    @Extension
+    public static class DescriptorImpl extends JobPropertyDescriptor {
+        @Override
+        @Nonnull
+        public String getDisplayName() {
+            return Messages.ExplorVizJobProperty_DescriptorImpl_DisplayName();
+        }
+
+        @Override
+        public JobProperty<?> newInstance(StaplerRequest req, JSONObject formData) throws FormException {
+            // Don't store the property with jobs that use the global policy
+            ExplorVizJobProperty property = (ExplorVizJobProperty) super.newInstance(req, formData);
+            return property == null || property.getRetention() == null ? null : property;
+        }
+    }
+}
@@ -0,0 +1,541 @@
+package net.explorviz.jenkins.model;
+
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.model.Item;
+import hudson.model.Job;
+import hudson.model.Run;
+import hudson.model.Saveable;
+import hudson.model.listeners.ItemListener;
+import hudson.model.listeners.RunListener;
+import hudson.model.listeners.SaveableListener;
+import jenkins.model.Jenkins;
+import net.explorviz.jenkins.kieker.archive.RecordArchive;
+import net.explorviz.jenkins.kieker.records.RecordSummary;
+import net.explorviz.jenkins.kieker.store.TraceStore;
+import net.explorviz.jenkins.overhead.OverheadReport;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Lists the instrumentations of all builds of a job, so pickers and charts don't have to load every build to find
+ * them. Each {@link Entry} holds what is needed to list an instrumentation; its full {@link InstrumentationRecord}
+ * stays with the build.
+ * <p>
+ * The index is stored in its own file in the job directory, not in the job's {@code config.xml}, so recording an
+ * instrumentation does not change the job configuration. {@link net.explorviz.jenkins.KiekerBuilder} adds an entry
+ * whenever it attaches a record to a build, and entries are removed when their build is deleted. Jobs that recorded
+ * instrumentations before the index existed are indexed by loading their builds once, on first access.
+ * <p>
+ * Entries also track where the data of their recording is stored and when it was last used, so
+ * {@link RecordingRetention} can bound the disk usage of a job without loading its builds.
+ */
+public final class InstrumentationIndex implements Saveable {
+    private static final Logger LOGGER = Logger.getLogger(InstrumentationIndex.class.getName());
+
+    private static final String FILE_NAME = "explorviz-instrumentations.xml";
+
+    /**
+     * How much the last use of a recording may be off, to not save the index on every use
+     */
+    private static final long USE_RESOLUTION_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    /**
+     * Indices loaded so far, by full name of their job. Each index is loaded under the lock of its holder, so loading
+     * the index of one job doesn't block the others; each index guards its own entries.
+     */
+    private static final ConcurrentMap<String, Holder> LOADED = new ConcurrentHashMap<>();
+
+    private transient Job<?, ?> job;
+
+    /**
+     * Newest build first; instrumentations of the same build in the order they were recorded.
+     */
+    private List<Entry> entries = new ArrayList<>();
+
+    /**
+     * Time of the last change to the entries, in milliseconds since the epoch
+     */
+    private long lastModified;
+
+    private InstrumentationIndex(Job<?, ?> job) {
+        this.job = job;
+    }
+
+    /**
+     * @return The index of the given job, loaded or built on first access
+     */
+    @Nonnull
+    public static InstrumentationIndex forJob(@Nonnull Job<?, ?> job) {
+        return LOADED.computeIfAbsent(job.getFullName(), fullName -> new Holder()).get(job);
+    }
+
+    private static InstrumentationIndex load(Job<?, ?> job) {
+        XmlFile file = getFile(job);
+        if (file.exists()) {
+            try {
+                InstrumentationIndex index = (InstrumentationIndex) file.read();
+                index.job = job;
+                if (index.entries == null) {
+                    index.entries = new ArrayList<>();
+                }
+                return index;
+            } catch (IOException | ClassCastException e) {
+                LOGGER.log(Level.WARNING, "Failed to load instrumentation index of " + job.getFullName()
+                        + ", rebuilding it", e);
+            }
+        }
+
+        InstrumentationIndex index = new InstrumentationIndex(job);
+        index.rebuild();
+        return index;
+    }
+
+    /**
+     * @return {@code true} if the given job has an index already, i.e. it has recorded instrumentations
+     */
+    static boolean exists(@Nonnull Job<?, ?> job) {
+        Holder holder = LOADED.get(job.getFullName());
+        InstrumentationIndex index = holder == null ? null : holder.index;
+        return (index != null && !index.isEmpty()) || getFile(job).exists();
+    }
+
+    /**
+     * Forget the loaded indices of the given item and the jobs inside it, after it was deleted, renamed or moved.
+     */
+    private static void unload(@Nonnull String fullName) {
+        LOADED.keySet().removeIf(name -> name.equals(fullName) || name.startsWith(fullName + '/'));
+    }
+
+    private static XmlFile getFile(Job<?, ?> job) {
+        return new XmlFile(Jenkins.XSTREAM2, new File(job.getRootDir(), FILE_NAME));
+    }
+
+    /**
+     * Index all instrumentations recorded so far, loading every build of the job. The index is only saved if there are
+     * any, so jobs that never recorded an instrumentation don't get an index file.
+     */
+    private synchronized void rebuild() {
+        entries.clear();
+        for (Run<?, ?> run : job.getBuilds()) {
+            for (InstrumentationAction action : run.getActions(InstrumentationAction.class)) {
+                entries.add(new Entry(run, action.getRecord()));
+            }
+        }
+        if (!entries.isEmpty()) {
+            saveQuietly();
+        }
+    }
+
+    /**
+     * Add an instrumentation that was just attached to a build of this index's job.
+     */
+    public synchronized void add(@Nonnull Run<?, ?> run, @Nonnull InstrumentationRecord record) {
+        // Builds of a job may finish out of order, so find the place of the new entry
+        int position = 0;
+        while (position < entries.size() && entries.get(position).getBuildNumber() > run.getNumber()) {
+            position++;
+        }
+        while (position < entries.size() && entries.get(position).getBuildNumber() == run.getNumber()) {
+            position++;
+        }
+        entries.add(position, new Entry(run, record));
+        saveQuietly();
+    }
+
+    /**
+     * Remove the instrumentations of a deleted build.
+     */
+    synchronized void remove(int buildNumber) {
+        if (entries.removeIf(entry -> entry.getBuildNumber() == buildNumber)) {
+            saveQuietly();
+        }
+    }
+
+    /**
+     * Remember that the recording of an instrumentation was used, see {@link InstrumentationRecord#markUsed(Run)}.
+     */
+    public synchronized void markUsed(int buildNumber, @Nonnull String id) {
+        long now = System.currentTimeMillis();
+        for (Entry entry : entries) {
+            if (entry.getBuildNumber() == buildNumber && entry.getId().equals(id)) {
+                if (now - entry.getLastUsed() >= USE_RESOLUTION_MILLIS) {
+                    entry.lastUsed = now;
+                    saveQuietly();
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Record that the record archive and trace store of an instrumentation were deleted.
+     */
+    synchronized void evicted(@Nonnull Entry entry) {
+        entry.archiveBytes = 0;
+        entry.traceStoreBytes = 0;
+        saveQuietly();
+    }
+
+    /**
+     * Record that the record folders of an instrumentation were deleted from the workspace.
+     */
+    synchronized void workspaceReleased(@Nonnull Entry entry) {
+        entry.workspaceReleased = true;
+        saveQuietly();
+    }
+
+    /**
+     * @return All indexed instrumentations, newest build first
+     */
+    @Nonnull
+    public synchronized List<Entry> getEntries() {
+        return Collections.unmodifiableList(new ArrayList<>(entries));
+    }
+
+    private synchronized boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * @param maxBuilds Maximum number of builds to return instrumentations of
+     * @return The instrumentations of the most recent builds that have any, newest build first
+     */
+    @Nonnull
+    public synchronized List<Entry> getEntries(int maxBuilds) {
+        List<Entry> recent = new ArrayList<>();
+        int builds = 0;
+        int lastBuildNumber = -1;
+        for (Entry entry : entries) {
+            if (entry.getBuildNumber() != lastBuildNumber) {
+                if (builds == maxBuilds) {
+                    break;
+                }
+                builds++;
+                lastBuildNumber = entry.getBuildNumber();
+            }
+            recent.add(entry);
+        }
+        return Collections.unmodifiableList(recent);
+    }
+
+    /**
+     * @return Time the entries last changed, in milliseconds since the epoch
+     */
+    public synchronized long getLastModified() {
+        return lastModified;
+    }
+
+    @Override
+    public synchronized void save() throws IOException {
+        getFile(job).write(this);
+        SaveableListener.fireOnChange(this, getFile(job));
+    }
+
+    private void saveQuietly() {
+        lastModified = System.currentTimeMillis();
+        try {
+            save();
+        } catch (IOException e) {
+            // Kept in memory until the next save; rebuilt if the file is lost
+            LOGGER.log(Level.WARNING, "Failed to save instrumentation index of " + job.getFullName(), e);
+        }
+    }
+
+    /**
+     * Loads the index of a job once.
+     */
+    private static final class Holder {
+        private volatile InstrumentationIndex index;
+
+        @Nonnull
+        synchronized InstrumentationIndex get(@Nonnull Job<?, ?> job) {
+            if (index == null) {
+                index = load(job);
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Index entry of a single instrumentation.
+     */
+    @ExportedBean
+    public static final class Entry {
+        private final String id;
+        private final String name;
+        private final int buildNumber;
+        private final long timestamp;
+        private final long recordCount;
+        private final long traceCount;
+        private final int operationCount;
+        private final long timeSpanMillis;
+        private final long diskBytes;
+        private final String archiveName;
+        private final String traceStoreName;
+        private final String nodeName;
+        private final String workingDirectory;
+        private final OverheadReport overhead;
+
+        // Changed by the index as the recording is used and evicted
+        private long archiveBytes;
+        private long traceStoreBytes;
+        private boolean workspaceReleased;
+        private long lastUsed;
+
+        Entry(@Nonnull Run<?, ?> run, @Nonnull InstrumentationRecord record) {
+            this.id = record.getId();
+            this.name = record.getName();
+            this.buildNumber = run.getNumber();
+            this.timestamp = run.getTimeInMillis();
+            this.archiveName = record.getArchiveName();
+            this.traceStoreName = record.getTraceStoreName();
+            this.nodeName = record.getNodeName();
+            this.workingDirectory = record.getWorkingDirectory();
+            this.overhead = record.getOverhead();
+            this.archiveBytes = archiveName == null ? 0 : RecordArchive.getFile(run, archiveName).length();
+            this.traceStoreBytes = traceStoreName == null ? 0 : TraceStore.getFile(run, traceStoreName).length();
+
+            RecordSummary summary = record.getSummary();
+            this.recordCount = summary == null ? -1 : summary.getRecordCount();
+            this.traceCount = summary == null ? -1 : summary.getTraceCount();
+            this.operationCount = summary == null ? -1 : summary.getOperationCount();
+            this.timeSpanMillis = summary == null ? -1 : summary.getTimeSpanMillis();
+            this.diskBytes = summary == null ? -1 : summary.getDiskBytes();
+        }
+
+        /**
+         * @see InstrumentationRecord#getId()
+         */
+        @Exported(visibility = 2)
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * @see InstrumentationRecord#getName()
+         */
+        @CheckForNull
+        @Exported(visibility = 2)
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return {@code name (id)}, or just the ID if the instrumentation has no name
+         */
+        @Exported(visibility = 2)
+        public String getDisplayName() {
+            return name == null ? id : name + " (" + id + ")";
+        }
+
+        @Exported(visibility = 2)
+        public int getBuildNumber() {
+            return buildNumber;
+        }
+
+        /**
+         * @return Start time of the build, in milliseconds since the epoch
+         */
+        @Exported(visibility = 2)
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        /**
+         * @return Number of records, or {@code -1} if the instrumentation has no {@link RecordSummary}
+         */
+        @Exported(visibility = 2)
+        public long getRecordCount() {
+            return recordCount;
+        }
+
+        /**
+         * @return Number of traces, or {@code -1} if the instrumentation has no {@link RecordSummary}
+         */
+        @Exported(visibility = 2)
+        public long getTraceCount() {
+            return traceCount;
+        }
+
+        /**
+         * @return Number of operations, or {@code -1} if the instrumentation has no {@link RecordSummary}
+         */
+        @Exported(visibility = 2)
+        public int getOperationCount() {
+            return operationCount;
+        }
+
+        /**
+         * @return Time span covered by the records, or {@code -1} if the instrumentation has no
+         * {@link RecordSummary}
+         */
+        @Exported(visibility = 2)
+        public long getTimeSpanMillis() {
+            return timeSpanMillis;
+        }
+
+        /**
+         * @return Size of the records on disk, or {@code -1} if the instrumentation has no {@link RecordSummary}
+         */
+        @Exported(visibility = 2)
+        public long getDiskBytes() {
+            return diskBytes;
+        }
+
+        /**
+         * @see InstrumentationRecord#getArchiveName()
+         */
+        @CheckForNull
+        @Exported(visibility = 2)
+        public String getArchiveName() {
+            return archiveName;
+        }
+
+        /**
+         * @see InstrumentationRecord#getTraceStoreName()
+         */
+        @CheckForNull
+        public String getTraceStoreName() {
+            return traceStoreName;
+        }
+
+        /**
+         * @see InstrumentationRecord#getNodeName()
+         */
+        @CheckForNull
+        public String getNodeName() {
+            return nodeName;
+        }
+
+        /**
+         * @see InstrumentationRecord#getWorkingDirectory()
+         */
+        @CheckForNull
+        public String getWorkingDirectory() {
+            return workingDirectory;
+        }
+
+        /**
+         * @return Size of the record archive in the build directory, or {@code 0} if there is none (anymore)
+         */
+        @Exported(visibility = 2)
+        public long getArchiveBytes() {
+            return archiveBytes;
+        }
+
+        /**
+         * @return Size of the trace store in the build directory, or {@code 0} if there is none (anymore)
+         */
+        @Exported(visibility = 2)
+        public long getTraceStoreBytes() {
+            return traceStoreBytes;
+        }
+
+        /**
+         * @return {@code true} if the record folders may still be in the workspace they were recorded in
+         */
+        @Exported(visibility = 2)
+        public boolean isInWorkspace() {
+            return workingDirectory != null && !workspaceReleased;
+        }
+
+        /**
+         * @return Size of the record folders in the workspace when they were collected, or {@code 0} if they were
+         * deleted or their size is unknown
+         */
+        @Exported(visibility = 2)
+        public long getWorkspaceBytes() {
+            return isInWorkspace() ? Math.max(diskBytes, 0) : 0;
+        }
+
+        /**
+         * @return Disk space taken by the recording, in the build directory and workspace
+         */
+        @Exported(visibility = 2)
+        public long getStoredBytes() {
+            return archiveBytes + traceStoreBytes + getWorkspaceBytes();
+        }
+
+        /**
+         * @return {@code false} if all data of the recording was deleted, and only this entry and the build's
+         * {@link InstrumentationRecord} remain
+         */
+        @Exported(visibility = 2)
+        public boolean isStored() {
+            return archiveBytes > 0 || traceStoreBytes > 0 || isInWorkspace();
+        }
+
+        /**
+         * @return Time the recording was last used, see {@link InstrumentationRecord#markUsed(Run)}, or recorded if it
+         * never was, in milliseconds since the epoch
+         */
+        @Exported(visibility = 2)
+        public long getLastUsed() {
+            return lastUsed == 0 ? timestamp : lastUsed;
+        }
+
+        /**
+         * @see #getLastUsed()
+         */
+        @Nonnull
+        public Date getLastUsedDate() {
+            return new Date(getLastUsed());
+        }
+
+        /**
+         * @see InstrumentationRecord#getOverhead()
+         */
+        @CheckForNull
+        @Exported(visibility = 2)
+        public OverheadReport getOverhead() {
+            return overhead;
+        }
+    }
+
+    /**
+     * Removes the instrumentations of deleted builds from the index.
+     */
+    @Extension
+    public static final class DeletedRunListener extends RunListener<Run<?, ?>> {
+        @Override
+        public void onDeleted(Run<?, ?> run) {
+            Job<?, ?> job = run.getParent();
+            // An index that does not exist yet is built without the deleted build anyway
+            if (exists(job)) {
+                forJob(job).remove(run.getNumber());
+            }
+        }
+    }
+
+    /**
+     * Forgets the indices of deleted jobs, and of renamed or moved ones, whose index is loaded again from their new
+     * location.
+     */
+    @Extension
+    public static final class JobLocationListener extends ItemListener {
+        @Override
+        public void onDeleted(Item item) {
+            unload(item.getFullName());
+        }
+
+        @Override
+        public void onLocationChanged(Item item, String oldFullName, String newFullName) {
+            unload(oldFullName);
+        }
+    }
+}
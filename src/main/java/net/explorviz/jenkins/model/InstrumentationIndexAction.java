@@ -0,0 +1,80 @@
+package net.explorviz.jenkins.model;
+
+import hudson.model.Action;
+import hudson.model.Api;
+import hudson.model.Job;
+import net.explorviz.jenkins.Messages;
+import org.kohsuke.stapler.StaplerProxy;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+import javax.annotation.Nonnull;
+import java.util.List;
+
+/**
+ * Exports the {@link InstrumentationIndex} of a job at {@code explorvizInstrumentations/api/json}, so dashboards can
+ * list the instrumentations of all builds without loading any of them. Use the instrumentation's build's
+ * {@link ExplorVizAction} API for the complete records.
+ * <p>
+ * Contributed to the job by {@link ExplorVizAction}.
+ */
+@ExportedBean
+public class InstrumentationIndexAction implements Action, StaplerProxy {
+    private final Job<?, ?> job;
+
+    public InstrumentationIndexAction(@Nonnull Job<?, ?> job) {
+        this.job = job;
+    }
+
+    public Job<?, ?> getJob() {
+        return job;
+    }
+
+    /**
+     * @return The instrumentations of all builds, newest build first
+     */
+    @Nonnull
+    @Exported
+    public List<InstrumentationIndex.Entry> getInstrumentations() {
+        return InstrumentationIndex.forJob(job).getEntries();
+    }
+
+    /**
+     * @return The remote API, which lets clients revalidate their copy until another instrumentation is recorded
+     */
+    public Api getApi() {
+        InstrumentationIndex index = InstrumentationIndex.forJob(job);
+        long lastModified = index.getLastModified();
+        return new CachingApi(this, Long.toHexString(lastModified) + "-" + index.getEntries().size(), lastModified);
+    }
+
+    /*
+     * Action
+     */
+
+    @Override
+    public String getIconFileName() {
+        // Only available through the remote API
+        return null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return Messages.InstrumentationIndexAction_DisplayName();
+    }
+
+    @Override
+    public String getUrlName() {
+        return "explorvizInstrumentations";
+    }
+
+    /*
+     * StaplerProxy
+     */
+
+    @Override
+    public Object getTarget() {
+        job.checkPermission(ExplorVizGlobalConfiguration.VIEW);
+        return this;
+    }
+}
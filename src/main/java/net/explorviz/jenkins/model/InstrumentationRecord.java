@@ -1,23 +1,72 @@
 package net.explorviz.jenkins.model;
 
+import hudson.FilePath;
 import hudson.Util;
+import hudson.model.Computer;
+import hudson.model.Node;
+import hudson.model.Run;
+import jenkins.model.Jenkins;
+import net.explorviz.jenkins.kieker.archive.RecordArchive;
+import net.explorviz.jenkins.kieker.jmx.WriterStatistics;
+import net.explorviz.jenkins.kieker.records.RecordSummary;
+import net.explorviz.jenkins.kieker.store.Execution;
+import net.explorviz.jenkins.kieker.store.TraceStore;
+import net.explorviz.jenkins.overhead.OverheadReport;
+import net.explorviz.jenkins.regression.RegressionReport;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
 
+import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
 import java.io.Serializable;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Stores data logged during an instrumentation, including records that kieker logged.
  */
+@ExportedBean
 public class InstrumentationRecord implements Serializable {
     private static final long serialVersionUID = -3832303988591534239L;
 
+    private static final Logger LOGGER = Logger.getLogger(InstrumentationRecord.class.getName());
+
     public static final int EXIT_CODE_SUCCESS = 0;
     public static final int EXIT_CODE_KILLED = 130;
 
+    /**
+     * {@link #getWarmUpMillis()} of a recording whose monitoring was never enabled during the warm-up
+     */
+    public static final long WARM_UP_NEVER_ENABLED = -1;
+    /**
+     * {@link #getWarmUpMillis()} of a recording with a warm-up whose duration is unknown, because the activator that
+     * enabled monitoring could not be found or did not stop in time
+     */
+    public static final long WARM_UP_UNKNOWN = -2;
+
+    /**
+     * Number of slowest traces kept per instrumentation
+     */
+    public static final int SLOWEST_TRACES = 10;
+
     private final String id;
     private final String name;
     private final String kiekerLogFolderName;
     private final int applicationExitCode;
+    private final RecordSummary summary;
+    private final String archiveName;
+    private String nodeName;
+    private String workingDirectory;
+    private String traceStoreName;
+    private List<Execution> slowestTraces;
+    private OverheadReport overhead;
+    private WriterStatistics writerStatistics;
+    private long warmUpMillis;
+    private RegressionReport regressionReport;
 
     /**
      * @param id                  An alphanumerical identifier for this instrumentation, unique within a single build
@@ -32,21 +81,240 @@ public class InstrumentationRecord implements Serializable {
         this.name = Util.fixEmptyAndTrim(name);
         this.kiekerLogFolderName = kiekerLogFolderName;
         this.applicationExitCode = applicationExitCode;
+        this.summary = null;
+        this.archiveName = null;
+    }
+
+    /**
+     * @param id                  An alphanumerical identifier for this instrumentation, unique within a single build
+     * @param name                A display name for this instrumentation, to be read by humans. May be {@code null} to
+     *                            only show "ExplorViz".
+     * @param summary             Summary of the records kieker logged. Its first record directory is used as
+     *                            {@link #getKiekerLogFolderName()}.
+     * @param archiveName         File name of the record archive in the build directory, or {@code null} if the
+     *                            records were not archived
+     * @param applicationExitCode The exit code of the application process
+     */
+    public InstrumentationRecord(String id, String name, @Nonnull RecordSummary summary,
+                                 @Nullable String archiveName, int applicationExitCode) {
+        this.id = id;
+        this.name = Util.fixEmptyAndTrim(name);
+        this.kiekerLogFolderName = summary.getRecordDirectories()[0];
+        this.applicationExitCode = applicationExitCode;
+        this.summary = summary;
+        this.archiveName = archiveName;
     }
 
+    @Exported(visibility = 2)
     public String getId() {
         return id;
     }
 
+    @Exported(visibility = 2)
     public String getName() {
         return name;
     }
 
-    // TODO: Replace with actual kieker record data
     public String getKiekerLogFolderName() {
         return kiekerLogFolderName;
     }
 
+    /**
+     * @return Statistics about the records kieker logged, computed when the records were collected. {@code null} for
+     * instrumentations recorded by older versions of this plugin.
+     */
+    @CheckForNull
+    @Exported(visibility = 2)
+    public RecordSummary getSummary() {
+        return summary;
+    }
+
+    /**
+     * @return File name of the record archive in the build directory, or {@code null} if the records were not
+     * archived
+     * @see RecordArchive#getFile(Run, String)
+     */
+    @CheckForNull
+    @Exported(visibility = 2)
+    public String getArchiveName() {
+        return archiveName;
+    }
+
+    /**
+     * @return Name of the node the instrumentation ran on, {@code ""} for the controller, or {@code null} if unknown
+     */
+    @CheckForNull
+    public String getNodeName() {
+        return nodeName;
+    }
+
+    /**
+     * @return Path of the instrumentation's working directory on {@link #getNodeName() its node}, which holds the
+     * record folders until the workspace is cleaned, or {@code null} if unknown
+     */
+    @CheckForNull
+    public String getWorkingDirectory() {
+        return workingDirectory;
+    }
+
+    /**
+     * Remember where the records of this instrumentation were written, so they can be read on their node later.
+     */
+    public void setLocation(@Nonnull FilePath workingDirectory) {
+        Computer computer = workingDirectory.toComputer();
+        this.nodeName = computer == null ? null : computer.getName();
+        this.workingDirectory = workingDirectory.getRemote();
+    }
+
+    /**
+     * Find the records of this instrumentation, preferring the working directory on the node that recorded them, so
+     * they can be read there instead of being transferred to the controller.
+     *
+     * @param run The build this instrumentation belongs to
+     * @return The working directory if its node is online and it still holds the records, otherwise the record
+     * archive on the controller, or {@code null} if neither is available
+     */
+    @CheckForNull
+    public FilePath findRecords(@Nonnull Run<?, ?> run) throws InterruptedException {
+        if (nodeName != null && workingDirectory != null) {
+            Jenkins jenkins = Jenkins.get();
+            Node node = nodeName.isEmpty() ? jenkins : jenkins.getNode(nodeName);
+            FilePath directory = node == null ? null : node.createPath(workingDirectory);
+            try {
+                if (directory != null && directory.child(kiekerLogFolderName).isDirectory()) {
+                    return directory;
+                }
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Failed to look for the records of " + id + " on " + nodeName, e);
+            }
+        }
+
+        if (archiveName != null) {
+            File archive = RecordArchive.getFile(run, archiveName);
+            if (archive.isFile()) {
+                return new FilePath(archive);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return File name of the trace store in the build directory, or {@code null} if none was written
+     * @see TraceStore#getFile(Run, String)
+     */
+    @CheckForNull
+    @Exported(visibility = 2)
+    public String getTraceStoreName() {
+        return traceStoreName;
+    }
+
+    public void setTraceStoreName(@Nullable String traceStoreName) {
+        this.traceStoreName = traceStoreName;
+    }
+
+    /**
+     * @return Root executions of the {@link #SLOWEST_TRACES} slowest traces, slowest first, computed from the trace
+     * store when it was written. {@code null} if there is no trace store or it was written before they were kept.
+     */
+    @CheckForNull
+    public List<Execution> getSlowestTraces() {
+        return slowestTraces;
+    }
+
+    public void setSlowestTraces(@Nullable List<Execution> slowestTraces) {
+        this.slowestTraces = slowestTraces;
+    }
+
+    /**
+     * Remember that the records of this instrumentation were used, for {@link RecordingRetention}: they were
+     * visualized, their archive was downloaded or the ExplorViz page of their build was opened. Lists, charts and the
+     * remote API don't count, as they show every recording of a job.
+     *
+     * @param run The build this instrumentation belongs to
+     */
+    public void markUsed(@Nonnull Run<?, ?> run) {
+        InstrumentationIndex.forJob(run.getParent()).markUsed(run.getNumber(), id);
+    }
+
+    /**
+     * Load the trace store of this instrumentation for querying.
+     *
+     * @param run The build this instrumentation belongs to
+     * @return The store, or {@code null} if there is none
+     * @throws IOException If the store exists but can't be read
+     */
+    @CheckForNull
+    public TraceStore readTraceStore(@Nonnull Run<?, ?> run) throws IOException {
+        if (traceStoreName == null) {
+            return null;
+        }
+        File file = TraceStore.getFile(run, traceStoreName);
+        if (!file.isFile()) {
+            return null;
+        }
+        return TraceStore.read(file);
+    }
+
+    /**
+     * @return Comparison of the instrumented run to a run without monitoring, or {@code null} if the overhead was not
+     * measured
+     */
+    @CheckForNull
+    @Exported(visibility = 2)
+    public OverheadReport getOverhead() {
+        return overhead;
+    }
+
+    public void setOverhead(@Nullable OverheadReport overhead) {
+        this.overhead = overhead;
+    }
+
+    /**
+     * @return How well kieker's writer kept up with the application, or {@code null} if the writer was not monitored
+     */
+    @CheckForNull
+    public WriterStatistics getWriterStatistics() {
+        return writerStatistics;
+    }
+
+    public void setWriterStatistics(@Nullable WriterStatistics writerStatistics) {
+        this.writerStatistics = writerStatistics;
+    }
+
+    /**
+     * @return Milliseconds the application ran before kieker monitoring was enabled, which the records don't cover.
+     * {@code 0} if monitoring was enabled from the start.
+     * @see #WARM_UP_NEVER_ENABLED
+     * @see #WARM_UP_UNKNOWN
+     */
+    @Exported(visibility = 2)
+    public long getWarmUpMillis() {
+        return warmUpMillis;
+    }
+
+    @Exported(visibility = 2)
+    public boolean isWarmUpUnknown() {
+        return warmUpMillis == WARM_UP_UNKNOWN;
+    }
+
+    public void setWarmUpMillis(long warmUpMillis) {
+        this.warmUpMillis = warmUpMillis;
+    }
+
+    /**
+     * @return Comparison of the operation latencies with a baseline build, or {@code null} if regressions were not
+     * detected or there was no baseline
+     */
+    @CheckForNull
+    @Exported(visibility = 2)
+    public RegressionReport getRegressionReport() {
+        return regressionReport;
+    }
+
+    public void setRegressionReport(@Nullable RegressionReport regressionReport) {
+        this.regressionReport = regressionReport;
+    }
+
     /**
      * Returns the exit code of the application during instrumentation. {@code 130} means application was killed
      * (e.g. because timeout was hit) and is not considered an abnormal exit condition.
@@ -54,10 +322,12 @@ public class InstrumentationRecord implements Serializable {
      * @see #EXIT_CODE_SUCCESS
      * @see #EXIT_CODE_KILLED
      */
+    @Exported(visibility = 2)
     public int getApplicationExitCode() {
         return applicationExitCode;
     }
 
+    @Exported(visibility = 2)
     public boolean isAbnormalExit() {
         return applicationExitCode != EXIT_CODE_SUCCESS && applicationExitCode != EXIT_CODE_KILLED;
     }
@@ -0,0 +1,174 @@
+package net.explorviz.jenkins.model;
+
+import hudson.model.Action;
+import hudson.model.Job;
+import hudson.model.Run;
+import hudson.util.DataSetBuilder;
+import hudson.util.Graph;
+import hudson.util.ShiftedCategoryAxis;
+import net.explorviz.jenkins.Messages;
+import net.explorviz.jenkins.overhead.OverheadReport;
+import org.jfree.chart.ChartFactory;
+import org.jfree.chart.JFreeChart;
+import org.jfree.chart.axis.CategoryAxis;
+import org.jfree.chart.axis.CategoryLabelPositions;
+import org.jfree.chart.plot.CategoryPlot;
+import org.jfree.chart.plot.PlotOrientation;
+import org.jfree.data.category.CategoryDataset;
+import org.jfree.ui.RectangleInsets;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.awt.Color;
+
+/**
+ * Shows the instrumentation overhead of recent builds as a chart on the job page, so it is noticed when monitoring
+ * becomes too expensive, e.g. after changing the AspectJ weaver configuration.
+ * <p>
+ * Contributed to the job by {@link ExplorVizAction}.
+ */
+public class OverheadTrendAction implements Action {
+    private static final int MAX_BUILDS = 50;
+    private static final int GRAPH_WIDTH = 500;
+    private static final int GRAPH_HEIGHT = 200;
+
+    private final Job<?, ?> job;
+
+    public OverheadTrendAction(@Nonnull Job<?, ?> job) {
+        this.job = job;
+    }
+
+    public Job<?, ?> getJob() {
+        return job;
+    }
+
+    /**
+     * @return {@code true} if the user may view instrumentations and any recent build measured its overhead
+     */
+    public boolean isGraphAvailable() {
+        if (!job.hasPermission(ExplorVizGlobalConfiguration.VIEW)) {
+            return false;
+        }
+
+        for (InstrumentationIndex.Entry entry : InstrumentationIndex.forJob(job).getEntries(MAX_BUILDS)) {
+            if (entry.getOverhead() != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @CheckForNull
+    public Graph getGraph() {
+        job.checkPermission(ExplorVizGlobalConfiguration.VIEW);
+
+        Run<?, ?> lastBuild = job.getLastBuild();
+        if (lastBuild == null) {
+            return null;
+        }
+
+        return new Graph(lastBuild.getTimestamp(), GRAPH_WIDTH, GRAPH_HEIGHT) {
+            @Override
+            protected JFreeChart createGraph() {
+                return createChart(buildDataSet());
+            }
+        };
+    }
+
+    private CategoryDataset buildDataSet() {
+        DataSetBuilder<String, BuildLabel> dataSet = new DataSetBuilder<>();
+
+        for (InstrumentationIndex.Entry entry : InstrumentationIndex.forJob(job).getEntries(MAX_BUILDS)) {
+            OverheadReport overhead = entry.getOverhead();
+            if (overhead != null) {
+                BuildLabel label = new BuildLabel(entry.getBuildNumber());
+                add(dataSet, overhead.getWallClockOverhead(), entry.getId() + " wall clock", label);
+                add(dataSet, overhead.getCpuOverhead(), entry.getId() + " CPU time", label);
+                add(dataSet, overhead.getPeakRssOverhead(), entry.getId() + " peak RSS", label);
+            }
+        }
+
+        return dataSet.build();
+    }
+
+    private static void add(DataSetBuilder<String, BuildLabel> dataSet, double value, String series,
+                            BuildLabel label) {
+        if (!Double.isNaN(value)) {
+            dataSet.add(value, series, label);
+        }
+    }
+
+    /**
+     * Chart label of a build, which unlike {@link hudson.util.ChartUtil.NumberOnlyBuildLabel} does not need the build
+     * to be loaded.
+     */
+    private static final class BuildLabel implements Comparable<BuildLabel> {
+        private final int buildNumber;
+
+        BuildLabel(int buildNumber) {
+            this.buildNumber = buildNumber;
+        }
+
+        @Override
+        public int compareTo(BuildLabel other) {
+            return Integer.compare(buildNumber, other.buildNumber);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof BuildLabel && ((BuildLabel) other).buildNumber == buildNumber;
+        }
+
+        @Override
+        public int hashCode() {
+            return buildNumber;
+        }
+
+        @Override
+        public String toString() {
+            return "#" + buildNumber;
+        }
+    }
+
+    private static JFreeChart createChart(CategoryDataset dataSet) {
+        JFreeChart chart = ChartFactory.createLineChart(null, null, "Overhead (%)", dataSet,
+                PlotOrientation.VERTICAL, true, true, false);
+        chart.setBackgroundPaint(Color.WHITE);
+
+        CategoryPlot plot = chart.getCategoryPlot();
+        plot.setBackgroundPaint(Color.WHITE);
+        plot.setOutlinePaint(null);
+        plot.setRangeGridlinesVisible(true);
+        plot.setRangeGridlinePaint(Color.BLACK);
+        plot.setInsets(new RectangleInsets(5.0, 0, 0, 5.0));
+
+        CategoryAxis domainAxis = new ShiftedCategoryAxis(null);
+        domainAxis.setCategoryLabelPositions(CategoryLabelPositions.UP_90);
+        domainAxis.setLowerMargin(0.0);
+        domainAxis.setUpperMargin(0.0);
+        domainAxis.setCategoryMargin(0.0);
+        plot.setDomainAxis(domainAxis);
+
+        return chart;
+    }
+
+    /*
+     * Action
+     */
+
+    @Override
+    public String getIconFileName() {
+        // Only shown as a chart on the job page
+        return null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return Messages.OverheadTrendAction_DisplayName();
+    }
+
+    @Override
+    public String getUrlName() {
+        return "explorvizOverhead";
+    }
+}
@@ -0,0 +1,122 @@
+package net.explorviz.jenkins.model;
+
+import hudson.model.Action;
+import hudson.model.Api;
+import hudson.model.Job;
+import net.explorviz.jenkins.Messages;
+import org.kohsuke.stapler.StaplerProxy;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Reports how much disk space the recordings of a job take, per recording and in total, next to the job's
+ * {@link RetentionPolicy}. Also available at {@code explorvizDiskUsage/api/json}.
+ * <p>
+ * Sizes are taken from the {@link InstrumentationIndex}: record archives and trace stores as written to the build
+ * directory, record folders in the workspace as they were when the records were collected.
+ * <p>
+ * Contributed to the job by {@link ExplorVizAction}.
+ */
+@ExportedBean
+public class RecordingDiskUsageAction implements Action, StaplerProxy {
+    private final Job<?, ?> job;
+
+    public RecordingDiskUsageAction(@Nonnull Job<?, ?> job) {
+        this.job = job;
+    }
+
+    public Job<?, ?> getJob() {
+        return job;
+    }
+
+    /**
+     * @return The recordings whose data is still stored, newest build first
+     */
+    @Nonnull
+    @Exported
+    public List<InstrumentationIndex.Entry> getRecordings() {
+        return InstrumentationIndex.forJob(job).getEntries().stream()
+                .filter(InstrumentationIndex.Entry::isStored)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @return Number of recordings whose data was deleted by the {@link RetentionPolicy} or with the workspace
+     */
+    @Exported
+    public int getEvictedCount() {
+        return (int) InstrumentationIndex.forJob(job).getEntries().stream()
+                .filter(entry -> !entry.isStored())
+                .count();
+    }
+
+    /**
+     * @return Combined size of the record archives and trace stores in the build directories
+     */
+    @Exported
+    public long getBuildDirectoryBytes() {
+        return getRecordings().stream().mapToLong(entry -> entry.getArchiveBytes() + entry.getTraceStoreBytes()).sum();
+    }
+
+    /**
+     * @return Combined size of the record folders in workspaces
+     */
+    @Exported
+    public long getWorkspaceBytes() {
+        return getRecordings().stream().mapToLong(InstrumentationIndex.Entry::getWorkspaceBytes).sum();
+    }
+
+    @Exported
+    public long getTotalBytes() {
+        return getBuildDirectoryBytes() + getWorkspaceBytes();
+    }
+
+    /**
+     * @return The retention policy in effect for the job, or {@code null} if recordings are kept forever
+     */
+    @CheckForNull
+    @Exported
+    public String getRetention() {
+        RetentionPolicy policy = RetentionPolicy.forJob(job);
+        return policy == null ? null : policy.getDescription();
+    }
+
+    public Api getApi() {
+        return new Api(this);
+    }
+
+    /*
+     * Action
+     */
+
+    @Override
+    public String getIconFileName() {
+        return job.hasPermission(ExplorVizGlobalConfiguration.VIEW) ?
+                "/plugin/explorviz-plugin/images/24x24/explorviz.png" : null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return Messages.RecordingDiskUsageAction_DisplayName();
+    }
+
+    @Override
+    public String getUrlName() {
+        return "explorvizDiskUsage";
+    }
+
+    /*
+     * StaplerProxy
+     */
+
+    @Override
+    public Object getTarget() {
+        job.checkPermission(ExplorVizGlobalConfiguration.VIEW);
+        return this;
+    }
+}
@@ -0,0 +1,76 @@
+package net.explorviz.jenkins.model;
+
+import hudson.model.BuildBadgeAction;
+
+import java.util.Locale;
+
+/**
+ * Badge showing how many records the instrumented applications of a running build have written so far, and how fast.
+ * <p>
+ * Only attached to the build while the applications run, see {@link net.explorviz.jenkins.KiekerBuilder}.
+ */
+public class RecordingProgressAction implements BuildBadgeAction {
+    private volatile long records = -1;
+    private volatile long bytes;
+    private volatile long recordsPerSecond = -1;
+    private volatile long bytesPerSecond;
+
+    /**
+     * @param records          (Estimated) number of records written, or {@code -1} if unknown
+     * @param recordsPerSecond Records written per second recently, or {@code -1} if unknown
+     */
+    public void update(long records, long bytes, long recordsPerSecond, long bytesPerSecond) {
+        this.records = records;
+        this.bytes = bytes;
+        this.recordsPerSecond = recordsPerSecond;
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    public long getRecords() {
+        return records;
+    }
+
+    public long getRecordsPerSecond() {
+        return recordsPerSecond;
+    }
+
+    /**
+     * @return Short description of the progress for the badge
+     */
+    public String getSummary() {
+        if (records >= 0) {
+            return String.format(Locale.US, "%,d records (%,d/s)", records, Math.max(recordsPerSecond, 0));
+        }
+        return String.format(Locale.US, "%.1f MB of records", toMegabytes(bytes));
+    }
+
+    /**
+     * @return Longer description of the progress for the badge's tooltip
+     */
+    public String getDetails() {
+        return String.format(Locale.US, "Recording: %.1f MB written, %.1f MB/s", toMegabytes(bytes),
+                toMegabytes(bytesPerSecond));
+    }
+
+    /**
+     * @return The given number of bytes in megabytes (10^6 bytes)
+     */
+    public static double toMegabytes(long bytes) {
+        return bytes / 1e6;
+    }
+
+    @Override
+    public String getIconFileName() {
+        return null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return null;
+    }
+
+    @Override
+    public String getUrlName() {
+        return null;
+    }
+}
@@ -0,0 +1,419 @@
+package net.explorviz.jenkins.model;
+
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.Computer;
+import hudson.model.Job;
+import hudson.model.Node;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.model.listeners.RunListener;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import jenkins.model.Jenkins;
+import net.explorviz.jenkins.kieker.archive.RecordArchive;
+import net.explorviz.jenkins.kieker.store.TraceStore;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Enforces the {@link RetentionPolicy} of jobs by deleting the data of their least recently used recordings: record
+ * archives and trace stores in the build directory, and record folders left in the workspace. The builds and their
+ * {@link InstrumentationRecord}s are kept, so the summaries, reports and charts of evicted recordings remain.
+ * <p>
+ * A recording counts as used when it is visualized, its record archive is downloaded or the ExplorViz page of its
+ * build is opened, see {@link InstrumentationRecord#markUsed(Run)}, and when it was recorded otherwise.
+ * <p>
+ * On top of the policy of each job, the recordings of all jobs together are limited to
+ * {@link ExplorVizGlobalConfiguration#getMaxTotalBytes()}, evicting the least recently used recordings of any job.
+ * <p>
+ * Works off the {@link InstrumentationIndex} of a job, which tracks the size and last use of each recording, so
+ * builds are only loaded to evict their recordings. Policies are enforced by a single background thread, after every
+ * build of a job that recorded instrumentations and once an hour for all of them, as recordings also expire without
+ * new builds. Recordings of builds that are still running or kept forever are never evicted.
+ */
+public final class RecordingRetention {
+    private static final Logger LOGGER = Logger.getLogger(RecordingRetention.class.getName());
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(
+            new NamingThreadFactory(new DaemonThreadFactory(), "ExplorViz recording retention"));
+
+    /**
+     * Jobs waiting to be processed, by full name, so a burst of builds only enforces the policy once.
+     */
+    private static final Set<String> PENDING = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Whether the global limit is waiting to be enforced
+     */
+    private static final AtomicBoolean GLOBAL_PENDING = new AtomicBoolean();
+
+    private RecordingRetention() {
+    }
+
+    /**
+     * Enforce the retention policy of the given job in the background, if it has one.
+     */
+    public static void enforceAsync(@Nonnull Job<?, ?> job) {
+        if (RetentionPolicy.forJob(job) == null) {
+            return;
+        }
+
+        String fullName = job.getFullName();
+        if (PENDING.add(fullName)) {
+            EXECUTOR.execute(() -> {
+                PENDING.remove(fullName);
+                try {
+                    enforce(job);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "Failed to enforce the recording retention of " + fullName, e);
+                }
+            });
+        }
+    }
+
+    /**
+     * Evict recordings of the given job, least recently used first, until it is within the limits of its retention
+     * policy.
+     */
+    static void enforce(@Nonnull Job<?, ?> job) throws InterruptedException {
+        RetentionPolicy policy = RetentionPolicy.forJob(job);
+        if (policy == null) {
+            return;
+        }
+
+        InstrumentationIndex index = InstrumentationIndex.forJob(job);
+        List<InstrumentationIndex.Entry> entries = index.getEntries();
+        List<InstrumentationIndex.Entry> stored = new ArrayList<>();
+        long totalBytes = 0;
+        for (InstrumentationIndex.Entry entry : entries) {
+            if (entry.isStored()) {
+                stored.add(entry);
+                totalBytes += entry.getStoredBytes();
+            }
+        }
+        stored.sort(Comparator.comparingLong(InstrumentationIndex.Entry::getLastUsed));
+
+        long now = System.currentTimeMillis();
+        int recordings = stored.size();
+        for (InstrumentationIndex.Entry entry : stored) {
+            boolean expired = policy.getMaxAgeDays() > 0 && now - entry.getTimestamp() > policy.getMaxAgeMillis();
+            boolean tooMany = policy.getMaxRecordings() > 0 && recordings > policy.getMaxRecordings();
+            boolean tooLarge = policy.getMaxTotalBytes() > 0 && totalBytes > policy.getMaxTotalBytes();
+            if (!expired && !tooMany && !tooLarge) {
+                continue;
+            }
+
+            long bytes = entry.getStoredBytes();
+            if (evict(job, index, entry)) {
+                totalBytes -= bytes - entry.getStoredBytes();
+                if (!entry.isStored()) {
+                    recordings--;
+                }
+            }
+        }
+    }
+
+    /**
+     * Enforce the limit on the disk usage of all jobs together in the background, if there is one.
+     */
+    public static void enforceGlobalAsync() {
+        if (ExplorVizGlobalConfiguration.get().getMaxTotalBytes() <= 0) {
+            return;
+        }
+
+        if (GLOBAL_PENDING.compareAndSet(false, true)) {
+            EXECUTOR.execute(() -> {
+                GLOBAL_PENDING.set(false);
+                try {
+                    enforceGlobal();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "Failed to enforce the recording retention of all jobs", e);
+                }
+            });
+        }
+    }
+
+    /**
+     * Evict recordings of any job, least recently used first, until all of them together are within
+     * {@link ExplorVizGlobalConfiguration#getMaxTotalBytes()}.
+     */
+    static void enforceGlobal() throws InterruptedException {
+        long maxTotalBytes = ExplorVizGlobalConfiguration.get().getMaxTotalBytes();
+        if (maxTotalBytes <= 0) {
+            return;
+        }
+
+        List<StoredRecording> stored = new ArrayList<>();
+        long totalBytes = 0;
+        for (Job<?, ?> job : Jenkins.get().getAllItems(Job.class)) {
+            if (!InstrumentationIndex.exists(job)) {
+                continue;
+            }
+            InstrumentationIndex index = InstrumentationIndex.forJob(job);
+            for (InstrumentationIndex.Entry entry : index.getEntries()) {
+                if (entry.isStored()) {
+                    stored.add(new StoredRecording(job, index, entry));
+                    totalBytes += entry.getStoredBytes();
+                }
+            }
+        }
+        stored.sort(Comparator.comparingLong(recording -> recording.entry.getLastUsed()));
+
+        for (StoredRecording recording : stored) {
+            if (totalBytes <= maxTotalBytes) {
+                return;
+            }
+
+            long bytes = recording.entry.getStoredBytes();
+            if (evict(recording.job, recording.index, recording.entry)) {
+                totalBytes -= bytes - recording.entry.getStoredBytes();
+            }
+        }
+    }
+
+    /**
+     * @return {@code false} if the recording can't be evicted now
+     */
+    private static boolean evict(Job<?, ?> job, InstrumentationIndex index, InstrumentationIndex.Entry entry)
+            throws InterruptedException {
+        Run<?, ?> run = job.getBuildByNumber(entry.getBuildNumber());
+        if (run == null || run.isBuilding() || run.isKeepLog()) {
+            return false;
+        }
+
+        if (entry.getArchiveName() != null) {
+            delete(RecordArchive.getFile(run, entry.getArchiveName()));
+        }
+        if (entry.getTraceStoreName() != null) {
+            delete(TraceStore.getFile(run, entry.getTraceStoreName()));
+        }
+        index.evicted(entry);
+        releaseWorkingDirectory(index, entry);
+
+        LOGGER.log(Level.FINE, "Evicted recording {0} of {1}", new Object[]{entry.getId(), run});
+        return true;
+    }
+
+    private static void delete(File file) {
+        try {
+            Files.deleteIfExists(file.toPath());
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to delete " + file, e);
+        }
+    }
+
+    private static boolean isReusedLater(InstrumentationIndex.Entry entry, List<InstrumentationIndex.Entry> entries) {
+        for (InstrumentationIndex.Entry other : entries) {
+            if (other.getBuildNumber() > entry.getBuildNumber() && isSameLocation(other, entry.getNodeName(),
+                    entry.getWorkingDirectory())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isSameLocation(InstrumentationIndex.Entry entry, @CheckForNull String nodeName,
+                                          @CheckForNull String workingDirectory) {
+        return Objects.equals(entry.getNodeName(), nodeName)
+                && Objects.equals(entry.getWorkingDirectory(), workingDirectory);
+    }
+
+    /**
+     * Delete the record folders of an evicted recording from its working directory, unless a later build records into
+     * the same directory. The directory is moved out of the way under the lock of the index, which
+     * {@link #releaseWorkspace(Run, FilePath, TaskListener)} takes as well, so a build that starts meanwhile either
+     * finds it gone or has released it already; it is deleted after the lock is released.
+     */
+    private static void releaseWorkingDirectory(InstrumentationIndex index, InstrumentationIndex.Entry entry)
+            throws InterruptedException {
+        FilePath evicted;
+        synchronized (index) {
+            if (!entry.isInWorkspace()) {
+                return;
+            }
+            // Later builds may record into the same working directory, whose records must not be deleted
+            if (isReusedLater(entry, index.getEntries())) {
+                index.workspaceReleased(entry);
+                return;
+            }
+
+            FilePath directory = getWorkingDirectory(entry);
+            if (directory == null) {
+                // Node offline, try again next time
+                return;
+            }
+            try {
+                if (directory.exists()) {
+                    evicted = moveAside(directory);
+                } else {
+                    evicted = null;
+                }
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to move " + directory + " on " + entry.getNodeName(), e);
+                return;
+            }
+            index.workspaceReleased(entry);
+        }
+
+        if (evicted != null) {
+            try {
+                evicted.deleteRecursive();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to delete " + evicted + " on " + entry.getNodeName(), e);
+            }
+        }
+    }
+
+    @CheckForNull
+    private static FilePath getWorkingDirectory(InstrumentationIndex.Entry entry) {
+        String nodeName = entry.getNodeName();
+        if (nodeName == null) {
+            return null;
+        }
+
+        Jenkins jenkins = Jenkins.get();
+        Node node = nodeName.isEmpty() ? jenkins : jenkins.getNode(nodeName);
+        return node == null ? null : node.createPath(entry.getWorkingDirectory());
+    }
+
+    private static FilePath moveAside(FilePath directory) throws IOException, InterruptedException {
+        FilePath evicted = directory.sibling(directory.getName() + ".evicted-" + System.currentTimeMillis());
+        directory.renameTo(evicted);
+        return evicted;
+    }
+
+    /**
+     * Release the record folders that earlier builds of the job left in the given working directory, before a new
+     * instrumentation is recorded into it. They are only deleted if the job has a retention policy, as they may be
+     * the only copy of a recording otherwise; they are moved out of the way right away and deleted in the
+     * background.
+     *
+     * @return {@code true} if the working directory was moved out of the way
+     */
+    public static boolean releaseWorkspace(@Nonnull Run<?, ?> run, @Nonnull FilePath workingDirectory,
+                                           @Nonnull TaskListener listener) throws IOException, InterruptedException {
+        Job<?, ?> job = run.getParent();
+        if (!InstrumentationIndex.exists(job)) {
+            return false;
+        }
+
+        Computer computer = workingDirectory.toComputer();
+        String nodeName = computer == null ? null : computer.getName();
+        InstrumentationIndex index = InstrumentationIndex.forJob(job);
+        List<InstrumentationIndex.Entry> previous = new ArrayList<>();
+        FilePath evicted;
+        // Eviction moves working directories under the same lock, see releaseWorkingDirectory()
+        synchronized (index) {
+            for (InstrumentationIndex.Entry entry : index.getEntries()) {
+                if (entry.getBuildNumber() < run.getNumber() && entry.isInWorkspace()
+                        && isSameLocation(entry, nodeName, workingDirectory.getRemote())) {
+                    previous.add(entry);
+                }
+            }
+            if (previous.isEmpty()) {
+                return false;
+            }
+
+            boolean exists = workingDirectory.exists();
+            if (exists && RetentionPolicy.forJob(job) == null) {
+                return false;
+            }
+
+            for (InstrumentationIndex.Entry entry : previous) {
+                index.workspaceReleased(entry);
+            }
+            if (!exists) {
+                // The workspace was cleaned in the meantime
+                return false;
+            }
+            evicted = moveAside(workingDirectory);
+        }
+
+        listener.getLogger().printf("Deleting the records that build #%d left in %s in the background%n",
+                previous.get(0).getBuildNumber(), workingDirectory.getName());
+        EXECUTOR.execute(() -> {
+            try {
+                evicted.deleteRecursive();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to delete " + evicted, e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Enforces the retention policy and the global limit after every build of a job that recorded instrumentations.
+     */
+    @Extension
+    public static final class CompletedRunListener extends RunListener<Run<?, ?>> {
+        @Override
+        public void onCompleted(Run<?, ?> run, @Nonnull TaskListener listener) {
+            Job<?, ?> job = run.getParent();
+            if (InstrumentationIndex.exists(job)) {
+                enforceAsync(job);
+                enforceGlobalAsync();
+            }
+        }
+    }
+
+    /**
+     * Enforces the retention policies of all jobs that recorded instrumentations and the global limit once an hour, so
+     * recordings expire even if their job is not built anymore.
+     */
+    @Extension
+    public static final class PeriodicEnforcement extends AsyncPeriodicWork {
+        public PeriodicEnforcement() {
+            super("ExplorViz recording retention");
+        }
+
+        @Override
+        public long getRecurrencePeriod() {
+            return HOUR;
+        }
+
+        @Override
+        protected void execute(TaskListener listener) {
+            for (Job<?, ?> job : Jenkins.get().getAllItems(Job.class)) {
+                if (InstrumentationIndex.exists(job)) {
+                    enforceAsync(job);
+                }
+            }
+            enforceGlobalAsync();
+        }
+    }
+
+    private static final class StoredRecording {
+        private final Job<?, ?> job;
+        private final InstrumentationIndex index;
+        private final InstrumentationIndex.Entry entry;
+
+        StoredRecording(Job<?, ?> job, InstrumentationIndex index, InstrumentationIndex.Entry entry) {
+            this.job = job;
+            this.index = index;
+            this.entry = entry;
+        }
+    }
+}
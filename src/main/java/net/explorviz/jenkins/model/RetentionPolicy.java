@@ -0,0 +1,150 @@
+package net.explorviz.jenkins.model;
+
+import hudson.Extension;
+import hudson.model.Describable;
+import hudson.model.Descriptor;
+import hudson.model.Job;
+import hudson.util.FormValidation;
+import jenkins.model.Jenkins;
+import net.explorviz.jenkins.Messages;
+import org.jenkinsci.Symbol;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits how much disk space the recordings of a job may take: record archives and trace stores in the build
+ * directories, and record folders left in the workspace. Every limit of {@code 0} is unlimited.
+ * <p>
+ * Configured globally in {@link ExplorVizGlobalConfiguration} and overridden per job by {@link ExplorVizJobProperty},
+ * see {@link #forJob(Job)}. {@link RecordingRetention} enforces the policy. The disk usage of all jobs together is
+ * limited by {@link ExplorVizGlobalConfiguration#getMaxTotalMegabytes()}.
+ */
+public class RetentionPolicy implements Describable<RetentionPolicy> {
+    static final long BYTES_PER_MEGABYTE = 1024 * 1024;
+
+    private long maxTotalMegabytes;
+    private int maxRecordings;
+    private int maxAgeDays;
+
+    @DataBoundConstructor
+    public RetentionPolicy() {
+    }
+
+    /**
+     * @return The policy configured for the given job, or {@code null} if its recordings are kept forever
+     */
+    @CheckForNull
+    public static RetentionPolicy forJob(@Nonnull Job<?, ?> job) {
+        ExplorVizJobProperty property = job.getProperty(ExplorVizJobProperty.class);
+        if (property != null && property.getRetention() != null) {
+            return property.getRetention();
+        }
+        return ExplorVizGlobalConfiguration.get().getRetention();
+    }
+
+    @Override
+    public Descriptor<RetentionPolicy> getDescriptor() {
+        Jenkins instance = Jenkins.getInstanceOrNull();
+        if (instance == null) {
+            throw new IllegalStateException();
+        }
+        return instance.getDescriptorOrDie(getClass());
+    }
+
+    /**
+     * @return Maximum combined size of the recordings of a job in megabytes, or {@code 0} if unlimited
+     */
+    public long getMaxTotalMegabytes() {
+        return maxTotalMegabytes;
+    }
+
+    @DataBoundSetter
+    public void setMaxTotalMegabytes(long maxTotalMegabytes) {
+        this.maxTotalMegabytes = Math.max(0, maxTotalMegabytes);
+    }
+
+    /**
+     * @return Maximum combined size of the recordings of a job in bytes, or {@code 0} if unlimited
+     */
+    public long getMaxTotalBytes() {
+        return maxTotalMegabytes * BYTES_PER_MEGABYTE;
+    }
+
+    /**
+     * @return Maximum number of recordings of a job to keep, or {@code 0} if unlimited
+     */
+    public int getMaxRecordings() {
+        return maxRecordings;
+    }
+
+    @DataBoundSetter
+    public void setMaxRecordings(int maxRecordings) {
+        this.maxRecordings = Math.max(0, maxRecordings);
+    }
+
+    /**
+     * @return Days after its build started that a recording is deleted, or {@code 0} if unlimited
+     */
+    public int getMaxAgeDays() {
+        return maxAgeDays;
+    }
+
+    @DataBoundSetter
+    public void setMaxAgeDays(int maxAgeDays) {
+        this.maxAgeDays = Math.max(0, maxAgeDays);
+    }
+
+    /**
+     * @return Age in milliseconds after which a recording is deleted, or {@code 0} if unlimited
+     */
+    public long getMaxAgeMillis() {
+        return TimeUnit.DAYS.toMillis(maxAgeDays);
+    }
+
+    /**
+     * @return The limits in words, for reports
+     */
+    @Nonnull
+    public String getDescription() {
+        List<String> limits = new ArrayList<>();
+        if (maxTotalMegabytes > 0) {
+            limits.add(maxTotalMegabytes + " MB");
+        }
+        if (maxRecordings > 0) {
+            limits.add(maxRecordings + " recordings");
+        }
+        if (maxAgeDays > 0) {
+            limits.add(maxAgeDays + " days");
+        }
+        return limits.isEmpty() ? "unlimited" : "at most " + String.join(", ", limits);
+    }
+
+    @Symbol("recordingRetention")
+    @Extension
+    public static class DescriptorImpl extends Descriptor<RetentionPolicy> {
+        @Override
+        @Nonnull
+        public String getDisplayName() {
+            return Messages.RetentionPolicy_DescriptorImpl_DisplayName();
+        }
+
+        public FormValidation doCheckMaxTotalMegabytes(@QueryParameter String value) {
+            return FormValidation.validateNonNegativeInteger(value);
+        }
+
+        public FormValidation doCheckMaxRecordings(@QueryParameter String value) {
+            return FormValidation.validateNonNegativeInteger(value);
+        }
+
+        public FormValidation doCheckMaxAgeDays(@QueryParameter String value) {
+            return FormValidation.validateNonNegativeInteger(value);
+        }
+    }
+}
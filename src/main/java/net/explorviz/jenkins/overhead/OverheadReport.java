@@ -0,0 +1,56 @@
+package net.explorviz.jenkins.overhead;
+
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+import javax.annotation.Nonnull;
+import java.io.Serializable;
+
+/**
+ * Compares a run of the application with kieker monitoring disabled (the baseline) to the instrumented run, to tell
+ * how much the monitoring itself slows down the application.
+ * <p>
+ * Overheads are relative to the baseline, in percent: {@code 25} means the instrumented run took a quarter more.
+ * They are {@link Double#NaN} if a value could not be measured for either run.
+ */
+@ExportedBean
+public class OverheadReport implements Serializable {
+    private static final long serialVersionUID = -6180460931823497170L;
+
+    private final ProcessMeasurement baseline;
+    private final ProcessMeasurement instrumented;
+
+    public OverheadReport(@Nonnull ProcessMeasurement baseline, @Nonnull ProcessMeasurement instrumented) {
+        this.baseline = baseline;
+        this.instrumented = instrumented;
+    }
+
+    @Exported
+    public ProcessMeasurement getBaseline() {
+        return baseline;
+    }
+
+    @Exported
+    public ProcessMeasurement getInstrumented() {
+        return instrumented;
+    }
+
+    public double getWallClockOverhead() {
+        return overhead(baseline.getWallClockMillis(), instrumented.getWallClockMillis());
+    }
+
+    public double getCpuOverhead() {
+        return overhead(baseline.getCpuMillis(), instrumented.getCpuMillis());
+    }
+
+    public double getPeakRssOverhead() {
+        return overhead(baseline.getPeakRssBytes(), instrumented.getPeakRssBytes());
+    }
+
+    private static double overhead(long baselineValue, long instrumentedValue) {
+        if (baselineValue <= 0 || instrumentedValue == ProcessMeasurement.UNKNOWN) {
+            return Double.NaN;
+        }
+        return (instrumentedValue - baselineValue) * 100.0 / baselineValue;
+    }
+}
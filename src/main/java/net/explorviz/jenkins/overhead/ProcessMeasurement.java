@@ -0,0 +1,61 @@
+package net.explorviz.jenkins.overhead;
+
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+import java.io.Serializable;
+
+/**
+ * Resources used by one run of the application. Values that could not be measured are {@code -1}.
+ */
+@ExportedBean
+public class ProcessMeasurement implements Serializable {
+    private static final long serialVersionUID = 4411358129437361086L;
+
+    public static final long UNKNOWN = -1;
+
+    private final long wallClockMillis;
+    private final long cpuMillis;
+    private final long peakRssBytes;
+    private final int exitCode;
+
+    /**
+     * @param wallClockMillis Time from launching the application until its workload was done
+     * @param cpuMillis       User and system CPU time of the application process, summed over all its threads
+     * @param peakRssBytes    Maximum resident set size of the application process
+     * @param exitCode        Exit code of the application process
+     */
+    public ProcessMeasurement(long wallClockMillis, long cpuMillis, long peakRssBytes, int exitCode) {
+        this.wallClockMillis = wallClockMillis;
+        this.cpuMillis = cpuMillis;
+        this.peakRssBytes = peakRssBytes;
+        this.exitCode = exitCode;
+    }
+
+    @Exported
+    public long getWallClockMillis() {
+        return wallClockMillis;
+    }
+
+    @Exported
+    public long getCpuMillis() {
+        return cpuMillis;
+    }
+
+    @Exported
+    public long getPeakRssBytes() {
+        return peakRssBytes;
+    }
+
+    @Exported
+    public int getExitCode() {
+        return exitCode;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("wall clock %d ms, CPU %s, peak RSS %s", wallClockMillis,
+                cpuMillis == UNKNOWN ? "unknown" : cpuMillis + " ms",
+                peakRssBytes == UNKNOWN ? "unknown" : peakRssBytes / 1024 + " KiB");
+    }
+}
@@ -0,0 +1,275 @@
+package net.explorviz.jenkins.overhead;
+
+import hudson.FilePath;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Samples the CPU time and peak resident set size of a process on the node it runs on, using Linux' {@code /proc}
+ * file system. On other systems, nothing is measured.
+ * <p>
+ * Jenkins does not expose the process id of launched processes, so the process is identified by a marker that must
+ * be part of its command line, e.g. as a system property. Use {@link #startOn(FilePath, String)} before launching the
+ * process and {@link #stopOn(FilePath, String)} after it exited.
+ */
+public class ProcessSampler implements Runnable {
+    private static final Logger LOGGER = Logger.getLogger(ProcessSampler.class.getName());
+
+    /**
+     * Samplers running in this JVM, by marker.
+     */
+    private static final Map<String, ProcessSampler> RUNNING = new ConcurrentHashMap<>();
+
+    private static final File PROC = new File("/proc");
+    private static final long SAMPLE_INTERVAL_MILLIS = 100;
+
+    /**
+     * Unit of the CPU times in {@code /proc/<pid>/stat}. Fixed to 100 per second by the Linux user space ABI.
+     */
+    private static final long USER_HZ = 100;
+
+    /*
+     * Fields of /proc/<pid>/stat after the parenthesized command name, starting with the process state
+     */
+    private static final int STAT_UTIME = 11;
+    private static final int STAT_STIME = 12;
+
+    private static final String STATUS_PEAK_RSS = "VmHWM:";
+
+    private final byte[] marker;
+    private final Thread thread;
+
+    private volatile boolean stopping;
+
+    // Only modified by the sampler thread and read after it terminated
+    private File process;
+    private long cpuTicks = -1;
+    private long peakRssKiB = -1;
+
+    ProcessSampler(@Nonnull String marker) {
+        this.marker = marker.getBytes(StandardCharsets.UTF_8);
+        this.thread = new Thread(this, "ExplorViz process sampler for " + marker);
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * @return {@code false} if processes can't be measured on this system
+     */
+    static boolean isSupported() {
+        return new File(PROC, "self/stat").isFile();
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    Usage stop() throws InterruptedException {
+        stopping = true;
+        thread.interrupt();
+        thread.join(TimeUnit.SECONDS.toMillis(10));
+
+        return new Usage(cpuTicks < 0 ? ProcessMeasurement.UNKNOWN : cpuTicks * 1000 / USER_HZ,
+                peakRssKiB < 0 ? ProcessMeasurement.UNKNOWN : peakRssKiB * 1024);
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (!stopping) {
+                if (process == null) {
+                    process = findProcess();
+                }
+                if (process != null) {
+                    byte[] commandLine = readCommandLine(process);
+                    // Exited processes have an empty command line, which sample() reports
+                    if (commandLine.length > 0 && !contains(commandLine, marker)) {
+                        // Caught the process between fork and exec, its usage so far is not the application's
+                        process = null;
+                        cpuTicks = -1;
+                        peakRssKiB = -1;
+                    } else if (!sample()) {
+                        // The process exited, the last sample is as close to its end as we get
+                        break;
+                    }
+                }
+
+                Thread.sleep(SAMPLE_INTERVAL_MILLIS);
+            }
+        } catch (InterruptedException e) {
+            // Stopped
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Sampling process resource usage failed", e);
+        }
+    }
+
+    @CheckForNull
+    private File findProcess() {
+        File[] candidates = PROC.listFiles((dir, name) -> !name.isEmpty() && Character.isDigit(name.charAt(0)));
+        if (candidates == null) {
+            return null;
+        }
+
+        for (File candidate : candidates) {
+            if (contains(readCommandLine(candidate), marker)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private static byte[] readCommandLine(File process) {
+        try {
+            return Files.readAllBytes(new File(process, "cmdline").toPath());
+        } catch (IOException e) {
+            // Process exited or is not accessible
+            return new byte[0];
+        }
+    }
+
+    /**
+     * @return {@code false} if the process does not exist anymore
+     */
+    private boolean sample() throws IOException {
+        String stat;
+        List<String> status;
+        try {
+            stat = new String(Files.readAllBytes(new File(process, "stat").toPath()), StandardCharsets.UTF_8);
+            status = Files.readAllLines(new File(process, "status").toPath(), StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+
+        // The command name may contain spaces and parentheses, so the fields start after its last parenthesis
+        String[] fields = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+        cpuTicks = Math.max(cpuTicks, Long.parseLong(fields[STAT_UTIME]) + Long.parseLong(fields[STAT_STIME]));
+
+        for (String line : status) {
+            if (line.startsWith(STATUS_PEAK_RSS)) {
+                String value = line.substring(STATUS_PEAK_RSS.length()).trim();
+                // Always given in kB
+                peakRssKiB = Math.max(peakRssKiB, Long.parseLong(value.substring(0, value.indexOf(' '))));
+            }
+        }
+
+        // Zombies have no memory left to report, they exited
+        return status.stream().noneMatch(line -> line.startsWith("State:") && line.contains("Z"));
+    }
+
+    private static boolean contains(byte[] data, byte[] part) {
+        outer:
+        for (int i = 0; i <= data.length - part.length; i++) {
+            for (int j = 0; j < part.length; j++) {
+                if (data[i + j] != part[j]) {
+                    continue outer;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * CPU time and peak memory of the sampled process, {@link ProcessMeasurement#UNKNOWN} if it could not be
+     * measured.
+     */
+    public static final class Usage implements Serializable {
+        private static final long serialVersionUID = 5218573950136209771L;
+
+        private final long cpuMillis;
+        private final long peakRssBytes;
+
+        Usage(long cpuMillis, long peakRssBytes) {
+            this.cpuMillis = cpuMillis;
+            this.peakRssBytes = peakRssBytes;
+        }
+
+        public long getCpuMillis() {
+            return cpuMillis;
+        }
+
+        public long getPeakRssBytes() {
+            return peakRssBytes;
+        }
+    }
+
+    /*
+     * Remote control
+     */
+
+    /**
+     * Start sampling the process whose command line will contain the given marker, on the node that holds the given
+     * directory. The process need not be running yet.
+     *
+     * @return {@code false} if processes can't be measured on that node
+     */
+    public static boolean startOn(@Nonnull FilePath node, @Nonnull String marker)
+            throws IOException, InterruptedException {
+        return node.act(new StartCallable(marker));
+    }
+
+    /**
+     * Stop the sampler started with {@link #startOn(FilePath, String)} for the same marker.
+     *
+     * @return Usage of the process, or {@code null} if no sampler was running for this marker
+     */
+    @CheckForNull
+    public static Usage stopOn(@Nonnull FilePath node, @Nonnull String marker)
+            throws IOException, InterruptedException {
+        return node.act(new StopCallable(marker));
+    }
+
+    private static final class StartCallable extends MasterToSlaveFileCallable<Boolean> {
+        private static final long serialVersionUID = -2280957622064838095L;
+
+        private final String marker;
+
+        StartCallable(String marker) {
+            this.marker = marker;
+        }
+
+        @Override
+        public Boolean invoke(File file, VirtualChannel channel) throws IOException {
+            if (!isSupported()) {
+                return false;
+            }
+
+            ProcessSampler sampler = new ProcessSampler(marker);
+            if (RUNNING.putIfAbsent(marker, sampler) != null) {
+                throw new IOException("A process sampler is already running for " + marker);
+            }
+            sampler.start();
+            return true;
+        }
+    }
+
+    private static final class StopCallable extends MasterToSlaveFileCallable<Usage> {
+        private static final long serialVersionUID = 8650207436326330683L;
+
+        private final String marker;
+
+        StopCallable(String marker) {
+            this.marker = marker;
+        }
+
+        @Override
+        public Usage invoke(File file, VirtualChannel channel) throws InterruptedException {
+            ProcessSampler sampler = RUNNING.remove(marker);
+            return sampler == null ? null : sampler.stop();
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package net.explorviz.jenkins.regression;
+
+import hudson.Util;
+import hudson.model.Job;
+import hudson.model.PermalinkProjectAction;
+import hudson.model.Run;
+import net.explorviz.jenkins.kieker.records.LatencyProfile;
+import net.explorviz.jenkins.kieker.records.RecordSummary;
+import net.explorviz.jenkins.model.InstrumentationAction;
+import net.explorviz.jenkins.model.InstrumentationRecord;
+import org.apache.commons.lang.Validate;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Compares the per-operation latencies of an instrumentation with those of a baseline build.
+ * <p>
+ * An operation regressed if both builds called it at least {@link #getMinCalls()} times, its geometric mean latency
+ * grew by at least {@link #getThreshold()}, and the growth is statistically significant. Significance is tested with
+ * a one-sided Welch test on the logarithmic durations of the {@link LatencyProfile}s, using the normal approximation.
+ * It is accurate once both builds called an operation a few dozen times, as by default; with fewer calls the p-values
+ * come out too small. As many operations are tested at once, the significance level is divided by their number
+ * (Bonferroni correction), so a regression is rarely reported by chance alone.
+ */
+public class LatencyRegressionAnalyzer implements Serializable {
+    private static final long serialVersionUID = 7392118452610287324L;
+
+    /**
+     * Baseline used if none is configured: the latest build that was successful.
+     */
+    public static final String DEFAULT_BASELINE = PermalinkProjectAction.Permalink.LAST_SUCCESSFUL_BUILD.getId();
+
+    private static final Pattern BUILD_NUMBER = Pattern.compile("[0-9]+");
+
+    private static final Comparator<OperationRegression> BY_CHANGE =
+            Comparator.comparingDouble(OperationRegression::getChange).reversed();
+
+    private final double threshold;
+    private final double significance;
+    private final long minCalls;
+
+    /**
+     * @param threshold    Relative latency growth that counts as regression, e.g. {@code 0.1} for 10%
+     * @param significance Probability of reporting any regression by chance, e.g. {@code 0.01}
+     * @param minCalls     Number of calls an operation needs in both builds to be compared
+     */
+    public LatencyRegressionAnalyzer(double threshold, double significance, long minCalls) {
+        Validate.isTrue(threshold >= 0, "threshold may not be negative");
+        Validate.isTrue(significance > 0 && significance < 1, "significance must be between 0 and 1");
+        Validate.isTrue(minCalls >= 2, "minCalls must be at least 2");
+        this.threshold = threshold;
+        this.significance = significance;
+        this.minCalls = minCalls;
+    }
+
+    public double getThreshold() {
+        return threshold;
+    }
+
+    public double getSignificance() {
+        return significance;
+    }
+
+    public long getMinCalls() {
+        return minCalls;
+    }
+
+    /**
+     * @param baselineBuildNumber Number of the build the baseline summary belongs to
+     * @param baseline            Summary of the instrumentation in the baseline build, with latency profiles
+     * @param current             Summary of the instrumentation in the current build, with latency profiles
+     */
+    @Nonnull
+    public RegressionReport compare(int baselineBuildNumber, @Nonnull RecordSummary baseline,
+                                    @Nonnull RecordSummary current) {
+        Map<String, LatencyProfile> baselineProfiles = baseline.getLatencyProfiles();
+        Map<String, LatencyProfile> currentProfiles = current.getLatencyProfiles();
+        Validate.isTrue(baselineProfiles != null && currentProfiles != null, "summaries must have latency profiles");
+
+        List<String> compared = new ArrayList<>();
+        for (Map.Entry<String, LatencyProfile> entry : currentProfiles.entrySet()) {
+            LatencyProfile baselineProfile = baselineProfiles.get(entry.getKey());
+            if (baselineProfile != null && baselineProfile.getCalls() >= minCalls
+                    && entry.getValue().getCalls() >= minCalls) {
+                compared.add(entry.getKey());
+            }
+        }
+
+        List<OperationRegression> regressions = new ArrayList<>();
+        double correctedSignificance = significance / Math.max(1, compared.size());
+        for (String operation : compared) {
+            LatencyProfile before = baselineProfiles.get(operation);
+            LatencyProfile after = currentProfiles.get(operation);
+
+            double change = Math.exp(after.getLogMean() - before.getLogMean()) - 1;
+            if (change < threshold) {
+                continue;
+            }
+            double pValue = getPValue(before, after);
+            if (pValue < correctedSignificance) {
+                regressions.add(new OperationRegression(operation, before.getCalls(), after.getCalls(),
+                        before.getP50Nanos(), after.getP50Nanos(), before.getP90Nanos(), after.getP90Nanos(), change,
+                        pValue));
+            }
+        }
+        regressions.sort(BY_CHANGE);
+
+        // Operations missing from a truncated set of profiles may still have been called
+        boolean complete = baselineProfiles.size() == baseline.getOperationCount()
+                && currentProfiles.size() == current.getOperationCount();
+        List<String> newOperations = new ArrayList<>();
+        List<String> removedOperations = new ArrayList<>();
+        if (complete) {
+            for (String operation : currentProfiles.keySet()) {
+                if (!baselineProfiles.containsKey(operation)) {
+                    newOperations.add(operation);
+                }
+            }
+            for (String operation : baselineProfiles.keySet()) {
+                if (!currentProfiles.containsKey(operation)) {
+                    removedOperations.add(operation);
+                }
+            }
+            Collections.sort(newOperations);
+            Collections.sort(removedOperations);
+        }
+
+        return new RegressionReport(baselineBuildNumber, compared.size(), regressions, newOperations,
+                removedOperations, complete);
+    }
+
+    /**
+     * @return One-sided p-value of the hypothesis that the operation did not get slower
+     */
+    static double getPValue(LatencyProfile before, LatencyProfile after) {
+        double difference = after.getLogMean() - before.getLogMean();
+        double standardError = Math.sqrt(before.getLogVariance() / before.getCalls()
+                + after.getLogVariance() / after.getCalls());
+        if (standardError == 0) {
+            // Every call took exactly as long as the others, in both builds
+            return difference > 0 ? 0 : 1;
+        }
+        return 1 - normalCdf(difference / standardError);
+    }
+
+    static double normalCdf(double z) {
+        return 0.5 * erfc(-z / Math.sqrt(2));
+    }
+
+    /**
+     * Complementary error function with a relative error below 1.2e-7, using a Chebyshev approximation (Numerical
+     * Recipes, 6.2).
+     */
+    static double erfc(double x) {
+        double z = Math.abs(x);
+        double t = 1 / (1 + 0.5 * z);
+        double result = t * Math.exp(-z * z - 1.26551223 + t * (1.00002368 + t * (0.37409196 + t * (0.09678418
+                + t * (-0.18628806 + t * (0.27886807 + t * (-1.13520398 + t * (1.48851587
+                + t * (-0.82215223 + t * 0.17087277)))))))));
+        return x >= 0 ? result : 2 - result;
+    }
+
+    /*
+     * Baseline selection
+     */
+
+    /**
+     * Find the baseline build of a run.
+     *
+     * @param baselineBuild A build number or the ID of a permalink, like {@code lastSuccessfulBuild} or
+     *                      {@code lastStableBuild}. {@link #DEFAULT_BASELINE} if empty.
+     * @return The baseline build, or {@code null} if there is none or it is the run itself
+     */
+    @CheckForNull
+    public static Run<?, ?> findBaselineBuild(@Nonnull Run<?, ?> run, @CheckForNull String baselineBuild) {
+        String trimmed = Util.fixEmptyAndTrim(baselineBuild);
+        String baselineId = trimmed == null ? DEFAULT_BASELINE : trimmed;
+        Job<?, ?> job = run.getParent();
+
+        Run<?, ?> baseline;
+        if (BUILD_NUMBER.matcher(baselineId).matches()) {
+            baseline = job.getBuildByNumber(Integer.parseInt(baselineId));
+        } else {
+            PermalinkProjectAction.Permalink permalink = job.getPermalinks().get(baselineId);
+            baseline = permalink == null ? null : permalink.resolve(job);
+        }
+
+        return baseline == null || baseline.getNumber() == run.getNumber() ? null : baseline;
+    }
+
+    /**
+     * @return {@code true} if the given string is a build number or the ID of a permalink of the builds of any job
+     */
+    public static boolean isValidBaselineBuild(@CheckForNull String baselineBuild) {
+        String trimmed = Util.fixEmptyAndTrim(baselineBuild);
+        if (trimmed == null || BUILD_NUMBER.matcher(trimmed).matches()) {
+            return true;
+        }
+        for (PermalinkProjectAction.Permalink permalink : PermalinkProjectAction.Permalink.BUILTIN) {
+            if (permalink.getId().equals(trimmed)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return The instrumentation with the given ID in a build, or {@code null} if the build has none
+     */
+    @CheckForNull
+    public static InstrumentationRecord findRecord(@Nonnull Run<?, ?> run, @Nonnull String id) {
+        for (InstrumentationAction action : run.getActions(InstrumentationAction.class)) {
+            if (id.equals(action.getId())) {
+                return action.getRecord();
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,117 @@
+package net.explorviz.jenkins.regression;
+
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An operation whose latency increased significantly compared to the baseline build, found by
+ * {@link LatencyRegressionAnalyzer}.
+ */
+@ExportedBean
+public class OperationRegression implements Serializable {
+    private static final long serialVersionUID = 2714638057116427935L;
+
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final String operationSignature;
+    private final long baselineCalls;
+    private final long calls;
+    private final long baselineP50Nanos;
+    private final long p50Nanos;
+    private final long baselineP90Nanos;
+    private final long p90Nanos;
+    private final double change;
+    private final double pValue;
+
+    /**
+     * @param change Relative change of the geometric mean latency, e.g. {@code 0.25} for 25% slower
+     * @param pValue Probability of a change at least this large if the operation did not actually get slower
+     */
+    public OperationRegression(String operationSignature, long baselineCalls, long calls, long baselineP50Nanos,
+                               long p50Nanos, long baselineP90Nanos, long p90Nanos, double change, double pValue) {
+        this.operationSignature = operationSignature;
+        this.baselineCalls = baselineCalls;
+        this.calls = calls;
+        this.baselineP50Nanos = baselineP50Nanos;
+        this.p50Nanos = p50Nanos;
+        this.baselineP90Nanos = baselineP90Nanos;
+        this.p90Nanos = p90Nanos;
+        this.change = change;
+        this.pValue = pValue;
+    }
+
+    @Exported
+    public String getOperationSignature() {
+        return operationSignature;
+    }
+
+    @Exported
+    public long getBaselineCalls() {
+        return baselineCalls;
+    }
+
+    @Exported
+    public long getCalls() {
+        return calls;
+    }
+
+    @Exported
+    public long getBaselineP50Nanos() {
+        return baselineP50Nanos;
+    }
+
+    @Exported
+    public long getP50Nanos() {
+        return p50Nanos;
+    }
+
+    @Exported
+    public long getBaselineP90Nanos() {
+        return baselineP90Nanos;
+    }
+
+    @Exported
+    public long getP90Nanos() {
+        return p90Nanos;
+    }
+
+    /**
+     * @return Relative change of the geometric mean latency, e.g. {@code 0.25} for 25% slower
+     */
+    @Exported
+    public double getChange() {
+        return change;
+    }
+
+    public double getChangePercent() {
+        return change * 100;
+    }
+
+    @Exported
+    public double getPValue() {
+        return pValue;
+    }
+
+    /*
+     * Milliseconds, for display
+     */
+
+    public double getBaselineP50Millis() {
+        return baselineP50Nanos / NANOS_PER_MILLI;
+    }
+
+    public double getP50Millis() {
+        return p50Nanos / NANOS_PER_MILLI;
+    }
+
+    public double getBaselineP90Millis() {
+        return baselineP90Nanos / NANOS_PER_MILLI;
+    }
+
+    public double getP90Millis() {
+        return p90Nanos / NANOS_PER_MILLI;
+    }
+}
@@ -0,0 +1,91 @@
+package net.explorviz.jenkins.regression;
+
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+import javax.annotation.Nonnull;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Result of comparing the operation latencies of an instrumentation with the same instrumentation of a baseline
+ * build, computed by {@link LatencyRegressionAnalyzer}.
+ */
+@ExportedBean
+public class RegressionReport implements Serializable {
+    private static final long serialVersionUID = -4412950846735871306L;
+
+    private final int baselineBuildNumber;
+    private final int comparedOperations;
+    private final List<OperationRegression> regressions;
+    private final List<String> newOperations;
+    private final List<String> removedOperations;
+    private final boolean operationsComplete;
+
+    /**
+     * @param baselineBuildNumber Number of the build compared against
+     * @param comparedOperations  Number of operations with enough calls in both builds to be compared
+     * @param regressions         Operations that got significantly slower, ordered by change (descending)
+     * @param newOperations       Operations that were not called in the baseline build
+     * @param removedOperations   Operations that were only called in the baseline build
+     * @param operationsComplete  {@code false} if not all operations of either build were profiled, so operations
+     *                            can't be reliably told apart as new or removed
+     */
+    public RegressionReport(int baselineBuildNumber, int comparedOperations,
+                            @Nonnull List<OperationRegression> regressions, @Nonnull List<String> newOperations,
+                            @Nonnull List<String> removedOperations, boolean operationsComplete) {
+        this.baselineBuildNumber = baselineBuildNumber;
+        this.comparedOperations = comparedOperations;
+        this.regressions = new ArrayList<>(regressions);
+        this.newOperations = new ArrayList<>(newOperations);
+        this.removedOperations = new ArrayList<>(removedOperations);
+        this.operationsComplete = operationsComplete;
+    }
+
+    @Exported
+    public int getBaselineBuildNumber() {
+        return baselineBuildNumber;
+    }
+
+    @Exported
+    public int getComparedOperations() {
+        return comparedOperations;
+    }
+
+    @Nonnull
+    @Exported
+    public List<OperationRegression> getRegressions() {
+        return Collections.unmodifiableList(regressions);
+    }
+
+    public boolean hasRegressions() {
+        return !regressions.isEmpty();
+    }
+
+    /**
+     * @return Operations that were not called in the baseline build, empty if {@link #isOperationsComplete()} is
+     * {@code false}
+     */
+    @Nonnull
+    @Exported
+    public List<String> getNewOperations() {
+        return Collections.unmodifiableList(newOperations);
+    }
+
+    /**
+     * @return Operations that were only called in the baseline build, empty if {@link #isOperationsComplete()} is
+     * {@code false}
+     */
+    @Nonnull
+    @Exported
+    public List<String> getRemovedOperations() {
+        return Collections.unmodifiableList(removedOperations);
+    }
+
+    @Exported
+    public boolean isOperationsComplete() {
+        return operationsComplete;
+    }
+}
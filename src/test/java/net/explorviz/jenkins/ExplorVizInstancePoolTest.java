@@ -0,0 +1,132 @@
+package net.explorviz.jenkins;
+
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import net.explorviz.jenkins.model.ExplorVizDefinition;
+import net.explorviz.jenkins.model.ExplorVizGlobalConfiguration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Drives the {@link ExplorVizInstancePool} through the {@link LocalProcessLauncher}, which starts a
+ * {@link PortListener} in place of ExplorViz.
+ */
+public class ExplorVizInstancePoolTest {
+    private static final String COMMAND_PROPERTY = LocalProcessLauncher.class.getName() + ".command";
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private final ExplorVizInstancePool pool = ExplorVizInstancePool.get();
+    private FreeStyleBuild run;
+
+    @Before
+    public void setUp() throws Exception {
+        String java = new File(new File(System.getProperty("java.home"), "bin"), "java").getPath();
+        System.setProperty(COMMAND_PROPERTY, "\"" + java + "\" -cp \"" + System.getProperty("java.class.path")
+                + "\" " + PortListener.class.getName() + " ${port} ${ingestPort}");
+
+        FreeStyleProject project = j.createFreeStyleProject();
+        run = j.buildAndAssertSuccess(project);
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdown();
+        System.clearProperty(COMMAND_PROPERTY);
+    }
+
+    @Test
+    public void launchesAndReusesInstances() throws Exception {
+        ExplorVizDefinition definition = new ExplorVizDefinition("test", null);
+
+        ExplorVizInstance instance = pool.acquire(run, definition);
+        assertNotNull(instance);
+        assertTrue(instance.isAlive());
+        assertNotNull(instance.getExplorVizURL());
+        assertNotNull(instance.getIngestAddress());
+        assertEquals(1, pool.getLaunchCount());
+        assertTrue(pool.getAverageStartupMillis() >= 0);
+
+        pool.release(instance);
+        assertSame(instance, pool.acquire(run, definition));
+        assertEquals(1, pool.getLaunchCount());
+        assertEquals(1, pool.getReuseCount());
+        assertTrue(pool.getAverageReuseMillis() >= 0);
+    }
+
+    @Test
+    public void leasedInstancesAreNotShared() throws Exception {
+        ExplorVizDefinition definition = new ExplorVizDefinition("test", null);
+
+        ExplorVizInstance first = pool.acquire(run, definition);
+        ExplorVizInstance second = pool.acquire(run, definition);
+        assertNotNull(first);
+        assertNotNull(second);
+        assertNotSame(first, second);
+        assertEquals(2, pool.getInstances().size());
+    }
+
+    @Test
+    public void fullPoolShutsDownIdleInstanceToMakeRoom() throws Exception {
+        ExplorVizGlobalConfiguration.get().setMaxInstances(1);
+        ExplorVizDefinition definition = new ExplorVizDefinition("test", null);
+        ExplorVizDefinition other = new ExplorVizDefinition("other", null);
+
+        ExplorVizInstance leased = pool.acquire(run, definition);
+        assertNotNull(leased);
+        assertNull(pool.acquire(run, other));
+
+        pool.release(leased);
+        ExplorVizInstance replacement = pool.acquire(run, other);
+        assertNotNull(replacement);
+        assertFalse(leased.isAlive());
+        assertEquals(1, pool.getInstances().size());
+    }
+
+    @Test
+    public void deadInstancesAreReplaced() throws Exception {
+        ExplorVizDefinition definition = new ExplorVizDefinition("test", null);
+
+        ExplorVizInstance instance = pool.acquire(run, definition);
+        assertNotNull(instance);
+        pool.release(instance);
+        instance.kill();
+
+        ExplorVizInstance replacement = pool.acquire(run, definition);
+        assertNotNull(replacement);
+        assertNotSame(instance, replacement);
+        assertTrue(replacement.isAlive());
+        assertEquals(1, pool.getInstances().size());
+        assertEquals(2, pool.getLaunchCount());
+    }
+
+    @Test
+    public void idleInstancesAreShutDownAfterTimeout() throws Exception {
+        ExplorVizDefinition definition = new ExplorVizDefinition("test", null);
+
+        ExplorVizInstance instance = pool.acquire(run, definition);
+        assertNotNull(instance);
+        pool.release(instance);
+        pool.evictIdle();
+        assertTrue(instance.isAlive());
+
+        instance.lastReleased = 0;
+        pool.evictIdle();
+        assertFalse(instance.isAlive());
+        assertTrue(pool.getInstances().isEmpty());
+    }
+}
@@ -0,0 +1,47 @@
+package net.explorviz.jenkins;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+/**
+ * Stand-in for ExplorViz that {@link LocalProcessLauncher} starts in tests: accepts connections on the web and ingest
+ * port given as arguments and discards whatever it receives, until it is killed.
+ */
+public final class PortListener {
+    private PortListener() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        for (String port : args) {
+            ServerSocket serverSocket = new ServerSocket(Integer.parseInt(port));
+            Thread acceptor = new Thread(() -> accept(serverSocket), "Accept on " + port);
+            acceptor.start();
+        }
+    }
+
+    private static void accept(ServerSocket serverSocket) {
+        while (true) {
+            try {
+                Socket socket = serverSocket.accept();
+                Thread reader = new Thread(() -> drain(socket));
+                reader.setDaemon(true);
+                reader.start();
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private static void drain(Socket socket) {
+        byte[] buffer = new byte[8192];
+        try (InputStream in = socket.getInputStream()) {
+            while (in.read(buffer) != -1) {
+                // Discard
+            }
+        } catch (IOException e) {
+            // Closed by the client
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package net.explorviz.jenkins.kieker.collector;
+
+import kieker.common.record.controlflow.OperationExecutionRecord;
+import kieker.common.record.flow.trace.TraceMetadata;
+import kieker.common.record.flow.trace.operation.AfterOperationFailedEvent;
+import kieker.common.record.flow.trace.operation.BeforeOperationEvent;
+import kieker.common.record.misc.KiekerMetadataRecord;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TraceSamplerTest {
+    private static final int TRACES = 100000;
+
+    @Test
+    public void keepsEveryTraceAtFullRate() {
+        TraceSampler sampler = new TraceSampler(1);
+        assertFalse(sampler.isSampling());
+        for (long traceId = 0; traceId < 1000; traceId++) {
+            assertTrue(sampler.isSampled(traceId));
+        }
+    }
+
+    @Test
+    public void decidesEachTraceTheSameWay() {
+        TraceSampler sampler = new TraceSampler(0.3);
+        TraceSampler other = new TraceSampler(0.3);
+        assertTrue(sampler.isSampling());
+        for (long traceId = 0; traceId < TRACES; traceId++) {
+            boolean sampled = sampler.isSampled(traceId);
+            assertEquals(sampled, sampler.isSampled(traceId));
+            assertEquals(sampled, other.isSampled(traceId));
+        }
+    }
+
+    @Test
+    public void keepsTheGivenFractionOfSequentialTraces() {
+        TraceSampler sampler = new TraceSampler(0.25);
+        int sampled = 0;
+        for (long traceId = 0; traceId < TRACES; traceId++) {
+            if (sampler.isSampled(traceId)) {
+                sampled++;
+            }
+        }
+        assertEquals(0.25, (double) sampled / TRACES, 0.01);
+    }
+
+    @Test
+    public void lowerRatesKeepASubsetOfTheTraces() {
+        TraceSampler low = new TraceSampler(0.1);
+        TraceSampler high = new TraceSampler(0.5);
+        for (long traceId = 0; traceId < TRACES; traceId++) {
+            assertTrue(!low.isSampled(traceId) || high.isSampled(traceId));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsZeroRate() {
+        new TraceSampler(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsRateAboveOne() {
+        new TraceSampler(1.5);
+    }
+
+    @Test
+    public void findsTraceIdOffsets() {
+        assertEquals(0, TraceSampler.getTraceIdOffset(TraceMetadata.class.getName()));
+        assertEquals(Long.BYTES, TraceSampler.getTraceIdOffset(BeforeOperationEvent.class.getName()));
+        assertEquals(Long.BYTES, TraceSampler.getTraceIdOffset(AfterOperationFailedEvent.class.getName()));
+        assertEquals(2 * Integer.BYTES, TraceSampler.getTraceIdOffset(OperationExecutionRecord.class.getName()));
+        assertEquals(TraceSampler.NO_TRACE_ID, TraceSampler.getTraceIdOffset(KiekerMetadataRecord.class.getName()));
+        assertEquals(TraceSampler.NO_TRACE_ID, TraceSampler.getTraceIdOffset("com.example.UnknownRecord"));
+    }
+}
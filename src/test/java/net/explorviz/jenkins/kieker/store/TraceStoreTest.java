@@ -0,0 +1,167 @@
+package net.explorviz.jenkins.kieker.store;
+
+import kieker.common.record.controlflow.OperationExecutionRecord;
+import kieker.common.record.flow.trace.TraceMetadata;
+import kieker.common.record.flow.trace.operation.AfterOperationEvent;
+import kieker.common.record.flow.trace.operation.BeforeOperationEvent;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class TraceStoreTest {
+    /**
+     * Spans three blocks, the last one partially filled
+     */
+    private static final int EXECUTIONS = 2 * TraceStoreWriter.BLOCK_SIZE + 100;
+    /**
+     * Operation executions that fill the first block after the two of the flow trace
+     */
+    private static final int FIRST_BLOCK_EXECUTIONS = TraceStoreWriter.BLOCK_SIZE - 2;
+    private static final int EXECUTIONS_PER_TRACE = 10;
+    private static final long FLOW_TRACE_ID = -5;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void roundTripsExecutionsAcrossBlocks() throws IOException {
+        List<Execution> expected = new ArrayList<>();
+        TraceStore store = write(expected);
+
+        List<Execution> actual = new ArrayList<>();
+        store.scan(block -> {
+            for (int i = 0; i < block.size(); i++) {
+                actual.add(store.getExecution(block, i));
+            }
+        });
+        assertEquals(expected.size(), store.getExecutionCount());
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertExecution(expected.get(i), actual.get(i));
+        }
+    }
+
+    @Test
+    public void dictionariesGrowAcrossBlocks() throws IOException {
+        TraceStore store = write(new ArrayList<>());
+
+        assertEquals(Arrays.asList("inner", "outer", "op0", "op1", "op2", "op3", "op4", "late0", "late1", "late2"),
+                store.getSignatures());
+        assertEquals(Arrays.asList("flowhost", "host0", "host1"), store.getHostnames());
+
+        Map<String, Long> callCounts = store.getCallCounts();
+        assertEquals(1L, (long) callCounts.get("outer"));
+        long total = 0;
+        for (int i = 0; i < 5; i++) {
+            total += callCounts.get("op" + i);
+        }
+        assertEquals(FIRST_BLOCK_EXECUTIONS, total);
+        total = 0;
+        for (int i = 0; i < 3; i++) {
+            total += callCounts.get("late" + i);
+        }
+        assertEquals(EXECUTIONS - FIRST_BLOCK_EXECUTIONS, total);
+    }
+
+    @Test
+    public void findsTracesSpanningBlocks() throws IOException {
+        List<Execution> expected = new ArrayList<>();
+        TraceStore store = write(expected);
+
+        // The first block ends within this trace
+        long traceId = TraceStoreWriter.BLOCK_SIZE / EXECUTIONS_PER_TRACE;
+        List<Execution> trace = store.getTrace(traceId);
+        assertEquals(EXECUTIONS_PER_TRACE, trace.size());
+        for (int eoi = 0; eoi < EXECUTIONS_PER_TRACE; eoi++) {
+            assertExecution(expected.get(2 + (int) traceId * EXECUTIONS_PER_TRACE + eoi), trace.get(eoi));
+        }
+
+        List<Execution> flowTrace = store.getTrace(FLOW_TRACE_ID);
+        assertEquals(2, flowTrace.size());
+        assertExecution(expected.get(1), flowTrace.get(0));
+        assertExecution(expected.get(0), flowTrace.get(1));
+    }
+
+    @Test
+    public void findsSlowestTraces() throws IOException {
+        List<Execution> expected = new ArrayList<>();
+        TraceStore store = write(expected);
+
+        List<Execution> roots = new ArrayList<>();
+        for (Execution execution : expected) {
+            if (execution.getEss() == 0) {
+                roots.add(execution);
+            }
+        }
+        roots.sort((a, b) -> Long.compare(b.getDurationNanos(), a.getDurationNanos()));
+
+        List<Execution> slowest = store.getSlowestTraces(5);
+        assertEquals(5, slowest.size());
+        for (int i = 0; i < slowest.size(); i++) {
+            assertEquals(roots.get(i).getDurationNanos(), slowest.get(i).getDurationNanos());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherFiles() throws IOException {
+        File file = folder.newFile("other" + TraceStore.EXTENSION);
+        Files.write(file.toPath(), "not a trace store".getBytes(StandardCharsets.UTF_8));
+        TraceStore.read(file);
+    }
+
+    /**
+     * Write a flow trace followed by {@link #EXECUTIONS} operation executions. Signatures first used after the first
+     * block are added to the dictionary of a later block.
+     *
+     * @param expected Receives the executions in the order they are written
+     */
+    private TraceStore write(List<Execution> expected) throws IOException {
+        File file = folder.newFile("test" + TraceStore.EXTENSION);
+        try (TraceStoreWriter writer = new TraceStoreWriter(file)) {
+            writer.add(new TraceMetadata(FLOW_TRACE_ID, 1, "session", "flowhost", -1, -1));
+            writer.add(new BeforeOperationEvent(10, FLOW_TRACE_ID, 0, "outer", "Outer"));
+            writer.add(new BeforeOperationEvent(20, FLOW_TRACE_ID, 1, "inner", "Inner"));
+            writer.add(new AfterOperationEvent(30, FLOW_TRACE_ID, 2, "inner", "Inner"));
+            writer.add(new AfterOperationEvent(50, FLOW_TRACE_ID, 3, "outer", "Outer"));
+            expected.add(new Execution(FLOW_TRACE_ID, 20, 10, 1, 1, "inner", "flowhost"));
+            expected.add(new Execution(FLOW_TRACE_ID, 10, 40, 0, 0, "outer", "flowhost"));
+
+            for (int row = 0; row < EXECUTIONS; row++) {
+                long traceId = row / EXECUTIONS_PER_TRACE;
+                int eoi = row % EXECUTIONS_PER_TRACE;
+                int ess = eoi == 0 ? 0 : 1;
+                long tin = 1000L * row;
+                long duration = row * 7919L % 100000;
+                String signature = row < FIRST_BLOCK_EXECUTIONS ? "op" + row % 5
+                        : "late" + (row - FIRST_BLOCK_EXECUTIONS) % 3;
+                String hostname = "host" + traceId % 2;
+                writer.add(new OperationExecutionRecord(signature, "session", traceId, tin, tin + duration, hostname,
+                        eoi, ess));
+                expected.add(new Execution(traceId, tin, duration, eoi, ess, signature, hostname));
+            }
+            assertEquals(expected.size(), writer.getExecutionCount());
+        }
+        return TraceStore.read(file);
+    }
+
+    private static void assertExecution(Execution expected, Execution actual) {
+        assertEquals(expected.getTraceId(), actual.getTraceId());
+        assertEquals(expected.getStart(), actual.getStart());
+        assertEquals(expected.getDurationNanos(), actual.getDurationNanos());
+        assertEquals(expected.getEoi(), actual.getEoi());
+        assertEquals(expected.getEss(), actual.getEss());
+        assertEquals(expected.getOperationSignature(), actual.getOperationSignature());
+        assertEquals(expected.getHostname(), actual.getHostname());
+    }
+}
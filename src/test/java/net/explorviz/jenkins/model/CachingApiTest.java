@@ -0,0 +1,73 @@
+package net.explorviz.jenkins.model;
+
+import com.gargoylesoftware.htmlunit.HttpMethod;
+import com.gargoylesoftware.htmlunit.WebRequest;
+import com.gargoylesoftware.htmlunit.WebResponse;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import javax.servlet.http.HttpServletResponse;
+import java.net.URL;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+public class CachingApiTest {
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private JenkinsRule.WebClient webClient;
+    private URL apiUrl;
+
+    @Before
+    public void setUp() throws Exception {
+        FreeStyleProject project = j.createFreeStyleProject();
+        FreeStyleBuild build = j.buildAndAssertSuccess(project);
+        build.addAction(new ExplorVizAction());
+
+        webClient = j.createWebClient();
+        webClient.getOptions().setThrowExceptionOnFailingStatusCode(false);
+        apiUrl = new URL(j.getURL(), build.getUrl() + "explorviz/api/json");
+    }
+
+    private WebResponse get(String header, String value) throws Exception {
+        WebRequest request = new WebRequest(apiUrl, HttpMethod.GET);
+        if (header != null) {
+            request.setAdditionalHeader(header, value);
+        }
+        return webClient.loadWebResponse(request);
+    }
+
+    @Test
+    public void answersMatchingETagWithNotModified() throws Exception {
+        WebResponse response = get(null, null);
+        assertEquals(HttpServletResponse.SC_OK, response.getStatusCode());
+        String etag = response.getResponseHeaderValue("ETag");
+        assertNotNull(etag);
+        assertNotNull(response.getResponseHeaderValue("Last-Modified"));
+
+        WebResponse revalidated = get("If-None-Match", etag);
+        assertEquals(HttpServletResponse.SC_NOT_MODIFIED, revalidated.getStatusCode());
+        assertEquals(etag, revalidated.getResponseHeaderValue("ETag"));
+
+        assertEquals(HttpServletResponse.SC_NOT_MODIFIED, get("If-None-Match", "W/" + etag).getStatusCode());
+    }
+
+    @Test
+    public void answersOtherETagWithContent() throws Exception {
+        WebResponse response = get("If-None-Match", "\"outdated\"");
+        assertEquals(HttpServletResponse.SC_OK, response.getStatusCode());
+        assertEquals(HttpServletResponse.SC_OK, get("If-Modified-Since", "Thu, 01 Jan 1970 00:00:00 GMT")
+                .getStatusCode());
+    }
+
+    @Test
+    public void answersCurrentDateWithNotModified() throws Exception {
+        String lastModified = get(null, null).getResponseHeaderValue("Last-Modified");
+        assertEquals(HttpServletResponse.SC_NOT_MODIFIED, get("If-Modified-Since", lastModified).getStatusCode());
+    }
+}
@@ -0,0 +1,47 @@
+package net.explorviz.jenkins.regression;
+
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.model.Result;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.FailureBuilder;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyRegressionAnalyzerBaselineTest {
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    @Test
+    public void findsBaselineBuild() throws Exception {
+        FreeStyleProject project = j.createFreeStyleProject();
+        FreeStyleBuild first = j.buildAndAssertSuccess(project);
+        FreeStyleBuild second = j.buildAndAssertSuccess(project);
+        project.getBuildersList().add(new FailureBuilder());
+        FreeStyleBuild failed = j.assertBuildStatus(Result.FAILURE, project.scheduleBuild2(0));
+
+        assertSame(second, LatencyRegressionAnalyzer.findBaselineBuild(failed, null));
+        assertSame(second, LatencyRegressionAnalyzer.findBaselineBuild(failed, " "));
+        assertSame(second, LatencyRegressionAnalyzer.findBaselineBuild(failed, "lastSuccessfulBuild"));
+        assertSame(first, LatencyRegressionAnalyzer.findBaselineBuild(failed, "1"));
+        assertSame(first, LatencyRegressionAnalyzer.findBaselineBuild(second, "1"));
+        assertNull(LatencyRegressionAnalyzer.findBaselineBuild(second, "lastSuccessfulBuild"));
+        assertNull(LatencyRegressionAnalyzer.findBaselineBuild(failed, "lastFailedBuild"));
+        assertNull(LatencyRegressionAnalyzer.findBaselineBuild(failed, "42"));
+        assertNull(LatencyRegressionAnalyzer.findBaselineBuild(failed, "noSuchPermalink"));
+    }
+
+    @Test
+    public void validatesBaselineBuild() {
+        assertTrue(LatencyRegressionAnalyzer.isValidBaselineBuild(null));
+        assertTrue(LatencyRegressionAnalyzer.isValidBaselineBuild("12"));
+        assertTrue(LatencyRegressionAnalyzer.isValidBaselineBuild("lastStableBuild"));
+        assertFalse(LatencyRegressionAnalyzer.isValidBaselineBuild("noSuchPermalink"));
+        assertFalse(LatencyRegressionAnalyzer.isValidBaselineBuild("-1"));
+    }
+}
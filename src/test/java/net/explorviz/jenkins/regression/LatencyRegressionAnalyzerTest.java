@@ -0,0 +1,171 @@
+package net.explorviz.jenkins.regression;
+
+import net.explorviz.jenkins.kieker.records.HotspotReport;
+import net.explorviz.jenkins.kieker.records.LatencyProfile;
+import net.explorviz.jenkins.kieker.records.RecordSummary;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyRegressionAnalyzerTest {
+    /**
+     * Growth of the mean logarithmic duration of 100 calls with a variance of 1 that has a one-sided p-value of 0.04
+     */
+    private static final double GROWTH_P_004 = 0.24758439854224887;
+
+    @Test
+    public void erfcMatchesKnownValues() {
+        assertErfc(1.0, 0);
+        assertErfc(0.4795001221869535, 0.5);
+        assertErfc(0.15729920705028513, 1);
+        assertErfc(0.004677734981047265, 2);
+        assertErfc(2.2090496998585438e-05, 3);
+        assertErfc(1.842700792949715, -1);
+    }
+
+    private static void assertErfc(double expected, double x) {
+        assertEquals("erfc(" + x + ")", expected, LatencyRegressionAnalyzer.erfc(x), expected * 1.2e-7);
+    }
+
+    @Test
+    public void normalCdfMatchesKnownValues() {
+        assertEquals(0.5, LatencyRegressionAnalyzer.normalCdf(0), 1e-7);
+        assertEquals(0.95, LatencyRegressionAnalyzer.normalCdf(1.6448536269514715), 1e-7);
+        assertEquals(0.01, LatencyRegressionAnalyzer.normalCdf(-2.3263478740408408), 1e-7);
+    }
+
+    @Test
+    public void pValueOfEqualSamples() {
+        LatencyProfile before = new LatencyProfile(100, 10, 1, 1, 1);
+        LatencyProfile after = new LatencyProfile(100, 10 + 0.23261743073533464, 1, 1, 1);
+        assertEquals(0.05, LatencyRegressionAnalyzer.getPValue(before, after), 1e-6);
+        assertEquals(0.95, LatencyRegressionAnalyzer.getPValue(after, before), 1e-6);
+    }
+
+    @Test
+    public void pValueOfUnequalSamples() {
+        // Welch: standard error sqrt(2 / 50 + 0.5 / 200)
+        LatencyProfile before = new LatencyProfile(50, 10, 2, 1, 1);
+        LatencyProfile after = new LatencyProfile(200, 10.3, 0.5, 1, 1);
+        assertEquals(0.07280504769843354, LatencyRegressionAnalyzer.getPValue(before, after), 1e-6);
+    }
+
+    @Test
+    public void pValueWithoutVariance() {
+        LatencyProfile before = new LatencyProfile(100, 10, 0, 1, 1);
+        assertEquals(0, LatencyRegressionAnalyzer.getPValue(before, new LatencyProfile(100, 10.1, 0, 1, 1)), 0);
+        assertEquals(1, LatencyRegressionAnalyzer.getPValue(before, new LatencyProfile(100, 10, 0, 1, 1)), 0);
+    }
+
+    @Test
+    public void reportsSignificantRegressions() {
+        Map<String, LatencyProfile> before = new HashMap<>();
+        Map<String, LatencyProfile> after = new HashMap<>();
+        before.put("slower", new LatencyProfile(100, 10, 1, 1000, 2000));
+        after.put("slower", new LatencyProfile(100, 10 + GROWTH_P_004, 1, 1300, 2600));
+        before.put("same", new LatencyProfile(100, 10, 1, 1000, 2000));
+        after.put("same", new LatencyProfile(100, 10, 1, 1000, 2000));
+
+        RegressionReport report = new LatencyRegressionAnalyzer(0.1, 0.1, 30).compare(7, summary(before),
+                summary(after));
+        assertEquals(7, report.getBaselineBuildNumber());
+        assertEquals(2, report.getComparedOperations());
+        assertEquals(1, report.getRegressions().size());
+        OperationRegression regression = report.getRegressions().get(0);
+        assertEquals("slower", regression.getOperationSignature());
+        assertEquals(Math.exp(GROWTH_P_004) - 1, regression.getChange(), 1e-9);
+        assertEquals(0.04, regression.getPValue(), 1e-6);
+        assertEquals(1000, regression.getBaselineP50Nanos());
+        assertEquals(1300, regression.getP50Nanos());
+    }
+
+    @Test
+    public void dividesSignificanceByComparedOperations() {
+        Map<String, LatencyProfile> before = new HashMap<>();
+        Map<String, LatencyProfile> after = new HashMap<>();
+        before.put("slower", new LatencyProfile(100, 10, 1, 1, 1));
+        after.put("slower", new LatencyProfile(100, 10 + GROWTH_P_004, 1, 1, 1));
+        for (String operation : Arrays.asList("same", "other")) {
+            before.put(operation, new LatencyProfile(100, 10, 1, 1, 1));
+            after.put(operation, new LatencyProfile(100, 10, 1, 1, 1));
+        }
+
+        // p = 0.04 is not below 0.1 / 3
+        RegressionReport report = new LatencyRegressionAnalyzer(0.1, 0.1, 30).compare(1, summary(before),
+                summary(after));
+        assertEquals(3, report.getComparedOperations());
+        assertFalse(report.hasRegressions());
+    }
+
+    @Test
+    public void skipsRarelyCalledOperations() {
+        Map<String, LatencyProfile> before = new HashMap<>();
+        Map<String, LatencyProfile> after = new HashMap<>();
+        before.put("slower", new LatencyProfile(100, 10, 1, 1, 1));
+        after.put("slower", new LatencyProfile(100, 10 + GROWTH_P_004, 1, 1, 1));
+        before.put("rare", new LatencyProfile(29, 10, 1, 1, 1));
+        after.put("rare", new LatencyProfile(100, 12, 1, 1, 1));
+
+        // Only "slower" is compared, so the significance stays at 0.05
+        RegressionReport report = new LatencyRegressionAnalyzer(0.1, 0.05, 30).compare(1, summary(before),
+                summary(after));
+        assertEquals(1, report.getComparedOperations());
+        assertEquals(1, report.getRegressions().size());
+        assertEquals("slower", report.getRegressions().get(0).getOperationSignature());
+    }
+
+    @Test
+    public void ignoresGrowthBelowThreshold() {
+        Map<String, LatencyProfile> before = Collections.singletonMap("slower", new LatencyProfile(1000, 10, 1, 1, 1));
+        Map<String, LatencyProfile> after = Collections.singletonMap("slower",
+                new LatencyProfile(1000, 10 + GROWTH_P_004, 1, 1, 1));
+
+        assertTrue(new LatencyRegressionAnalyzer(0.1, 0.01, 30).compare(1, summary(before), summary(after))
+                .hasRegressions());
+        assertFalse(new LatencyRegressionAnalyzer(0.3, 0.01, 30).compare(1, summary(before), summary(after))
+                .hasRegressions());
+    }
+
+    @Test
+    public void listsNewAndRemovedOperationsOfCompleteProfiles() {
+        Map<String, LatencyProfile> before = new HashMap<>();
+        Map<String, LatencyProfile> after = new HashMap<>();
+        before.put("kept", new LatencyProfile(100, 10, 1, 1, 1));
+        after.put("kept", new LatencyProfile(100, 10, 1, 1, 1));
+        before.put("removed", new LatencyProfile(100, 10, 1, 1, 1));
+        after.put("new", new LatencyProfile(100, 10, 1, 1, 1));
+
+        LatencyRegressionAnalyzer analyzer = new LatencyRegressionAnalyzer(0.1, 0.01, 30);
+        RegressionReport report = analyzer.compare(1, summary(before), summary(after));
+        assertTrue(report.isOperationsComplete());
+        assertEquals(Collections.singletonList("new"), report.getNewOperations());
+        assertEquals(Collections.singletonList("removed"), report.getRemovedOperations());
+
+        // Profiles of rarely called operations were dropped, which may include "new" and "removed"
+        report = analyzer.compare(1, summary(before, 5), summary(after));
+        assertFalse(report.isOperationsComplete());
+        assertTrue(report.getNewOperations().isEmpty());
+        assertTrue(report.getRemovedOperations().isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsSingleCall() {
+        new LatencyRegressionAnalyzer(0.1, 0.01, 1);
+    }
+
+    private static RecordSummary summary(Map<String, LatencyProfile> profiles) {
+        return summary(profiles, profiles.size());
+    }
+
+    private static RecordSummary summary(Map<String, LatencyProfile> profiles, int operationCount) {
+        return new RecordSummary(new String[0], 0, 0, operationCount, 0, 0, 0, 0, 0,
+                new HotspotReport(Collections.emptyList(), operationCount, 0), profiles);
+    }
+}